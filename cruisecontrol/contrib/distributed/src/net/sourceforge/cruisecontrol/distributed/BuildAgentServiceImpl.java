@@ -520,6 +520,10 @@ public class BuildAgentServiceImpl implements BuildAgentService {
         return BuildOutputLoggerManager.INSTANCE.lookup(getProjectName()).retrieveLines(firstLine);
     }
 
+    public byte[] retrieveBytesRemote(final long offset) {
+        return BuildOutputLoggerManager.INSTANCE.lookup(getProjectName()).retrieveBytes(offset);
+    }
+
 
     static void injectAntProgressLoggerLibIfNeeded(final Builder builder) {
         if (builder instanceof AntBuilder) {
@@ -44,6 +44,17 @@ public class BuildOutputLoggerRemote extends BuildOutputLogger implements Serial
         }
     }
 
+    @Override
+    public byte[] retrieveBytes(long offset) {
+        try {
+            return agent.retrieveBytesRemote(offset);
+        } catch (RemoteException e) {
+            final String msg = project + MSG_PART + "retrieveBytesRemote(): ";
+            LOG.warn(msg, e);
+            return new byte[0];
+        }
+    }
+
     @Override
     public String getID() {
         try {
@@ -28,4 +28,13 @@ public interface LiveOutputReaderRemote extends Remote, Serializable {
      * @see #getIDRemote()
      */
     String[] retrieveLinesRemote(final int firstLine) throws RemoteException;
+
+    /**
+     * @param offset position in the live output to read from.
+     * @return UTF-8 encoded output from offset, ending after the last complete line available.
+     * @throws RemoteException if a remote call fails
+     * @see net.sourceforge.cruisecontrol.util.BuildOutputLogger#retrieveBytes(long)
+     * @see #getIDRemote()
+     */
+    byte[] retrieveBytesRemote(final long offset) throws RemoteException;
 }
@@ -94,12 +94,26 @@ public class BuildLoopMonitorTest extends TestCase {
         System.setProperty(BuildLoopInformation.JmxInfo.CRUISECONTROL_RMIPORT, "");
         System.setProperty(BuildLoopInformation.JmxInfo.JMX_HTTP_USERNAME, "");
         System.setProperty(BuildLoopInformation.JmxInfo.JMX_HTTP_PASSWORD, "");
-        serverSocket.close();
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
     }
 
     public void testShouldPublishValiadXml() throws Exception {
         serverSocket = new ServerSocket(3333);
         new BuildLoopMonitor(new Timer(), task, 5000, 0).start();
+        validate(getResponse(serverSocket));
+    }
+
+    public void testVersionedDeltaShouldBeValid() throws Exception {
+        BuildLoopInformation info =
+                new BuildLoopInformationBuilder(new CruiseControlControllerStub()).buildBuildLoopInformation();
+        info.setDelta(3, info.getProjects(), new String[] {"removed1", "removed2"});
+        info.setVersion(4);
+        validate(info.toXml());
+    }
+
+    private void validate(String xml) throws Exception {
         DocumentBuilderFactory buildFactory = DocumentBuilderFactory.newInstance();
         buildFactory.setAttribute("http://java.sun.com/xml/jaxp/properties/schemaSource",
                 BuildLoopMonitorTest.class.getResourceAsStream("buildloop.xsd"));
@@ -119,7 +133,7 @@ public class BuildLoopMonitorTest extends TestCase {
             public void warning(SAXParseException e) throws SAXException {
             }
         });
-        dbuilder.parse(new ByteArrayInputStream(getResponse(serverSocket).getBytes()));
+        dbuilder.parse(new ByteArrayInputStream(xml.getBytes()));
     }
 
     public void testShouldPublishXmlInCertainFormat() throws Exception {
@@ -44,6 +44,12 @@ import net.sourceforge.cruisecontrol.util.UniqueBuildloopIdentifier;
 
 public class BuildLoopInformation {
 
+    /** Reply of a dashboard that applied a report, followed by the version of that report. */
+    public static final String ACKNOWLEDGED = "ack";
+
+    /** Reply of a dashboard that could not apply a delta and needs a full snapshot. */
+    public static final String RESYNC = "resync";
+
     private String uuid;
 
     private JmxInfo jmx;
@@ -54,6 +60,13 @@ public class BuildLoopInformation {
 
     private ProjectInfo[] projects;
 
+    // left null unless set, so that reports to dashboards that don't know about versions don't carry them
+    private Long version;
+
+    private Long baseVersion;
+
+    private String[] removed;
+
     public BuildLoopInformation(ProjectInfo[] projects, JmxInfo jmxinfo, String serverName, String timestamp) {
         this.projects = projects;
         this.jmx = jmxinfo;
@@ -82,6 +95,47 @@ public class BuildLoopInformation {
         return uuid;
     }
 
+    /**
+     * @return the sequence number the sending build loop assigned to this report, 0 if it does not number them.
+     */
+    public long getVersion() {
+        return version == null ? 0 : version.longValue();
+    }
+
+    public void setVersion(long version) {
+        this.version = Long.valueOf(version);
+    }
+
+    /**
+     * @return the version this report is a delta against, or 0 if it is a full snapshot.
+     */
+    public long getBaseVersion() {
+        return baseVersion == null ? 0 : baseVersion.longValue();
+    }
+
+    public boolean isDelta() {
+        return getBaseVersion() > 0;
+    }
+
+    /**
+     * @return names of projects that have been removed since the base version, only meaningful for a delta.
+     */
+    public String[] getRemovedProjects() {
+        return removed == null ? new String[0] : removed;
+    }
+
+    /**
+     * Turns this report into a delta against an earlier version: only the changed projects are kept.
+     * @param base the version the receiver is known to have applied
+     * @param changed projects that are new or changed since that version
+     * @param removedProjects names of projects dropped since that version
+     */
+    public void setDelta(long base, ProjectInfo[] changed, String[] removedProjects) {
+        this.baseVersion = Long.valueOf(base);
+        this.projects = changed;
+        this.removed = removedProjects;
+    }
+
     public String toXml() {
         return new BuildInformationHelper().toXml(this);
     }
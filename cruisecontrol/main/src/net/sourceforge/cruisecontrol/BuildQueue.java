@@ -38,8 +38,10 @@ package net.sourceforge.cruisecontrol;
 
 import java.util.ArrayList;
 import java.util.EventListener;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.cruisecontrol.util.threadpool.ThreadQueue;
 
@@ -49,6 +51,9 @@ import org.apache.log4j.Logger;
  * Provides an independent thread of execution that knows how to
  * build Projects.  Passes {@link ProjectInterface} objects to a thread
  * queue.  The number of worker threads is defined in config.xml
+ * <p>
+ * Requested projects wait here until the thread queue has a free worker, so that the
+ * {@link BuildQueuePolicy} decides which project is built next.
  *
  * @author Peter Mei <pmei@users.sourceforge.net>
  * @author jfredrick
@@ -57,7 +62,9 @@ import org.apache.log4j.Logger;
 public class BuildQueue implements Runnable {
     private static final Logger LOG = Logger.getLogger(BuildQueue.class);
 
-    private final LinkedList<ProjectInterface> queue = new LinkedList<ProjectInterface>();
+    private final Object queue = new Object();
+
+    private BuildQueuePolicy policy = new FifoBuildQueuePolicy();
 
     private boolean waiting = false;
 
@@ -65,6 +72,35 @@ public class BuildQueue implements Runnable {
 
     private final List<Listener> listeners = new ArrayList<Listener>();
 
+    private final ThreadQueue.Listener threadQueueListener = new ThreadQueue.Listener() {
+        public void taskCompleted(final String taskName) {
+            synchronized (queue) {
+                queue.notifyAll();
+            }
+        }
+    };
+
+    /**
+     * Changes the order in which waiting projects are served. Projects already waiting are kept.
+     * @param newPolicy the policy to use from now on
+     */
+    public void setPolicy(final BuildQueuePolicy newPolicy) {
+        synchronized (queue) {
+            if (newPolicy.equals(policy)) {
+                return;
+            }
+            LOG.info("build queue policy changed to " + newPolicy.getClass().getName());
+            // waiting requests keep the time they were requested, so they don't lose the priority they aged into
+            final Map<ProjectInterface, Long> pending = new LinkedHashMap<ProjectInterface, Long>();
+            policy.drainTo(pending);
+            for (final Map.Entry<ProjectInterface, Long> request : pending.entrySet()) {
+                newPolicy.add(request.getKey(), request.getValue());
+            }
+            policy = newPolicy;
+            queue.notifyAll();
+        }
+    }
+
     /**
      * @param project the project to build
      */
@@ -73,8 +109,11 @@ public class BuildQueue implements Runnable {
 
         notifyListeners();
         synchronized (queue) {
-            queue.add(project);
-            queue.notifyAll();
+            if (policy.add(project, System.currentTimeMillis())) {
+                queue.notifyAll();
+            } else {
+                LOG.debug("build of " + project.getName() + " already requested");
+            }
         }
     }
 
@@ -86,8 +125,8 @@ public class BuildQueue implements Runnable {
         final int position;
         final int length;
         synchronized (queue) {
-            position = queue.indexOf(project);
-            length = queue.size();
+            position = policy.position(project.getName());
+            length = policy.size();
         }
         if (position < 0) {
             return ThreadQueue.findPosition(project.getName());
@@ -96,17 +135,27 @@ public class BuildQueue implements Runnable {
         return "BUILD_REQUESTED[ " + (position + 1) + " / " + length + " ]";
     }
 
-    private void serviceQueue() {
+    /**
+     * Hands waiting projects to the thread queue while it has free workers.
+     * @return true if a project was handed over
+     */
+    private boolean serviceQueue() {
+        boolean serviced = false;
         synchronized (queue) {
-            while (!queue.isEmpty()) {
-                final ProjectInterface nextProject = queue.remove(0);
-                if (nextProject != null) {
-                    LOG.info("now adding to the thread queue: " + nextProject.getName());
-                    final ProjectWrapper pw = new ProjectWrapper(nextProject);
-                    ThreadQueue.addTask(pw);
+            while (policy.size() > 0 && ThreadQueue.hasIdleWorker()) {
+                final ProjectInterface nextProject = policy.next(
+                        new HashSet<String>(ThreadQueue.getBusyTaskNames()), System.currentTimeMillis());
+                if (nextProject == null) {
+                    // everything waiting is already building
+                    break;
                 }
+                LOG.info("now adding to the thread queue: " + nextProject.getName());
+                final ProjectWrapper pw = new ProjectWrapper(nextProject);
+                ThreadQueue.addTask(pw);
+                serviced = true;
             }
         }
+        return serviced;
     }
 
     public void run() {
@@ -114,13 +163,13 @@ public class BuildQueue implements Runnable {
             LOG.info("BuildQueue started");
             while (true) {
                 synchronized (queue) {
-                    while (queue.isEmpty()) {
+                    while (!serviceQueue()) {
                         waiting = true;
+                        // woken by new requests and by builds finishing in the thread queue
                         queue.wait();
                     }
                     waiting = false;
                 }
-                serviceQueue();
             }
         } catch (InterruptedException e) {
             LOG.debug("BuildQueue.run() interrupted. Stopping?", e);
@@ -133,6 +182,7 @@ public class BuildQueue implements Runnable {
     }
 
     void start() {
+        ThreadQueue.addListener(threadQueueListener);
         buildQueueThread = new Thread(this, "BuildQueueThread");
         buildQueueThread.setDaemon(false);
         buildQueueThread.start();
@@ -149,6 +199,7 @@ public class BuildQueue implements Runnable {
 
     void stop() {
         LOG.info("Stopping BuildQueue");
+        ThreadQueue.removeListener(threadQueueListener);
         if (buildQueueThread != null) {
             buildQueueThread.interrupt();
         }
@@ -0,0 +1,84 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides in which order the projects waiting in the {@link BuildQueue} are handed to the
+ * thread queue. Implementations are only ever called while the build queue is locked, so
+ * they do not need to be thread safe.
+ * <p>
+ * Waiting requests are identified by project name: requesting a project that is already
+ * waiting does not queue it a second time.
+ */
+public interface BuildQueuePolicy {
+
+    /**
+     * @param project the project to build
+     * @param requestTime when the build was requested, in milliseconds
+     * @return false if the project was already waiting and the request was merged into the waiting one
+     */
+    boolean add(ProjectInterface project, long requestTime);
+
+    /**
+     * Removes and returns the project that should be built next.
+     * @param runningProjectNames names of the projects that are currently building; these are skipped
+     * @param now the current time, in milliseconds
+     * @return the next project to build, or null if no waiting project may start now
+     */
+    ProjectInterface next(Set<String> runningProjectNames, long now);
+
+    /**
+     * @param projectName name of the project to look for
+     * @return 0-based position of the project in the order it would currently be served, or -1 if not waiting
+     */
+    int position(String projectName);
+
+    /**
+     * @return number of waiting projects
+     */
+    int size();
+
+    /**
+     * Removes all waiting requests, e.g. to hand them to another policy.
+     * @param requests receives the waiting projects in the order they would be served, each with the time its
+     * build was requested
+     */
+    void drainTo(Map<ProjectInterface, Long> requests);
+}
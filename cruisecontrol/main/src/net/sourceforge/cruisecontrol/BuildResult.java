@@ -0,0 +1,237 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.jdom.Element;
+
+/**
+ * Immutable, indexed view of a finished build log. It is computed once at the end of
+ * {@link Project#build()} from the log handed to the publishers, so the publishers (through
+ * {@link net.sourceforge.cruisecontrol.util.XMLLogHelper}) read hashed properties and typed
+ * modifications instead of walking the XML tree again and again.
+ * <p>
+ * The {@link Modification} instances are shared by all the readers and must not be changed.
+ *
+ * @see #create(Element)
+ * @see #lookup(Element)
+ */
+public final class BuildResult {
+
+    /** Message of the build element of a log whose build was not necessary. */
+    static final String NO_BUILD_NECESSARY = "No Build Necessary";
+
+    /** The results created by {@link #create(Element)}, by the log they were computed from. */
+    private static final Map<Element, BuildResult> RESULTS
+            = Collections.synchronizedMap(new WeakHashMap<Element, BuildResult>());
+
+    private final Map<String, String> infoProperties;
+    private final Map<String, String> buildProperties;
+    private final List<Modification> modifications;
+    private final Set<String> participants;
+    private final boolean hasBuild;
+    private final String error;
+    private final String duration;
+
+    /**
+     * Computes the result from the given log, without registering it.
+     * @param log the cruisecontrol build log
+     */
+    @SuppressWarnings("unchecked") // we know Element.getChildren() returns Elements
+    public BuildResult(final Element log) {
+        infoProperties = Collections.unmodifiableMap(readProperties(log.getChild("info")));
+
+        final Element build = log.getChild("build");
+        hasBuild = build != null;
+        error = hasBuild ? build.getAttributeValue("error") : null;
+        duration = hasBuild ? build.getAttributeValue("time") : null;
+        buildProperties = Collections.unmodifiableMap(readProperties(hasBuild ? build.getChild("properties") : null));
+
+        final List<Modification> mods = new ArrayList<Modification>();
+        final Set<String> users = new HashSet<String>();
+        final Element modificationsElement = log.getChild("modifications");
+        if (modificationsElement != null) {
+            for (final Element modification : (List<Element>) modificationsElement.getChildren("modification")) {
+                final Modification mod = new Modification();
+                mod.fromElement(modification);
+                mods.add(mod);
+
+                Element emailElement = modification.getChild("email");
+                if (emailElement == null) {
+                    emailElement = modification.getChild("user");
+                }
+                if (emailElement != null) {
+                    users.add(emailElement.getText());
+                }
+            }
+        }
+        modifications = Collections.unmodifiableList(mods);
+        participants = Collections.unmodifiableSet(users);
+    }
+
+    /**
+     * Computes the result from the given log and registers it, so {@link #lookup(Element)} returns it
+     * for the same log instance. The log must not be changed afterwards. The registration is dropped
+     * once the log is garbage collected.
+     * @param log the cruisecontrol build log
+     * @return the result of the build
+     */
+    public static BuildResult create(final Element log) {
+        final BuildResult result = new BuildResult(log);
+        RESULTS.put(log, result);
+        return result;
+    }
+
+    /**
+     * @param log the cruisecontrol build log
+     * @return the result registered for the given log instance by {@link #create(Element)},
+     *  or <code>null</code> if there is none
+     */
+    public static BuildResult lookup(final Element log) {
+        return RESULTS.get(log);
+    }
+
+    @SuppressWarnings("unchecked") // we know Element.getChildren() returns Elements
+    private static Map<String, String> readProperties(final Element parent) {
+        final Map<String, String> properties = new HashMap<String, String>();
+        if (parent != null) {
+            for (final Element property : (List<Element>) parent.getChildren("property")) {
+                final String name = property.getAttributeValue("name");
+                // the first property of the name wins, as when the log is searched in document order
+                if (!properties.containsKey(name)) {
+                    properties.put(name, property.getAttributeValue("value"));
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * @param name the name of the property in the info section
+     * @return the value of the property, or <code>null</code> if there is no such property
+     */
+    public String getInfoProperty(final String name) {
+        return infoProperties.get(name);
+    }
+
+    /** @return the properties of the info section, by name */
+    public Map<String, String> getInfoProperties() {
+        return infoProperties;
+    }
+
+    /**
+     * @param name the name of the property reported by the builder
+     * @return the value of the property, or <code>null</code> if there is no such property
+     */
+    public String getBuildProperty(final String name) {
+        return buildProperties.get(name);
+    }
+
+    /** @return the properties reported by the builder, by name */
+    public Map<String, String> getBuildProperties() {
+        return buildProperties;
+    }
+
+    /** @return the modifications in the order they appear in the log */
+    public List<Modification> getModifications() {
+        return modifications;
+    }
+
+    /** @return the email addresses (or user names, when there is no address) of those who made the modifications */
+    public Set<String> getParticipants() {
+        return participants;
+    }
+
+    /** @return the label of the build, or <code>null</code> if not known */
+    public String getLabel() {
+        return getInfoProperty("label");
+    }
+
+    /** @return the name of the project, or <code>null</code> if not known */
+    public String getProjectName() {
+        return getInfoProperty("projectname");
+    }
+
+    /** @return the error reported by the builder, or <code>null</code> if it succeeded */
+    public String getError() {
+        return error;
+    }
+
+    /** @return the duration of the build as reported by the builder, or <code>null</code> if not known */
+    public String getDuration() {
+        return duration;
+    }
+
+    /** @return true if the build was successful */
+    public boolean isSuccessful() {
+        return hasBuild && error == null;
+    }
+
+    /** @return true if the build was necessary */
+    public boolean isNecessary() {
+        return error == null || !error.equals(NO_BUILD_NECESSARY);
+    }
+
+    /** @return true if the previous build was successful */
+    public boolean wasPreviousBuildSuccessful() {
+        return "true".equals(getInfoProperty("lastbuildsuccessful"));
+    }
+
+    /** @return true if the build was successful and the previous one was not */
+    public boolean isFix() {
+        return !wasPreviousBuildSuccessful() && isSuccessful();
+    }
+
+    /** @return "fixed", "successful" or "failed" */
+    public String getStatusMessage() {
+        if (isFix()) {
+            return "fixed";
+        }
+        if (isSuccessful()) {
+            return "successful";
+        }
+        return "failed";
+    }
+}
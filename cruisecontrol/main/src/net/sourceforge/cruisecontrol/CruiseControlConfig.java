@@ -36,6 +36,8 @@
  ********************************************************************************/
 package net.sourceforge.cruisecontrol;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -60,6 +62,9 @@ import net.sourceforge.cruisecontrol.util.Util;
 
 import org.apache.log4j.Logger;
 import org.jdom.Element;
+import org.jdom.output.XMLOutputter;
+
+import com.twmacinta.util.MD5OutputStream;
 
 /**
  * @author <a href="mailto:jerome@coffeebreaks.org">Jerome Lacoste</a>
@@ -93,6 +98,12 @@ public class CruiseControlConfig {
     private final Map<String, ProjectInterface> projects = new LinkedHashMap<String, ProjectInterface>();
     // for test purposes only
     private final Map<String, PluginRegistry> projectPluginRegistries = new TreeMap<String, PluginRegistry>();
+    /** Digest of the effective configuration of each project, see {@link #digest(Element)}. */
+    private final Map<String, String> projectDigests = new HashMap<String, String>();
+    /** The root plugin elements as read, part of the effective configuration of every project. */
+    private String rootPluginsXml = "";
+    /** The configuration this one replaces, only set while parsing. */
+    private CruiseControlConfig previousConfig;
 
     private final ResolverHolder resolvers;
 
@@ -109,6 +120,20 @@ public class CruiseControlConfig {
         return 1;
     }
 
+    /**
+     * @return a new instance of the configured build queue policy, or the default first in, first out policy
+     */
+    public BuildQueuePolicy getBuildQueuePolicy() {
+        if (system != null) {
+            if (system.getConfig() != null) {
+                if (system.getConfig().getBuildQueue() != null) {
+                    return system.getConfig().getBuildQueue().instantiatePolicy();
+                }
+            }
+        }
+        return new FifoBuildQueuePolicy();
+    }
+
     private final CruiseControlController controller;
 
     private final Set<String> customPropertiesPlugins = new HashSet<String>();
@@ -130,9 +155,29 @@ public class CruiseControlConfig {
 
     public CruiseControlConfig(final Element ccElement, final ResolverHolder resolvers,
             final CruiseControlController controller) throws CruiseControlException {
+        this(ccElement, resolvers, controller, null);
+    }
+
+    /**
+     * Creates a configuration that keeps the project instances of a previous configuration for all projects whose
+     * effective configuration, after resolving properties and plugin templates, hasn't changed.
+     * @param ccElement the root element of the configuration
+     * @param resolvers the resolvers of included files
+     * @param controller the controller
+     * @param previousConfig the configuration this one replaces, may be null
+     * @throws CruiseControlException if the configuration is invalid
+     */
+    public CruiseControlConfig(final Element ccElement, final ResolverHolder resolvers,
+            final CruiseControlController controller, final CruiseControlConfig previousConfig)
+            throws CruiseControlException {
         this.resolvers = resolvers;
         this.controller = controller;
-        parse(ccElement);
+        this.previousConfig = previousConfig;
+        try {
+            parse(ccElement);
+        } finally {
+            this.previousConfig = null;
+        }
     }
 
     private void parse(final Element ccElement) throws CruiseControlException {
@@ -174,6 +219,9 @@ public class CruiseControlConfig {
                 handleProject(childElement);
             } else if ("system".equals(nodeName)) {
                 add((SystemPlugin) new ProjectXMLHelper(resolvers).configurePlugin(childElement, false));
+                if (system.getConfig() != null && system.getConfig().getBuildQueue() != null) {
+                    system.getConfig().getBuildQueue().validate();
+                }
             } else if (!KNOWN_ROOT_CHILD_NAMES.contains(nodeName) && !customPropertiesPlugins.contains(nodeName)) {
                 throw new CruiseControlException("cannot handle child of <" + nodeName + ">");
             }
@@ -188,8 +236,14 @@ public class CruiseControlConfig {
         rootPlugins = PluginRegistry.createRegistry(parent.rootPlugins);
         rootProperties = new HashMap<String, String>(parent.rootProperties);
         templatePluginProperties = new HashMap<String, List>(parent.templatePluginProperties);
+        rootPluginsXml = parent.rootPluginsXml;
+        previousConfig = parent.previousConfig;
 
-        parse(includedElement);
+        try {
+            parse(includedElement);
+        } finally {
+            previousConfig = null;
+        }
     }
 
     private void handleIncludedProjects(final Element includeElement) {
@@ -284,6 +338,7 @@ public class CruiseControlConfig {
             LOG.warn("Config contains plugin without a name-attribute, ignoring it");
             return;
         }
+        rootPluginsXml += new XMLOutputter().outputString(pluginElement);
         if (isProjectTemplate(pluginElement)) {
             handleNodeProperties(pluginElement, pluginName);
         }
@@ -329,6 +384,7 @@ public class CruiseControlConfig {
                 LOG.error(message);
             }
             projects.put(name, includedConfig.getProject(name));
+            projectDigests.put(name, includedConfig.projectDigests.get(name));
         }
     }
 
@@ -448,6 +504,19 @@ public class CruiseControlConfig {
         // Parse the entire element tree, expanding all property macros
         ProjectXMLHelper.parsePropertiesInElement(projectElement, thisProperties, FAIL_UPON_MISSING_PROPERTY);
 
+        final String digest = digest(projectElement);
+        if (previousConfig != null && digest.length() > 0
+                && digest.equals(previousConfig.projectDigests.get(projectName))) {
+            LOG.debug("configuration of project " + projectName + " unchanged, keeping the current instance");
+            projects.put(projectName, previousConfig.getProject(projectName));
+            projectDigests.put(projectName, digest);
+            final PluginRegistry previousPlugins = previousConfig.projectPluginRegistries.get(projectName);
+            if (previousPlugins != null) {
+                projectPluginRegistries.put(projectName, previousPlugins);
+            }
+            return;
+        }
+
         // Register any custom plugins
         final PluginRegistry projectPlugins = PluginRegistry.createRegistry(rootPlugins);
         for (final Object o : projectElement.getChildren("plugin")) {
@@ -482,6 +551,25 @@ public class CruiseControlConfig {
 
         this.projects.put(projectName, project);
         this.projectPluginRegistries.put(projectName, projectPlugins);
+        this.projectDigests.put(projectName, digest);
+    }
+
+    /**
+     * @param projectElement a project element with all properties resolved
+     * @return digest of the effective configuration of the project: its element and the root plugins that may
+     * serve as templates for it
+     */
+    private String digest(final Element projectElement) {
+        final MD5OutputStream stream = new MD5OutputStream(new ByteArrayOutputStream());
+        try {
+            stream.write(rootPluginsXml.getBytes("UTF-8"));
+            new XMLOutputter().output(projectElement, stream);
+        } catch (IOException e) {
+            // can't happen writing to memory; an empty digest just means the project is always reconfigured
+            LOG.debug("can't calculate digest of project configuration", e);
+            return "";
+        }
+        return stream.getMD5().asHex();
     }
 
     private String getProjectName(final Element childElement) throws CruiseControlException {
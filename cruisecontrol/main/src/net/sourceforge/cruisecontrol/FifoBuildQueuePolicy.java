@@ -0,0 +1,187 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves projects in the order they were first requested. This is the default policy.
+ * <p>
+ * Subclasses change the order by overriding {@link #createOrder(long)}. The position of every
+ * waiting project is computed once after the queue changes and then looked up in constant time,
+ * as status calls are far more frequent than queue changes.
+ */
+public class FifoBuildQueuePolicy implements BuildQueuePolicy {
+
+    /** Waiting requests by project name, in arrival order. */
+    private final Map<String, Request> requests = new LinkedHashMap<String, Request>();
+
+    private long sequence;
+
+    /** Position of each waiting project, null when it needs to be recomputed. */
+    private Map<String, Integer> positions;
+
+    private long positionsTime;
+
+    public boolean add(final ProjectInterface project, final long requestTime) {
+        final Request waiting = requests.get(project.getName());
+        if (waiting != null) {
+            // keep its place in the queue, but build the latest configuration of the project
+            waiting.project = project;
+            return false;
+        }
+        requests.put(project.getName(), new Request(project, requestTime, sequence++));
+        positions = null;
+        return true;
+    }
+
+    public ProjectInterface next(final Set<String> runningProjectNames, final long now) {
+        for (final Request request : sortedRequests(now)) {
+            if (!runningProjectNames.contains(request.getName())) {
+                requests.remove(request.getName());
+                positions = null;
+                served(request);
+                return request.project;
+            }
+        }
+        return null;
+    }
+
+    public int position(final String projectName) {
+        final long now = System.currentTimeMillis();
+        if (positions == null || now - positionsTime > getPositionsLifetime()) {
+            final Map<String, Integer> newPositions = new HashMap<String, Integer>();
+            for (final Request request : sortedRequests(now)) {
+                newPositions.put(request.getName(), newPositions.size());
+            }
+            positions = newPositions;
+            positionsTime = now;
+        }
+        final Integer position = positions.get(projectName);
+        return position == null ? -1 : position;
+    }
+
+    public int size() {
+        return requests.size();
+    }
+
+    public void drainTo(final Map<ProjectInterface, Long> drained) {
+        for (final Request request : sortedRequests(System.currentTimeMillis())) {
+            drained.put(request.project, request.requestTime);
+        }
+        requests.clear();
+        positions = null;
+    }
+
+    /**
+     * @param now the current time, in milliseconds
+     * @return the order in which waiting requests are served, or null to keep arrival order
+     */
+    protected Comparator<Request> createOrder(final long now) {
+        return null;
+    }
+
+    /**
+     * Called when a request is handed to the thread queue.
+     * @param request the request being served
+     */
+    protected void served(final Request request) {
+    }
+
+    /**
+     * @return how long (millis) computed positions stay valid when the queue does not change
+     */
+    protected long getPositionsLifetime() {
+        return Long.MAX_VALUE;
+    }
+
+    private List<Request> sortedRequests(final long now) {
+        final List<Request> sorted = new ArrayList<Request>(requests.values());
+        final Comparator<Request> order = createOrder(now);
+        if (order != null) {
+            Collections.sort(sorted, order);
+        }
+        return sorted;
+    }
+
+    public boolean equals(final Object o) {
+        return o != null && o.getClass().equals(getClass());
+    }
+
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    /**
+     * A waiting build request.
+     */
+    protected static final class Request {
+        private ProjectInterface project;
+        private final long requestTime;
+        private final long sequence;
+
+        private Request(final ProjectInterface project, final long requestTime, final long sequence) {
+            this.project = project;
+            this.requestTime = requestTime;
+            this.sequence = sequence;
+        }
+
+        public ProjectInterface getProject() {
+            return project;
+        }
+
+        public String getName() {
+            return project.getName();
+        }
+
+        public long getRequestTime() {
+            return requestTime;
+        }
+
+        /** @return arrival order of the request */
+        public long getSequence() {
+            return sequence;
+        }
+    }
+}
@@ -33,4 +33,12 @@ public interface LiveOutputReader extends Serializable {
      * @see net.sourceforge.cruisecontrol.util.BuildOutputLogger#retrieveLines(int)
      */
     String[] retrieveLines(final int firstLine);
+
+    /**
+     * @param offset position in the live output to read from.
+     * @return The UTF-8 encoded output from offset, ending after the last complete line available, bounded in size.
+     * The same rules as for {@link #retrieveLines(int)} apply when {@link #getID()} changes.
+     * @see net.sourceforge.cruisecontrol.util.BuildOutputLogger#retrieveBytes(long)
+     */
+    byte[] retrieveBytes(final long offset);
 }
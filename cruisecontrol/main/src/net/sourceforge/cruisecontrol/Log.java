@@ -36,17 +36,24 @@
  ********************************************************************************/
 package net.sourceforge.cruisecontrol;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.cruisecontrol.gendoc.annotations.SkipDoc;
 import net.sourceforge.cruisecontrol.util.BuildOutputLogger;
@@ -56,11 +63,15 @@ import net.sourceforge.cruisecontrol.util.Util;
 import net.sourceforge.cruisecontrol.util.XMLLogHelper;
 
 import org.apache.log4j.Logger;
+import org.jdom.Attribute;
 import org.jdom.Content;
 import org.jdom.Document;
 import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
+import org.xml.sax.InputSource;
 
 /**
  * Handles the Log element, and subelements, of the CruiseControl configuration file. Also represents the Build Log used
@@ -77,7 +88,13 @@ public class Log implements Serializable {
     private transient String logDir;
     private transient String logXmlEncoding;
     private transient boolean isTrimWhitespace;
+    private transient boolean isStreaming;
     private transient Element buildLog;
+    /** Holds the sections written out when streaming, until the build log is reset. */
+    private transient File spool;
+    /** The sections in the spool, by the empty element that stands in for each of them in the build log. */
+    private final transient Map<Element, SpooledSection> spooledSections
+            = new IdentityHashMap<Element, SpooledSection>();
     private final transient List<BuildLogger> loggers = new ArrayList<BuildLogger>();
     private final transient List<Manipulator> manipulators = new ArrayList<Manipulator>();
     private transient String projectName;
@@ -182,6 +199,17 @@ public class Log implements Serializable {
         isTrimWhitespace = trimWhitespace;
     }
 
+    /**
+     * @param streaming if true, every section added to the build log except the info section is written out to a
+     * spool file right away instead of being kept in memory. The build log file is assembled from the spool file,
+     * and {@link #getContent()} reads the sections back for each caller. BuildLoggers see the spooled sections
+     * without their content; they may still add sections, remove sections or change their attributes.
+     * Defaults to false.
+     */
+    public void setStreaming(final boolean streaming) {
+        isStreaming = streaming;
+    }
+
     /**
      * creates log directory if it doesn't already exist
      * @param logDir log directory to create if it doesn't already exist
@@ -233,7 +261,11 @@ public class Log implements Serializable {
 
         final File logfile = new File(logDir, logFilename);
         LOG.debug("Project " + projectName + ":  Writing log file [" + logfile.getAbsolutePath() + "]");
-        writeLogFile(logfile, buildLog);
+        if (spooledSections.isEmpty()) {
+            writeLogFile(logfile, buildLog);
+        } else {
+            writeSpooledLogFile(logfile);
+        }
 
         callManipulators();
     }
@@ -242,14 +274,7 @@ public class Log implements Serializable {
         // Write the log file out, let jdom care about the encoding by using
         // an OutputStream instead of a Writer.
         try {
-            final Format format = Format.getPrettyFormat();
-            if (logXmlEncoding != null) {
-                format.setEncoding(logXmlEncoding);
-            }
-            if (!isTrimWhitespace) {
-                format.setTextMode(Format.TextMode.TRIM_FULL_WHITE);
-            }
-            final XMLOutputter outputter = new XMLOutputter(format);
+            final XMLOutputter outputter = new XMLOutputter(getFormat());
             final OutputStream logStream = new BufferedOutputStream(new FileOutputStream(file));
             try {
                 outputter.output(new Document(element), logStream);
@@ -261,6 +286,62 @@ public class Log implements Serializable {
         }
     }
 
+    /**
+     * Writes the build log section by section, copying the spooled sections from the spool file.
+     * @param file the log file
+     * @throws CruiseControlException if the log file can't be written
+     */
+    private void writeSpooledLogFile(final File file) throws CruiseControlException {
+        final Format format = getFormat();
+        final XMLOutputter outputter = new XMLOutputter(format);
+        final String encoding = format.getEncoding();
+        final String lineSeparator = format.getLineSeparator();
+        try {
+            final OutputStream logStream = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                final StringBuilder startTag = new StringBuilder();
+                startTag.append("<?xml version=\"1.0\" encoding=\"").append(encoding).append("\"?>");
+                startTag.append(lineSeparator).append('<').append(buildLog.getQualifiedName());
+                for (final Object attribute : buildLog.getAttributes()) {
+                    startTag.append(' ').append(((Attribute) attribute).getQualifiedName()).append("=\"")
+                            .append(outputter.escapeAttributeEntities(((Attribute) attribute).getValue()))
+                            .append('"');
+                }
+                startTag.append('>').append(lineSeparator);
+                logStream.write(startTag.toString().getBytes(encoding));
+
+                for (final Object child : buildLog.getContent()) {
+                    final SpooledSection section = spooledSections.get(child);
+                    if (section != null && section.isUnchanged((Element) child)) {
+                        section.copyTo(logStream);
+                    } else if (section != null) {
+                        outputter.output(section.read((Element) child), logStream);
+                    } else {
+                        outputter.output(Collections.singletonList(child), logStream);
+                    }
+                    logStream.write(lineSeparator.getBytes(encoding));
+                }
+
+                logStream.write(("</" + buildLog.getQualifiedName() + ">" + lineSeparator).getBytes(encoding));
+            } finally {
+                IO.close(logStream);
+            }
+        } catch (IOException e) {
+            throw new CruiseControlException(e);
+        }
+    }
+
+    private Format getFormat() {
+        final Format format = Format.getPrettyFormat();
+        if (logXmlEncoding != null) {
+            format.setEncoding(logXmlEncoding);
+        }
+        if (!isTrimWhitespace) {
+            format.setTextMode(Format.TextMode.TRIM_FULL_WHITE);
+        }
+        return format;
+    }
+
     private String decideLogfileName(final Date now) throws CruiseControlException {
         final XMLLogHelper helper = new XMLLogHelper(buildLog);
         if (helper.isBuildSuccessful()) {
@@ -298,11 +379,66 @@ public class Log implements Serializable {
 
     @SkipDoc
     public void addContent(final Content newContent) {
-        buildLog.addContent(newContent);
+        if (isStreaming && newContent instanceof Element && !"info".equals(((Element) newContent).getName())) {
+            buildLog.addContent(spool((Element) newContent));
+        } else {
+            buildLog.addContent(newContent);
+        }
+    }
+
+    /**
+     * Writes a section of the build log to the spool file.
+     * @param section the section
+     * @return the empty element standing in for the section, or the section itself if it can't be spooled
+     */
+    private Element spool(final Element section) {
+        final Format format = getFormat();
+        try {
+            if (spool == null) {
+                spool = File.createTempFile("cruisecontrol-log", ".xml");
+            }
+            final long offset = spool.length();
+            final OutputStream spoolStream = new BufferedOutputStream(new FileOutputStream(spool, true));
+            try {
+                new XMLOutputter(format).output(section, spoolStream);
+            } finally {
+                IO.close(spoolStream);
+            }
+
+            final Element placeholder = new Element(section.getName(), section.getNamespace());
+            for (final Object attribute : section.getAttributes()) {
+                placeholder.setAttribute((Attribute) ((Attribute) attribute).clone());
+            }
+            spooledSections.put(placeholder,
+                    new SpooledSection(spool, offset, spool.length() - offset, format.getEncoding(), placeholder));
+            return placeholder;
+        } catch (IOException e) {
+            LOG.warn("Project " + projectName + ": can't spool the " + section.getName()
+                    + " section of the build log, keeping it in memory", e);
+            return section;
+        }
     }
 
+    /**
+     * @return a copy of the build log, with the spooled sections read back from the spool file.
+     */
     public Element getContent() {
-        return (Element) buildLog.clone();
+        final Element content = (Element) buildLog.clone();
+        if (!spooledSections.isEmpty()) {
+            final List< ? > children = buildLog.getContent();
+            for (int i = 0; i < children.size(); i++) {
+                final SpooledSection section = spooledSections.get(children.get(i));
+                if (section != null) {
+                    try {
+                        content.setContent(i, section.read((Element) children.get(i)));
+                    } catch (IOException e) {
+                        LOG.error("Project " + projectName + ": can't read back the spooled "
+                                + ((Element) children.get(i)).getName() + " section of the build log", e);
+                    }
+                }
+            }
+        }
+        return content;
     }
 
     public boolean wasBuildSuccessful() {
@@ -314,6 +450,13 @@ public class Log implements Serializable {
      */
     public void reset() {
         this.buildLog = new Element("cruisecontrol");
+        spooledSections.clear();
+        if (spool != null) {
+            if (!spool.delete()) {
+                LOG.warn("Project " + projectName + ": can't delete build log spool file " + spool);
+            }
+            spool = null;
+        }
     }
 
     
@@ -381,4 +524,109 @@ public class Log implements Serializable {
         return filename.substring(BEFORE_LENGTH, filename.length() - AFTER_LENGTH);
     }
 
+    /**
+     * A section of the build log held in the spool file.
+     */
+    private static final class SpooledSection {
+        private final File spool;
+        private final long offset;
+        private final long length;
+        private final String encoding;
+        /** The placeholder as it was spooled, to detect changes made by BuildLoggers. */
+        private final String spooledPlaceholder;
+
+        SpooledSection(final File spool, final long offset, final long length, final String encoding,
+                       final Element placeholder) {
+            this.spool = spool;
+            this.offset = offset;
+            this.length = length;
+            this.encoding = encoding;
+            spooledPlaceholder = new XMLOutputter().outputString(placeholder);
+        }
+
+        boolean isUnchanged(final Element placeholder) {
+            return placeholder.getContentSize() == 0
+                    && spooledPlaceholder.equals(new XMLOutputter().outputString(placeholder));
+        }
+
+        void copyTo(final OutputStream out) throws IOException {
+            final InputStream in = open();
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        /**
+         * @param placeholder the element standing in for this section
+         * @return the section, with the attributes and any content of the placeholder
+         * @throws IOException if the spool file can't be read
+         */
+        Element read(final Element placeholder) throws IOException {
+            final InputStream in = open();
+            final Element section;
+            try {
+                final InputSource source = new InputSource(in);
+                source.setEncoding(encoding);
+                section = new SAXBuilder().build(source).detachRootElement();
+            } catch (JDOMException e) {
+                throw new IOException("spooled section is not well formed: " + e.getMessage());
+            } finally {
+                in.close();
+            }
+            final List<Attribute> attributes = new ArrayList<Attribute>();
+            for (final Object attribute : placeholder.getAttributes()) {
+                attributes.add((Attribute) ((Attribute) attribute).clone());
+            }
+            section.setAttributes(attributes);
+            section.addContent(placeholder.cloneContent());
+            return section;
+        }
+
+        private InputStream open() throws IOException {
+            final FileInputStream file = new FileInputStream(spool);
+            file.getChannel().position(offset);
+            return new SectionInputStream(new BufferedInputStream(file), length);
+        }
+    }
+
+    /**
+     * Reads up to the end of a spooled section.
+     */
+    private static final class SectionInputStream extends FilterInputStream {
+        private long remaining;
+
+        SectionInputStream(final InputStream in, final long length) {
+            super(in);
+            remaining = length;
+        }
+
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int read = super.read();
+            if (read != -1) {
+                remaining--;
+            }
+            return read;
+        }
+
+        public int read(final byte[] buffer, final int off, final int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int read = super.read(buffer, off, (int) Math.min(len, remaining));
+            if (read != -1) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
 }
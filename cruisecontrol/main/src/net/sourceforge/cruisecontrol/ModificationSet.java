@@ -51,7 +51,18 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.HashMap;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.sourceforge.cruisecontrol.util.DaemonThreadFactory;
 import net.sourceforge.cruisecontrol.util.DateUtil;
 import net.sourceforge.cruisecontrol.util.ValidationHelper;
 
@@ -76,6 +87,20 @@ public class ModificationSet implements Serializable {
     private final List<SourceControl> sourceControls = new ArrayList<SourceControl>();
     private int quietPeriod = 60 * ONE_SECOND;
     private Date timeOfCheck;
+    private boolean parallel = false;
+    private int maxConcurrency = 4;
+    private long sourceControlTimeout = 0;
+    private long sharedPollTtl = 0;
+    private Date windowEnd;
+    private final Map<SourceControl, Map<String, String>> sharedProperties
+            = new HashMap<SourceControl, Map<String, String>>();
+
+    /**
+     * Number of threads shared by all modification sets that poll their source controls in parallel.
+     */
+    static final int SHARED_POLLING_THREADS = 16;
+
+    private static ExecutorService pollingExecutor;
 
     /**
      * File-Patterns (as org.apache.oro.io.GlobFilenameFilter) to be ignored
@@ -117,6 +142,42 @@ public class ModificationSet implements Serializable {
         }
     }
 
+    /**
+     * Poll the nested source controls concurrently instead of one after another. Results are still merged in the
+     * order the source controls are configured.
+     * @param parallel true to poll concurrently
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @param maxConcurrency maximum number of source controls of this modification set polled at the same time
+     * when polling in parallel
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @param seconds time a single source control may take when polling in parallel, 0 (the default) means no limit.
+     * The time is counted from when the poll starts running. A source control that takes longer is interrupted and
+     * the check fails, so the modifications are checked again from the same last build next time.
+     */
+    public void setSourceControlTimeout(int seconds) {
+        sourceControlTimeout = seconds * ONE_SECOND;
+    }
+
+    /**
+     * Share the polls of the nested source controls with identically configured source controls of other projects.
+     * A poll is reused while it is no older than the given time to live; 0 (the default) disables sharing.
+     * @param seconds time a shared poll may be reused for
+     * @see SharedSourceControlPoller
+     */
+    public void setSharedPollTtl(int seconds) {
+        sharedPollTtl = seconds * ONE_SECOND;
+    }
+
     public void add(SourceControl sourceControl) {
         sourceControls.add(sourceControl);
     }
@@ -166,13 +227,16 @@ public class ModificationSet implements Serializable {
     public Map<String, String> getProperties() {
         final Map<String, String> table = new HashMap<String, String>();
         for (final SourceControl control : sourceControls) {
-            mergeProperties(table, control);
+            final Map<String, String> polledProperties;
+            synchronized (sharedProperties) {
+                polledProperties = sharedProperties.remove(control);
+            }
+            mergeProperties(table, polledProperties != null ? polledProperties : control.getProperties());
         }
         return table;
     }
 
-    private void mergeProperties(final Map<String, String> properties, final SourceControl control) {
-        final Map<String, String> newProperties = control.getProperties();
+    private void mergeProperties(final Map<String, String> properties, final Map<String, String> newProperties) {
         final Set<String> existingKeys = properties.keySet();
         final Set<String> newKeys = newProperties.keySet();
         if (Collections.disjoint(existingKeys, newKeys)) {
@@ -261,9 +325,19 @@ public class ModificationSet implements Serializable {
         Element modificationsElement;
         do {
             timeOfCheck = new Date();
+            windowEnd = timeOfCheck;
             modifications = new ArrayList<Modification>();
-            for (final SourceControl sourceControl : sourceControls) {
-                modifications.addAll(sourceControl.getModifications(lastBuild, timeOfCheck));
+            if (parallel && sourceControls.size() > 1) {
+                modifications.addAll(getModificationsInParallel(lastBuild, timeOfCheck));
+            } else {
+                for (final SourceControl sourceControl : sourceControls) {
+                    modifications.addAll(pollSourceControl(sourceControl, lastBuild, timeOfCheck));
+                }
+            }
+            if (windowEnd.before(timeOfCheck)) {
+                // a reused poll ended earlier: check up to there, the next check picks up anything newer
+                timeOfCheck = windowEnd;
+                removeModificationsAfter(timeOfCheck, modifications);
             }
 
             // Postfilter all modifications of ignored files
@@ -310,6 +384,144 @@ public class ModificationSet implements Serializable {
         return modificationsElement;
     }
 
+    /**
+     * Polls the source controls on the shared polling threads, with at most maxConcurrency of them in flight.
+     * @param lastBuild date of last build
+     * @param now time of check
+     * @return modifications of all source controls, in the order the source controls were added
+     * @throws SourceControlPollException if a source control timed out or was cancelled
+     */
+    private List<Modification> getModificationsInParallel(final Date lastBuild, final Date now) {
+        final ExecutorService executor = getPollingExecutor();
+        final List<Future<List<Modification>>> polls = new ArrayList<Future<List<Modification>>>();
+        final List<PollTask> tasks = new ArrayList<PollTask>();
+        final List<Modification> result = new ArrayList<Modification>();
+        try {
+            for (int i = 0; i < sourceControls.size(); i++) {
+                while (polls.size() < sourceControls.size() && polls.size() - i < maxConcurrency) {
+                    final PollTask task = new PollTask(sourceControls.get(polls.size()), lastBuild, now);
+                    tasks.add(task);
+                    polls.add(executor.submit(task));
+                }
+                result.addAll(waitForPoll(polls.get(i), tasks.get(i)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while checking for modifications", e);
+        } finally {
+            for (final Future<List<Modification>> poll : polls) {
+                poll.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Polls a single source control, through the shared poller if enabled.
+     * @param sourceControl the source control to poll
+     * @param lastBuild date of last build
+     * @param now time of check
+     * @return modifications of the source control
+     */
+    private List<Modification> pollSourceControl(final SourceControl sourceControl, final Date lastBuild,
+                                                 final Date now) {
+        if (sharedPollTtl > 0) {
+            final SharedSourceControlPoller.Result result
+                    = SharedSourceControlPoller.getInstance().poll(sourceControl, lastBuild, now, sharedPollTtl);
+            if (result != null) {
+                synchronized (sharedProperties) {
+                    sharedProperties.put(sourceControl, result.getProperties());
+                    if (result.getTimeOfCheck().before(windowEnd)) {
+                        windowEnd = result.getTimeOfCheck();
+                    }
+                }
+                return result.getModifications();
+            }
+        }
+        return sourceControl.getModifications(lastBuild, now);
+    }
+
+    private static void removeModificationsAfter(final Date date, final List<Modification> modifications) {
+        for (Iterator<Modification> iterator = modifications.iterator(); iterator.hasNext();) {
+            final Modification modification = iterator.next();
+            if (modification.modifiedTime != null && modification.modifiedTime.after(date)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private List<Modification> waitForPoll(final Future<List<Modification>> poll, final PollTask task)
+            throws InterruptedException {
+        final String name = task.sourceControl.getClass().getName();
+        try {
+            if (sourceControlTimeout > 0) {
+                // time spent queued behind the polls of other projects doesn't count against the source control
+                task.started.await();
+                final long remaining = task.startTime + sourceControlTimeout - System.currentTimeMillis();
+                return poll.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+            }
+            return poll.get();
+        } catch (TimeoutException e) {
+            poll.cancel(true);
+            throw new SourceControlPollException(name + " did not return modifications within "
+                    + (sourceControlTimeout / ONE_SECOND) + " seconds");
+        } catch (CancellationException e) {
+            throw new SourceControlPollException(name + " was cancelled");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Polls a single source control on a shared polling thread and records when it started running.
+     */
+    private final class PollTask implements Callable<List<Modification>> {
+        private final SourceControl sourceControl;
+        private final Date lastBuild;
+        private final Date now;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startTime;
+
+        private PollTask(final SourceControl sourceControl, final Date lastBuild, final Date now) {
+            this.sourceControl = sourceControl;
+            this.lastBuild = lastBuild;
+            this.now = now;
+        }
+
+        public List<Modification> call() {
+            startTime = System.currentTimeMillis();
+            started.countDown();
+            return pollSourceControl(sourceControl, lastBuild, now);
+        }
+    }
+
+    /**
+     * Thrown when a source control could not be polled completely. The check fails rather than treating the source
+     * control as unchanged, so the project keeps its last build time and checks again next time.
+     */
+    public static class SourceControlPollException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public SourceControlPollException(final String message) {
+            super(message);
+        }
+    }
+
+    static synchronized ExecutorService getPollingExecutor() {
+        if (pollingExecutor == null) {
+            pollingExecutor = new ThreadPoolExecutor(SHARED_POLLING_THREADS, SHARED_POLLING_THREADS,
+                    0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new DaemonThreadFactory("ModificationSet poller"));
+        }
+        return pollingExecutor;
+    }
+
     /**
      * Remove all Modifications that match any of the ignoreFiles-patterns
      * @param modifications the list of modifications to be filtered (altered).
@@ -378,6 +590,10 @@ public class ModificationSet implements Serializable {
         ValidationHelper.assertFalse(sourceControls.isEmpty(),
                 "modificationset element requires at least one nested source control element");
 
+        ValidationHelper.assertTrue(maxConcurrency > 0, "maxconcurrency must be positive");
+        ValidationHelper.assertTrue(sourceControlTimeout >= 0, "sourcecontroltimeout must not be negative");
+        ValidationHelper.assertTrue(sharedPollTtl >= 0, "sharedpollttl must not be negative");
+
         for (final SourceControl sc : sourceControls) {
             sc.validate();
         }
@@ -39,6 +39,7 @@ package net.sourceforge.cruisecontrol;
 import net.sourceforge.cruisecontrol.buildloggers.MergeLogger;
 import net.sourceforge.cruisecontrol.publishers.email.EmailMapper;
 import net.sourceforge.cruisecontrol.publishers.email.EmailMapping;
+import net.sourceforge.cruisecontrol.config.BuildQueuePlugin;
 import net.sourceforge.cruisecontrol.config.ConfigurationPlugin;
 import net.sourceforge.cruisecontrol.config.DashboardConfigurationPlugin;
 import net.sourceforge.cruisecontrol.config.IncludeProjectsPlugin;
@@ -60,6 +61,7 @@ public final class PluginType implements Serializable {
     public static final PluginType BOOTSTRAPPER = new PluginType("bootstrapper", "bootstrappers");
     public static final PluginType BOOTSTRAPPERS = new PluginType("bootstrappers", "project");
     public static final PluginType BUILDER = new PluginType("builder", "schedule");
+    public static final PluginType BUILD_QUEUE = new PluginType("buildqueue", "configuration");
     public static final PluginType CONFIGURATION = new PluginType("configuration", "system");
     public static final PluginType CRUISECONTROL = new PluginType("cruisecontrol", "");
     public static final PluginType DATE_FORMAT = new PluginType("dateformat", "project");
@@ -90,6 +92,7 @@ public final class PluginType implements Serializable {
             put(Bootstrapper.class, BOOTSTRAPPER);
             put(ProjectConfig.Bootstrappers.class, BOOTSTRAPPERS);
             put(Builder.class, BUILDER);
+            put(BuildQueuePlugin.class, BUILD_QUEUE);
             put(ConfigurationPlugin.class, CONFIGURATION);
             put(CruiseControlConfig.class, CRUISECONTROL);
             put(LabelIncrementer.class, LABEL_INCREMENTER);
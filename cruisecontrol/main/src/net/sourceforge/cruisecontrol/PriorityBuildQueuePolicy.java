@@ -0,0 +1,133 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serves projects by the <code>priority</code> set on their <code>&lt;project&gt;</code> element,
+ * highest first.
+ * <ul>
+ * <li>Aging: every <code>agingInterval</code> a request spends waiting raises its priority by one,
+ * so low priority projects still get built on a busy server.</li>
+ * <li>Fair share: among requests of the same priority, the project <code>group</code> that was served
+ * least recently goes first, so one group cannot monopolize the build threads.</li>
+ * <li>Otherwise projects are served in the order they were requested.</li>
+ * </ul>
+ */
+public class PriorityBuildQueuePolicy extends FifoBuildQueuePolicy {
+
+    private final long agingInterval;
+
+    /** When each group was last served, in serve order. */
+    private final Map<String, Long> lastServed = new HashMap<String, Long>();
+
+    private long served;
+
+    /**
+     * @param agingInterval time (millis) a request has to wait to gain one priority level
+     */
+    public PriorityBuildQueuePolicy(final long agingInterval) {
+        if (agingInterval <= 0) {
+            throw new IllegalArgumentException("aging interval must be positive");
+        }
+        this.agingInterval = agingInterval;
+    }
+
+    protected Comparator<Request> createOrder(final long now) {
+        return new Comparator<Request>() {
+            public int compare(final Request first, final Request second) {
+                final long firstPriority = getEffectivePriority(first, now);
+                final long secondPriority = getEffectivePriority(second, now);
+                if (firstPriority != secondPriority) {
+                    return firstPriority > secondPriority ? -1 : 1;
+                }
+                final long firstServed = getLastServed(first);
+                final long secondServed = getLastServed(second);
+                if (firstServed != secondServed) {
+                    return firstServed < secondServed ? -1 : 1;
+                }
+                if (first.getSequence() != second.getSequence()) {
+                    return first.getSequence() < second.getSequence() ? -1 : 1;
+                }
+                return 0;
+            }
+        };
+    }
+
+    protected void served(final Request request) {
+        lastServed.put(getGroup(request.getProject()), served++);
+    }
+
+    protected long getPositionsLifetime() {
+        return agingInterval;
+    }
+
+    private long getEffectivePriority(final Request request, final long now) {
+        final long waited = Math.max(0, now - request.getRequestTime());
+        return getPriority(request.getProject()) + waited / agingInterval;
+    }
+
+    private long getLastServed(final Request request) {
+        final Long when = lastServed.get(getGroup(request.getProject()));
+        return when == null ? -1 : when;
+    }
+
+    private static int getPriority(final ProjectInterface project) {
+        if (project instanceof ProjectConfig) {
+            return ((ProjectConfig) project).getPriority();
+        }
+        return 0;
+    }
+
+    private static String getGroup(final ProjectInterface project) {
+        if (project instanceof ProjectConfig) {
+            return ((ProjectConfig) project).getGroup();
+        }
+        return project.getName();
+    }
+
+    public boolean equals(final Object o) {
+        return super.equals(o) && ((PriorityBuildQueuePolicy) o).agingInterval == agingInterval;
+    }
+
+    public int hashCode() {
+        return super.hashCode() * 31 + (int) agingInterval;
+    }
+}
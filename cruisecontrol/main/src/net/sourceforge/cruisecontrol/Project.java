@@ -91,6 +91,8 @@ public class Project implements Serializable, Runnable {
     private transient List<BuildProgressListener> progressListeners;
     private transient List<BuildResultListener> resultListeners;
     private transient Progress progress;
+    private transient PublisherPipeline publisherPipeline;
+    private transient volatile BuildResult lastBuildResult;
 
     private int buildCounter = 0;
     private Date lastBuild = DateUtil.getMidnight();
@@ -121,6 +123,7 @@ public class Project implements Serializable, Runnable {
         resultListeners = new ArrayList<BuildResultListener>();
 
         progress = new ProgressImpl(this);
+        publisherPipeline = new PublisherPipeline(this);
     }
 
     private void readObject(final ObjectInputStream stream) throws IOException, ClassNotFoundException {
@@ -749,26 +752,53 @@ public class Project implements Serializable, Runnable {
     }
 
     /**
-     * Iterate over all of the registered <code>Publisher</code>s and call
-     * their respective <code>publish</code> methods.
+     * Hand a snapshot of the build log to all of the registered <code>Publisher</code>s.
+     * Unless the publishers are configured to run asynchronously this returns once
+     * all of them have finished. The {@link BuildResult} of the snapshot is computed
+     * once here and shared by all the publishers.
      * @param buildLog the content to publish
      * @throws CruiseControlException if an error occurs during publishing
      */
     protected void publish(final Log buildLog) throws CruiseControlException {
         setState(ProjectState.PUBLISHING);
-        for (final Publisher publisher : projectConfig.getPublishers()) {
-            // catch all errors, Publishers shouldn't cause failures in the build method
-            try {
-                publisher.publish(buildLog.getContent());
-            } catch (Throwable t) {
-                final StringBuilder message = new StringBuilder("exception publishing results");
-                message.append(" with ").append(publisher.getClass().getName());
-                message.append(" for project ").append(name);
-                LOG.error(message.toString(), t);
-            }
+        final Element snapshot = buildLog.getContent();
+        lastBuildResult = BuildResult.create(snapshot);
+        final ProjectConfig.Publishers publishers = projectConfig.getPublishersElement();
+        if (publishers == null || publishers.getPublishers().isEmpty()) {
+            return;
+        }
+        if (publishers.isAsync()) {
+            publisherPipeline.publishAsynchronously(snapshot, publishers.getPublishers(),
+                    publishers.getTimeout(), publishers.getRetries());
+        } else {
+            publisherPipeline.publish(snapshot, publishers.getPublishers(), publishers.getRetries());
         }
     }
 
+    /**
+     * @return the result of the last build, or <code>null</code> if the project was not built
+     *  since CruiseControl started
+     */
+    public BuildResult getLastBuildResult() {
+        return lastBuildResult;
+    }
+
+    /**
+     * @return the latency of each publisher of this project
+     * @see PublisherPipeline#getLatencies()
+     */
+    public String[] getPublisherLatencies() {
+        return publisherPipeline.getLatencies();
+    }
+
+    /**
+     * Intended only for unit testing.
+     * @return the pipeline running the publishers of this project
+     */
+    PublisherPipeline getPublisherPipeline() {
+        return publisherPipeline;
+    }
+
     /**
      * Iterate over all of the registered <code>Bootstrapper</code>s and call
      * their respective <code>bootstrap</code> methods.
@@ -81,6 +81,8 @@ public class ProjectConfig implements ProjectInterface {
     private boolean forceOnly = false;
     private boolean requiremodification = true;
     private boolean forceBuildNewProject = true; // default to current behavior
+    private int priority = 0;
+    private String group;
 
     private transient Bootstrappers bootstrappers;
     private transient LabelIncrementer labelIncrementer;
@@ -157,6 +159,25 @@ public class ProjectConfig implements ProjectInterface {
         this.forceBuildNewProject = forceBuildNewProject;
     }
 
+    @Description("Relative importance of this project when several projects are waiting in the "
+        + "build queue; projects with a higher priority are built first. Only used when the "
+        + "<code>priority</code> build queue policy is configured, see "
+        + "<a href='#buildqueue'><code>&lt;buildqueue&gt;</code></a>.")
+    @Default("0")
+    @Optional
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    @Description("Name of the group this project shares the build threads with. With the "
+        + "<code>priority</code> build queue policy, waiting projects of equal priority are taken "
+        + "from the group that was served least recently. Defaults to the project name, making "
+        + "every project its own group.")
+    @Optional
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
     @Description("Registers a general plug-in inherrited from PropertiesPlugin interface.")
     public void add(PropertiesPlugin plugin) {
         // Must be empty, plugin is registered somewhere else
@@ -250,6 +271,13 @@ public class ProjectConfig implements ProjectInterface {
         return publishers == null ? Collections.<Publisher>emptyList() : publishers.getPublishers();
     }
 
+    /**
+     * @return the <code>&lt;publishers&gt;</code> element, or null if the project has none
+     */
+    public Publishers getPublishersElement() {
+        return publishers;
+    }
+
     public ModificationSet getModificationSet() {
         return modificationSet;
     }
@@ -266,6 +294,17 @@ public class ProjectConfig implements ProjectInterface {
         return name;
     }
 
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the group the project is in, or the project name if no group was set
+     */
+    public String getGroup() {
+        return group != null ? group : name;
+    }
+
     @Description(
         "<p>The <code>&lt;bootstrappers&gt;</code> element is a container element"
         + "for Bootstrapper plugin instances.</p>"
@@ -317,6 +356,9 @@ public class ProjectConfig implements ProjectInterface {
     public static class Publishers implements Serializable {
         private static final long serialVersionUID = -410933401108345152L;
         private final List<Publisher> publishers = new ArrayList<Publisher>();
+        private boolean async = false;
+        private int timeout = 0;
+        private int retries = 0;
 
         public void add(Publisher publisher) {
             publishers.add(publisher);
@@ -326,7 +368,49 @@ public class ProjectConfig implements ProjectInterface {
             return publishers;
         }
 
+        @Description("Publish on threads shared by all projects instead of on the build thread, so the "
+            + "build thread is free for the next build as soon as the log file is written. The "
+            + "publishers of a build then run concurrently; nest publishers that must run in order "
+            + "in a <a href='#compoundpublisher'><code>&lt;compoundpublisher&gt;</code></a>.")
+        @Optional
+        @Default("false")
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        @Description("When publishing asynchronously, the number of seconds a single publisher may "
+            + "take before it is interrupted and counted as failed. 0 means no limit.")
+        @Optional
+        @Default("0")
+        public void setTimeout(int timeout) {
+            this.timeout = timeout;
+        }
+
+        /**
+         * @return the timeout of a single publisher in milliseconds, 0 for no limit
+         */
+        public long getTimeout() {
+            return timeout * 1000L;
+        }
+
+        @Description("Number of times a publisher that failed is run again.")
+        @Optional
+        @Default("0")
+        public void setRetries(int retries) {
+            this.retries = retries;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
         public void validate() throws CruiseControlException {
+            ValidationHelper.assertTrue(timeout >= 0, "timeout must not be negative");
+            ValidationHelper.assertTrue(retries >= 0, "retries must not be negative");
             for (final Publisher nextPublisher : publishers) {
                 nextPublisher.validate();
             }
@@ -0,0 +1,353 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.sourceforge.cruisecontrol.util.DaemonThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.jdom.Element;
+
+/**
+ * Runs the publishers of one project and keeps track of how long each of them takes.
+ *
+ * <p>All publishers of a build get the same snapshot of the build log, which they must treat as read-only.
+ * Synchronous publishing runs them one after another on the calling thread. Asynchronous publishing hands the
+ * snapshot to threads shared by all projects and returns at once: the publishers of one build run concurrently,
+ * each within its timeout and retried on failure, and the builds of one project are still published in order.
+ * The timeout of a publisher starts when it starts running, not while it waits for a shared thread. A publisher
+ * that times out is interrupted and only retried once it has actually stopped.
+ * Publishers that depend on each other can be grouped in a <code>&lt;compoundpublisher&gt;</code>, which runs its
+ * nested publishers in sequence.</p>
+ */
+public class PublisherPipeline {
+    private static final Logger LOG = Logger.getLogger(PublisherPipeline.class);
+
+    /**
+     * Number of threads shared by all projects to run publishers asynchronously.
+     */
+    static final int SHARED_PUBLISHING_THREADS = 8;
+
+    /**
+     * Number of threads shared by all projects to wait for the publishers of a build, so the number of builds
+     * published at the same time.
+     */
+    static final int SHARED_BATCH_THREADS = 8;
+
+    private static ExecutorService publishingExecutor;
+
+    private static ExecutorService batchExecutor;
+
+    private final Project project;
+
+    private final Map<String, Latency> latencies = new LinkedHashMap<String, Latency>();
+
+    private Future<Boolean> lastBatch;
+
+    public PublisherPipeline(final Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Runs the publishers on the calling thread, in order.
+     * @param log snapshot of the build log
+     * @param publishers the publishers to run
+     * @param retries number of times a failing publisher is run again
+     */
+    public void publish(final Element log, final List<Publisher> publishers, final int retries) {
+        for (int i = 0; i < publishers.size(); i++) {
+            final Publisher publisher = publishers.get(i);
+            final String key = key(i, publisher);
+            for (int attempt = 0; attempt <= retries; attempt++) {
+                try {
+                    recordSuccess(key, new PublisherRun(publisher, log).call().longValue());
+                    break;
+                } catch (Throwable t) {
+                    failed(key, publisher, attempt, retries, t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the publishers to the shared publishing threads and returns immediately. The publishers of this
+     * build start once those of the previous build of this project have finished.
+     * @param log snapshot of the build log
+     * @param publishers the publishers to run
+     * @param timeout milliseconds a single run of a publisher may take, 0 for no limit
+     * @param retries number of times a failing publisher is run again
+     * @return a future that is done once all publishers have finished
+     */
+    public synchronized Future<Boolean> publishAsynchronously(final Element log, final List<Publisher> publishers,
+                                                        final long timeout, final int retries) {
+        final Future<Boolean> previous = lastBatch;
+        lastBatch = getBatchExecutor().submit(new Runnable() {
+            public void run() {
+                if (previous != null) {
+                    try {
+                        previous.get();
+                    } catch (Exception e) {
+                        LOG.debug("previous publishing of project " + project.getName() + " ended abnormally", e);
+                    }
+                }
+                runConcurrently(log, publishers, timeout, retries);
+            }
+        }, Boolean.TRUE);
+        return lastBatch;
+    }
+
+    /**
+     * Waits until all builds handed over so far have been published.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void waitForPublishers() throws InterruptedException {
+        final Future<Boolean> batch;
+        synchronized (this) {
+            batch = lastBatch;
+        }
+        if (batch != null) {
+            try {
+                batch.get();
+            } catch (ExecutionException e) {
+                LOG.debug("publishing of project " + project.getName() + " ended abnormally", e);
+            }
+        }
+    }
+
+    /**
+     * @return one line per publisher with its number of runs, the duration of the last and the average and
+     * maximum duration of its successful runs, and the number of failed runs
+     */
+    public synchronized String[] getLatencies() {
+        final List<String> lines = new ArrayList<String>(latencies.size());
+        for (final Map.Entry<String, Latency> entry : latencies.entrySet()) {
+            lines.add(entry.getKey() + ": " + entry.getValue());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    private void runConcurrently(final Element log, final List<Publisher> publishers, final long timeout,
+                                 final int retries) {
+        final ExecutorService executor = getPublishingExecutor();
+        final List<PublisherRun> runs = new ArrayList<PublisherRun>(publishers.size());
+        final List<Future<Long>> futures = new ArrayList<Future<Long>>(publishers.size());
+        for (final Publisher publisher : publishers) {
+            final PublisherRun run = new PublisherRun(publisher, log);
+            runs.add(run);
+            futures.add(executor.submit(run));
+        }
+        for (int i = 0; i < publishers.size(); i++) {
+            final Publisher publisher = publishers.get(i);
+            final String key = key(i, publisher);
+            PublisherRun run = runs.get(i);
+            Future<Long> future = futures.get(i);
+            for (int attempt = 0; attempt <= retries; attempt++) {
+                if (attempt > 0) {
+                    run = new PublisherRun(publisher, log);
+                    future = executor.submit(run);
+                }
+                try {
+                    recordSuccess(key, run.waitFor(future, timeout).longValue());
+                    break;
+                } catch (InterruptedException e) {
+                    future.cancel(true);
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    // a retry must not run alongside an attempt that is still going
+                    if (!run.awaitFinish(timeout)) {
+                        failed(key, publisher, attempt, attempt, new CruiseControlException("did not finish within "
+                                + timeout + " ms and is still running after being interrupted, not retried"));
+                        break;
+                    }
+                    failed(key, publisher, attempt, retries,
+                            new CruiseControlException("did not finish within " + timeout + " ms"));
+                } catch (CancellationException e) {
+                    failed(key, publisher, attempt, retries, e);
+                } catch (ExecutionException e) {
+                    failed(key, publisher, attempt, retries, e.getCause());
+                }
+            }
+        }
+    }
+
+    private void failed(final String key, final Publisher publisher, final int attempt, final int retries,
+                        final Throwable t) {
+        // catch all errors, Publishers shouldn't cause failures in the build method
+        final StringBuilder message = new StringBuilder("exception publishing results");
+        message.append(" with ").append(publisher.getClass().getName());
+        message.append(" for project ").append(project.getName());
+        if (attempt < retries) {
+            message.append(", retrying");
+            LOG.warn(message.toString(), t);
+        } else {
+            LOG.error(message.toString(), t);
+        }
+        recordFailure(key);
+    }
+
+    private synchronized void recordSuccess(final String key, final long millis) {
+        latency(key).success(millis);
+    }
+
+    private synchronized void recordFailure(final String key) {
+        latency(key).failure();
+    }
+
+    private Latency latency(final String key) {
+        Latency latency = latencies.get(key);
+        if (latency == null) {
+            latency = new Latency();
+            latencies.put(key, latency);
+        }
+        return latency;
+    }
+
+    private static String key(final int index, final Publisher publisher) {
+        return (index + 1) + ". " + publisher.getClass().getName();
+    }
+
+    private static synchronized ExecutorService getPublishingExecutor() {
+        if (publishingExecutor == null) {
+            publishingExecutor = new ThreadPoolExecutor(SHARED_PUBLISHING_THREADS, SHARED_PUBLISHING_THREADS,
+                    0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new DaemonThreadFactory("Publisher"));
+        }
+        return publishingExecutor;
+    }
+
+    private static synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            // batches start in the order they were handed over, so a batch waiting for the previous build of its
+            // project never holds a thread that previous batch still needs
+            batchExecutor = new ThreadPoolExecutor(SHARED_BATCH_THREADS, SHARED_BATCH_THREADS,
+                    0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new DaemonThreadFactory("Publishing"));
+        }
+        return batchExecutor;
+    }
+
+    private static final class PublisherRun implements Callable<Long> {
+        private final Publisher publisher;
+        private final Element log;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile long startTime;
+
+        private PublisherRun(final Publisher publisher, final Element log) {
+            this.publisher = publisher;
+            this.log = log;
+        }
+
+        public Long call() throws CruiseControlException {
+            startTime = System.currentTimeMillis();
+            started.countDown();
+            try {
+                publisher.publish(log);
+                return Long.valueOf(System.currentTimeMillis() - startTime);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Waits for the result of this run, at most timeout milliseconds from the moment it started running.
+         */
+        Long waitFor(final Future<Long> future, final long timeout)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (timeout <= 0) {
+                return future.get();
+            }
+            started.await();
+            final long remaining = startTime + timeout - System.currentTimeMillis();
+            return future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return true if the publisher returned within the given time, false if it is still running
+         */
+        boolean awaitFinish(final long millis) {
+            try {
+                return finished.await(millis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private static final class Latency {
+        private int runs;
+        private int failures;
+        private long last;
+        private long total;
+        private long max;
+
+        void success(final long millis) {
+            runs++;
+            last = millis;
+            total += millis;
+            max = Math.max(max, millis);
+        }
+
+        void failure() {
+            runs++;
+            failures++;
+        }
+
+        public String toString() {
+            final int successes = runs - failures;
+            return runs + " runs, last " + last + " ms, average " + (successes == 0 ? 0 : total / successes)
+                    + " ms, max " + max + " ms, " + failures + " failed";
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Server wide cache of source control polls. Modification sets that share their polls ask this class for the
+ * modifications of a source control instead of asking the source control itself, so identically configured source
+ * controls of different projects (same plugin, same {@link ShareableSourceControl#getQueryKey() query key}) run their
+ * query only once: concurrent requests wait for the poll already running, later ones reuse its result for as long
+ * as its time to live allows.
+ * <p>
+ * A poll covers the window (lastBuild, now]. A poll is reused only when it started at or before the requested
+ * lastBuild and found nothing at or before it, so a reused result never misses a modification. The reused result
+ * ends at the time of check of the original poll, which the caller has to adopt as its own time of check.
+ *
+ * @see ModificationSet#setSharedPollTtl(int)
+ */
+public final class SharedSourceControlPoller {
+
+    private static final Logger LOG = Logger.getLogger(SharedSourceControlPoller.class);
+
+    private static final SharedSourceControlPoller INSTANCE = new SharedSourceControlPoller();
+
+    private final Map<String, Poll> polls = new HashMap<String, Poll>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SharedSourceControlPoller() {
+    }
+
+    public static SharedSourceControlPoller getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the modifications of the given source control, from a poll of an identically configured source control
+     * when possible.
+     * @param sourceControl the source control to poll
+     * @param lastBuild date of last build
+     * @param now current date
+     * @param timeToLive milliseconds a finished poll may be reused for
+     * @return the result of the poll, or null if the source control can't be shared and must be polled directly
+     */
+    public Result poll(final SourceControl sourceControl, final Date lastBuild, final Date now,
+                       final long timeToLive) {
+        final String key = getQueryKey(sourceControl);
+        if (key == null || lastBuild == null) {
+            return null;
+        }
+
+        Poll poll;
+        final boolean shared;
+        synchronized (polls) {
+            purgeExpired(now.getTime());
+            poll = polls.get(key);
+            shared = poll != null && poll.canServe(lastBuild, now.getTime() - timeToLive);
+            if (!shared) {
+                poll = new Poll(sourceControl, lastBuild, now, timeToLive);
+                polls.put(key, poll);
+            }
+        }
+
+        if (shared) {
+            final boolean finished = poll.isDone();
+            final Result result = poll.await();
+            if (result != null && result.covers(lastBuild)) {
+                (finished ? hits : coalesced).incrementAndGet();
+                LOG.debug("reusing modifications of " + key + " polled at " + result.getTimeOfCheck());
+                return result;
+            }
+            poll = new Poll(sourceControl, lastBuild, now, timeToLive);
+            synchronized (polls) {
+                polls.put(key, poll);
+            }
+        }
+
+        misses.incrementAndGet();
+        return poll.run(key);
+    }
+
+    private void purgeExpired(final long currentTime) {
+        for (final Iterator<Poll> iterator = polls.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().isExpired(currentTime)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of requests served from a finished poll
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of requests that waited for a poll that was still running
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return number of requests that ran their own poll
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of polls currently held for reuse
+     */
+    public int getCachedPolls() {
+        synchronized (polls) {
+            return polls.size();
+        }
+    }
+
+    /**
+     * Forgets all polls and resets the counters.
+     */
+    public void clear() {
+        synchronized (polls) {
+            polls.clear();
+        }
+        hits.set(0);
+        coalesced.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Describes the query a source control runs: its class and the key it builds from its configured attributes.
+     * Only source controls implementing {@link ShareableSourceControl} are shared.
+     * @param sourceControl the source control
+     * @return the key identifying the query, or null if the source control can't be shared
+     */
+    static String getQueryKey(final SourceControl sourceControl) {
+        if (!(sourceControl instanceof ShareableSourceControl)) {
+            return null;
+        }
+        final String key = ((ShareableSourceControl) sourceControl).getQueryKey();
+        return key == null ? null : sourceControl.getClass().getName() + ';' + key;
+    }
+
+    /**
+     * The modifications and properties a source control reported for the window (lastBuild, timeOfCheck].
+     */
+    public static final class Result {
+        private final Date lastBuild;
+        private final Date timeOfCheck;
+        private final List<Modification> modifications;
+        private final Map<String, String> properties;
+
+        Result(final Date lastBuild, final Date timeOfCheck, final List<Modification> modifications,
+               final Map<String, String> properties) {
+            this.lastBuild = lastBuild;
+            this.timeOfCheck = timeOfCheck;
+            this.modifications = Collections.unmodifiableList(new ArrayList<Modification>(modifications));
+            this.properties = Collections.unmodifiableMap(new HashMap<String, String>(properties));
+        }
+
+        public Date getTimeOfCheck() {
+            return timeOfCheck;
+        }
+
+        public List<Modification> getModifications() {
+            return modifications;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        /**
+         * @param requestedLastBuild date of last build of the requester
+         * @return true if this result holds exactly the modifications made after requestedLastBuild
+         */
+        boolean covers(final Date requestedLastBuild) {
+            if (requestedLastBuild.equals(lastBuild)) {
+                return true;
+            }
+            for (final Modification modification : modifications) {
+                if (modification.modifiedTime == null || !modification.modifiedTime.after(requestedLastBuild)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final class Poll {
+        private final Date lastBuild;
+        private final Date now;
+        private final long timeToLive;
+        private final FutureTask<Result> task;
+
+        Poll(final SourceControl sourceControl, final Date lastBuild, final Date now, final long timeToLive) {
+            this.lastBuild = lastBuild;
+            this.now = now;
+            this.timeToLive = timeToLive;
+            task = new FutureTask<Result>(new Callable<Result>() {
+                public Result call() {
+                    final List<Modification> modifications = sourceControl.getModifications(lastBuild, now);
+                    return new Result(lastBuild, now, modifications, sourceControl.getProperties());
+                }
+            });
+        }
+
+        boolean canServe(final Date requestedLastBuild, final long oldestTimeOfCheck) {
+            return !lastBuild.after(requestedLastBuild) && now.getTime() >= oldestTimeOfCheck;
+        }
+
+        boolean isDone() {
+            return task.isDone();
+        }
+
+        boolean isExpired(final long currentTime) {
+            return task.isDone() && now.getTime() + timeToLive < currentTime;
+        }
+
+        /**
+         * Runs the poll in the calling thread.
+         * @param key the key this poll is registered under
+         * @return the result of the poll
+         */
+        Result run(final String key) {
+            task.run();
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while polling " + key, e);
+            } catch (ExecutionException e) {
+                synchronized (polls) {
+                    polls.values().remove(this);
+                }
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+
+        /**
+         * Waits for a poll run by another thread.
+         * @return the result of the poll, or null if it failed
+         */
+        Result await() {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while waiting for a shared poll", e);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -45,9 +45,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import net.sourceforge.cruisecontrol.Builder;
 import net.sourceforge.cruisecontrol.CruiseControlException;
@@ -58,6 +60,7 @@ import net.sourceforge.cruisecontrol.util.DateUtil;
 import net.sourceforge.cruisecontrol.util.OSEnvironment;
 import net.sourceforge.cruisecontrol.util.StdoutBuffer;
 import net.sourceforge.cruisecontrol.util.GZippedStdoutBuffer;
+import net.sourceforge.cruisecontrol.util.IO;
 import net.sourceforge.cruisecontrol.util.StreamLogger;
 import net.sourceforge.cruisecontrol.util.StreamConsumer;
 import net.sourceforge.cruisecontrol.util.StreamPumper;
@@ -105,6 +108,8 @@ public class PipedExecBuilder extends Builder {
 
     /** Logger. */
     private static final Logger LOG = Logger.getLogger(PipedExecBuilder.class);
+    /** The number of bytes in megabyte, the unit of {@link #setStdoutMemory(int)}. */
+    private static final long MEGABYTE = 1024 * 1024;
 
     /** Build timeout in seconds, set by {@link #setTimeout(long)}. */
     private long timeout = ScriptRunner.NO_TIMEOUT;
@@ -112,6 +117,10 @@ public class PipedExecBuilder extends Builder {
     private boolean gzip;
     /** Is STDOUT of all the scripts binary? Set by {@link #setBinaryStdout(boolean)} */
     private boolean binary;
+    /** The maximum number of scripts running at once, set by {@link #setMaxParallel(int)} */
+    private int maxParallel;
+    /** Megabytes of STDOUT of each script kept in memory, set by {@link #setStdoutMemory(int)} */
+    private int stdoutMemory = (int) (StdoutBuffer.DEFAULT_MEMORY_LIMIT / MEGABYTE);
     /** The working directory where the commands are to be executed, set by
      * {@link #setWorkingDir(String)}. */
     private String workingDir;
@@ -125,6 +134,7 @@ public class PipedExecBuilder extends Builder {
     @Override
     public void validate() throws CruiseControlException {
         super.validate();
+        ValidationHelper.assertFalse(maxParallel < 0, "maxparallel must not be negative");
 
         Set<Script> removeIDs = new HashSet<Script>(scripts.size()); /* Scripts to be removed */
         Set<String> uniqueIDs = new HashSet<String>(scripts.size()); /* To check unique IDs */
@@ -189,6 +199,9 @@ public class PipedExecBuilder extends Builder {
             if (s.getBinaryStdout() == null) {
                 s.setBinaryStdout(binary);
             }
+            if (s.getStdoutMemory() == null) {
+                s.setStdoutMemory(stdoutMemory);
+            }
             /* Let it validate itself */
             s.validate();
 
@@ -198,6 +211,8 @@ public class PipedExecBuilder extends Builder {
                     "Script " + s.getID() + " cannot pipe from itself");
             ValidationHelper.assertFalse(s.getID().equals(s.getWaitFor()),
                     "Script " + s.getID() + " cannot wait for itself");
+            ValidationHelper.assertTrue(s.getStdoutMemory().intValue() > 0,
+                    "Script " + s.getID() + " must keep at least 1 megabyte of STDOUT in memory");
             /* If the script is piped from for another script, the "another: must exist */
             if (s.getPipeFrom() != null) {
                 ValidationHelper.assertTrue(findToStart(s.getPipeFrom(), scripts) != null,
@@ -230,71 +245,35 @@ public class PipedExecBuilder extends Builder {
 
         final ThreadPool threads = new ThreadPool();
         final long startTime = System.currentTimeMillis();
-        final LinkedList<Script> tostart = new LinkedList<Script>(scripts);
-        final LinkedList<Script> started = new LinkedList<Script>();
-
-
+        final Schedule schedule = new Schedule(scripts);
         final Element buildLogElement = new Element("build");
 
-        /* Go through the list of scripts until all were started and finished (tostart contains
-         * those not started yet, started those running or not finished yet) */
-        while (tostart.size() > 0 || started.size() > 0) {
-            ListIterator<Script> iter = tostart.listIterator();
-
-            /* Go through all scripts to start and look for those which can be started now */
-            while (iter.hasNext()) {
-                Script s = iter.next();
-                boolean canStart;
-
-                /* Script can start if:
-                 * - it is not piped from another script
-                 * - it is piped from another script and the script was started
-                 * - it waits for another script and the script is finished
-                 */
-                canStart = s.getPipeFrom() == null;
-                canStart = s.getPipeFrom() != null && findStarted(s.getPipeFrom(), started) != null ? true : canStart;
-                canStart = s.getWaitFor()  != null && !isDone(s.getWaitFor(), tostart, started) ? false : canStart;
-                /* If cannot be started, try another one */
-                if (!canStart) {
-                    continue;
-                }
+        /* Start the scripts as soon as they can be started and wait for them to finish */
+        while (true) {
+            while (schedule.hasReady()) {
+                final Script s = schedule.nextReady();
 
                 long remainTime = this.timeout != ScriptRunner.NO_TIMEOUT
                                                ?  this.timeout - (System.currentTimeMillis() - startTime) / 1000
                                                :  Long.MAX_VALUE;
                 /* Initialize the script */
                 s.initialize();
-//                 /* Set working dir to the script, if it does not have set one, and set timeout
-//                  * if it has timeout larger than the remaining time */
-//                 if (s.getWorkingDir() == null) {
-//                     s.setWorkingDir(workingDir);
-//                 }
                 if (s.getTimeout() == ScriptRunner.NO_TIMEOUT || s.getTimeout() > remainTime) {
                     s.setTimeout(remainTime);
                 }
-//                 if (s.getGZipStdout() == null) {
-//                     s.setGZipStdout(gzip);
-//                 }
-//                 if (s.getBinaryStdout() == null) {
-//                     s.setBinaryStdout(binary);
-//                 }
                 /* And stuff for #build() method */
                 s.setBuildLogParent(buildLogElement);
                 s.setBuildProperties(buildProperties);
                 s.setProgress(progressIn);
+                s.setBuildStart(startTime);
                 /* Pipe to the required script */
                 if (s.getPipeFrom() != null) {
-                    s.setStdinProvider(findStarted(s.getPipeFrom(), started).getStdOutReader());
+                    s.setStdinProvider(schedule.get(s.getPipeFrom()).getStdOutReader());
                 }
 
                 /* Now start the script and set its thread to the pool */
-                threads.startThread(s, s.getID());
-
-                /* And move it from tostart array into started array. Reset the iterator, which
-                 * allows to run all scripts except those waiting for others */
-                iter.remove();
-                iter = tostart.listIterator();
-                started.add(s);
+                threads.startThread(s);
+                schedule.started(s);
 
                 // !!!!!!
                 // WINDOWS SPECIFIC HACK:
@@ -309,35 +288,29 @@ public class PipedExecBuilder extends Builder {
                 // if you still find such problem, use threads.join(). It will lead to horrible
                 // performance of the pipe under the affected windows versions, but it should be safe.
                 if (Util.isWindows()) {
-                    threads.join(1000);
+                    schedule.finished(threads.waitForFinished(1000));
                 }
             }
 
-            /* All scripts which could be started up to now were started ...
-             * Try to join some scripts */
-            threads.join(1000);
-
-            /* And check if some scripts were finished */
-            iter = started.listIterator();
-            while (iter.hasNext()) {
-                Script s = iter.next();
-
-                /* Remove the script from 'started' map when finished and not required by any
-                 * other script not started yet */
-                if (s.isDone() && null == findPipedFrom(s.getID(), tostart)) {
-                    s.clean();
-                    iter.remove();
-                }
+            /* All the scripts which could be started were started and finished */
+            if (schedule.running() == 0) {
+                break;
             }
 
             /* Sanity check - if running time > timeout, leave the loop with error message */
-            if (System.currentTimeMillis() - startTime > this.timeout * 1000) {
+            final long remainMillis = this.timeout != ScriptRunner.NO_TIMEOUT
+                    ? this.timeout * 1000 - (System.currentTimeMillis() - startTime)
+                    : Long.MAX_VALUE;
+            if (remainMillis <= 0) {
                 LOG.warn("Build timeout timer of " + timeout + " seconds has expired");
                 synchronized (buildLogElement) {
                     buildLogElement.setAttribute("error", "build timeout");
                 }
                 break;
             }
+
+            /* Wait until a script finishes; the scripts depending on it may be started then */
+            schedule.finished(threads.waitForFinished(remainMillis));
         }
 
         /* Wait for all scripts to finish (they may be killed by their own timeouts) */
@@ -427,6 +400,28 @@ public class PipedExecBuilder extends Builder {
         this.binary = binary;
     } // setBinaryStdout
 
+    /**
+     * Sets the maximum number of scripts running at once. The scripts which can be started are
+     * queued until some of the running scripts finishes. Zero (the default) means no limit.
+     *
+     * @param maxParallel the maximum number of scripts running at once.
+     */
+    public void setMaxParallel(int maxParallel) {
+        this.maxParallel = maxParallel;
+    } // setMaxParallel
+
+    /**
+     * Sets the number of megabytes of STDOUT of each script kept in memory. When a script produces
+     * more, the oldest part of its STDOUT is moved to a temporary file, from which it is read when
+     * passed to the scripts piped from it. Can be overridden by the configuration of individual
+     * scripts, see {@link Script#setStdoutMemory(int)}.
+     *
+     * @param megabytes the memory limit in megabytes.
+     */
+    public void setStdoutMemory(int megabytes) {
+        this.stdoutMemory = megabytes;
+    } // setStdoutMemory
+
     /**
      * Creates object into which <code><exec /></code> tag will be set. Each call returns new
      * object which is expected to be set by CC. The attribute is not required; if not
@@ -474,48 +469,6 @@ public class PipedExecBuilder extends Builder {
          /* No such found */
         return null;
     } // findPipedFrom
-    /**
-     * Finds script with the given ID among those started (script is 'started' either if it is
-     * running, or it is finished but piped to other script not started yet).
-     *
-     * @param id the ID of the script to look for.
-     * @param started the list of scripts which were started.
-     * @return the instance of {@link Script} or <code>null</code> if not found.
-     */
-    private static Script findStarted(String id, List<Script> started) {
-        for (Script s : started) {
-            if (s.getID().equals(id)) {
-                return s;
-            }
-        }
-        /* No such found */
-        return null;
-    } // findStarted
-    /**
-     * Checks if script with the given ID is finished or not.
-     *
-     * @param id the ID of the script to look for.
-     * @param tostart the list of scripts to be started (see {@link #findToStart(String, List)}
-     *        for more details about what does 'tostart' mean).
-     * @param started the list of scripts which were started (see {@link #findStarted(String, List)}
-     *        for more details about what does 'started' mean).
-     * @return <code>true</code> if the script is done, <code>false</code> if it has not been
-     *         started yet, still running.
-     */
-    private static boolean isDone(String id, List<Script> tostart, List<Script> started) {
-        /* Not started yet */
-        if (findToStart(id, tostart) != null) {
-            return false;
-        }
-
-        Script script = findStarted(id, started);
-        /* Not among started => finished */
-        if (script == null) {
-            return true;
-        }
-
-        return script.isDone();
-    } // isDone
 
     /**
      * Method used for the detection of loops in piped commands. It works with two sets. First,
@@ -647,6 +600,8 @@ public class PipedExecBuilder extends Builder {
         private Boolean gzip;
         /** Is STDOUT of the script binary? Set by {@link #setBinaryStdout(boolean)} */
         private Boolean binary;
+        /** Megabytes of STDOUT kept in memory, set by {@link #setStdoutMemory(int)} */
+        private Integer stdoutMemory;
         /** The value set by {@link #setRepipe(String)} */
         private String repipe = null;
         /** The value set by {@link #setDisable(boolean)} */
@@ -664,8 +619,8 @@ public class PipedExecBuilder extends Builder {
         /** The parent element into with the build log (created by
          * {@link #build(Map, Progress, InputStream)} method) is stored. */
         private Element buildLogParent;
-        /** Signalizes wherever the script finished or not */
-        private boolean isDone;
+        /** The time when the whole pipe was started, set by {@link #setBuildStart(long)}. */
+        private long buildStart;
 
         /**
          * Initialization of attributes before the build is started. It is roughly equal to the
@@ -678,17 +633,24 @@ public class PipedExecBuilder extends Builder {
          */
         public void initialize() {
             /* Prepare to start */
-            this.isDone = false;
-            this.stdoutBuffer = Boolean.TRUE.equals(gzip) ? new GZippedStdoutBuffer(LOG) : new StdoutBuffer(LOG);
+            final long memoryLimit = stdoutMemory != null
+                    ? stdoutMemory * MEGABYTE : StdoutBuffer.DEFAULT_MEMORY_LIMIT;
+            this.stdoutBuffer = Boolean.TRUE.equals(gzip)
+                    ? new GZippedStdoutBuffer(LOG, StdoutBuffer.DEFAULT_CHUNK_SIZE, memoryLimit)
+                    : new StdoutBuffer(LOG, StdoutBuffer.DEFAULT_CHUNK_SIZE, memoryLimit);
         } // initialize
 
         /**
          * Clears those attributes which may consume significant amount of memory (they are initialized again
-         * by {@link #initialize()} and <code>set*()</code> methods).
+         * by {@link #initialize()} and <code>set*()</code> methods), and releases the STDOUT buffer, deleting
+         * its temporary file once the readers still open are closed.
          *
          * Call the method when build is finished and its STDOUT will not longer be required.
          */
         public void clean() {
+            if (this.stdoutBuffer != null) {
+                this.stdoutBuffer.release();
+            }
             this.stdoutBuffer = null;
             this.buildLogParent = null;
         } // clean
@@ -706,10 +668,16 @@ public class PipedExecBuilder extends Builder {
         public void run() {
             try {
                 Element buildLog;
+                final long start = System.currentTimeMillis();
 
                 /* Start and store the build log element created */
                 LOG.info("Script ID '" + this.getID() + "' started");
                 buildLog = build(this.buildProperties, this.progressIn, this.stdinProvider);
+                /* Record when the script run, relatively to the start of the whole pipe, to allow
+                 * to find the critical path of the pipe */
+                buildLog.setAttribute("id", this.getID());
+                buildLog.setAttribute("start", Long.toString(start - this.buildStart));
+                buildLog.setAttribute("end", Long.toString(System.currentTimeMillis() - this.buildStart));
                 /* Add the element into the parent */
                 synchronized (buildLogParent) {
                     this.buildLogParent.addContent(buildLog.detach());
@@ -717,11 +685,11 @@ public class PipedExecBuilder extends Builder {
                 LOG.info("Script ID '" + this.getID() + "' finished");
 
             } finally {
-                /* Close the buffer to signalize that all has been written, and clear STDIN
-                 * provider to signalize to GC that it is not longer needed */
+                /* Close the buffer to signalize that all has been written, and close and clear STDIN
+                 * provider to signalize that it is not longer needed */
                 this.stdoutBuffer.close();
+                IO.close(this.stdinProvider);
                 this.stdinProvider = null;
-                this.isDone = true;
             }
         } // run
 
@@ -835,6 +803,25 @@ public class PipedExecBuilder extends Builder {
             return this.binary;
         } // getBinaryStdout
 
+        /**
+         * Sets the number of megabytes of STDOUT of the script kept in memory.
+         * See {@link PipedExecBuilder#setStdoutMemory(int)} for more details.
+         *
+         * @param megabytes the memory limit in megabytes.
+         */
+        public void setStdoutMemory(int megabytes) {
+            this.stdoutMemory = megabytes;
+        } // setStdoutMemory
+        /**
+         * Gets the value set by {@link #setStdoutMemory(int)}, or <code>null</code> if not set yet.
+         * See {@link PipedExecBuilder#setStdoutMemory(int)} for more details.
+         *
+         * @return the memory limit in megabytes or <code>null</code>.
+         */
+        public Integer getStdoutMemory() {
+            return this.stdoutMemory;
+        } // getStdoutMemory
+
         /**
          * Sets the ID of the script ton which an existing (and pre-configured) script is "repiped".
          * The directive is helpful when the {@link PipedExecBuilder} is preconfigured as plugin (with
@@ -926,6 +913,17 @@ public class PipedExecBuilder extends Builder {
             this.progressIn = progress;
         } // setProgress
 
+        /**
+         * Sets the time when the whole pipe was started; the start and end times of the script
+         * are stored into its build log relatively to it. The method is not associated with an
+         * XML attribute.
+         *
+         * @param buildStart the time in milliseconds.
+         */
+        void setBuildStart(final long buildStart) {
+            this.buildStart = buildStart;
+        } // setBuildStart
+
         /**
          * Sets the stream to read STDIN from, passed to the
          * {@link #build(Map, Progress, InputStream)} when called in
@@ -955,16 +953,6 @@ public class PipedExecBuilder extends Builder {
             }
         } // getStdoutReader
 
-        /**
-         * @return <code>true</code> when the script finished its work and <code>false</code>
-         *          when it is running or not started yet.
-         */
-        boolean isDone() {
-            /* Does not have to be synchronized, true cannot be returned when the build() is
-             * still running ... */
-            return this.isDone;
-        } // isDone
-
         /** Prints string representation of the object */
         @Override
         public String toString() {
@@ -1026,44 +1014,195 @@ public class PipedExecBuilder extends Builder {
     } // PipedExecScript
 
     /**
-     * Simple class with pool of started threads. It implements {@link #join()} method waiting
-     * for any (or all) threads in the pool.
+     * The dependency graph of the scripts, computed once from their <code>pipefrom</code> and
+     * <code>waitfor</code> attributes when the build starts. It holds the scripts which can be
+     * started now; a script can be started when the script it is piped from (if any) was started
+     * and the script it waits for (if any) is finished. The number of running scripts is limited
+     * by {@link PipedExecBuilder#setMaxParallel(int)}.
+     */
+    private final class Schedule {
+
+        /** The scripts by their IDs. */
+        private final Map<String, Script> byID = new HashMap<String, Script>();
+        /** The scripts piped from the script with the given ID. */
+        private final Map<String, List<Script>> pipedTo = new HashMap<String, List<Script>>();
+        /** The scripts waiting for the script with the given ID. */
+        private final Map<String, List<Script>> waitingFor = new HashMap<String, List<Script>>();
+        /** The scripts which can be started now. */
+        private final LinkedList<Script> ready = new LinkedList<Script>();
+        /** The IDs of the scripts started. */
+        private final Set<String> started = new HashSet<String>();
+        /** The IDs of the scripts finished. */
+        private final Set<String> done = new HashSet<String>();
+        /** The number of scripts running now. */
+        private int running;
+
+        /**
+         * Constructor.
+         * @param scripts the scripts to schedule.
+         */
+        Schedule(final List<Script> scripts) {
+            for (Script s : scripts) {
+                byID.put(s.getID(), s);
+                if (s.getPipeFrom() != null) {
+                    dependents(s.getPipeFrom(), pipedTo).add(s);
+                }
+                if (s.getWaitFor() != null) {
+                    dependents(s.getWaitFor(), waitingFor).add(s);
+                }
+                if (s.getPipeFrom() == null && s.getWaitFor() == null) {
+                    ready.add(s);
+                }
+            }
+        }
+
+        /**
+         * @param id the ID of the script.
+         * @return the script with the given ID.
+         */
+        Script get(final String id) {
+            return byID.get(id);
+        }
+
+        /**
+         * @return <code>true</code> if a script can be started now.
+         */
+        boolean hasReady() {
+            return !ready.isEmpty() && (maxParallel <= 0 || running < maxParallel);
+        }
+
+        /**
+         * @return the next script to start, removed from the list of scripts which can be started.
+         */
+        Script nextReady() {
+            return ready.removeFirst();
+        }
+
+        /**
+         * @return the number of scripts running now.
+         */
+        int running() {
+            return running;
+        }
+
+        /**
+         * Marks the script as started. The scripts piped from it may be started now, and the script
+         * it is piped from may not be required anymore.
+         * @param script the started script.
+         */
+        void started(final Script script) {
+            started.add(script.getID());
+            running++;
+            addReady(dependents(script.getID(), pipedTo));
+            if (script.getPipeFrom() != null) {
+                cleanIfUnused(byID.get(script.getPipeFrom()));
+            }
+        }
+
+        /**
+         * Marks the script as finished. The scripts waiting for it may be started now, and the
+         * script itself may not be required anymore.
+         * @param script the finished script, or <code>null</code> if no script finished.
+         */
+        void finished(final Script script) {
+            if (script == null) {
+                return;
+            }
+            done.add(script.getID());
+            running--;
+            addReady(dependents(script.getID(), waitingFor));
+            cleanIfUnused(script);
+        }
+
+        /**
+         * Adds those of the given scripts which can be started now to the list of scripts to start.
+         * @param scripts the scripts to check.
+         */
+        private void addReady(final List<Script> scripts) {
+            for (Script s : scripts) {
+                if (!started.contains(s.getID())
+                        && (s.getPipeFrom() == null || started.contains(s.getPipeFrom()))
+                        && (s.getWaitFor() == null || done.contains(s.getWaitFor()))) {
+                    ready.add(s);
+                }
+            }
+        }
+
+        /**
+         * Clears the script (see {@link Script#clean()}) when it is finished and all the scripts
+         * piped from it were started, so its STDOUT is not required anymore.
+         * @param script the script to clear.
+         */
+        private void cleanIfUnused(final Script script) {
+            if (!done.contains(script.getID())) {
+                return;
+            }
+            for (Script c : dependents(script.getID(), pipedTo)) {
+                if (!started.contains(c.getID())) {
+                    return;
+                }
+            }
+            script.clean();
+        }
+
+        /**
+         * Gets the list of scripts depending on the script with the given ID, creating an empty one
+         * if not found.
+         * @param id the ID of the script to look for.
+         * @param graph the map of the script IDs to the lists of scripts depending on them.
+         * @return the list of scripts depending on the script with the given ID.
+         */
+        private List<Script> dependents(final String id, final Map<String, List<Script>> graph) {
+            List<Script> list = graph.get(id);
+            if (list == null) {
+                list = new ArrayList<Script>();
+                graph.put(id, list);
+            }
+            return list;
+        }
+    } // Schedule
+
+    /**
+     * Simple class with pool of started threads. It implements {@link #waitForFinished(long)}
+     * method waiting for any script in the pool to finish, and {@link #join()} method waiting
+     * for all threads in the pool.
      */
     private class ThreadPool {
 
         /** The list of threads in the pool. */
         private final List<Thread> threads = new ArrayList<Thread>();
+        /** The scripts finished, but not returned by {@link #waitForFinished(long)} yet. */
+        private final BlockingQueue<Script> finished = new LinkedBlockingQueue<Script>();
 
         /**
-         * Creates and <b>starts</b> new thread with the given {@link Runnable} implementation.
-         * @param runnable the implementation of {@link Runnable} to start.
-         * @param name the name of the thread.
+         * Creates and <b>starts</b> new thread running the given script.
+         * @param script the script to start.
          */
-        void startThread(Runnable runnable, String name) {
-            final Thread t = new Thread(runnable, name + " build thread");
+        void startThread(final Script script) {
+            final Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        script.run();
+                    } finally {
+                        finished.add(script);
+                    }
+                }
+            }, script.getID() + " build thread");
             t.start();
             threads.add(t);
         }
 
         /**
-         * Waits at least some time for some threads to die.
+         * Waits at most the given time for some script to finish.
          * @param millis the number of milliseconds to wait.
+         * @return the finished script, or <code>null</code> if no script finished in the given time.
          */
-        void join(long millis) {
-            /* Remove the threads not being alive */
-            for (int i = threads.size() - 1; i >= 0; i--) {
-                 if (!threads.get(i).isAlive()) {
-                     threads.remove(i);
-                 }
-            }
-            /* And try to join the others */
-            millis = millis / (threads.size() > 0 ? threads.size() : 1);
-            for (Thread t : threads) {
-                try {
-                    t.join(millis < 10 ? 10 : millis);
-                } catch (InterruptedException e) {
-                    /* Did not die in the given time ... */
-                }
+        Script waitForFinished(long millis) {
+            try {
+                return finished.poll(millis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                /* Did not finish in the given time ... */
+                return null;
             }
         }
         /**
@@ -1078,6 +1217,7 @@ public class PipedExecBuilder extends Builder {
                 }
             }
             threads.clear();
+            finished.clear();
         }
     } // ThreadPool
 
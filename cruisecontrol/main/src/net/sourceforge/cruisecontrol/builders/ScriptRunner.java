@@ -40,12 +40,14 @@ package net.sourceforge.cruisecontrol.builders;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Future;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.util.BuildOutputLogger;
 import net.sourceforge.cruisecontrol.util.Commandline;
 import net.sourceforge.cruisecontrol.util.CompositeConsumer;
 import net.sourceforge.cruisecontrol.util.IO;
+import net.sourceforge.cruisecontrol.util.ProcessIO;
 import net.sourceforge.cruisecontrol.util.StreamConsumer;
 import net.sourceforge.cruisecontrol.util.StreamPumper;
 import net.sourceforge.cruisecontrol.util.StreamLogger;
@@ -60,25 +62,19 @@ public class ScriptRunner  {
     static final Logger LOG = Logger.getLogger(ScriptRunner.class);
     public static final long NO_TIMEOUT = -1;
 
+    /** Destroys the process once its timeout has expired, scheduled through {@link ProcessIO}. */
     private static class AsyncKiller implements Runnable {
         private final Process p;
-        private final long timeout;
         private boolean killed;
 
-        AsyncKiller(final Process p, final long timeout) {
+        AsyncKiller(final Process p) {
             this.p = p;
-            this.timeout = timeout;
         }
 
         public void run() {
-            try {
-                Thread.sleep(timeout * 1000L);
-                synchronized (this) {
-                    p.destroy();
-                    killed = true;
-                }
-            } catch (InterruptedException expected) {
-                // ignore, this is expected if the script was killed
+            synchronized (this) {
+                p.destroy();
+                killed = true;
             }
         }
 
@@ -198,30 +194,35 @@ public class ScriptRunner  {
         final StreamPumper outPumper = getOutPumper(p, consumerForOut);
         final StreamPumper inPumper = getInPumper(p, scriptInputProvider);
 
-        final Thread stdin = new Thread(inPumper);
-        stdin.start();
-        final Thread stderr = new Thread(errorPumper);
-        stderr.start();
-        final Thread stdout = new Thread(outPumper);
-        stdout.start();
-        final AsyncKiller killer = new AsyncKiller(p, timeout);
-        final Thread asyncKillerThread;
+        // The streams are pumped on shared threads, and without input to feed the pumper only closes STDIN
+        final Future<Boolean> stdin;
+        if (scriptInputProvider != null) {
+            stdin = ProcessIO.pump(inPumper);
+        } else {
+            inPumper.run();
+            stdin = null;
+        }
+        final Future<Boolean> stderr = ProcessIO.pump(errorPumper);
+        final Future<Boolean> stdout = ProcessIO.pump(outPumper);
+        final AsyncKiller killer = new AsyncKiller(p);
+        final Future<Boolean> killTimer;
         if (timeout > 0) {
-            asyncKillerThread = new Thread(killer);
-            asyncKillerThread.start();
+            killTimer = ProcessIO.schedule(killer, timeout);
         } else {
-            asyncKillerThread = null;
+            killTimer = null;
         }
 
         int exitCode = -1;
         try {
             exitCode = p.waitFor();
-            if (asyncKillerThread != null) {
-                asyncKillerThread.interrupt();
+            if (killTimer != null) {
+                ProcessIO.cancel(killTimer);
+            }
+            ProcessIO.waitFor(stderr);
+            ProcessIO.waitFor(stdout);
+            if (stdin != null) {
+                ProcessIO.waitFor(stdin);
             }
-            stderr.join();
-            stdout.join();
-            stdin.join();
         } catch (InterruptedException e) {
             LOG.info("Was interrupted while waiting for script to finish."
                     + " CruiseControl will continue, assuming that it completed");
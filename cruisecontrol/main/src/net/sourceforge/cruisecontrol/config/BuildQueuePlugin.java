@@ -0,0 +1,92 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.config;
+
+import net.sourceforge.cruisecontrol.BuildQueuePolicy;
+import net.sourceforge.cruisecontrol.CruiseControlException;
+import net.sourceforge.cruisecontrol.FifoBuildQueuePolicy;
+import net.sourceforge.cruisecontrol.PriorityBuildQueuePolicy;
+import net.sourceforge.cruisecontrol.gendoc.annotations.Default;
+import net.sourceforge.cruisecontrol.gendoc.annotations.Description;
+import net.sourceforge.cruisecontrol.gendoc.annotations.Optional;
+import net.sourceforge.cruisecontrol.util.DateUtil;
+import net.sourceforge.cruisecontrol.util.ValidationHelper;
+
+@Description("Configures the order in which projects waiting in the build queue are built. By "
+    + "default projects are built in the order their builds were requested (policy "
+    + "<code>fifo</code>). With policy <code>priority</code>, projects with a higher "
+    + "<code>priority</code> attribute on their <code>&lt;project&gt;</code> element are built first, "
+    + "a project waiting for <code>aginginterval</code> seconds gains one priority level so it cannot "
+    + "starve, and among projects of equal priority the <code>group</code> served least recently "
+    + "goes first. With either policy a project requested again while already waiting is only "
+    + "queued once.")
+public class BuildQueuePlugin {
+  public static final String FIFO = "fifo";
+  public static final String PRIORITY = "priority";
+
+  private String policy = FIFO;
+  private long agingInterval = 600;
+
+  @Description("Name of the queue policy, either <code>fifo</code> or <code>priority</code>.")
+  @Optional
+  @Default(FIFO)
+  public void setPolicy(String policy) {
+    this.policy = policy;
+  }
+
+  @Description("Number of seconds a waiting project needs to gain one priority level. Only used by "
+      + "the <code>priority</code> policy.")
+  @Optional
+  @Default("600")
+  public void setAgingInterval(long agingInterval) {
+    this.agingInterval = agingInterval;
+  }
+
+  public void validate() throws CruiseControlException {
+      ValidationHelper.assertTrue(FIFO.equals(policy) || PRIORITY.equals(policy),
+          "policy must be one of " + FIFO + ", " + PRIORITY);
+      ValidationHelper.assertTrue(agingInterval > 0,
+          "agingInterval must be positive");
+  }
+
+  public BuildQueuePolicy instantiatePolicy() {
+    if (PRIORITY.equals(policy)) {
+      return new PriorityBuildQueuePolicy(agingInterval * DateUtil.ONE_SECOND);
+    }
+    return new FifoBuildQueuePolicy();
+  }
+}
@@ -42,6 +42,7 @@ import net.sourceforge.cruisecontrol.gendoc.annotations.Description;
 @Description("Allows configuration of certain server attributes.")
 public class ConfigurationPlugin {
   private ThreadsPlugin threads;
+  private BuildQueuePlugin buildQueue;
 
   @Description("Allows configuration of server thread usage.")
   @Cardinality(min = 0, max = 1)
@@ -52,4 +53,14 @@ public class ConfigurationPlugin {
   public ThreadsPlugin getThreads() {
     return threads;
   }
+
+  @Description("Allows configuration of the order in which waiting projects are built.")
+  @Cardinality(min = 0, max = 1)
+  public void add(BuildQueuePlugin buildQueue) {
+    this.buildQueue = buildQueue;
+  }
+
+  public BuildQueuePlugin getBuildQueue() {
+    return buildQueue;
+  }
 }
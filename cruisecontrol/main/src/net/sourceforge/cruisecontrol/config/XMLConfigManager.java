@@ -43,7 +43,10 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import net.sourceforge.cruisecontrol.CruiseControlConfig;
@@ -55,6 +58,8 @@ import net.sourceforge.cruisecontrol.util.Util;
 
 import org.apache.log4j.Logger;
 import org.jdom.Element;
+import org.jdom.Namespace;
+import org.jdom.filter.ElementFilter;
 import org.jdom.output.XMLOutputter;
 
 import com.twmacinta.util.MD5OutputStream;
@@ -67,9 +72,18 @@ import com.twmacinta.util.MD5OutputStream;
 public class XMLConfigManager implements ResolverHolder {
 
     private static final Logger LOG = Logger.getLogger(XMLConfigManager.class);
+    /**
+     * Files modified less than this before their stamp was recorded may change again without a visible
+     * change of modification time, so they are always hashed.
+     */
+    static final long RACY_STAMP_WINDOW = 2000;
     private final File configFile;
     private CruiseControlConfig config;
-    private String hash;
+    /** Stamp and hash of the config file and of every file it included, recorded just before each was read. */
+    private final Map<File, FileStamp> stamps = new HashMap<File, FileStamp>();
+    private final Map<File, String> hashes = new HashMap<File, String>();
+    /** True if the config pulls in files not seen by the resolver, through entities or XInclude. */
+    private boolean untrackedIncludes;
     private final Resolver resolver = new Resolver();
     private final CruiseControlController controller;
 
@@ -81,14 +95,17 @@ public class XMLConfigManager implements ResolverHolder {
         configFile = file;
         this.controller = controller;
         loadConfig(configFile);
-        hash = calculateMD5(configFile);
     }
 
     private void loadConfig(File file) throws CruiseControlException {
         LOG.info("reading settings from config file [" + file.getAbsolutePath() + "]");
-        Element element = Util.loadRootElement(file);
+        stamps.clear();
+        hashes.clear();
         resolver.resetResolvedFiles();
-        config = new CruiseControlConfig(element, this, controller);
+        recordStamp(file);
+        Element element = Util.loadRootElement(file);
+        untrackedIncludes = hasUntrackedIncludes(element);
+        config = new CruiseControlConfig(element, this, controller, config);
     }
 
     public File getConfigFile() {
@@ -105,16 +122,80 @@ public class XMLConfigManager implements ResolverHolder {
     }
 
     public boolean reloadIfNecessary() throws CruiseControlException {
-        LOG.debug("Calculating MD5 [" + configFile.getAbsolutePath() + "]");
-        String newHash = calculateMD5(configFile);
-        final boolean fileChanged = !newHash.equals(hash);
+        if (stampsUnchanged()) {
+            LOG.debug("config files unchanged since last check [" + configFile.getAbsolutePath() + "]");
+            return false;
+        }
+        // stamp before hashing, so that a change made while hashing is seen by the next check
+        final Map<File, FileStamp> newStamps = getCurrentStamps();
+        final Map<File, String> newHashes = calculateMD5s();
+        final boolean fileChanged = !newHashes.equals(hashes);
         if (fileChanged) {
             loadConfig(configFile);
-            hash = newHash;
+        } else {
+            stamps.clear();
+            stamps.putAll(newStamps);
         }
         return fileChanged;
     }
 
+    /**
+     * @return true if the config file and all files it included certainly didn't change since their stamps
+     * were recorded.
+     */
+    private boolean stampsUnchanged() {
+        if (untrackedIncludes || stamps.isEmpty() || !stamps.containsKey(configFile)
+                || !stamps.keySet().containsAll(resolver.getResolvedFiles())) {
+            return false;
+        }
+        for (final Map.Entry<File, FileStamp> entry : stamps.entrySet()) {
+            final FileStamp stamp = entry.getValue();
+            if (stamp.isRacy() || !stamp.equals(new FileStamp(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param element root element of a loaded file
+     * @return true if the element may contain content of other files: any DOCTYPE may declare external entities,
+     * and included elements get an xml:base attribute
+     */
+    private static boolean hasUntrackedIncludes(final Element element) {
+        if (element.getDocument() != null && element.getDocument().getDocType() != null) {
+            return true;
+        }
+        if (element.getAttribute("base", Namespace.XML_NAMESPACE) != null) {
+            return true;
+        }
+        for (final Iterator<?> i = element.getDescendants(new ElementFilter()); i.hasNext();) {
+            if (((Element) i.next()).getAttribute("base", Namespace.XML_NAMESPACE) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<File, FileStamp> getCurrentStamps() {
+        final Map<File, FileStamp> current = new HashMap<File, FileStamp>();
+        current.put(configFile, new FileStamp(configFile));
+        for (final File includedFile : resolver.getResolvedFiles()) {
+            current.put(includedFile, new FileStamp(includedFile));
+        }
+        return current;
+    }
+
+    /**
+     * Records the stamp and hash of a file about to be read, so that a change made while the config is loaded is
+     * seen by the next check.
+     * @param file the config file or a file it includes
+     */
+    private void recordStamp(final File file) {
+        stamps.put(file, new FileStamp(file));
+        hashes.put(file, calculatePartialMD5(file));
+    }
+
     /** The implementation of {@link ResolverHolder#getFileResolver} */
     public FileResolver getFileResolver() {
         return resolver;
@@ -125,14 +206,14 @@ public class XMLConfigManager implements ResolverHolder {
         return resolver;
     }
 
-    private String calculateMD5(final File file)  {
+    private Map<File, String> calculateMD5s()  {
         LOG.debug("Calculating MD5 [" + configFile.getAbsolutePath() + "]");
-        String md5 = calculatePartialMD5(file);
-        final Set<File> includedFiles = resolver.getResolvedFiles();
-        for (final File includedFile : includedFiles) {
-            md5 += calculatePartialMD5(includedFile);
+        final Map<File, String> md5s = new HashMap<File, String>();
+        md5s.put(configFile, calculatePartialMD5(configFile));
+        for (final File includedFile : resolver.getResolvedFiles()) {
+            md5s.put(includedFile, calculatePartialMD5(includedFile));
         }
-        return md5;
+        return md5s;
     }
 
     private String calculatePartialMD5(final File file) {
@@ -159,18 +240,55 @@ public class XMLConfigManager implements ResolverHolder {
         return "";
     }
 
+    /**
+     * Modification time and size of a file, used to skip hashing files that didn't change.
+     */
+    private static final class FileStamp {
+        private final long lastModified;
+        private final long length;
+        private final long recordedAt;
+
+        FileStamp(final File file) {
+            recordedAt = System.currentTimeMillis();
+            lastModified = file.lastModified();
+            length = file.length();
+        }
+
+        boolean isRacy() {
+            return lastModified + RACY_STAMP_WINDOW >= recordedAt;
+        }
+
+        public boolean equals(final Object o) {
+            if (!(o instanceof FileStamp)) {
+                return false;
+            }
+            final FileStamp other = (FileStamp) o;
+            return lastModified == other.lastModified && length == other.length;
+        }
+
+        public int hashCode() {
+            return (int) (lastModified ^ length);
+        }
+    }
+
     class Resolver implements XmlResolver, FileResolver {
         private final Set<File> resolvedFiles = new HashSet<File>();
 
         public Element getElement(final String path) throws CruiseControlException {
             final File file = getPath(path);
-            resolvedFiles.add(file);
-            return Util.loadRootElement(file);
+            if (resolvedFiles.add(file)) {
+                recordStamp(file);
+            }
+            final Element element = Util.loadRootElement(file);
+            untrackedIncludes |= hasUntrackedIncludes(element);
+            return element;
         }
 
         public InputStream getInputStream(final String path) throws CruiseControlException {
             final File file = getPath(path);
-            resolvedFiles.add(file);
+            if (resolvedFiles.add(file)) {
+                recordStamp(file);
+            }
             try {
                 return new BufferedInputStream(new FileInputStream(file));
             } catch (FileNotFoundException e) {
@@ -180,9 +180,7 @@ public class PluginInfoParser {
                     addSubclassMapping(subclass, superclass);
                     
                     // Add mappings for all interfaces declared by the superclass.
-                    for (Class< ? > intrface : superclass.getInterfaces()) {
-                        addSubclassMapping(subclass, intrface);
-                    }
+                    addInterfaceMappings(subclass, superclass);
                     
                     // Move to the next superclass up in the hierarchy.
                     superclass = superclass.getSuperclass();
@@ -195,6 +193,19 @@ public class PluginInfoParser {
         }
     }
     
+    /**
+     * Adds mappings for the interfaces declared by a type and, recursively, for the interfaces
+     * those extend.
+     * @param subclass The subclass to associate with the interfaces.
+     * @param type The class or interface whose declared interfaces are mapped.
+     */
+    private void addInterfaceMappings(Class< ? > subclass, Class< ? > type) {
+        for (Class< ? > intrface : type.getInterfaces()) {
+            addSubclassMapping(subclass, intrface);
+            addInterfaceMappings(subclass, intrface);
+        }
+    }
+    
     /**
      * Adds a mapping to the subclassesFromRegistry Map that indicates a single inheritance
      * relationship.
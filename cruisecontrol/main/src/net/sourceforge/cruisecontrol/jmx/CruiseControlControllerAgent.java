@@ -58,7 +58,9 @@ import mx4j.tools.adaptor.http.HttpAdaptor;
 import mx4j.tools.naming.NamingService;
 import mx4j.tools.naming.NamingServiceMBean;
 import net.sourceforge.cruisecontrol.CruiseControlController;
+import net.sourceforge.cruisecontrol.SharedSourceControlPoller;
 import net.sourceforge.cruisecontrol.util.MainArgs;
+import net.sourceforge.cruisecontrol.util.TemplatesCache;
 
 import org.apache.log4j.Logger;
 
@@ -123,6 +125,18 @@ public class CruiseControlControllerAgent {
         } catch (Exception e) {
             LOG.error("Problem registering DashboardController for posting", e);
         }
+        try {
+            ObjectName name = new ObjectName("CruiseControl SourceControl:name=sharedPolling");
+            server.registerMBean(new SharedPollingController(SharedSourceControlPoller.getInstance()), name);
+        } catch (Exception e) {
+            LOG.error("Problem registering SharedPollingController", e);
+        }
+        try {
+            ObjectName name = new ObjectName("CruiseControl Publishers:name=templatesCache");
+            server.registerMBean(new TemplatesCacheController(TemplatesCache.getInstance()), name);
+        } catch (Exception e) {
+            LOG.error("Problem registering TemplatesCacheController", e);
+        }
 
         // when "-agentutil false", do not attempt to load.
         if (LOAD_JMX_AGENTUTIL.FORCE_BYPASS != enableJMXAgentUtility) {
@@ -38,7 +38,6 @@ package net.sourceforge.cruisecontrol.jmx;
 
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -233,6 +232,10 @@ public class ProjectController extends NotificationBroadcasterSupport
         return project.getStatusWithQueuePosition();
     }
 
+    public String[] getPublisherLatencies() {
+        return project.getPublisherLatencies();
+    }
+
     private void log(final String message) {
         LOG.info(project.getName() + " Controller: " + message);
     }
@@ -258,11 +261,8 @@ public class ProjectController extends NotificationBroadcasterSupport
      */
     public String[][] commitMessages() {
         final ModificationSet modificationSet = project.getProjectConfig().getModificationSet();
-        final List<SourceControl> sourceControls = modificationSet.getSourceControls();
-        final Iterator<SourceControl> iterator = sourceControls.iterator();
         final List<Modification> modifications = new ArrayList<Modification>();
-        while (iterator.hasNext()) {
-            final SourceControl sourcecontrol = iterator.next();
+        for (final SourceControl sourcecontrol : modificationSet.getSourceControls()) {
             modifications.addAll(
                     sourcecontrol.getModifications(project.getLastBuildDate(), new Date())
             );
@@ -285,6 +285,14 @@ public class ProjectController extends NotificationBroadcasterSupport
         return  BuildOutputLoggerManager.INSTANCE.lookup(getProjectName()).retrieveLines(firstLine);
     }
 
+    /**
+     * UTF-8 encoded output from the live output buffer, from the byte offset specified.
+     * @see net.sourceforge.cruisecontrol.util.BuildOutputLogger#retrieveBytes(long)
+     */
+    public byte[] getBuildOutputBytes(final Long offset) {
+        return  BuildOutputLoggerManager.INSTANCE.lookup(getProjectName()).retrieveBytes(offset);
+    }
+
     /**
      * @return  A unique (for this VM) identifying string for this logger instance.
      * This is intended to allow reporting apps (eg: Dashboard) to check if
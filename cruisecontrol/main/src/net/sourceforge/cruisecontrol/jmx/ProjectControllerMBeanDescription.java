@@ -65,6 +65,9 @@ public class ProjectControllerMBeanDescription extends MBeanDescriptionAdapter {
 
         METHOD_DESCRIPTIONS.put("getBuildOutput", "Output from the live output buffer, after line "
                 + "specified (inclusive)");
+
+        METHOD_DESCRIPTIONS.put("getBuildOutputBytes", "UTF-8 encoded output from the live output buffer, from "
+                + "the byte offset specified up to the last complete line");
     }
 
     private static final Map<String, String> METHOD_PARAMETER_NAME;
@@ -79,6 +82,7 @@ public class ProjectControllerMBeanDescription extends MBeanDescriptionAdapter {
         METHOD_PARAMETER_NAME.put("getLogLabelLines-1", "firstLine");
 
         METHOD_PARAMETER_NAME.put("getBuildOutput-0", "firstLine");
+        METHOD_PARAMETER_NAME.put("getBuildOutputBytes-0", "offset");
 
     }
     
@@ -97,6 +101,7 @@ public class ProjectControllerMBeanDescription extends MBeanDescriptionAdapter {
                 + "build label");
 
         METHOD_PARAMETER_DESCRIPTIONS.put("getBuildOutput-0", "The starting line to skip to");
+        METHOD_PARAMETER_DESCRIPTIONS.put("getBuildOutputBytes-0", "The byte offset to read from");
 
     }
 
@@ -139,6 +144,9 @@ public class ProjectControllerMBeanDescription extends MBeanDescriptionAdapter {
 
         ATTR_DESCRIPTIONS.put("Status", "The current status of the project");
 
+        ATTR_DESCRIPTIONS.put("PublisherLatencies",
+                              "Number of runs, last, average and maximum duration and failures of each publisher");
+
         ATTR_DESCRIPTIONS.put("Paused", "Indicates if the project is paused");
 
         ATTR_DESCRIPTIONS.put("BuildStartTime",
@@ -170,6 +170,12 @@ public interface ProjectMBean {
      */
     public String getStatus();
 
+    /**
+     * @return one line per publisher with its number of runs, the duration of its last run, the average and
+     * maximum duration of its successful runs and the number of failed runs.
+     */
+    public String[] getPublisherLatencies();
+
     /**
      * @return the commit message includes the commiter and message
      */
@@ -182,6 +188,12 @@ public interface ProjectMBean {
      */
     public String[] getBuildOutput(Integer firstLine);
 
+    /**
+     * @param offset The position in the live output to read from.
+     * @return UTF-8 encoded output from the live output buffer, after the offset given, ending with a complete line.
+     */
+    public byte[] getBuildOutputBytes(Long offset);
+
     /**
      * @return  A unique (for this VM) identifying string for this logger instance.
      * Intended to allow reporting apps (eg: Dashboard) to check if
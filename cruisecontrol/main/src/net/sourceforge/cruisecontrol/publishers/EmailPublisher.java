@@ -56,7 +56,6 @@ import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.SendFailedException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
@@ -64,10 +63,12 @@ import javax.mail.internet.MimeMessage;
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
 import net.sourceforge.cruisecontrol.Publisher;
+import net.sourceforge.cruisecontrol.publishers.email.DeliveryReceipt;
 import net.sourceforge.cruisecontrol.publishers.email.EmailMapper;
 import net.sourceforge.cruisecontrol.publishers.email.EmailMapperHelper;
 import net.sourceforge.cruisecontrol.publishers.email.EmailMapping;
 import net.sourceforge.cruisecontrol.publishers.email.EmailTransmissionResult;
+import net.sourceforge.cruisecontrol.publishers.email.SMTPMailer;
 import net.sourceforge.cruisecontrol.util.ValidationHelper;
 import net.sourceforge.cruisecontrol.util.XMLLogHelper;
 
@@ -94,6 +95,8 @@ public abstract class EmailPublisher implements Publisher {
     private String password;
     private String mailPort;
     private boolean useSSL;
+    private int connections = 2;
+    private int mergeWindow = 0;
     private String buildResultsURL;
 
     private static final Always[] EMPTY_ALWAYS_ADDRESSES = new Always[0];
@@ -123,6 +126,7 @@ public abstract class EmailPublisher implements Publisher {
     private boolean skipUsers = false;
     private String subjectPrefix;
     private boolean failAsImportant = true;
+    private transient List<DeliveryReceipt> deliveries;
 
     /**
      * Implementations of this method will create the email message body.
@@ -143,6 +147,8 @@ public abstract class EmailPublisher implements Publisher {
                 "'password' is required if 'username' is set for email.");
         ValidationHelper.assertFalse(getPassword() != null && getUsername() == null,
                 "'username' is required if 'password' is set for email.");
+        ValidationHelper.assertTrue(connections > 0, "'connections' must be greater than 0 for email.");
+        ValidationHelper.assertFalse(mergeWindow < 0, "'mergewindow' must not be negative for email.");
 
         validateAddresses(alwaysAddresses);
         validateAddresses(alertAddresses);
@@ -324,6 +330,7 @@ public abstract class EmailPublisher implements Publisher {
      */
     public void publish(final Element cruisecontrolLog) throws CruiseControlException {
         final XMLLogHelper helper = new XMLLogHelper(cruisecontrolLog);
+        deliveries = new ArrayList<DeliveryReceipt>();
         final boolean important = failAsImportant && !helper.isBuildSuccessful();
 
         final Set<String> userSet = new HashSet<String>();
@@ -350,6 +357,17 @@ public abstract class EmailPublisher implements Publisher {
         }
     }
 
+    /**
+     * @return the receipts of the emails sent by the last publish, which are delivered in the background when sent
+     * through a mail host.
+     */
+    public List<DeliveryReceipt> getDeliveries() {
+        if (deliveries == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(deliveries);
+    }
+
     /**
      * builds the properties object for the mail session
      * 
@@ -387,13 +405,40 @@ public abstract class EmailPublisher implements Publisher {
      *            body of the message
      * @param important
      *            if true, send mail with "High" importance.
-     * @return Boolean value indicating if an email was sent.
+     * @return Boolean value indicating if an email was sent, or queued for delivery through the mail host.
      * @throws CruiseControlException if a MessagingException occurs.
      */
     protected boolean sendMail(final String toList, final String subject, final String message, final boolean important)
             throws CruiseControlException {
+        final DeliveryReceipt receipt = deliverMail(toList, subject, message, important);
+        if (receipt == null) {
+            return false;
+        }
+        if (deliveries != null) {
+            deliveries.add(receipt);
+        }
+        return !receipt.isDone() || receipt.isSuccess();
+    }
+
+    /**
+     * Sends an email message. Messages sent through the mail host are queued and delivered in the background, by
+     * connections shared with all email publishers using the same mail host and user.
+     *
+     * @param toList
+     *            comma delimited <code>String</code> of email addresses
+     * @param subject
+     *            subject line for the message
+     * @param message
+     *            body of the message
+     * @param important
+     *            if true, send mail with "High" importance.
+     * @return the receipt tracking the delivery, null if there are no recipients.
+     * @throws CruiseControlException if a MessagingException occurs.
+     */
+    protected DeliveryReceipt deliverMail(final String toList, final String subject, final String message,
+                                          final boolean important) throws CruiseControlException {
 
-        boolean emailSent = false;
+        DeliveryReceipt receipt = null;
 
         if (toList != null && toList.trim().length() != 0) {
 
@@ -412,38 +457,31 @@ public abstract class EmailPublisher implements Publisher {
 
                 addContentToMessage(message, msg);
 
-                emailSent = send(session, msg);
+                receipt = send(session, msg);
 
             } catch (SendFailedException e) {
                 LOG.warn(e.getMessage(), e);
+                receipt = DeliveryReceipt.finished(false);
             } catch (MessagingException e) {
                 throw new CruiseControlException(e.getClass().getName() + ": " + e.getMessage(), e);
             }
         }
 
-        return emailSent;
+        return receipt;
     }
 
-    private boolean send(Session session, MimeMessage message) throws MessagingException {
+    private DeliveryReceipt send(Session session, MimeMessage message) throws MessagingException {
         if (shouldUseSMTPServer()) {
-            if (userName != null && password != null) {
-                message.saveChanges(); // implicit with send()
-                final Transport transport = session.getTransport("smtp");
-                transport.connect(mailHost, userName, password);
-                transport.sendMessage(message, message.getAllRecipients());
-                transport.close();
-            } else {
-                Transport.send(message);
-            }
-
-            return true;
+            final SMTPMailer mailer = SMTPMailer.forServer(mailHost, mailPort, userName, password, useSSL,
+                    connections);
+            return mailer.send(session, message, mergeWindow * 1000L);
         } else {
             final MailQue queue = new MailQue();
             final EmailTransmissionResult result = new EmailTransmissionResult();
             queue.addWatcher(result);
             queue.queMail(message);
 
-            return result.isSuccess();
+            return DeliveryReceipt.finished(result.isSuccess());
         }
     }
 
@@ -524,6 +562,22 @@ public abstract class EmailPublisher implements Publisher {
         this.useSSL = useSSL;
     }
 
+    /**
+     * @param connections how many connections to the mail host are used at most to deliver the emails of all
+     * publishers sending through it as the same user
+     */
+    public void setConnections(final int connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * @param seconds how long to hold an email back for further emails to the same recipients, which are then sent
+     * together as a digest; 0 sends every email right away
+     */
+    public void setMergeWindow(final int seconds) {
+        mergeWindow = seconds;
+    }
+
     public void setSubjectPrefix(final String prefix) {
         subjectPrefix = prefix;
     }
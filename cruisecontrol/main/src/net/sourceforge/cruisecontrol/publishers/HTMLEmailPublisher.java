@@ -61,6 +61,7 @@ import net.sourceforge.cruisecontrol.gendoc.annotations.ManualChildName;
 import net.sourceforge.cruisecontrol.gendoc.annotations.Optional;
 import net.sourceforge.cruisecontrol.gendoc.annotations.Title;
 import net.sourceforge.cruisecontrol.launch.Launcher;
+import net.sourceforge.cruisecontrol.util.TemplatesCache;
 import net.sourceforge.cruisecontrol.util.ValidationHelper;
 import net.sourceforge.cruisecontrol.util.XMLLogHelper;
 import net.sourceforge.cruisecontrol.util.Util;
@@ -144,9 +145,11 @@ public class HTMLEmailPublisher extends EmailPublisher {
                 verifyFile(
                         "HTMLEmailPublisher.xslDir/" + fileName,
                         new File(xslDir, fileName));
+                TemplatesCache.getInstance().precompile(new File(xslDir, fileName));
             }
         } else {
             verifyFile("HTMLEmailPublisher.xslFile", xslFile);
+            TemplatesCache.getInstance().precompile(new File(xslFile));
         }
     }
 
@@ -475,11 +478,9 @@ public class HTMLEmailPublisher extends EmailPublisher {
     protected String transform(final File inFile) throws TransformerException, IOException {
         final StringBuilder messageBuffer = new StringBuilder();
 
-        final TransformerFactory tFactory = TransformerFactory.newInstance();
-
         if (xslFile != null) {
             final File xslFileAsFile = new File(xslFile);
-            appendTransform(inFile, messageBuffer, tFactory, xslFileAsFile);
+            appendTransform(inFile, messageBuffer, xslFileAsFile);
         } else {
             appendHeader(messageBuffer);
             messageBuffer.append(createLinkLine(inFile.getName()));
@@ -489,7 +490,7 @@ public class HTMLEmailPublisher extends EmailPublisher {
             for (final String fileName : fileNames) {
                 final File xsl = new File(xslDirectory, fileName);
                 messageBuffer.append("<p>\n");
-                appendTransform(inFile, messageBuffer, tFactory, xsl);
+                appendTransform(inFile, messageBuffer, xsl);
             }
 
             appendFooter(messageBuffer);
@@ -527,19 +528,27 @@ public class HTMLEmailPublisher extends EmailPublisher {
         return linkLine.toString();
     }
 
-    protected void appendTransform(final File inFile, final StringBuilder messageBuffer,
-                                   final TransformerFactory tFactory, final File xsl) {
+    /**
+     * Appends the result of transforming the log, using the stylesheet compiled by the {@link TemplatesCache}.
+     * @param inFile the log file
+     * @param messageBuffer where to append the result
+     * @param xsl the stylesheet
+     */
+    protected void appendTransform(final File inFile, final StringBuilder messageBuffer, final File xsl) {
         try {
-            final String result = transformFile(new StreamSource(inFile), tFactory, new StreamSource(xsl));
-            messageBuffer.append(result);
+            final Transformer transformer = TemplatesCache.getInstance().newTransformer(xsl);
+            messageBuffer.append(applyTransform(new StreamSource(inFile), transformer));
         } catch (Exception e) {
             LOG.error("error transforming with xslFile " + xsl.getName(), e);
         }
     }
-    protected String transformFile(final Source logFile, final TransformerFactory tFactory, final Source xsl)
+
+    String transformFile(final Source logFile, final TransformerFactory tFactory, final Source xsl)
         throws IOException, TransformerException {
+        return applyTransform(logFile, tFactory.newTransformer(xsl));
+    }
 
-        final Transformer transformer = tFactory.newTransformer(xsl);
+    private String applyTransform(final Source logFile, final Transformer transformer) throws TransformerException {
         final CharArrayWriter writer = new CharArrayWriter();
         if (!xsltParameters.isEmpty()) {
             for (final Property param : xsltParameters) {
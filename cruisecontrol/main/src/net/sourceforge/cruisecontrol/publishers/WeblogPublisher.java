@@ -53,12 +53,12 @@ import java.util.Vector;
 
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Publisher;
+import net.sourceforge.cruisecontrol.util.TemplatesCache;
 import net.sourceforge.cruisecontrol.util.XMLLogHelper;
 
 import org.apache.log4j.Logger;
@@ -580,9 +580,11 @@ public class WeblogPublisher implements Publisher {
             for (final String fileName : fileNames) {
                 verifyFile("WeblogPublisher.xslDir/" + fileName, new File(
                         xslDir, fileName));
+                TemplatesCache.getInstance().precompile(new File(xslDir, fileName));
             }
         } else {
             verifyFile("WeblogPublisher.xslFile", xslFile);
+            TemplatesCache.getInstance().precompile(new File(xslFile));
         }
     }
 
@@ -810,27 +812,25 @@ public class WeblogPublisher implements Publisher {
     void transformWithMultipleStylesheets(final File inFile,
             final StringBuilder messageBuffer) throws IOException,
             TransformerException {
-        final TransformerFactory tFactory = TransformerFactory.newInstance();
         final File xslDirectory = new File(xslDir);
         final String[] fileNames = getXslFileNames();
         for (final String fileName : fileNames) {
             final File xsl = new File(xslDirectory, fileName);
             messageBuffer.append("<p>\n");
-            appendTransform(inFile, xsl, messageBuffer, tFactory);
+            appendTransform(inFile, xsl, messageBuffer);
         }
     }
 
     void transformWithSingleStylesheet(final File inFile, final StringBuilder messageBuffer)
             throws IOException, TransformerException {
-        final TransformerFactory tFactory = TransformerFactory.newInstance();
-        appendTransform(inFile, new File(xslFile), messageBuffer, tFactory);
+        appendTransform(inFile, new File(xslFile), messageBuffer);
     }
 
-    void appendTransform(final File xml, final File xsl, final StringBuilder messageBuffer,
-            TransformerFactory tFactory) throws TransformerException {
+    void appendTransform(final File xml, final File xsl, final StringBuilder messageBuffer)
+            throws TransformerException {
         LOG.debug("Transforming file " + xml.getName() + " with "
                 + xsl.getName() + " ...");
-        final Transformer tformer = tFactory.newTransformer(new StreamSource(xsl));
+        final Transformer tformer = TemplatesCache.getInstance().newTransformer(xsl);
         final StringWriter sw = new StringWriter();
         try {
             tformer.transform(new StreamSource(xml), new StreamResult(sw));
@@ -38,6 +38,7 @@ package net.sourceforge.cruisecontrol.publishers;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Publisher;
+import net.sourceforge.cruisecontrol.util.TemplatesCache;
 import net.sourceforge.cruisecontrol.util.ValidationHelper;
 import net.sourceforge.cruisecontrol.util.XMLLogHelper;
 import net.sourceforge.cruisecontrol.util.IO;
@@ -48,11 +49,8 @@ import org.jdom.transform.JDOMSource;
 
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -123,6 +121,7 @@ public class XSLTLogPublisher implements Publisher {
     public void validate() throws CruiseControlException {
         ValidationHelper.assertIsSet(xsltFile, "xsltFile", this.getClass());
         ValidationHelper.assertIsSet(directory, "directory", this.getClass());
+        TemplatesCache.getInstance().precompile(new File(xsltFile));
     }
 
     /**
@@ -186,14 +185,12 @@ public class XSLTLogPublisher implements Publisher {
      * @throws CruiseControlException
      */
     protected void writeFile(Element cruisecontrolLog, String path) throws CruiseControlException {
-        FileInputStream xslFileStream = null;
         OutputStream out = null;
         try {
             //Make sure that the xsltFile exists
-            try {
-                xslFileStream = new FileInputStream(this.xsltFile);
-            } catch (IOException ioe) {
-                throw new CruiseControlException("Error reading the xsltFile: " + this.xsltFile, ioe);
+            final File xsl = new File(this.xsltFile);
+            if (!xsl.isFile()) {
+                throw new CruiseControlException("Error reading the xsltFile: " + this.xsltFile);
             }
 
             //construct a FileWriter to the outputFile path location
@@ -204,8 +201,7 @@ public class XSLTLogPublisher implements Publisher {
             }
 
             //Prepare the transformer
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            Transformer transformer = tFactory.newTransformer(new StreamSource(xslFileStream));
+            Transformer transformer = TemplatesCache.getInstance().newTransformer(xsl);
 
             //cruisecontrolLog.get
             XMLLogHelper helper = new XMLLogHelper(cruisecontrolLog);
@@ -221,7 +217,6 @@ public class XSLTLogPublisher implements Publisher {
         } catch (Exception ioe) {
             throw new CruiseControlException("An unexpected exception occurred, unable to publish the log file.", ioe);
         } finally {
-            IO.close(xslFileStream);
             IO.close(out);
         }
     }
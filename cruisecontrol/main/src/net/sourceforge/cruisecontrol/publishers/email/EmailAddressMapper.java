@@ -34,7 +34,6 @@
  * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  ********************************************************************************/
-
 package net.sourceforge.cruisecontrol.publishers.email;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
@@ -42,23 +41,37 @@ import net.sourceforge.cruisecontrol.CruiseControlException;
 import org.apache.log4j.Logger;
 import java.util.Set;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class EmailAddressMapper extends EmailMapper {
 
     private static final Logger LOG = Logger.getLogger(EmailAddressMapper.class);
 
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private int cacheTtl = 3600;
+    private transient String instanceSource;
+
     public EmailAddressMapper() {
     }
 
+    /**
+     * @param seconds how long the mappings of this mapper are shared and reused by all email publishers, 0 to look
+     * up users on every build
+     */
+    public void setCacheTtl(final int seconds) {
+        cacheTtl = seconds;
+    }
+
     /*
-     * invoked to initialize each time before this mapped is used to map a set of users.
+     * invoked to initialize before this mapper is used to map a set of users, unless all of them are cached.
      * this method can be invoked multiple times during instance lifetime
      */
     public void open() throws CruiseControlException {
     }
 
     /*
-     * invoked after a set of users has been mapped.
+     * invoked after a set of users has been mapped, if open was invoked.
      * this method can be invoked multiple times during instance lifetime
      */
     public void close() {
@@ -72,42 +85,68 @@ public class EmailAddressMapper extends EmailMapper {
         return null;
     }
     /*
-     * returns whether the result can be cached.
-     * invoked immediately after non-null resulting invocations of mapUser
+     * returns whether the result can be cached, null results included.
+     * invoked immediately after invocations of mapUser
      */
     public boolean cacheable() {
         return true;
     }
 
+    /*
+     * returns what this mapper looks addresses up in, e.g. a directory or a file including its modification time.
+     * mappers returning the same source share their cached mappings, null disables caching.
+     * by default only this instance reuses its mappings.
+     */
+    protected String getCacheSource() {
+        if (instanceSource == null) {
+            instanceSource = getClass().getName() + '#' + INSTANCES.incrementAndGet();
+        }
+        return instanceSource;
+    }
+
     /*
      * If a need exists to override this method, extend EmailMapper instead of this class.
      *
      * @see net.sourceforge.cruisecontrol.publishers.EmailMapper#mapUsers(java.util.Set, java.util.Set)
      */
     public final void mapUsers(final Set<String> users, final Set<String> mappedUsers) {
+        final String source = cacheTtl > 0 ? getCacheSource() : null;
+        final long now = System.currentTimeMillis();
+        boolean opened = false;
         try {
-            open();
-
             // iterate over all users
-            for (Iterator userIterator = users.iterator(); userIterator.hasNext(); ) {
-                String user = (String) userIterator.next();
-                String mappedUser = mapUser(user);
+            for (Iterator<String> userIterator = users.iterator(); userIterator.hasNext(); ) {
+                final String user = userIterator.next();
+                final String mappedUser;
+                final EmailMappingCache.Entry cached = source != null
+                        ? EmailMappingCache.lookup(source, user, now - cacheTtl * 1000L) : null;
+                if (cached != null) {
+                    mappedUser = cached.getAddress();
+                } else {
+                    if (!opened) {
+                        opened = true;
+                        open();
+                    }
+                    mappedUser = mapUser(user);
+                    // cache the results unless the mapper doesn't want to
+                    if (source != null && cacheable()) {
+                        EmailMappingCache.put(source, user, mappedUser, now);
+                    }
+                }
 
                 // if hit, remove from users and add to mappedUsers
                 if (mappedUser != null) {
-                    LOG.debug("Mapped user " + user + " to " + mappedUser);
+                    LOG.debug("Mapped user " + user + " to " + mappedUser + (cached != null ? " (cached)" : ""));
                     mappedUsers.add(mappedUser);
                     userIterator.remove();
-                    // cache the results unless the mapper doesn't want to
-                    if (cacheable()) {
-                        EmailMapperHelper.addCacheEntry(getEmailPublisher(), user, mappedUser);
-                    }
                 }
             }
         } catch (CruiseControlException ce) {
             LOG.error(ce.getMessage());
         } finally {
-            close();
+            if (opened) {
+                close();
+            }
         }
     }
 }
@@ -37,8 +37,10 @@
 package net.sourceforge.cruisecontrol.publishers.email;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.Set;
 import java.util.Iterator;
 
@@ -53,9 +55,11 @@ public class EmailMapperHelper implements Serializable {
     private static final Logger LOG = Logger.getLogger(EmailMapperHelper.class);
 
     /*
-     * CACHE contains a Map with mapped users for each Publisher
+     * CACHE contains a Map with the configured mappings for each Publisher, it doesn't keep publishers of
+     * replaced configurations alive. Mappings looked up by mappers are cached by EmailMappingCache instead.
      */
-    private static final Map<Object, Map<String, String>> CACHE = new Hashtable<Object, Map<String, String>>();
+    private static final Map<Object, Map<String, String>> CACHE =
+            Collections.synchronizedMap(new WeakHashMap<Object, Map<String, String>>());
 
     public static void addCacheEntry(final Object cache, final String user, final String mappedUser) {
         Map<String, String> map = CACHE.get(cache);
@@ -87,8 +91,7 @@ public class EmailMapperHelper implements Serializable {
             }
         }
 
-        // iterate over each mapper,
-        // put the mapping into the cache if a hit and partissapates in caching
+        // iterate over each mapper, they cache their own hits and misses
         final EmailMapper[] mappers = publisher.getEmailMapper();
         for (int i = 0; i < mappers.length; i++) {
             mappers[i].mapUsers(users, mappedUsers);
@@ -0,0 +1,130 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.publishers.email;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of user to email address mappings shared by all email publishers. Mappers are identified by a source
+ * describing what they look addresses up in, so every project configured with the same LDAP directory or
+ * properties file shares the lookups of the others. Users a mapper could not map are cached as well, so they
+ * don't hit the directory again on every build either.
+ * <p>
+ * Entries are refreshed once older than the time to live the caller asks for, and the least recently used ones
+ * are dropped when more than {@link #MAX_ENTRIES} are held.
+ */
+final class EmailMappingCache {
+
+    static final int MAX_ENTRIES = 10000;
+
+    private static final Map<String, Entry> ENTRIES =
+            new LinkedHashMap<String, Entry>(MAX_ENTRIES / 4, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private EmailMappingCache() {
+    }
+
+    /**
+     * @param source what the mapper looks addresses up in, see {@link EmailAddressMapper#getCacheSource()}
+     * @param user the user to map
+     * @param oldest time in milliseconds before which a cached mapping is stale
+     * @return the mapping of the user, or null if it is not cached or stale. The address of the mapping is null if
+     * the mapper could not map the user.
+     */
+    static Entry lookup(final String source, final String user, final long oldest) {
+        synchronized (ENTRIES) {
+            final Entry entry = ENTRIES.get(source + '\n' + user);
+            return entry != null && entry.time >= oldest ? entry : null;
+        }
+    }
+
+    /**
+     * @param source what the mapper looks addresses up in
+     * @param user the user mapped
+     * @param address the address the user was mapped to, null if the mapper could not map the user
+     * @param time time in milliseconds of the lookup
+     */
+    static void put(final String source, final String user, final String address, final long time) {
+        synchronized (ENTRIES) {
+            ENTRIES.put(source + '\n' + user, new Entry(address, time));
+        }
+    }
+
+    static int size() {
+        synchronized (ENTRIES) {
+            return ENTRIES.size();
+        }
+    }
+
+    /**
+     * Forgets all mappings.
+     */
+    static void clear() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+        }
+    }
+
+    /**
+     * @param file a file a mapper reads addresses from
+     * @return a source naming the file as it is now, which changes whenever the file is modified
+     */
+    static String fileSource(final File file) {
+        return file.getAbsolutePath() + '@' + file.lastModified() + ',' + file.length();
+    }
+
+    static final class Entry {
+        private final String address;
+        private final long time;
+
+        private Entry(final String address, final long time) {
+            this.address = address;
+            this.time = time;
+        }
+
+        String getAddress() {
+            return address;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.publishers.email;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Idle LDAP connections kept for reuse by the {@link LDAPMapper}s connecting to the same directory with the same
+ * credentials. A context is borrowed by a single mapper at a time, as JNDI contexts are not safe for concurrent use.
+ * At most {@link #MAX_IDLE} contexts are kept per directory, and contexts idle longer than {@link #MAX_IDLE_TIME}
+ * are closed rather than reused, since servers tend to drop idle connections.
+ */
+final class LDAPContextPool {
+
+    static final int MAX_IDLE = 4;
+    static final long MAX_IDLE_TIME = 5 * 60 * 1000L;
+
+    private static final Logger LOG = Logger.getLogger(LDAPContextPool.class);
+
+    private static final Map<Hashtable<String, String>, LDAPContextPool> POOLS =
+            new HashMap<Hashtable<String, String>, LDAPContextPool>();
+
+    private final LinkedList<Idle> idle = new LinkedList<Idle>();
+
+    private LDAPContextPool() {
+    }
+
+    /**
+     * @param env the environment the contexts are created with
+     * @return the pool of the contexts created with the environment
+     */
+    static LDAPContextPool forEnvironment(final Hashtable<String, String> env) {
+        synchronized (POOLS) {
+            LDAPContextPool pool = POOLS.get(env);
+            if (pool == null) {
+                pool = new LDAPContextPool();
+                POOLS.put(new Hashtable<String, String>(env), pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Closes the idle contexts of all pools.
+     */
+    static void clearAll() {
+        synchronized (POOLS) {
+            for (final LDAPContextPool pool : POOLS.values()) {
+                pool.clear();
+            }
+            POOLS.clear();
+        }
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     * @return the most recently released context, or null if none is idle. The caller must give it back with
+     * {@link #release(DirContext, long)} or close it.
+     */
+    synchronized DirContext borrow(final long now) {
+        while (!idle.isEmpty()) {
+            final Idle last = idle.removeLast();
+            if (last.since >= now - MAX_IDLE_TIME) {
+                return last.ctx;
+            }
+            close(last.ctx);
+        }
+        return null;
+    }
+
+    /**
+     * @param ctx a context that is known to work
+     * @param now the current time in milliseconds
+     */
+    synchronized void release(final DirContext ctx, final long now) {
+        for (final Iterator<Idle> i = idle.iterator(); i.hasNext(); ) {
+            final Idle expired = i.next();
+            if (expired.since < now - MAX_IDLE_TIME) {
+                i.remove();
+                close(expired.ctx);
+            }
+        }
+        if (idle.size() < MAX_IDLE) {
+            idle.addLast(new Idle(ctx, now));
+        } else {
+            close(ctx);
+        }
+    }
+
+    synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    private synchronized void clear() {
+        for (final Idle expired : idle) {
+            close(expired.ctx);
+        }
+        idle.clear();
+    }
+
+    static void close(final DirContext ctx) {
+        try {
+            ctx.close();
+            LOG.debug("LDAPMapper: InitialContext closed.");
+        } catch (NamingException ignored) {
+            //Ignored
+        }
+    }
+
+    private static final class Idle {
+        private final DirContext ctx;
+        private final long since;
+
+        private Idle(final DirContext ctx, final long since) {
+            this.ctx = ctx;
+            this.since = since;
+        }
+    }
+}
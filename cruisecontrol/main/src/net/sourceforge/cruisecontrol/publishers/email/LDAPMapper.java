@@ -43,6 +43,7 @@ import org.apache.log4j.Logger;
 
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.DirContext;
@@ -65,7 +66,11 @@ public class LDAPMapper extends EmailAddressMapper {
     private String rootDN = null;
     private String searchTmpl = "(cn=?)";                           // commonly used default value
     private String searchAttr = "mail";                              // commonly used default value
-    private DirContext ctx = null;
+    private transient LDAPContextPool pool;
+    private transient Hashtable<String, String> env;
+    private transient DirContext ctx;
+    private transient boolean reused;
+    private transient boolean lookupFailed;
 
     /**
      *
@@ -144,7 +149,7 @@ public class LDAPMapper extends EmailAddressMapper {
      * @see net.sourceforge.cruisecontrol.publishers.email.EmailAddressMapper#open()
      */
     public void open() throws CruiseControlException {
-        final Hashtable<String, String> env = new Hashtable<String, String>();
+        env = new Hashtable<String, String>();
 
         env.put(Context.INITIAL_CONTEXT_FACTORY, ctxFactory);  // use jndi provider
         env.put(Context.PROVIDER_URL, url);                    // the ldap url to connect to; e.g. "ldap://ca.com:389"
@@ -153,26 +158,83 @@ public class LDAPMapper extends EmailAddressMapper {
             env.put(Context.SECURITY_CREDENTIALS, bindPassword);
         }
 
+        // reuse a connection another mapper of the same directory released
+        pool = LDAPContextPool.forEnvironment(env);
+        ctx = pool.borrow(System.currentTimeMillis());
+        reused = ctx != null;
+        if (reused) {
+            LOG.debug("LDAPMapper: InitialContext reused.");
+            return;
+        }
+
         try {
-            ctx = new InitialDirContext(env);
+            ctx = createContext(env);
             LOG.debug("LDAPMapper: InitialContext created.");
         } catch (Exception e) {
             throw new CruiseControlException(e);
         }
     }
 
+    DirContext createContext(final Hashtable<String, String> env) throws NamingException {
+        return new InitialDirContext(env);
+    }
+
     public void close() {
         if (ctx != null) {
+            pool.release(ctx, System.currentTimeMillis());
+            ctx = null;
+        }
+    }
+
+    /*
+     * lookups that failed are neither cached nor is their connection reused
+     */
+    public boolean cacheable() {
+        return !lookupFailed;
+    }
+
+    /*
+     * the mappings are shared by all mappers searching the same directory
+     */
+    protected String getCacheSource() {
+        return url + ' ' + bindDN + ' ' + rootDN + ' ' + searchTmpl + ' ' + searchAttr;
+    }
+
+    public String mapUser(final String user) {
+        String email = null;
+        lookupFailed = false;
+        try {
+            if (ctx == null) {
+                open();
+            }
             try {
-                ctx.close();
-                LOG.debug("LDAPMapper: InitialContext closed.");
-            } catch (Exception ignored) {
-                //Ignored
+                email = search(ctx, user);
+            } catch (NamingException e) {
+                if (!reused) {
+                    throw e;
+                }
+                // the server may have dropped the pooled connection while it was idle, try once on a new one
+                LOG.debug("LDAPMapper: Reused InitialContext failed, retrying on a new one.", e);
+                LDAPContextPool.close(ctx);
+                ctx = null;
+                reused = false;
+                ctx = createContext(env);
+                email = search(ctx, user);
+            }
+        } catch (Exception e) {
+            LOG.warn("LDAPMapper: Failed to map " + user, e);
+            lookupFailed = true;
+            if (ctx != null) {
+                LDAPContextPool.close(ctx);
+                ctx = null;
             }
         }
+        LOG.debug("LDAPMapper: Mapping " + user + " to " + email);
+
+        return email;
     }
 
-    public String mapUser(final String user) {
+    String search(final DirContext context, final String user) throws NamingException {
         final String[] searchAttrs = {searchAttr};
         /* specify search constraints to search subtree */
         final SearchControls constraints1 = new SearchControls();
@@ -187,19 +249,13 @@ public class LDAPMapper extends EmailAddressMapper {
         final StringBuilder s = new StringBuilder(searchTmpl);
         final int idx = s.toString().indexOf("?");
         s.replace(idx, idx + 1, user);
-        try {
-            final NamingEnumeration ne = ctx.search(rootDN, s.toString(), constraints1);
-            while (ne.hasMore()) {
-                final Object o = ne.next();
-                final Attributes attrs = ((SearchResult) o).getAttributes();
-                final Attribute emailAttr = attrs.get(searchAttr);
-                email = (String) emailAttr.get();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        final NamingEnumeration ne = context.search(rootDN, s.toString(), constraints1);
+        while (ne.hasMore()) {
+            final Object o = ne.next();
+            final Attributes attrs = ((SearchResult) o).getAttributes();
+            final Attribute emailAttr = attrs.get(searchAttr);
+            email = (String) emailAttr.get();
         }
-        LOG.debug("LDAPMapper: Mapping " + user + " to " + email);
-
         return email;
     }
 }
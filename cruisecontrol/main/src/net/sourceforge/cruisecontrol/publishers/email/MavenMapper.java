@@ -55,6 +55,7 @@ public class MavenMapper extends EmailAddressMapper {
     private static final Logger LOG = Logger.getLogger(MavenMapper.class);
     private String projectFile = null;
     private Properties props = new Properties();
+    private transient String loadedSource;
 
     public MavenMapper() {
         super();
@@ -68,11 +69,24 @@ public class MavenMapper extends EmailAddressMapper {
      * @see net.sourceforge.cruisecontrol.publishers.email.EmailAddressMapper#open()
      */
     public void open() throws CruiseControlException {
+        final String source = getCacheSource();
+        if (source.equals(loadedSource)) {
+            return;
+        }
         MavenMapperHelper mmh = new MavenMapperHelper(this.projectFile);
         this.props = mmh.getDeveloperPropertySet();
+        loadedSource = source;
         LOG.debug("DeveloperPropertySet: " + this.props);
     }
 
+    /**
+     * The POM is only parsed again, and its mappings shared, until it is modified.
+     * @see net.sourceforge.cruisecontrol.publishers.email.EmailAddressMapper#getCacheSource()
+     */
+    protected String getCacheSource() {
+        return EmailMappingCache.fileSource(new File(projectFile));
+    }
+
     /**
      * Check if plugin has been configured properly.
      * @throws net.sourceforge.cruisecontrol.CruiseControlException If the pluing isn't valid.
@@ -41,6 +41,7 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.util.ValidationHelper;
@@ -49,6 +50,7 @@ public class PropertiesMapper extends EmailAddressMapper {
 
     private String file = null;
     private final Properties props = new Properties();
+    private transient String loadedSource;
 
     public PropertiesMapper() {
         super();
@@ -79,17 +81,31 @@ public class PropertiesMapper extends EmailAddressMapper {
      * @see net.sourceforge.cruisecontrol.publishers.EmailAddressMapper#open()
      */
     public void open() throws CruiseControlException {
-        File f = new File(getFile());
+        final String source = getCacheSource();
+        if (source.equals(loadedSource)) {
+            return;
+        }
 
+        props.clear();
+        loadedSource = null;
         try {
-            props.load(new BufferedInputStream(new FileInputStream(f)));
+            final InputStream in = new BufferedInputStream(new FileInputStream(getFile()));
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
         } catch (IOException ie) {
             throw new CruiseControlException(ie);
         }
+        loadedSource = source;
     }
 
-    public void close() {
-        props.clear();
+    /*
+     * the mappings are shared until the file is modified
+     */
+    protected String getCacheSource() {
+        return EmailMappingCache.fileSource(new File(getFile()));
     }
 
     public String mapUser(String user) {
@@ -0,0 +1,365 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.publishers.email;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+import net.sourceforge.cruisecontrol.util.DaemonThreadFactory;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Outbound mail shared by all email publishers sending through the same SMTP server as the same user. Messages are
+ * queued and sent in the background by a few worker threads, each keeping its authenticated connection open between
+ * messages, so a burst of builds neither costs a connection per message nor blocks build threads on the server.
+ * <p>
+ * Messages failing for other reasons than their addresses are retried up to {@link #RETRIES} times, waiting twice as
+ * long every time. Messages to the same recipients queued within the merge window of the first one are sent
+ * together as a single digest.
+ * <p>
+ * A mailer nobody asked for during {@link #IDLE_TIME} and with nothing left to send is shut down and forgotten, so
+ * servers dropped from the configuration don't keep their threads.
+ */
+public class SMTPMailer {
+
+    static final int RETRIES = 3;
+    static final long RETRY_DELAY = 10 * 1000L;
+    static final long IDLE_TIME = 60 * 1000L;
+
+    private static final Logger LOG = Logger.getLogger(SMTPMailer.class);
+
+    private static final Map<String, SMTPMailer> SERVERS = new HashMap<String, SMTPMailer>();
+
+    private final String host;
+    private final String user;
+    private final String password;
+    private final long retryDelay;
+    private final ExecutorService workers;
+    private final DelayQueue<Delivery> queue = new DelayQueue<Delivery>();
+    private final Map<String, Delivery> merging = new HashMap<String, Delivery>();
+    /** Messages accepted but not yet delivered or given up on, guarded by this. */
+    private int undelivered;
+    private long lastUsed = System.currentTimeMillis();
+    private boolean retired;
+
+    SMTPMailer(final String host, final String user, final String password, final int connections,
+               final long retryDelay) {
+        this.host = host;
+        this.user = user;
+        this.password = password;
+        this.retryDelay = retryDelay;
+
+        workers = Executors.newFixedThreadPool(connections,
+                new DaemonThreadFactory("SMTP " + host));
+        for (int i = 0; i < connections; i++) {
+            workers.execute(new Worker());
+        }
+    }
+
+    /**
+     * @param host the SMTP server
+     * @param port the port of the server, null for the default
+     * @param user the user to authenticate as, null to not authenticate
+     * @param password the password of the user
+     * @param useSSL whether the connections are made over SSL
+     * @param connections how many connections to the server to send through at most
+     * @return the mailer of the server
+     */
+    public static SMTPMailer forServer(final String host, final String port, final String user,
+                                       final String password, final boolean useSSL, final int connections) {
+        final String key = host + ':' + port + ',' + user + ',' + password + ',' + useSSL + ',' + connections;
+        synchronized (SERVERS) {
+            SMTPMailer mailer = SERVERS.get(key);
+            if (mailer == null) {
+                mailer = new SMTPMailer(host, user, password, connections, RETRY_DELAY);
+                SERVERS.put(key, mailer);
+            }
+            synchronized (mailer) {
+                mailer.lastUsed = System.currentTimeMillis();
+            }
+            return mailer;
+        }
+    }
+
+    /**
+     * Shuts the mailer down and drops it from the shared mailers if it has not been used for {@link #IDLE_TIME} and
+     * has nothing left to send.
+     * @param now the current time
+     * @return true if the mailer is shut down
+     */
+    boolean retireIfUnused(final long now) {
+        synchronized (SERVERS) {
+            synchronized (this) {
+                if (retired) {
+                    return true;
+                }
+                if (undelivered > 0 || now - lastUsed < IDLE_TIME) {
+                    return false;
+                }
+                retired = true;
+                SERVERS.values().remove(this);
+            }
+        }
+        LOG.debug("Shutting down the unused mailer of " + host);
+        // nothing is being delivered, so the workers are either waiting for mail or disconnecting
+        workers.shutdownNow();
+        return true;
+    }
+
+    private synchronized void accept() throws MessagingException {
+        if (retired) {
+            throw new MessagingException("The mailer of " + host + " has been shut down");
+        }
+        undelivered++;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    private synchronized void delivered(final int messages) {
+        undelivered -= messages;
+    }
+
+    /**
+     * Queues a message for delivery.
+     * @param session the session the message was created in, used to connect to the server
+     * @param message the message to send to all its recipients
+     * @param mergeWindow milliseconds to hold the message back for further messages from the same sender to the same
+     * recipients, 0 to send it right away
+     * @return the receipt tracking the delivery
+     * @throws MessagingException if the sender or recipients of the message can't be read
+     */
+    public DeliveryReceipt send(final Session session, final MimeMessage message, final long mergeWindow)
+            throws MessagingException {
+        accept();
+        final DeliveryReceipt receipt = new DeliveryReceipt();
+        final long now = System.currentTimeMillis();
+        if (mergeWindow <= 0) {
+            queue.add(new Delivery(session, message, receipt, null, now));
+            return receipt;
+        }
+
+        final String key = Arrays.asList(message.getFrom()) + " to "
+                + Arrays.asList(message.getRecipients(Message.RecipientType.TO));
+        synchronized (merging) {
+            final Delivery pending = merging.get(key);
+            if (pending != null) {
+                pending.add(message, receipt);
+            } else {
+                final Delivery delivery = new Delivery(session, message, receipt, key, now + mergeWindow);
+                merging.put(key, delivery);
+                queue.add(delivery);
+            }
+        }
+        return receipt;
+    }
+
+    /**
+     * @return how many deliveries are queued or waiting to be retried
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    Transport connect(final Session session) throws MessagingException {
+        final Transport transport = session.getTransport("smtp");
+        if (user != null && password != null) {
+            transport.connect(host, user, password);
+        } else {
+            transport.connect();
+        }
+        LOG.debug("Connected to " + host);
+        return transport;
+    }
+
+    private final class Worker implements Runnable {
+        private Transport transport;
+
+        public void run() {
+            try {
+                while (true) {
+                    final Delivery delivery = queue.poll(IDLE_TIME, TimeUnit.MILLISECONDS);
+                    if (delivery != null) {
+                        deliver(delivery);
+                    } else {
+                        disconnect();
+                        if (retireIfUnused(System.currentTimeMillis())) {
+                            return;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                disconnect();
+            }
+        }
+
+        private void deliver(final Delivery delivery) {
+            synchronized (merging) {
+                // from now on no further messages are merged into the delivery
+                if (merging.get(delivery.key) == delivery) {
+                    merging.remove(delivery.key);
+                }
+            }
+
+            try {
+                final MimeMessage message = delivery.getMessage();
+                message.saveChanges();
+                if (transport == null || !transport.isConnected()) {
+                    transport = connect(delivery.session);
+                }
+                transport.sendMessage(message, message.getAllRecipients());
+                finish(delivery, true);
+            } catch (SendFailedException e) {
+                LOG.warn(e.getMessage(), e);
+                finish(delivery, false);
+            } catch (MessagingException e) {
+                disconnect();
+                if (delivery.attempts < RETRIES) {
+                    final long delay = retryDelay << delivery.attempts;
+                    LOG.warn("Failed to send email through " + host + ", retrying in " + delay + " ms: "
+                            + e.getMessage());
+                    delivery.attempts++;
+                    delivery.due = System.currentTimeMillis() + delay;
+                    queue.add(delivery);
+                } else {
+                    LOG.error("Failed to send email through " + host + ": " + e.getMessage(), e);
+                    finish(delivery, false);
+                }
+            }
+        }
+
+        private void finish(final Delivery delivery, final boolean success) {
+            delivery.finish(success);
+            delivered(delivery.receipts.size());
+        }
+
+        private void disconnect() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException ignored) {
+                    //Ignored
+                }
+                transport = null;
+            }
+        }
+    }
+
+    private static final class Delivery implements Delayed {
+        private final Session session;
+        private final String key;
+        private final List<MimeMessage> messages = new ArrayList<MimeMessage>();
+        private final List<DeliveryReceipt> receipts = new ArrayList<DeliveryReceipt>();
+        private MimeMessage digest;
+        private int attempts;
+        private volatile long due;
+
+        private Delivery(final Session session, final MimeMessage message, final DeliveryReceipt receipt,
+                         final String key, final long due) {
+            this.session = session;
+            this.key = key;
+            this.due = due;
+            add(message, receipt);
+        }
+
+        private void add(final MimeMessage message, final DeliveryReceipt receipt) {
+            messages.add(message);
+            receipts.add(receipt);
+        }
+
+        private MimeMessage getMessage() throws MessagingException {
+            if (messages.size() == 1) {
+                return messages.get(0);
+            }
+            if (digest == null) {
+                final MimeMessage first = messages.get(0);
+                final MimeMessage merged = new MimeMessage(session);
+                merged.addFrom(first.getFrom());
+                merged.setRecipients(Message.RecipientType.TO, first.getRecipients(Message.RecipientType.TO));
+                merged.setSubject(first.getSubject() + " (and " + (messages.size() - 1) + " more)");
+                merged.setSentDate(new Date());
+                String importance = "Normal";
+                final MimeMultipart parts = new MimeMultipart("digest");
+                for (final MimeMessage message : messages) {
+                    final String[] header = message.getHeader("Importance");
+                    if (header != null && "High".equals(header[0])) {
+                        importance = "High";
+                    }
+                    final MimeBodyPart part = new MimeBodyPart();
+                    part.setContent(message, "message/rfc822");
+                    parts.addBodyPart(part);
+                }
+                merged.addHeader("Importance", importance);
+                merged.setContent(parts);
+                digest = merged;
+            }
+            return digest;
+        }
+
+        private void finish(final boolean delivered) {
+            for (final DeliveryReceipt receipt : receipts) {
+                receipt.finish(delivered);
+            }
+        }
+
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        public int compareTo(final Delayed other) {
+            final long diff = due - ((Delivery) other).due;
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+    }
+}
@@ -36,17 +36,31 @@
  ********************************************************************************/
 package net.sourceforge.cruisecontrol.report;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TimerTask;
 
+import net.sourceforge.cruisecontrol.BuildLoopInformation;
 import net.sourceforge.cruisecontrol.BuildLoopInformationBuilder;
+import net.sourceforge.cruisecontrol.BuildLoopInformation.ProjectInfo;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.apache.log4j.Logger;
 
 
-
+/**
+ * Posts the state of the build loop to the dashboard. Reports are numbered once the dashboard has shown it
+ * understands versions by acknowledging a report; older dashboards reject the extra elements, so they only ever
+ * receive plain full snapshots. Once the dashboard has acknowledged a version only the projects that changed
+ * since then are sent, and nothing at all when no project changed. A full snapshot is still sent every
+ * <code>snapshotInterval</code> runs and whenever the dashboard asks for a resync.
+ */
 public class BuildLoopStatusReportTask extends TimerTask {
+    static final int DEFAULT_SNAPSHOT_INTERVAL = 12;
+
     private BuildLoopInformationBuilder builder;
 
     private static final Logger LOGGER = Logger.getLogger(BuildLoopStatusReportTask.class);
@@ -59,6 +73,18 @@ public class BuildLoopStatusReportTask extends TimerTask {
 
     private String response;
 
+    private int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+
+    private int runsSinceSnapshot;
+
+    private boolean versioned;
+
+    private long version;
+
+    private long acknowledged;
+
+    private Map<String, String> acknowledgedState = new HashMap<String, String>();
+
     public BuildLoopStatusReportTask(BuildLoopInformationBuilder builder, String url) {
         this(builder, url, new HttpClient(), 3000);
     }
@@ -83,12 +109,38 @@ public class BuildLoopStatusReportTask extends TimerTask {
         return this.response; 
     }
 
+    /**
+     * @return the last version the dashboard acknowledged, 0 if the next report will be a full snapshot.
+     */
+    public long getAcknowledgedVersion() {
+        return acknowledged;
+    }
+
+    public void setSnapshotInterval(int snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
     public void run(PostMethod postMethod) {
         try {
-            this.sent = builder.buildBuildLoopInformation().toXml();
+            final BuildLoopInformation info = builder.buildBuildLoopInformation();
+            final Map<String, String> state = fingerprint(info.getProjects());
+            runsSinceSnapshot++;
+            if (acknowledged > 0 && runsSinceSnapshot < snapshotInterval) {
+                if (!makeDelta(info, state)) {
+                    LOGGER.debug("No project changed since version " + acknowledged + ", nothing posted.");
+                    return;
+                }
+            } else {
+                runsSinceSnapshot = 0;
+            }
+            if (versioned) {
+                info.setVersion(++version);
+            }
+            this.sent = info.toXml();
             postMethod.setRequestEntity(new StringRequestEntity(sent));
             http.executeMethod(postMethod);
             this.response = new String(postMethod.getResponseBody());
+            acknowledge(info.getVersion(), state);
         } catch (Exception e) {
             LOGGER.warn("Failed to reach dashboard instance : " + this.url
                     + ", either the dashboard has not started up or there is a network problem.", e);
@@ -96,4 +148,54 @@ public class BuildLoopStatusReportTask extends TimerTask {
             postMethod.releaseConnection();
         }
     }
+
+    private boolean makeDelta(final BuildLoopInformation info, final Map<String, String> state) {
+        final List<ProjectInfo> changed = new ArrayList<ProjectInfo>();
+        for (final ProjectInfo project : info.getProjects()) {
+            if (!state.get(project.getName()).equals(acknowledgedState.get(project.getName()))) {
+                changed.add(project);
+            }
+        }
+        final List<String> removed = new ArrayList<String>();
+        for (final String name : acknowledgedState.keySet()) {
+            if (!state.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return false;
+        }
+        info.setDelta(acknowledged, changed.toArray(new ProjectInfo[changed.size()]),
+                removed.toArray(new String[removed.size()]));
+        return true;
+    }
+
+    private void acknowledge(final long sentVersion, final Map<String, String> state) {
+        final String reply = response.trim();
+        versioned = reply.startsWith(BuildLoopInformation.ACKNOWLEDGED + " ")
+                || reply.equals(BuildLoopInformation.RESYNC);
+        if (sentVersion > 0 && reply.equals(BuildLoopInformation.ACKNOWLEDGED + " " + sentVersion)) {
+            acknowledged = sentVersion;
+            acknowledgedState = state;
+        } else {
+            if (reply.equals(BuildLoopInformation.RESYNC)) {
+                LOGGER.info("Dashboard " + url + " requested a full snapshot of the build loop.");
+            }
+            // an older dashboard does not acknowledge reports, keep sending plain full snapshots
+            acknowledged = 0;
+            acknowledgedState = new HashMap<String, String>();
+        }
+    }
+
+    private static Map<String, String> fingerprint(final ProjectInfo[] projects) {
+        final Map<String, String> state = new HashMap<String, String>();
+        if (projects != null) {
+            for (final ProjectInfo project : projects) {
+                final List<?> modifications = project.getModifications();
+                state.put(project.getName(), project.getStatus() + "|" + project.getBuildStartTime() + "|"
+                        + (modifications == null ? 0 : modifications.hashCode()));
+            }
+        }
+        return state;
+    }
 }
@@ -54,7 +54,7 @@ import java.util.StringTokenizer;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
-import net.sourceforge.cruisecontrol.SourceControl;
+import net.sourceforge.cruisecontrol.ShareableSourceControl;
 import net.sourceforge.cruisecontrol.Modification.ModifiedFile;
 import net.sourceforge.cruisecontrol.util.CVSDateUtil;
 import net.sourceforge.cruisecontrol.util.Commandline;
@@ -83,7 +83,7 @@ import org.apache.log4j.Logger;
  * @author <a href="mailto:m@loonsoft.com">McClain Looney</a>
  * @author Detlef Keil
  */
-public class ConcurrentVersionsSystem implements SourceControl, Cloneable {
+public class ConcurrentVersionsSystem implements ShareableSourceControl, Cloneable {
     private static final long serialVersionUID = -3714548093682602092L;
     /**
      * name of the official cvs as returned as part of the 'cvs version' command output
@@ -468,6 +468,11 @@ public class ConcurrentVersionsSystem implements SourceControl, Cloneable {
         return properties.getPropertiesAndReset();
     }
 
+    public String getQueryKey() {
+        return cvsroot + ";" + local + ";" + module + ";" + tag + ";" + recurseLocalWorkingCopy + ";"
+                + skipEmailsFetching + ";" + properties.getPropertyNames();
+    }
+
     /*
      * for mocking
      */
@@ -37,25 +37,37 @@
 package net.sourceforge.cruisecontrol.sourcecontrols;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
 import net.sourceforge.cruisecontrol.util.ValidationHelper;
 
+import org.apache.log4j.Logger;
+
 /**
  * Scans a directory tree on a local drive rather than in a repository.
+ * <p>
+ * By default every file whose timestamp is newer than the last build is a modification. When a snapshot file is
+ * set the size and timestamp of every file is kept between polls, so that replaced files with preserved
+ * timestamps, copied in files with old timestamps and deleted files are reported as well.
  *
  * @author <a href="mailto:alden@thoughtworks.com">Alden Almagro</a>
  */
 public class FileSystem extends FakeUserSourceControl {
 
+    private static final Logger LOG = Logger.getLogger(FileSystem.class);
+
     private List<Modification> modifications;
     private File folder;
     //TODO: change folder attribute to path. Can be file or directory.
     private boolean includeDirectories;
+    private File snapshotFile;
+    private int threads = 1;
 
     /**
      * @param s the root folder of the directories that we are going to scan.
@@ -64,10 +76,26 @@ public class FileSystem extends FakeUserSourceControl {
         folder = new File(s);
     }
 
+    /**
+     * @param s file keeping the state of the folder between polls; turns on detection of deleted files and of
+     * changes that did not move the timestamp past the last build
+     */
+    public void setSnapshotFile(final String s) {
+        snapshotFile = new File(s);
+    }
+
+    /**
+     * @param threads number of threads listing directories in parallel, helps with network file systems
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
     public void validate() throws CruiseControlException {
         ValidationHelper.assertIsSet(folder, "folder", this.getClass());
         ValidationHelper.assertTrue(folder.exists(),
             "folder " + folder.getAbsolutePath() + " must exist for FileSystem");
+        ValidationHelper.assertTrue(threads > 0, "threads must be at least 1 for FileSystem");
     }
 
     /**
@@ -75,13 +103,38 @@ public class FileSystem extends FakeUserSourceControl {
      * one user is modifying the build.
      *
      * @param lastBuild date of last build
-     * @param now IGNORED
+     * @param now time of this poll, when changes without a usable timestamp are dated; the current time if null
      */
     public List<Modification> getModifications(final Date lastBuild, final Date now) {
         modifications = new ArrayList<Modification>();
 
-        visit(folder, lastBuild.getTime());
-        
+        final long scanTime = now == null ? System.currentTimeMillis() : now.getTime();
+        final FileSystemSnapshot previous = snapshotFile == null ? null : FileSystemSnapshot.load(snapshotFile);
+        final FileSystemSnapshot snapshot;
+        try {
+            snapshot = FileSystemSnapshot.scan(folder, includeDirectories, threads, previous, scanTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("interrupted while scanning " + folder.getAbsolutePath());
+            return modifications;
+        }
+
+        for (final Map.Entry<String, FileSystemSnapshot.Entry> entry : snapshot.getEntries().entrySet()) {
+            final FileSystemSnapshot.Entry state = entry.getValue();
+            if (state.getChanged() > lastBuild.getTime() && (includeDirectories || !state.isDirectory())) {
+                addRevision(entry.getKey(), state);
+            }
+        }
+
+        if (snapshotFile != null) {
+            snapshot.pruneDeletedBefore(lastBuild.getTime());
+            try {
+                snapshot.save(snapshotFile);
+            } catch (IOException e) {
+                LOG.error("could not save filesystem snapshot " + snapshotFile.getAbsolutePath(), e);
+            }
+        }
+
         if (!modifications.isEmpty()) {
             getSourceControlProperties().modificationFound();
         }
@@ -92,46 +145,36 @@ public class FileSystem extends FakeUserSourceControl {
     /**
      * Add a Modification to the list of modifications. A lot of default
      * behavior is assigned here because we don't have a repository to query the
-     * modification.  All modifications will be set to type "change" and
-     * userName "User".
-     * @param revision the file to add to the list of modifications.
+     * modification.  Modifications are set to type "change", or "added" and
+     * "deleted" when a snapshot is kept, and userName "User".
+     * @param path the path of the file below the folder
+     * @param state what happened to the file
      */
-    private void addRevision(final File revision) {
+    private void addRevision(final String path, final FileSystemSnapshot.Entry state) {
+        final File revision = path.length() == 0 ? folder : new File(folder, path);
         final Modification mod = new Modification("filesystem");
 
         mod.userName = getUserName();
 
         final Modification.ModifiedFile modfile = mod.createModifiedFile(revision.getName(), revision.getParent());
-        modfile.action = "change";
+        switch (state.getAction()) {
+            case FileSystemSnapshot.Entry.ADDED:
+                modfile.action = "added";
+                break;
+            case FileSystemSnapshot.Entry.DELETED:
+                modfile.action = "deleted";
+                break;
+            default:
+                modfile.action = "change";
+        }
 
-        mod.modifiedTime = new Date(revision.lastModified());
+        mod.modifiedTime = new Date(state.getChanged());
         mod.comment = "";
         modifications.add(mod);
     }
 
-    /**
-     * Recursively visit all files below the specified one.  Check for newer
-     * timestamps.
-     * @param file the first file to visit
-     * @param lastBuild the timestamp of the last build
-     */
-    private void visit(final File file, final long lastBuild) {
-        if (file.isDirectory()) {
-            final String[] children = file.list();
-            for (final String child : children) {
-                visit(new File(file, child), lastBuild);
-            }
-        }
-
-        boolean modified = file.lastModified() > lastBuild;
-        boolean isFile = !file.isDirectory();
-        if (modified && (isFile || includeDirectories)) {
-            addRevision(file);
-        }
-    }
-
     public void setIncludeDirectories(boolean b) {
         includeDirectories = b;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,381 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.sourcecontrols;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.cruisecontrol.util.DaemonThreadFactory;
+import net.sourceforge.cruisecontrol.util.IO;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Size and modification time of every file below a folder, as seen by the last poll of a {@link FileSystem}.
+ * Comparing a fresh scan with the previous snapshot finds files whose timestamps were preserved when they were
+ * replaced, files that appeared with an old timestamp and files that were deleted, none of which a plain
+ * timestamp comparison reports.
+ * <p>
+ * Paths are kept relative to the scanned folder, the folder itself being the empty path. Deleted files stay in
+ * the snapshot until a build after their deletion was done.
+ */
+final class FileSystemSnapshot {
+
+    private static final Logger LOG = Logger.getLogger(FileSystemSnapshot.class);
+
+    private static final String HEADER = "# CruiseControl filesystem snapshot";
+    private static final String ENCODING = "UTF-8";
+    private static final char SEPARATOR = '\t';
+
+    /** State of one file or directory. */
+    static final class Entry {
+        static final char ADDED = 'A';
+        static final char MODIFIED = 'M';
+        static final char DELETED = 'D';
+
+        private final long size;
+        private final long modified;
+        private final boolean directory;
+        private final char action;
+        private final long changed;
+
+        Entry(final long size, final long modified, final boolean directory, final char action, final long changed) {
+            this.size = size;
+            this.modified = modified;
+            this.directory = directory;
+            this.action = action;
+            this.changed = changed;
+        }
+
+        private Entry changed(final char newAction, final long when) {
+            return new Entry(size, modified, directory, newAction, when);
+        }
+
+        private boolean sameAs(final Entry other) {
+            return size == other.size && modified == other.modified && directory == other.directory;
+        }
+
+        boolean isDirectory() {
+            return directory;
+        }
+
+        boolean isDeleted() {
+            return action == DELETED;
+        }
+
+        char getAction() {
+            return action;
+        }
+
+        /**
+         * @return when the last change was made, the file timestamp where it can be trusted and the time the change
+         * was noticed otherwise
+         */
+        long getChanged() {
+            return changed;
+        }
+    }
+
+    private final SortedMap<String, Entry> entries;
+    private final long scanTime;
+
+    private FileSystemSnapshot(final SortedMap<String, Entry> entries, final long scanTime) {
+        this.entries = entries;
+        this.scanTime = scanTime;
+    }
+
+    /**
+     * @return the entries by relative path
+     */
+    Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    long getScanTime() {
+        return scanTime;
+    }
+
+    /**
+     * Scans a folder and compares it with the previous snapshot.
+     * @param root the folder, or single file, to scan
+     * @param includeDirectories whether directories are recorded
+     * @param threads number of threads listing directories in parallel
+     * @param previous the snapshot of the last poll, null if there is none: all files then count as changed at their
+     * own timestamp
+     * @param now the time of this scan
+     * @return the new snapshot
+     * @throws InterruptedException if interrupted while waiting for the scanning threads
+     */
+    static FileSystemSnapshot scan(final File root, final boolean includeDirectories, final int threads,
+                                   final FileSystemSnapshot previous, final long now) throws InterruptedException {
+        final Scan scan = new Scan(root, includeDirectories);
+        scan.run(threads);
+
+        final SortedMap<String, Entry> merged = new TreeMap<String, Entry>();
+        for (final Map.Entry<String, Entry> found : scan.found.entrySet()) {
+            final String path = found.getKey();
+            final Entry entry = found.getValue();
+            final Entry before = previous == null ? null : previous.entries.get(path);
+            if (previous == null) {
+                merged.put(path, entry.changed(Entry.MODIFIED, entry.modified));
+            } else if (before != null && !before.isDeleted() && before.sameAs(entry)) {
+                merged.put(path, before);
+            } else {
+                // a timestamp older than the last scan can not explain the change
+                final long changed = entry.modified > previous.scanTime ? entry.modified : now;
+                final char action = before == null || before.isDeleted() ? Entry.ADDED : Entry.MODIFIED;
+                merged.put(path, entry.changed(action, changed));
+            }
+        }
+        if (previous != null) {
+            for (final Map.Entry<String, Entry> old : previous.entries.entrySet()) {
+                final String path = old.getKey();
+                final Entry entry = old.getValue();
+                if (merged.containsKey(path)) {
+                    continue;
+                }
+                if (entry.isDeleted() || scan.isUnderUnreadable(path)) {
+                    merged.put(path, entry);
+                } else {
+                    merged.put(path, entry.changed(Entry.DELETED, now));
+                }
+            }
+        }
+        return new FileSystemSnapshot(merged, now);
+    }
+
+    /**
+     * Forgets deleted files that a build has already seen.
+     * @param lastBuild time of the last build
+     */
+    void pruneDeletedBefore(final long lastBuild) {
+        final List<String> pruned = new ArrayList<String>();
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().isDeleted() && entry.getValue().changed <= lastBuild) {
+                pruned.add(entry.getKey());
+            }
+        }
+        for (final String path : pruned) {
+            entries.remove(path);
+        }
+    }
+
+    /**
+     * @param file the persisted snapshot
+     * @return the snapshot, or null if there is none or it can not be read
+     */
+    static FileSystemSnapshot load(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+            if (!HEADER.equals(reader.readLine())) {
+                LOG.warn("ignoring " + file.getAbsolutePath() + ", it is not a filesystem snapshot");
+                return null;
+            }
+            final long scanTime = Long.parseLong(reader.readLine());
+            final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(String.valueOf(SEPARATOR), 6);
+                entries.put(fields[5], new Entry(Long.parseLong(fields[3]), Long.parseLong(fields[2]),
+                        "d".equals(fields[4]), fields[0].charAt(0), Long.parseLong(fields[1])));
+            }
+            return new FileSystemSnapshot(entries, scanTime);
+        } catch (IOException e) {
+            LOG.warn("could not read filesystem snapshot " + file.getAbsolutePath() + ", rescanning", e);
+            return null;
+        } catch (RuntimeException e) {
+            LOG.warn("corrupt filesystem snapshot " + file.getAbsolutePath() + ", rescanning", e);
+            return null;
+        } finally {
+            IO.close(reader);
+        }
+    }
+
+    /**
+     * Writes the snapshot next to the file first and then replaces it, so an interrupted write leaves the previous
+     * snapshot in place.
+     * @param file where to persist the snapshot
+     * @throws IOException if the snapshot can not be written
+     */
+    void save(final File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("could not create directory " + parent.getAbsolutePath());
+        }
+        final File temp = new File(file.getAbsolutePath() + ".tmp");
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), ENCODING));
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            writer.write(Long.toString(scanTime));
+            writer.write('\n');
+            for (final Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                final Entry entry = mapEntry.getValue();
+                writer.write(entry.action);
+                writer.write(SEPARATOR);
+                writer.write(Long.toString(entry.changed));
+                writer.write(SEPARATOR);
+                writer.write(Long.toString(entry.modified));
+                writer.write(SEPARATOR);
+                writer.write(Long.toString(entry.size));
+                writer.write(SEPARATOR);
+                writer.write(entry.directory ? "d" : "f");
+                writer.write(SEPARATOR);
+                writer.write(mapEntry.getKey());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("could not replace " + file.getAbsolutePath());
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("could not rename " + temp.getAbsolutePath() + " to " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * One walk of the tree. Directories are listed by a pool of threads when more than one is asked for, which
+     * keeps several requests in flight against a network file system.
+     */
+    private static final class Scan {
+        private final File root;
+        private final boolean includeDirectories;
+        private final Map<String, Entry> found = new ConcurrentHashMap<String, Entry>();
+        private final Set<String> unreadable = Collections.synchronizedSet(new HashSet<String>());
+        private final AtomicInteger pending = new AtomicInteger();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private ExecutorService executor;
+
+        private Scan(final File root, final boolean includeDirectories) {
+            this.root = root;
+            this.includeDirectories = includeDirectories;
+        }
+
+        private void run(final int threads) throws InterruptedException {
+            if (threads <= 1) {
+                visit(root, "");
+                return;
+            }
+            executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("FileSystem scanner"));
+            try {
+                submit(root, "");
+                done.await();
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private void submit(final File dir, final String path) {
+            pending.incrementAndGet();
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        visit(dir, path);
+                    } finally {
+                        if (pending.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    }
+                }
+            });
+        }
+
+        private void visit(final File file, final String path) {
+            if (!file.isDirectory()) {
+                if (file.exists()) {
+                    found.put(path, new Entry(file.length(), file.lastModified(), false, Entry.MODIFIED, 0));
+                }
+                return;
+            }
+            if (includeDirectories) {
+                found.put(path, new Entry(0, file.lastModified(), true, Entry.MODIFIED, 0));
+            }
+            final String[] children = file.list();
+            if (children == null) {
+                LOG.warn("could not list " + file.getAbsolutePath());
+                unreadable.add(path);
+                return;
+            }
+            final String prefix = path.length() == 0 ? "" : path + File.separatorChar;
+            for (final String child : children) {
+                final File childFile = new File(file, child);
+                if (executor != null && childFile.isDirectory()) {
+                    submit(childFile, prefix + child);
+                } else {
+                    visit(childFile, prefix + child);
+                }
+            }
+        }
+
+        private boolean isUnderUnreadable(final String path) {
+            synchronized (unreadable) {
+                for (final String dir : unreadable) {
+                    if (dir.length() == 0 || path.equals(dir) || path.startsWith(dir + File.separatorChar)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
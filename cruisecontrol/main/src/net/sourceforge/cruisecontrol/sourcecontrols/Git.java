@@ -38,7 +38,7 @@ package net.sourceforge.cruisecontrol.sourcecontrols;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
-import net.sourceforge.cruisecontrol.SourceControl;
+import net.sourceforge.cruisecontrol.ShareableSourceControl;
 import net.sourceforge.cruisecontrol.util.Commandline;
 import net.sourceforge.cruisecontrol.util.IO;
 import net.sourceforge.cruisecontrol.util.StreamLogger;
@@ -66,7 +66,7 @@ import java.util.regex.Matcher;
  * @see <a href="http://git.or.cz/">git.or.cz</a>
  * @author <a href="rschiele@gmail.com">Robert Schiele</a>
  */
-public class Git implements SourceControl {
+public class Git implements ShareableSourceControl {
     private static final Logger LOG = Logger.getLogger(Git.class);
     private static final Pattern COMMITPATTERN =
     Pattern.compile("commit ([0-9a-f]{40})");
@@ -78,16 +78,34 @@ public class Git implements SourceControl {
     Pattern.compile("new file mode [0-7]{6}");
     private static final Pattern DELETEDFILEPATTERN =
     Pattern.compile("deleted file mode [0-7]{6}");
+    private static final Pattern NAMESTATUSPATTERN =
+    Pattern.compile("([ACDMRTUX])[0-9]*\t(?:.*\t)?(.*)");
+    private static final Pattern COMMITIDPATTERN =
+    Pattern.compile("[0-9a-f]{40}");
     private static final String NEWLINE = System.getProperty("line.separator");
     
     private final SourceControlProperties props =
     new SourceControlProperties();
     private String lwc;
+    private boolean useCommitId;
+
+    /* Commit id watermark, only used with useCommitId.  The base date is the
+       start of the current build interval, the last commit id is the newest
+       commit already reported for that interval.  Transient as this is poll
+       state rather than configuration. */
+    private transient Date baseDate;
+    private transient String lastCommitId;
+    private transient List<Modification> seenMods;
+    private transient boolean seenDeletion;
 
     public Map<String, String> getProperties() {
         return props.getPropertiesAndReset();
     }
 
+    public String getQueryKey() {
+        return lwc + ";" + useCommitId + ";" + props.getPropertyNames();
+    }
+
     public void setProperty(String p) {
         props.assignPropertyName(p);
     }
@@ -106,6 +124,17 @@ public class Git implements SourceControl {
         lwc = d;
     }
 
+    /**
+     * Enables polling by commit id instead of by date.  The last seen commit
+     * id is remembered between polls, so only commits past it are logged,
+     * and a poll where HEAD did not move costs a single rev-parse.
+     *
+     * @param useCommitId true to remember the last seen commit id.
+     */
+    public void setUseCommitId(boolean useCommitId) {
+        this.useCommitId = useCommitId;
+    }
+
     /**
      * This method validates that the local working copy location has been
      * specified.
@@ -132,19 +161,124 @@ public class Git implements SourceControl {
      * retrieve the changes.
      */
     public List<Modification> getModifications(final Date from, final Date to) {
+        if (useCommitId) {
+            return getModificationsSinceCommitId(from);
+        }
         final List<Modification> mods = new ArrayList<Modification>();
-        final Commandline cmd = new Commandline();
-        cmd.setExecutable("git");
+        log(gitRevision(from) + ".." + gitRevision(to), mods, props);
+        return mods;
+    }
+
+    /**
+     * Returns the modifications since the commit HEAD pointed to at
+     * <code>from</code>.  Commits already reported since then are kept, so
+     * each poll only logs the commits past the last seen commit id, and
+     * none at all when HEAD did not move.
+     */
+    private List<Modification> getModificationsSinceCommitId(final Date from) {
+        final String head = revParse("HEAD");
+        if (head == null) {
+            return new ArrayList<Modification>();
+        }
+
+        if (!from.equals(baseDate)) {
+            /* A build happened, start a new interval at the commit HEAD
+               pointed to back then. */
+            final String base = revParse(gitRevision(from));
+            if (base == null) {
+                final List<Modification> mods = new ArrayList<Modification>();
+                log(gitRevision(from) + "..HEAD", mods, props);
+                return mods;
+            }
+            baseDate = from;
+            lastCommitId = base;
+            seenMods = new ArrayList<Modification>();
+            seenDeletion = false;
+        }
+
+        if (!head.equals(lastCommitId)) {
+            final List<Modification> newMods = new ArrayList<Modification>();
+            if (!log(lastCommitId + ".." + head, newMods, new SourceControlProperties())) {
+                return new ArrayList<Modification>(seenMods);
+            }
+            LOG.debug(newMods.size() + " new commits since " + lastCommitId);
+            newMods.addAll(seenMods);
+            seenMods = newMods;
+            seenDeletion |= hasDeletion(newMods);
+            lastCommitId = head;
+        } else {
+            LOG.debug("HEAD still at " + head + ", no new commits");
+        }
+
+        if (!seenMods.isEmpty()) {
+            props.put("gitcommitid", lastCommitId);
+            props.modificationFound();
+            if (seenDeletion) {
+                props.deletionFound();
+            }
+        }
+        return new ArrayList<Modification>(seenMods);
+    }
+
+    private static boolean hasDeletion(final List<Modification> mods) {
+        for (final Modification mod : mods) {
+            for (final Modification.ModifiedFile file : mod.getModifiedFiles()) {
+                if ("deleted".equals(file.action)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves a revision to its commit id.
+     * @return the commit id, or null if git could not resolve the revision.
+     */
+    String revParse(final String revision) {
+        final Commandline cmd = createCommand();
+        if (cmd == null) {
+            return null;
+        }
+        cmd.createArgument("rev-parse");
+        cmd.createArgument("--verify");
+        cmd.createArgument(revision);
+        LOG.debug("Executing command: " + cmd);
         try {
-            cmd.setWorkingDirectory(lwc);
-        } catch (CruiseControlException e) {
-            LOG.error("Error building history command", e);
-            return mods;
+            final Process p = cmd.execute();
+            final Thread stderr = new
+                Thread(StreamLogger.getWarnPumper(LOG, p.getErrorStream()));
+            stderr.start();
+            final BufferedReader rd = new BufferedReader(new InputStreamReader(p.getInputStream(), "UTF-8"));
+            final String id = rd.readLine();
+            final int exit = p.waitFor();
+            stderr.join();
+            IO.close(p);
+            if (exit == 0 && id != null && COMMITIDPATTERN.matcher(id.trim()).matches()) {
+                return id.trim();
+            }
+        } catch (Exception e) {
+            LOG.error("Error executing git rev-parse command " + cmd, e);
+        }
+        return null;
+    }
+
+    /**
+     * Runs <code>git log</code> for the given range and parses its output as
+     * it streams in.  Only names and status of the changed files are asked
+     * for, never the patches themselves.
+     * @return true if git exited normally.
+     */
+    boolean log(final String range, final List<Modification> mods, final SourceControlProperties logProps) {
+        final Commandline cmd = createCommand();
+        if (cmd == null) {
+            return false;
         }
         cmd.createArgument("log");
-        cmd.createArgument("-p");
+        cmd.createArgument("--name-status");
+        cmd.createArgument("--no-renames");
         cmd.createArgument("--pretty=raw");
-        cmd.createArgument(gitRevision(from) + ".." + gitRevision(to));
+        cmd.createArgument(range);
         LOG.debug("Executing command: " + cmd);
         try {
             final Process p = cmd.execute();
@@ -152,14 +286,27 @@ public class Git implements SourceControl {
                 Thread(StreamLogger.getWarnPumper(LOG, p.getErrorStream()));
             stderr.start();
             parseLog(new InputStreamReader(p.getInputStream(), "UTF-8"),
-                     mods, props);
-            p.waitFor();
+                     mods, logProps);
+            final int exit = p.waitFor();
             stderr.join();
             IO.close(p);
+            return exit == 0;
         } catch (Exception e) {
             LOG.error("Error executing git log command " + cmd, e);
         }
-        return mods;
+        return false;
+    }
+
+    private Commandline createCommand() {
+        final Commandline cmd = new Commandline();
+        cmd.setExecutable("git");
+        try {
+            cmd.setWorkingDirectory(lwc);
+        } catch (CruiseControlException e) {
+            LOG.error("Error building git command", e);
+            return null;
+        }
+        return cmd;
     }
 
     static void parseLog(final Reader grd, final List<Modification> mods, final SourceControlProperties props)
@@ -229,6 +376,23 @@ public class Git implements SourceControl {
                 /* Remember we are in diffmode.  Parser needs this information
                    to handle empty lines correctly. */
                 diffmode = true;
+                continue;
+            }
+            matcher = NAMESTATUSPATTERN.matcher(l);
+            if (matcher.matches()) {
+                final Modification.ModifiedFile modfile =
+                    mod.createModifiedFile(matcher.group(2), null);
+                final String status = matcher.group(1);
+                if (status.equals("D")) {
+                    modfile.action = "deleted";
+                    props.deletionFound();
+                } else {
+                    modfile.action = status.equals("A") || status.equals("C")
+                        ? "added" : "modified";
+                }
+                modfile.revision = mod.revision;
+                /* The file list ends with an empty line just like a diff. */
+                diffmode = true;
                 //continue;  // 'contiue' is unnecessary as last statement in loop
             }
         }
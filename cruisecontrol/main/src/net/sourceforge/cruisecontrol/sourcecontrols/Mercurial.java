@@ -59,7 +59,7 @@ import java.util.regex.Pattern;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
-import net.sourceforge.cruisecontrol.SourceControl;
+import net.sourceforge.cruisecontrol.ShareableSourceControl;
 import net.sourceforge.cruisecontrol.util.Commandline;
 import net.sourceforge.cruisecontrol.util.IO;
 import net.sourceforge.cruisecontrol.util.StreamLogger;
@@ -77,7 +77,7 @@ import org.jdom.input.SAXBuilder;
  * @author <a href="jerome@coffeebreaks.org">Jerome Lacoste</a>
  * @see <a href="http://www.selenic.com/mercurial">Mercurial web site</a>
  */
-public class Mercurial implements SourceControl {
+public class Mercurial implements ShareableSourceControl {
     
     static final DateFormat HG_DATE_PARSER = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
 
@@ -105,6 +105,10 @@ public class Mercurial implements SourceControl {
         return properties.getPropertiesAndReset();
     }
 
+    public String getQueryKey() {
+        return localWorkingCopy + ";" + hgCommand + ";" + properties.getPropertyNames();
+    }
+
     public void setProperty(final String property) {
         properties.assignPropertyName(property);
     }
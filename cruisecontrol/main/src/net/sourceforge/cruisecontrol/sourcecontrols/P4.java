@@ -46,17 +46,22 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
 import net.sourceforge.cruisecontrol.SourceControl;
 import net.sourceforge.cruisecontrol.util.CommandExecutor;
 import net.sourceforge.cruisecontrol.util.Commandline;
+import net.sourceforge.cruisecontrol.util.DaemonThreadFactory;
 import net.sourceforge.cruisecontrol.util.DiscardConsumer;
 import net.sourceforge.cruisecontrol.util.IO;
 import net.sourceforge.cruisecontrol.util.StreamConsumer;
@@ -94,6 +99,8 @@ public class P4 implements SourceControl {
     private String p4Passwd;
     private boolean correctForServerTime = true;
     private boolean useP4Email = true;
+    private long cacheTtl = DEFAULT_CACHE_TTL * ONE_SECOND;
+    private int threads = DEFAULT_THREADS;
 
     private final SimpleDateFormat p4RevisionDateFormatter = new SimpleDateFormat("yyyy/MM/dd:HH:mm:ss");
     private final SourceControlProperties properties = new SourceControlProperties();
@@ -101,6 +108,12 @@ public class P4 implements SourceControl {
     private static final String SERVER_DATE = "Server date: ";
     private static final String P4_SERVER_DATE_FORMAT = "yyyy/MM/dd HH:mm:ss";
 
+    private static final long ONE_SECOND = 1000;
+    private static final int DEFAULT_CACHE_TTL = 3600;
+    private static final int DEFAULT_THREADS = 4;
+    /** Most changelists described by one command */
+    static final int DESCRIBE_BATCH_SIZE = 50;
+
     public void setPort(String p4Port) {
         this.p4Port = p4Port;
     }
@@ -140,6 +153,29 @@ public class P4 implements SourceControl {
         useP4Email = flag;
     }
 
+    /**
+     * Sets how long the email addresses of users and the server time offset are reused before asking the server
+     * again. They are shared with all P4 source controls using the same port and user, as are the descriptions of
+     * submitted changelists, which never change.
+     *
+     * @param seconds
+     *            time to live of the cached server information, one hour by default; 0 disables the cache.
+     */
+    public void setCacheTtl(int seconds) {
+        cacheTtl = seconds * ONE_SECOND;
+    }
+
+    /**
+     * Sets how many describe commands may run at once when many changelists were submitted since the last build.
+     * Each command describes at most {@value #DESCRIBE_BATCH_SIZE} changelists.
+     *
+     * @param threads
+     *            number of concurrent describe commands, at least 1
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     public void setProperty(String propertyName) {
         properties.assignPropertyName(propertyName);
     }
@@ -154,6 +190,8 @@ public class P4 implements SourceControl {
         ValidationHelper.assertIsSet(p4User, "user", this.getClass());
         ValidationHelper.assertIsSet(p4View, "view", this.getClass());
         ValidationHelper.assertNotEmpty(p4Passwd, "passwd", this.getClass());
+        ValidationHelper.assertTrue(cacheTtl >= 0, "cacheTtl can't be negative for P4");
+        ValidationHelper.assertTrue(threads > 0, "threads must be at least 1 for P4");
     }
 
     /**
@@ -186,21 +224,109 @@ public class P4 implements SourceControl {
         return mods;
     }
 
-    private List<Modification> describeAllChangelistsAndBuildOutput(final String[] changelistNumbers) throws Exception {
+    List<Modification> describeAllChangelistsAndBuildOutput(final String[] changelistNumbers) throws Exception {
+        final P4ServerCache cache = getServerCache();
+        final Map<String, Modification> descriptions = new HashMap<String, Modification>();
+        final List<String> undescribed = new ArrayList<String>();
+        for (final String changelistNumber : changelistNumbers) {
+            final Modification cached = cache != null ? cache.getDescription(changelistNumber) : null;
+            if (cached != null) {
+                descriptions.put(changelistNumber, cached);
+            } else {
+                undescribed.add(changelistNumber);
+            }
+        }
+        for (final Modification description : describeInBatches(undescribed)) {
+            descriptions.put(description.revision, description);
+            if (cache != null) {
+                cache.putDescription(description);
+            }
+        }
+
+        // descriptions are in server time and may be shared, every poll gets its own copies in local time
+        final int serverOffset = correctForServerTime ? (int) getServerTimeOffset() : 0;
+        final List<Modification> mods = new ArrayList<Modification>();
+        for (final String changelistNumber : changelistNumbers) {
+            final Modification description = descriptions.get(changelistNumber);
+            if (description != null) {
+                mods.add(((P4Modification) description).copy(-serverOffset));
+            }
+        }
+
+        // Get the Email address of the user for each changelist
+        if ((mods.size() > 0) && useP4Email) {
+            getEmailAddresses(mods);
+        }
+
+        return mods;
+    }
+
+    /**
+     * Describes the changelists with at most {@value #DESCRIBE_BATCH_SIZE} changelists per command, running up to
+     * threads commands at once.
+     *
+     * @param changelistNumbers
+     *            change list numbers
+     * @return the descriptions, in server time
+     * @throws Exception if a describe command fails
+     */
+    private List<Modification> describeInBatches(final List<String> changelistNumbers) throws Exception {
+        final List<Callable<List<Modification>>> batches = new ArrayList<Callable<List<Modification>>>();
+        for (int start = 0; start < changelistNumbers.size(); start += DESCRIBE_BATCH_SIZE) {
+            final List<String> batch =
+                    changelistNumbers.subList(start, Math.min(start + DESCRIBE_BATCH_SIZE, changelistNumbers.size()));
+            final String[] numbers = batch.toArray(new String[batch.size()]);
+            batches.add(new Callable<List<Modification>>() {
+                public List<Modification> call() throws Exception {
+                    return describeChangelists(numbers);
+                }
+            });
+        }
+
+        final List<Modification> descriptions = new ArrayList<Modification>();
+        if (batches.size() <= 1 || threads == 1) {
+            for (final Callable<List<Modification>> batch : batches) {
+                descriptions.addAll(batch.call());
+            }
+            return descriptions;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, batches.size()),
+                new DaemonThreadFactory("P4 describe"));
+        try {
+            for (final Future<List<Modification>> batch : executor.invokeAll(batches)) {
+                try {
+                    descriptions.addAll(batch.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return descriptions;
+    }
+
+    /**
+     * Runs one describe command.
+     *
+     * @param changelistNumbers
+     *            change list numbers
+     * @return the descriptions, in server time
+     * @throws Exception if something breaks
+     */
+    List<Modification> describeChangelists(final String[] changelistNumbers) throws Exception {
         final Commandline command = buildDescribeCommand(changelistNumbers);
         LOG.debug(command.toString());
         final Process p = command.execute();
 
         final Thread error = logErrorStream(p.getErrorStream());
         final InputStream p4Stream = p.getInputStream();
-        final List<Modification> mods = parseChangeDescriptions(p4Stream);
+        final List<Modification> mods = parseChangeDescriptions(p4Stream, 0);
         getRidOfLeftoverData(p4Stream);
 
-        // Get the Email address of the user for each changelist
-        if ((mods.size() > 0) && useP4Email) {
-            getEmailAddresses(mods);
-        }
-
         p.waitFor();
         error.join();
         IO.close(p);
@@ -217,23 +343,32 @@ public class P4 implements SourceControl {
      * @throws InterruptedException if something breaks
      */
     private void getEmailAddresses(final List<Modification> mods) throws IOException, InterruptedException {
-        final Iterator<Modification> iter = mods.iterator();
+        final P4ServerCache cache = getServerCache();
+        final long now = System.currentTimeMillis();
         final Map<String, String> users = new HashMap<String, String>();
 
-        while (iter.hasNext()) {
-            final P4Modification change = (P4Modification) iter.next();
-
+        for (final Modification change : mods) {
             if ((change.userName != null) && (change.userName.length() > 0)) {
-                change.emailAddress = users.get(change.userName);
-
-                if (change.emailAddress == null) {
-                    change.emailAddress = getUserEmailAddress(change.userName);
-                    users.put(change.userName, change.emailAddress);
+                if (!users.containsKey(change.userName)) {
+                    users.put(change.userName, getEmailAddress(change.userName, cache, now));
                 }
+                change.emailAddress = users.get(change.userName);
             }
-
         }
+    }
 
+    private String getEmailAddress(final String username, final P4ServerCache cache, final long now)
+            throws IOException, InterruptedException {
+
+        if (cache == null) {
+            return getUserEmailAddress(username);
+        }
+        if (cache.hasEmail(username, now - cacheTtl)) {
+            return cache.getEmail(username);
+        }
+        final String email = getUserEmailAddress(username);
+        cache.putEmail(username, email, now);
+        return email;
     }
 
     /**
@@ -245,7 +380,7 @@ public class P4 implements SourceControl {
      * @throws IOException if something breaks
      * @throws InterruptedException if something breaks
      */
-    private String getUserEmailAddress(final String username) throws IOException, InterruptedException {
+    String getUserEmailAddress(final String username) throws IOException, InterruptedException {
         String emailaddr = null;
 
         final Commandline command = buildUserCommand(username);
@@ -327,8 +462,13 @@ public class P4 implements SourceControl {
     protected List<Modification> parseChangeDescriptions(final InputStream is) throws Exception {
         int serverOffset = 0;
         if (correctForServerTime) {
-            serverOffset = (int) calculateServerTimeOffset();
+            serverOffset = (int) getServerTimeOffset();
         }
+        return parseChangeDescriptions(is, serverOffset);
+    }
+
+    List<Modification> parseChangeDescriptions(final InputStream is, final int serverOffset)
+            throws Exception {
 
         final ArrayList<Modification> changelists = new ArrayList<Modification>();
 
@@ -434,7 +574,7 @@ public class P4 implements SourceControl {
         // If the Perforce server time is different from the CruiseControl
         // server time, correct the parameter dates for the difference.
         if (correctForServerTime) {
-            int offset = (int) calculateServerTimeOffset();
+            int offset = (int) getServerTimeOffset();
             final Calendar cal = Calendar.getInstance();
 
             cal.setTime(lastBuildTime);
@@ -507,6 +647,33 @@ public class P4 implements SourceControl {
         return serverInfo.getOffset();
     }
 
+    /**
+     * @return the server time offset, from the cache while it is fresh
+     * @throws CruiseControlException if something breaks
+     * @see #calculateServerTimeOffset()
+     */
+    private long getServerTimeOffset() throws CruiseControlException {
+        final P4ServerCache cache = getServerCache();
+        if (cache == null) {
+            return calculateServerTimeOffset();
+        }
+        final long now = System.currentTimeMillis();
+        final Long cached = cache.getServerTimeOffset(now - cacheTtl);
+        if (cached != null) {
+            return cached;
+        }
+        final long offset = calculateServerTimeOffset();
+        cache.putServerTimeOffset(offset, now);
+        return offset;
+    }
+
+    /**
+     * @return the cache of the server, or null if caching is disabled
+     */
+    private P4ServerCache getServerCache() {
+        return cacheTtl > 0 ? P4ServerCache.forServer(p4Port, p4User) : null;
+    }
+
     Commandline buildInfoCommand() {
         final Commandline command = buildBaseP4Command(false);
         command.createArgument("info");
@@ -598,6 +765,24 @@ public class P4 implements SourceControl {
             super("p4");
         }
 
+        /**
+         * @param offset milliseconds to add to the time of the change
+         * @return a copy of this modification and its files, moved in time by offset
+         */
+        P4Modification copy(final int offset) {
+            final P4Modification copy = new P4Modification();
+            copy.revision = revision;
+            copy.userName = userName;
+            copy.client = client;
+            copy.comment = comment;
+            copy.emailAddress = emailAddress;
+            copy.modifiedTime = modifiedTime == null ? null : new Date(modifiedTime.getTime() + offset);
+            for (final ModifiedFile file : files) {
+                copy.files.add(new ModifiedFile(file.fileName, file.revision, file.folderName, file.action));
+            }
+            return copy;
+        }
+
         @Override
         public Element toElement() {
             final Element element = super.toElement();
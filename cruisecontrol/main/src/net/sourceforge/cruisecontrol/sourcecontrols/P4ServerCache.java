@@ -0,0 +1,165 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.sourcecontrols;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.cruisecontrol.Modification;
+
+/**
+ * Server wide cache of what P4 polls learn about a Perforce server: the email address of each user, the time
+ * offset of the server and the descriptions of submitted changelists. It is shared by all P4 source controls using
+ * the same port and user, so projects watching overlapping views describe each changelist only once.
+ * <p>
+ * Email addresses and the time offset are refreshed once older than the time to live the caller asks for.
+ * Descriptions of submitted changelists don't change, the least recently used ones are only dropped when more than
+ * {@link #MAX_DESCRIPTIONS} are held.
+ */
+final class P4ServerCache {
+
+    static final int MAX_DESCRIPTIONS = 1000;
+
+    private static final Map<String, P4ServerCache> SERVERS = new HashMap<String, P4ServerCache>();
+
+    private final Map<String, Timed<String>> emails = new HashMap<String, Timed<String>>();
+    private Timed<Long> serverTimeOffset;
+    private final Map<String, Modification> descriptions =
+            new LinkedHashMap<String, Modification>(MAX_DESCRIPTIONS / 4, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                protected boolean removeEldestEntry(final Map.Entry<String, Modification> eldest) {
+                    return size() > MAX_DESCRIPTIONS;
+                }
+            };
+
+    P4ServerCache() {
+    }
+
+    /**
+     * @param port the p4 port, null for the default of the environment
+     * @param user the p4 user, null for the default of the environment
+     * @return the cache of the server
+     */
+    static P4ServerCache forServer(final String port, final String user) {
+        final String key = port + "," + user;
+        synchronized (SERVERS) {
+            P4ServerCache cache = SERVERS.get(key);
+            if (cache == null) {
+                cache = new P4ServerCache();
+                SERVERS.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Forgets everything cached of all servers.
+     */
+    static void clearAll() {
+        synchronized (SERVERS) {
+            SERVERS.clear();
+        }
+    }
+
+    /**
+     * @param user p4 user name
+     * @param oldest time in milliseconds before which a cached address is stale
+     * @return true if the address of the user, possibly none, was cached after oldest
+     */
+    synchronized boolean hasEmail(final String user, final long oldest) {
+        final Timed<String> email = emails.get(user);
+        return email != null && email.time >= oldest;
+    }
+
+    /**
+     * @param user p4 user name
+     * @return the cached address of the user, null if none is cached or the user has none
+     */
+    synchronized String getEmail(final String user) {
+        final Timed<String> email = emails.get(user);
+        return email != null ? email.value : null;
+    }
+
+    synchronized void putEmail(final String user, final String email, final long time) {
+        emails.put(user, new Timed<String>(email, time));
+    }
+
+    /**
+     * @param oldest time in milliseconds before which the cached offset is stale
+     * @return the offset of the server time in milliseconds, or null if it is not cached or stale
+     */
+    synchronized Long getServerTimeOffset(final long oldest) {
+        return serverTimeOffset != null && serverTimeOffset.time >= oldest ? serverTimeOffset.value : null;
+    }
+
+    synchronized void putServerTimeOffset(final long offset, final long time) {
+        serverTimeOffset = new Timed<Long>(offset, time);
+    }
+
+    /**
+     * @param changelist changelist number
+     * @return the description of the changelist, in server time, or null if it is not cached. Callers must not
+     * modify it.
+     */
+    synchronized Modification getDescription(final String changelist) {
+        return descriptions.get(changelist);
+    }
+
+    /**
+     * @param description description of a submitted changelist, in server time, which must not be modified once
+     * cached
+     */
+    synchronized void putDescription(final Modification description) {
+        descriptions.put(description.revision, description);
+    }
+
+    synchronized int getDescriptionCount() {
+        return descriptions.size();
+    }
+
+    private static final class Timed<T> {
+        private final T value;
+        private final long time;
+
+        private Timed(final T value, final long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+}
@@ -38,17 +38,21 @@ package net.sourceforge.cruisecontrol.sourcecontrols;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
-import net.sourceforge.cruisecontrol.SourceControl;
+import net.sourceforge.cruisecontrol.ShareableSourceControl;
 import net.sourceforge.cruisecontrol.util.Commandline;
+import net.sourceforge.cruisecontrol.util.DaemonThreadFactory;
 import net.sourceforge.cruisecontrol.util.IO;
 import net.sourceforge.cruisecontrol.util.StreamLogger;
 import net.sourceforge.cruisecontrol.util.Util;
 import net.sourceforge.cruisecontrol.util.ValidationHelper;
 import org.apache.log4j.Logger;
 import org.jdom.Document;
-import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.jdom.input.SAXBuilder;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -56,16 +60,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 
 /**
  * This class implements the SourceControl methods for a Subversion repository.
@@ -79,7 +91,7 @@ import java.util.TimeZone;
  * @see    <a href="http://subversion.tigris.org/">subversion.tigris.org</a>
  * @author <a href="etienne.studer@canoo.com">Etienne Studer</a>
  */
-public class SVN implements SourceControl {
+public class SVN implements ShareableSourceControl {
 
     /** serialVersionUID */
     private static final long serialVersionUID = -144583234813298598L;
@@ -92,6 +104,9 @@ public class SVN implements SourceControl {
     /** Date format returned by Subversion in XML output */
     private static final String SVN_DATE_FORMAT_OUT = "yyyy-MM-dd'T'HH:mm:ss.SSS";
 
+    /** Default number of externals whose history is queried at once */
+    private static final int DEFAULT_THREADS = 4;
+
     private final SourceControlProperties properties = new SourceControlProperties();
 
     /** Configuration parameters */
@@ -103,11 +118,23 @@ public class SVN implements SourceControl {
     private boolean checkExternals = false;
 
     private boolean useLocalRevision = false;
+    private int threads = DEFAULT_THREADS;
+
+    // poll state rather than configuration: the revisions seen per URL since the last build,
+    // and the externals until a property changes
+    private transient Date intervalStart;
+    private transient Map<String, History> histories;
+    private transient HashMap<String, List<String[]>> externals;
 
     public Map<String, String> getProperties() {
         return properties.getPropertiesAndReset();
     }
 
+    public String getQueryKey() {
+        return repositoryLocation + ";" + localWorkingCopy + ";" + userName + ";" + configDir + ";" + checkExternals
+                + ";" + useLocalRevision + ";" + properties.getPropertyNames();
+    }
+
     public void setProperty(String property) {
         properties.assignPropertyName(property);
     }
@@ -133,6 +160,16 @@ public class SVN implements SourceControl {
         checkExternals = value;
     }
 
+    /**
+     * Sets how many externals have their history queried at once when
+     * externals are checked.
+     *
+     * @param threads number of concurrent svn log commands, at least 1
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     /**
      * Sets the repository location to use when making calls to Subversion.
      *
@@ -188,83 +225,184 @@ public class SVN implements SourceControl {
                     "'localWorkingCopy' must be an existing directory. Was "
                     + workingDir.getAbsolutePath());
         }
+        ValidationHelper.assertTrue(threads > 0, "'threads' must be at least 1 on the Subversion task");
     }
 
     /**
      * Returns a list of modifications detailing all the changes between
      * the last build and the latest revision in the repository.
+     *
+     * The last revision seen of each URL is remembered until the next build,
+     * so after the first poll only the revisions past it are logged.
      * @return the list of modifications, or an empty list if we failed
      * to retrieve the changes.
      */
     public List<Modification> getModifications(final Date lastBuild, final Date now) {
-        HashMap<String, List<String[]>> directories = new HashMap<String, List<String[]>>();
-        Commandline propCommand = new Commandline();
+        if (!lastBuild.equals(intervalStart)) {
+            // a build happened, the revisions seen so far are no longer modifications
+            intervalStart = lastBuild;
+            histories = new HashMap<String, History>();
+        }
+
+        final List<Modification> modifications = new ArrayList<Modification>();
+        final History root = getHistory(null, null);
+        final HistoryQuery rootQuery;
+        try {
+            // always check the root
+            rootQuery = new HistoryQuery(root, lastBuild, getEndRevision(null, now));
+        } catch (CruiseControlException e) {
+            LOG.error("Error building history command", e);
+            return modifications;
+        }
+        modifications.addAll(rootQuery.call());
+
         // the propget command can be pretty expensive on large projects
-        // so only execute if the checkExternals flag is set in the config
+        // so only execute if the checkExternals flag is set in the config,
+        // and again only once a property changed in the root
         if (checkExternals) {
-            try {
-                propCommand = buildPropgetCommand();
-            } catch (CruiseControlException e) {
-                LOG.error("Error building history command", e);
+            if (externals == null || rootQuery.propertiesChanged) {
+                externals = readExternals(externals);
             }
-            try {
-                directories = execPropgetCommand(propCommand);
-            } catch (Exception e) {
-                LOG.error("Error executing svn propget command " + propCommand, e);
+            if (externals != null) {
+                modifications.addAll(getExternalModifications(lastBuild, now));
             }
         }
+        fillPropertiesIfNeeded(modifications);
+        return modifications;
+    }
 
-        final List<Modification> modifications = new ArrayList<Modification>();
-        Commandline command;
+    private String getEndRevision(final String path, final Date now) throws CruiseControlException {
+        if (useLocalRevision) {
+            return execInfoCommand(buildInfoCommand(path));
+        } else {
+            return formatSVNDate(now);
+        }
+    }
 
-        final HashMap<Commandline, String> commandsAndPaths = new HashMap<Commandline, String>();
-        try {
-            // always check the root
-            final String startRevision = formatSVNDate(lastBuild);
-            String endRevision;
-            if (useLocalRevision) {
-                endRevision = execInfoCommand(buildInfoCommand(null));
-            } else {
-                endRevision = formatSVNDate(now);
+    private synchronized History getHistory(final String svnURL, final String externalPath) {
+        final String key = externalPath + "@" + svnURL;
+        History history = histories.get(key);
+        if (history == null) {
+            history = new History(svnURL, externalPath);
+            histories.put(key, history);
+        }
+        return history;
+    }
+
+    /**
+     * Queries the history of all externals, at most {@link #setThreads(int)} of them at once.
+     */
+    private List<Modification> getExternalModifications(final Date lastBuild, final Date now) {
+        final List<HistoryQuery> queries = new ArrayList<HistoryQuery>();
+        for (final Map.Entry<String, List<String[]>> directory : externals.entrySet()) {
+            final String endRevision;
+            try {
+                endRevision = getEndRevision(directory.getKey(), now);
+            } catch (CruiseControlException e) {
+                LOG.error("Error building history command for externals of " + directory.getKey(), e);
+                continue;
             }
-            command = buildHistoryCommand(startRevision, endRevision);
-            commandsAndPaths.put(command, null);
-            for (final String directory : directories.keySet()) {
-                if (useLocalRevision) {
-                    endRevision = execInfoCommand(buildInfoCommand(directory));
-                } else {
-                    endRevision = formatSVNDate(now);
-                }
-                for (final String[] external : directories.get(directory)) {
-                    final String path = directory + "/" + external[0];
-                    final String svnURL = external[1];
-                    if (repositoryLocation != null) {
-                        command = buildHistoryCommand(startRevision, endRevision, svnURL);
-                        commandsAndPaths.put(command, null);
-                    } else {
-                        command = buildHistoryCommand(startRevision, endRevision, svnURL);
-                        commandsAndPaths.put(command, path);
-                    }
-                }
+            for (final String[] external : directory.getValue()) {
+                final String path = directory.getKey() + "/" + external[0];
+                final String svnURL = external[1];
+                final History history = getHistory(svnURL, repositoryLocation != null ? null : path);
+                queries.add(new HistoryQuery(history, lastBuild, endRevision));
             }
-        } catch (CruiseControlException e) {
-            LOG.error("Error building history command", e);
+        }
+
+        final List<Modification> modifications = new ArrayList<Modification>();
+        if (queries.isEmpty()) {
             return modifications;
         }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, queries.size()),
+                new DaemonThreadFactory("SVN externals"));
         try {
-            for (final Commandline commandline : commandsAndPaths.keySet()) {
-                command = commandline;
-                final String path = commandsAndPaths.get(command);
-                modifications.addAll(execHistoryCommand(
-                        command, lastBuild, path));
+            for (final Future<List<Modification>> result : executor.invokeAll(queries)) {
+                modifications.addAll(result.get());
             }
-        } catch (Exception e) {
-            LOG.error("Error executing svn log command " + command, e);
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while checking externals for modifications");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Error checking externals for modifications", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
-        fillPropertiesIfNeeded(modifications);
         return modifications;
     }
 
+    /**
+     * Logs the revisions of one URL past those already seen.
+     */
+    private final class HistoryQuery implements Callable<List<Modification>> {
+        private final History history;
+        private final Date lastBuild;
+        private final String endRevision;
+        private boolean propertiesChanged;
+
+        private HistoryQuery(final History history, final Date lastBuild, final String endRevision) {
+            this.history = history;
+            this.lastBuild = lastBuild;
+            this.endRevision = endRevision;
+        }
+
+        public List<Modification> call() {
+            Commandline command = null;
+            try {
+                command = buildHistoryCommand(history.getStartRevision(lastBuild), endRevision, history.svnURL);
+                propertiesChanged = history.update(execHistoryCommand(command, history.externalPath), lastBuild);
+            } catch (Exception e) {
+                LOG.error("Error executing svn log command " + command, e);
+            }
+            return history.getModifications();
+        }
+    }
+
+    /**
+     * The modifications of one URL seen since the last build, and the
+     * last revision logged for it.
+     */
+    private static final class History implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String svnURL;
+        private final String externalPath;
+        private final List<Modification> modifications = new ArrayList<Modification>();
+        private long lastRevision = -1;
+
+        private History(final String svnURL, final String externalPath) {
+            this.svnURL = svnURL;
+            this.externalPath = externalPath;
+        }
+
+        /**
+         * The last revision seen is logged again rather than starting past it,
+         * which svn would refuse when that is already the latest revision.
+         */
+        private synchronized String getStartRevision(final Date lastBuild) {
+            return lastRevision < 0 ? formatSVNDate(lastBuild) : String.valueOf(lastRevision);
+        }
+
+        /**
+         * @return true if a property changed in a revision not seen before
+         */
+        private synchronized boolean update(final SVNLogXMLParser.LogHandler log, final Date lastBuild) {
+            final boolean propertiesChanged = log.getLastPropertyChange() > lastRevision;
+            for (final Modification modification
+                    : SVNLogXMLParser.filterModifications(log.getModifications(), lastBuild)) {
+                if (Long.parseLong(modification.revision) > lastRevision) {
+                    modifications.add(modification);
+                }
+            }
+            lastRevision = Math.max(lastRevision, log.getLastRevision());
+            return propertiesChanged;
+        }
+
+        private synchronized List<Modification> getModifications() {
+            return new ArrayList<Modification>(modifications);
+        }
+    }
+
     /**
      * Generates the command line for the svn propget command.
      *
@@ -383,7 +521,28 @@ public class SVN implements SourceControl {
         }
     }
 
-    private static HashMap<String, List<String[]>> execPropgetCommand(Commandline command)
+    /**
+     * Reads the svn:externals definitions.
+     * @param previous externals read before
+     * @return the externals, or the previous ones if they could not be read
+     */
+    private HashMap<String, List<String[]>> readExternals(final HashMap<String, List<String[]>> previous) {
+        final Commandline propCommand;
+        try {
+            propCommand = buildPropgetCommand();
+        } catch (CruiseControlException e) {
+            LOG.error("Error building propget command", e);
+            return previous;
+        }
+        try {
+            return execPropgetCommand(propCommand);
+        } catch (Exception e) {
+            LOG.error("Error executing svn propget command " + propCommand, e);
+            return previous;
+        }
+    }
+
+    HashMap<String, List<String[]>> execPropgetCommand(final Commandline command)
         throws InterruptedException, IOException {
 
         final Process p = command.execute();
@@ -435,8 +594,7 @@ public class SVN implements SourceControl {
         }
     }
 
-    private static List<Modification> execHistoryCommand(final Commandline command, final Date lastBuild,
-                                    final String externalPath)
+    SVNLogXMLParser.LogHandler execHistoryCommand(final Commandline command, final String externalPath)
         throws InterruptedException, IOException, ParseException, JDOMException {
 
         final Process p = command.execute();
@@ -444,9 +602,9 @@ public class SVN implements SourceControl {
         final Thread stderr = logErrorStream(p);
         final InputStreamReader reader = new InputStreamReader(p.getInputStream(), "UTF-8");
 
-        final List<Modification> modifications;
+        final SVNLogXMLParser.LogHandler log;
         try {
-            modifications = SVNLogXMLParser.parseAndFilter(reader, lastBuild, externalPath);
+            log = SVNLogXMLParser.parseLog(reader, externalPath);
 
             p.waitFor();
             stderr.join();
@@ -455,10 +613,10 @@ public class SVN implements SourceControl {
             IO.close(p);
         }
 
-        return modifications;
+        return log;
     }
 
-    private String execInfoCommand(final Commandline command) throws CruiseControlException {
+    String execInfoCommand(final Commandline command) throws CruiseControlException {
         try {
             final Process p = command.execute();
 
@@ -551,61 +709,137 @@ public class SVN implements SourceControl {
 
         static Modification[] parse(Reader reader, String externalPath)
                 throws ParseException, JDOMException, IOException {
-
-            SAXBuilder builder = new SAXBuilder(false);
-            Document document = builder.build(reader);
-            return parseDOMTree(document, externalPath);
+            return parseLog(reader, externalPath).getModifications();
         }
 
-        static Modification[] parseDOMTree(final Document document, final String externalPath)
-                throws ParseException {
+        /**
+         * Parses the log as it is read, so even a huge verbose log never has
+         * to be held as a document.
+         */
+        static LogHandler parseLog(final Reader reader, final String externalPath)
+                throws ParseException, JDOMException, IOException {
 
-            final List<Modification> modifications = new ArrayList<Modification>();
+            final LogHandler handler = new LogHandler(externalPath);
+            try {
+                SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(reader), handler);
+            } catch (ParserConfigurationException e) {
+                throw new JDOMException(e.getMessage(), e);
+            } catch (SAXException e) {
+                if (e.getException() instanceof ParseException) {
+                    throw (ParseException) e.getException();
+                }
+                throw new JDOMException(e.getMessage(), e);
+            }
+            return handler;
+        }
 
-            final Element rootElement = document.getRootElement();
-            final List logEntries = rootElement.getChildren("logentry");
-            for (final Object logEntry1 : logEntries) {
-                final Element logEntry = (Element) logEntry1;
+        /**
+         * Turns each logentry into one modification per changed path, and
+         * remembers the last revision logged and the last one changing a property.
+         */
+        static final class LogHandler extends DefaultHandler {
+            private static final int LOGENTRY_DEPTH = 2;
+            private static final int PATH_DEPTH = 4;
+
+            private final String externalPath;
+            private final List<Modification> modifications = new ArrayList<Modification>();
+            private final List<String[]> paths = new ArrayList<String[]>();
+            private final StringBuilder text = new StringBuilder();
+            private int depth;
+            private String revision;
+            private String author;
+            private String date;
+            private String msg;
+            private String action;
+            private long lastRevision = -1;
+            private long lastPropertyChange = -1;
+
+            private LogHandler(final String externalPath) {
+                this.externalPath = externalPath;
+            }
 
-                final Modification[] modificationsOfRevision =
-                        parseLogEntry(logEntry, externalPath);
-                modifications.addAll(Arrays.asList(modificationsOfRevision));
+            Modification[] getModifications() {
+                return modifications.toArray(new Modification[modifications.size()]);
             }
 
-            return modifications.toArray(new Modification[modifications.size()]);
-        }
+            long getLastRevision() {
+                return lastRevision;
+            }
 
-        static Modification[] parseLogEntry(final Element logEntry, final String externalPath)
-                throws ParseException {
+            /**
+             * Clients before 1.7 do not tell property from text changes, any
+             * change counts then.
+             */
+            long getLastPropertyChange() {
+                return lastPropertyChange;
+            }
+
+            public void startElement(final String uri, final String localName, final String qName,
+                                     final Attributes attributes) {
+                depth++;
+                text.setLength(0);
+                if (depth == LOGENTRY_DEPTH && qName.equals("logentry")) {
+                    revision = attributes.getValue("revision");
+                    author = null;
+                    date = null;
+                    msg = null;
+                    paths.clear();
+                } else if (depth == PATH_DEPTH && qName.equals("path")) {
+                    action = attributes.getValue("action");
+                    final String propMods = attributes.getValue("prop-mods");
+                    if (propMods == null || propMods.equals("true")) {
+                        lastPropertyChange = Math.max(lastPropertyChange, Long.parseLong(revision));
+                    }
+                }
+            }
 
-            final List<Modification> modifications = new ArrayList<Modification>();
+            public void characters(final char[] ch, final int start, final int length) {
+                text.append(ch, start, length);
+            }
 
-            final Element logEntryPaths = logEntry.getChild("paths");
-            if (logEntryPaths != null) {
-                final List paths = logEntryPaths.getChildren("path");
-                for (final Object path1 : paths) {
-                    Element path = (Element) path1;
+            public void endElement(final String uri, final String localName, final String qName)
+                    throws SAXException {
+                if (depth == LOGENTRY_DEPTH + 1) {
+                    if (qName.equals("author")) {
+                        author = text.toString();
+                    } else if (qName.equals("date")) {
+                        date = text.toString();
+                    } else if (qName.equals("msg")) {
+                        msg = text.toString();
+                    }
+                } else if (depth == PATH_DEPTH && qName.equals("path")) {
+                    paths.add(new String[] {action, text.toString()});
+                } else if (depth == LOGENTRY_DEPTH && qName.equals("logentry")) {
+                    lastRevision = Math.max(lastRevision, Long.parseLong(revision));
+                    try {
+                        endLogEntry();
+                    } catch (ParseException e) {
+                        throw new SAXException(e);
+                    }
+                }
+                depth--;
+            }
 
-                    Modification modification = new Modification("svn");
+            private void endLogEntry() throws ParseException {
+                for (final String[] path : paths) {
+                    final Modification modification = new Modification("svn");
 
-                    modification.modifiedTime = convertDate(logEntry.getChildText("date"));
-                    modification.userName = logEntry.getChildText("author");
-                    modification.comment = logEntry.getChildText("msg");
-                    modification.revision = logEntry.getAttributeValue("revision");
+                    modification.modifiedTime = convertDate(date);
+                    modification.userName = author;
+                    modification.comment = msg;
+                    modification.revision = revision;
 
-                    Modification.ModifiedFile modfile = modification.createModifiedFile(path.getText(), null);
+                    final Modification.ModifiedFile modfile = modification.createModifiedFile(path[1], null);
                     // modfile.folderName seems to add too many /'s
                     if (externalPath != null) {
                         modfile.fileName = "/" + externalPath + ":" + modfile.fileName;
                     }
-                    modfile.action = convertAction(path.getAttributeValue("action"));
+                    modfile.action = convertAction(path[0]);
                     modfile.revision = modification.revision;
 
                     modifications.add(modification);
                 }
             }
-
-            return modifications.toArray(new Modification[modifications.size()]);
         }
 
         /**
@@ -19,6 +19,13 @@ public class SourceControlProperties implements Serializable {
         return lvalue;
     }
 
+    /**
+     * @return the names of the properties set when modifications or deletions are found
+     */
+    public String getPropertyNames() {
+        return property + "," + propertyOnDelete;
+    }
+
     public void assignPropertyName(String propertyName) {
         property = propertyName;
     }
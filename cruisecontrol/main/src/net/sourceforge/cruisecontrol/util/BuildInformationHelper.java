@@ -19,6 +19,8 @@ public class BuildInformationHelper {
             xStream.aliasField("username", Modification.class, "userName");
             xStream.omitField(BuildLoopInformation.class, "controller");
             xStream.omitField(BuildLoopInformation.class, "xstream");
+            // reports of newer build loops may carry fields this version doesn't know about
+            xStream.ignoreUnknownElements();
         }
     }
 
@@ -38,13 +38,17 @@ package net.sourceforge.cruisecontrol.util;
 
 import net.sourceforge.cruisecontrol.LiveOutputReader;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.PrintStream;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.util.List;
 import java.util.ArrayList;
@@ -52,12 +56,25 @@ import java.util.ArrayList;
 /**
  * Log all consumed lines to a file, and also provide methods to read lines from that file.
  * Can be used to log all sysout and syserr to a file.
+ * <p>
+ * The file stays open and is written through a buffer until the logger is cleared. The offsets of the lines in the
+ * file are indexed as the file grows, so reading from a given line seeks straight to it. Lines are stored in UTF-8,
+ * so the bytes returned by {@link #retrieveBytes(long)} mean the same to readers on other machines.
  */
 public class BuildOutputLogger implements StreamConsumer, LiveOutputReader, Serializable {
 
     private static final long serialVersionUID = -1594678930828433470L;
 
     public static final int MAX_LINES = 1000;
+
+    /** Most bytes returned by one call to {@link #retrieveBytes(long)}. */
+    public static final int MAX_BYTES = 64 * 1024;
+
+    private static final String ENCODING = "UTF-8";
+
+    /** Longest time in milliseconds consumed lines are held in the write buffer while more lines arrive. */
+    static final long FLUSH_INTERVAL = 1000;
+
     private final File data;
 
     /** A unique (for this VM) identifying string for this logger instance. */
@@ -65,13 +82,26 @@ public class BuildOutputLogger implements StreamConsumer, LiveOutputReader, Seri
     /** Counter used to change the id after data reset. */
     private long resetCount;
 
+    private transient BufferedWriter out;
+    private transient long lastFlush;
+
+    /** Offsets in the data file where lines start; the last one may be the end of the file. */
+    private transient long[] lineOffsets;
+    private transient int lineCount;
+    /** Number of bytes at the start of the data file already scanned for lines. */
+    private transient long indexedLength;
+    /** True if the last byte scanned was a carriage return, which may be followed by a line feed. */
+    private transient boolean indexedCarriageReturn;
+
     public BuildOutputLogger(File outputFile) {
         data = outputFile;
         // use parent hashCode(), as this class overrides and is not unique per instance.
         id = "" + super.hashCode();
     }
 
-    public void clear() {
+    public synchronized void clear() {
+        close();
+        lineOffsets = null;
         if (noDataFile()) { return; }
         data.delete();
 
@@ -85,14 +115,36 @@ public class BuildOutputLogger implements StreamConsumer, LiveOutputReader, Seri
         if (data == null) { throw new RuntimeException("No log file specified"); }
 
         try {
-            final PrintStream out = new PrintStream(new FileOutputStream(data, true));
+            if (out == null) {
+                out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(data, true), ENCODING));
+                lastFlush = System.currentTimeMillis();
+            }
+            out.write(line);
+            out.newLine();
+            if (System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL) {
+                flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+            lastFlush = System.currentTimeMillis();
+        }
+    }
+
+    private void close() {
+        if (out != null) {
             try {
-                out.println(line);
-            } finally {
                 out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            out = null;
         }
     }
 
@@ -117,13 +169,56 @@ public class BuildOutputLogger implements StreamConsumer, LiveOutputReader, Seri
      * firstLine parameter set back to zero. This will allow the client to live output when the output logger is
      * changed during a build.
      */
-    public String[] retrieveLines(final int firstLine) {
+    public synchronized String[] retrieveLines(final int firstLine) {
         if (noDataFile()) { return new String[0]; }
         final List<String> lines = loadFile(firstLine);
         return lines.toArray(new String[lines.size()]);
     }
 
 
+    /**
+     * @param offset position in the data file to read from.
+     * @return The UTF-8 encoded output from offset up to MAX_BYTES, ending after the last complete line, or an
+     * empty array if no complete line follows offset. As with {@link #retrieveLines(int)} the client should hold
+     * the value of {@link #getID()} and start again from offset zero if it changes.
+     */
+    public synchronized byte[] retrieveBytes(final long offset) {
+        if (noDataFile()) { return new byte[0]; }
+        try {
+            flush();
+            final long start = Math.max(offset, 0);
+            final long length = data.length();
+            if (start >= length) {
+                return new byte[0];
+            }
+            final byte[] buffer = new byte[(int) Math.min(MAX_BYTES, length - start)];
+            final RandomAccessFile file = new RandomAccessFile(data, "r");
+            try {
+                file.seek(start);
+                file.readFully(buffer);
+            } finally {
+                file.close();
+            }
+
+            int end = buffer.length;
+            while (end > 0 && buffer[end - 1] != '\n') {
+                end--;
+            }
+            if (end == 0) {
+                // a line longer than MAX_BYTES is handed out in pieces, an unfinished last line not at all
+                end = start + buffer.length < length ? buffer.length : 0;
+            }
+            if (end == buffer.length) {
+                return buffer;
+            }
+            final byte[] lines = new byte[end];
+            System.arraycopy(buffer, 0, lines, 0, end);
+            return lines;
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
     /**
      * @return true if a data output file has been specified.
      */
@@ -139,30 +234,94 @@ public class BuildOutputLogger implements StreamConsumer, LiveOutputReader, Seri
 
     private List<String> loadFile(final int firstLine) {
         try {
-            final BufferedReader reader = new BufferedReader(new FileReader(data));
+            flush();
+            final int availableLines = indexLines();
+            final int startLine = Math.max(firstLine, 0);
+            if (startLine >= availableLines) {
+                return new ArrayList<String>();
+            }
+            final FileInputStream input = new FileInputStream(data);
             try {
-                skipLines(reader, firstLine);
-                return readUptoMaxLines(reader);
+                input.getChannel().position(lineOffsets[startLine]);
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(input, ENCODING));
+                return readUptoMaxLines(reader, Math.min(MAX_LINES, availableLines - startLine));
             } finally {
-                reader.close();
+                input.close();
             }
         } catch (IOException e) {
             return new ArrayList<String>();
         }
     }
 
-    private List<String> readUptoMaxLines(BufferedReader reader) throws IOException {
+    private List<String> readUptoMaxLines(final BufferedReader reader, final int maxLines) throws IOException {
         List<String> result = new ArrayList<String>();
         String line = reader.readLine();
-        while (line != null && result.size() < MAX_LINES) {
+        while (line != null && result.size() < maxLines) {
             result.add(line);
-            line = reader.readLine();
+            line = result.size() < maxLines ? reader.readLine() : null;
         }
         return result;
     }
 
-    private void skipLines(final BufferedReader inFile, final int numToSkip) throws IOException {
-        for (int i = 0; i < numToSkip; i++) { inFile.readLine(); }
+    /**
+     * Scans the part of the data file written since the last call for line starts. Lines end with a line feed,
+     * a carriage return, or a carriage return followed by a line feed, as for {@link BufferedReader#readLine()}.
+     * @return number of lines in the data file
+     * @throws IOException if the data file can't be read
+     */
+    private int indexLines() throws IOException {
+        final long length = data.length();
+        if (lineOffsets == null || length < indexedLength) {
+            // first scan, or the file was replaced since the last scan
+            lineOffsets = new long[MAX_LINES];
+            lineCount = 0;
+            indexedLength = 0;
+            indexedCarriageReturn = false;
+        }
+
+        if (length > indexedLength) {
+            final FileInputStream file = new FileInputStream(data);
+            try {
+                file.getChannel().position(indexedLength);
+                final InputStream input = new BufferedInputStream(file);
+                long position = indexedLength;
+                if (position == 0) {
+                    addLineOffset(0);
+                }
+                while (position < length) {
+                    final int next = input.read();
+                    if (next == -1) {
+                        break;
+                    }
+                    position++;
+                    if (next == '\n' && indexedCarriageReturn) {
+                        // the line started after the carriage return really starts after this line feed
+                        lineOffsets[lineCount - 1] = position;
+                    } else if (next == '\n' || next == '\r') {
+                        addLineOffset(position);
+                    }
+                    indexedCarriageReturn = next == '\r';
+                }
+                indexedLength = position;
+            } finally {
+                file.close();
+            }
+        }
+
+        if (lineCount > 0 && lineOffsets[lineCount - 1] >= indexedLength) {
+            // nothing has been written after the last line end yet
+            return lineCount - 1;
+        }
+        return lineCount;
+    }
+
+    private void addLineOffset(final long offset) {
+        if (lineCount == lineOffsets.length) {
+            final long[] grown = new long[lineOffsets.length * 2];
+            System.arraycopy(lineOffsets, 0, grown, 0, lineCount);
+            lineOffsets = grown;
+        }
+        lineOffsets[lineCount++] = offset;
     }
 
     private boolean noDataFile() {
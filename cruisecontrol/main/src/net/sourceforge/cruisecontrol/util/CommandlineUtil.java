@@ -39,7 +39,7 @@ public final class CommandlineUtil {
             Process p = command.execute();
             WarningConsumer consumer = new WarningConsumer(LOG);
             StreamPumper errorPumper = new StreamPumper(p.getErrorStream(), consumer);
-            new Thread(errorPumper).start();
+            ProcessIO.pump(errorPumper);
             return new ProcessStreamWrapper(p);
         } catch (Exception e) {
             LOG.error("Error in executing the command : ", e);
@@ -64,6 +64,17 @@ public final class GZippedStdoutBuffer extends StdoutBuffer {
       super(log);
   } // GZippedStdoutBuffer
 
+  /**
+   * Constructor.
+   * @param log the instance of logger through which to log.
+   * @param chunkSize the size of one buffer item chunk, see {@link StdoutBuffer#StdoutBuffer(Logger, int, long)}.
+   * @param memoryLimit the maximum number of bytes kept in memory, see
+   *        {@link StdoutBuffer#StdoutBuffer(Logger, int, long)}.
+   */
+  public GZippedStdoutBuffer(Logger log, int chunkSize, long memoryLimit) {
+      super(log, chunkSize, memoryLimit);
+  } // GZippedStdoutBuffer
+
   /*
    * ----------- PROTECTED BLOCK -----------
    */
@@ -141,11 +152,12 @@ public final class GZippedStdoutBuffer extends StdoutBuffer {
     } // available
 
     /**
-     * Implementation of {@link InputStream#close()} 
+     * Implementation of {@link InputStream#close()}; closes the stream directly when nothing was read,
+     * without waiting for the header
      */
     @Override
     public final void close() throws IOException {
-        instantiate().close();
+        stream.close();
     } // close
 
     /**
@@ -0,0 +1,198 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Conditional and range request handling shared by the servlets and views that send files over HTTP. Everything
+ * works on the plain header values, so the servlet API is not needed here; the callers read the request headers
+ * and write the response.
+ */
+public final class HttpFileTransfer {
+
+    /** The date formats HTTP/1.1 requires a server to accept: RFC 1123, RFC 850 and asctime. */
+    private static final String[] DATE_FORMATS = {
+        "EEE, dd MMM yyyy HH:mm:ss zzz", "EEEE, dd-MMM-yy HH:mm:ss zzz", "EEE MMM d HH:mm:ss yyyy"
+    };
+
+    private HttpFileTransfer() {
+    }
+
+    /**
+     * @param length length of the file
+     * @param lastModified modification time of the file
+     * @param variant appended to tell different representations of the same file apart, may be <code>null</code>
+     * @return a strong entity tag for the file
+     */
+    public static String getETag(final long length, final long lastModified, final String variant) {
+        return '"' + Long.toHexString(length) + '-' + Long.toHexString(lastModified)
+                + (variant == null ? "" : '-' + variant) + '"';
+    }
+
+    /**
+     * @param ifNoneMatch value of the If-None-Match header, may be <code>null</code>
+     * @param ifModifiedSince value of the If-Modified-Since header, may be <code>null</code>
+     * @param etag entity tag of the file
+     * @param lastModified modification time of the file
+     * @return <code>true</code> if the client's copy is current and 304 should be answered
+     */
+    public static boolean isNotModified(final String ifNoneMatch, final String ifModifiedSince, final String etag,
+                                        final long lastModified) {
+        if (ifNoneMatch != null) {
+            return "*".equals(ifNoneMatch.trim()) || ifNoneMatch.indexOf(etag) >= 0;
+        }
+        final long since = parseDate(ifModifiedSince);
+        return since >= 0 && lastModified / 1000 <= since / 1000;
+    }
+
+    /**
+     * A range request is only honoured if an If-Range condition, when given, still holds.
+     * @param ifRange value of the If-Range header, may be <code>null</code>
+     * @param etag entity tag of the file
+     * @param lastModified modification time of the file
+     * @return <code>true</code> if the Range header may be used
+     */
+    public static boolean isRangeValid(final String ifRange, final String etag, final long lastModified) {
+        if (ifRange == null || ifRange.equals(etag)) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return false;
+        }
+        final long date = parseDate(ifRange);
+        return date >= 0 && date / 1000 == lastModified / 1000;
+    }
+
+    /**
+     * @param value an HTTP date, may be <code>null</code>
+     * @return the date in milliseconds, -1 if there is none or it can not be parsed
+     */
+    public static long parseDate(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        for (final String pattern : DATE_FORMATS) {
+            // SimpleDateFormat is not thread-safe, these headers are rare enough to create one per call
+            final SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try {
+                return format.parse(value.trim()).getTime();
+            } catch (ParseException notThisFormat) {
+                // try the next one
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a Range header. Only a single byte range is supported, for anything else the whole file is sent,
+     * which HTTP permits.
+     *
+     * @param header the Range header, may be <code>null</code>
+     * @param length length of the file
+     * @return the first and last byte of the range, <code>null</code> to send the whole file or an empty array if
+     *         the range can not be satisfied
+     */
+    public static long[] parseRange(final String header, final long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        final String spec = header.substring("bytes=".length()).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        final long start;
+        final long end;
+        try {
+            if (dash == 0) {
+                start = Math.max(0, length - Long.parseLong(spec.substring(1)));
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+            }
+        } catch (NumberFormatException badRange) {
+            return null;
+        }
+        if (start >= length) {
+            return new long[0];
+        }
+        if (end < start) {
+            return null;
+        }
+        return new long[] {start, Math.min(end, length - 1)};
+    }
+
+    /**
+     * Copies part of a file by handing it to the file channel instead of going through a stream buffer.
+     * @param file the file to send
+     * @param start first byte to write
+     * @param length number of bytes to write
+     * @param out where to write the bytes to, flushed but not closed
+     * @throws IOException if the file can not be read or the stream written
+     */
+    public static void transfer(final File file, final long start, final long length, final OutputStream out)
+            throws IOException {
+        final FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            final WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            final long end = start + length;
+            long transferred = 1;
+            // stops early if the file was truncated while it was being sent
+            while (position < end && transferred > 0) {
+                transferred = channel.transferTo(position, end - position, target);
+                position += transferred;
+            }
+        } finally {
+            channel.close();
+            out.flush();
+        }
+    }
+}
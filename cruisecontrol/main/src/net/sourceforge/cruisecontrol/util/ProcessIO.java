@@ -0,0 +1,118 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Threads shared by all external processes: a pool that pumps their streams and a single scheduler for their
+ * timeouts. Process streams can only be read with blocking I/O, so each stream still needs a thread while it is
+ * read; the pool keeps those threads around between processes instead of starting new ones for every command.
+ */
+public final class ProcessIO {
+    private static final Logger LOG = Logger.getLogger(ProcessIO.class);
+
+    /** Idle pumping threads are ended after this many seconds. */
+    static final long KEEP_ALIVE = 60L;
+
+    // Unbounded, as a stream that is not pumped can block its process
+    private static final ExecutorService PUMPS = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new DaemonThreadFactory("Process I/O"));
+
+    private static final ScheduledThreadPoolExecutor TIMEOUTS =
+            new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("Process timeout"));
+
+    private ProcessIO() {
+        //utility methods only.
+    }
+
+    /**
+     * Runs a pumper on one of the shared threads.
+     * @param pumper typically a {@link StreamPumper}
+     * @return the future to pass to {@link #waitFor(Future)}
+     */
+    public static Future<Boolean> pump(final Runnable pumper) {
+        return PUMPS.submit(pumper, Boolean.TRUE);
+    }
+
+    /**
+     * Waits until a pumper started by {@link #pump(Runnable)} has finished.
+     * @param pumping the future returned by {@link #pump(Runnable)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void waitFor(final Future<Boolean> pumping) throws InterruptedException {
+        try {
+            pumping.get();
+        } catch (ExecutionException e) {
+            LOG.error("Problem pumping process stream", e.getCause());
+        } catch (CancellationException e) {
+            LOG.debug("Pumping process stream was cancelled");
+        }
+    }
+
+    /**
+     * Runs a task once, after the given delay, on the shared timeout thread. The task must be short, typically it
+     * just destroys a process that ran too long.
+     * @param task the task to run
+     * @param seconds delay before running it
+     * @return the future to pass to {@link #cancel(Future)} once the task is no longer needed
+     */
+    public static Future<Boolean> schedule(final Runnable task, final long seconds) {
+        return TIMEOUTS.schedule(Executors.callable(task, Boolean.TRUE), seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Cancels a task started by {@link #schedule(Runnable, long)} unless it already ran, and drops it from the
+     * scheduler right away rather than when it would have been due.
+     * @param scheduled the future returned by {@link #schedule(Runnable, long)}
+     */
+    public static void cancel(final Future<Boolean> scheduled) {
+        if (scheduled.cancel(false)) {
+            TIMEOUTS.purge();
+        }
+    }
+}
@@ -37,6 +37,8 @@
 package net.sourceforge.cruisecontrol.util;
 
 import java.io.IOException;
+import java.util.concurrent.Future;
+
 import org.apache.log4j.Logger;
 
 /**
@@ -61,7 +63,7 @@ public final class Processes {
     public static Process execute(Commandline c) throws IOException {
         Process p = runtime.exec(c);
         StreamPumper errorPumper = StreamLogger.getWarnPumper(LOG, p);
-        new Thread(errorPumper, "ProcessThread_" + c.getExecutable()).start();
+        ProcessIO.pump(errorPumper);
         return p;
     }
 
@@ -87,13 +89,12 @@ public final class Processes {
             throws IOException, InterruptedException {
         proc.getOutputStream().close();
 
-        Thread stderr = new Thread(new StreamPumper(proc.getErrorStream(), error));
-        stderr.start();
+        Future<Boolean> stderr = ProcessIO.pump(new StreamPumper(proc.getErrorStream(), error));
 
         new StreamPumper(proc.getInputStream(), output).run();
 
         int exitValue = proc.waitFor();
-        stderr.join();
+        ProcessIO.waitFor(stderr);
         return exitValue;
     }
 
@@ -39,10 +39,14 @@
 package net.sourceforge.cruisecontrol.util;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.LinkedList;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -53,6 +57,11 @@ import org.apache.log4j.Logger;
  * and provides it to multiple readers as {@link InputStream} (see {@link StdoutBuffer#getContent()}).
  * The buffer can be read as many times as required.
  * <p/>
+ * Only a limited amount of the data is kept in memory (see {@link #StdoutBuffer(Logger, int, long)});
+ * when the limit is exceeded, the oldest chunks are moved to a temporary file and read back from there
+ * when a reader gets to them. The file is deleted by {@link #release()}, once all readers are closed, or at the
+ * latest when the buffer is garbage collected.
+ * <p/>
  * The {@link StdoutBuffer} filling and {@link StdoutBuffer#getContent()} stream reading operations are
  * thread safe. However the individual methods of {@link StdoutBuffer} and {@link StdoutBuffer#getContent()}
  * instance are not (they are supposed to be called within one thread)!
@@ -63,15 +72,40 @@ public class StdoutBuffer extends OutputStream {
 
     static final String MSG_READER_ALREADY_CLOSED = "Reader already closed";
 
+    /** The default size of one buffer item chunk, in bytes. */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+    /** The default number of bytes kept in memory before the chunks are spilled to disk. */
+    public static final long DEFAULT_MEMORY_LIMIT = 16 * 1024 * 1024;
+
     /**
-   * Constructor.
+   * Constructor. Uses {@link #DEFAULT_CHUNK_SIZE} and {@link #DEFAULT_MEMORY_LIMIT}.
    *
    * @param logger the instance of Logger through which to log.
    */
   public StdoutBuffer(Logger logger) {
+      this(logger, DEFAULT_CHUNK_SIZE, DEFAULT_MEMORY_LIMIT);
+  } // StdoutBuffer
+
+  /**
+   * Constructor.
+   *
+   * @param logger the instance of Logger through which to log.
+   * @param chunkSize the size of one buffer item chunk, in bytes.
+   * @param memoryLimit the maximum number of bytes kept in memory; when exceeded, the oldest chunks
+   *        are written to a temporary file until half of the limit is used.
+   */
+  public StdoutBuffer(Logger logger, int chunkSize, long memoryLimit) {
+      if (chunkSize <= 0) {
+          throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+      }
+      if (memoryLimit < chunkSize) {
+          throw new IllegalArgumentException("Memory limit " + memoryLimit + " is lower than chunk size "
+                  + chunkSize);
+      }
       log = logger;
-      buffer = new LinkedList<byte[]>();
-      chunkSize = 1000; /* 1000 bytes in each buffer item */
+      buffer = new ArrayList<Chunk>();
+      this.chunkSize = chunkSize;
+      this.memoryLimit = memoryLimit;
       chunkBuffer = new ByteArrayOutputStream(chunkSize);
       chunkWriter = dataEncoder(chunkBuffer);
   } // StdoutBuffer
@@ -154,8 +188,8 @@ public class StdoutBuffer extends OutputStream {
       }
 
       /* Copy the content of chunker to the array of bytes */
+      addChunk(chunkBuffer.toByteArray());
       synchronized (buffer) {
-          buffer.add(chunkBuffer.toByteArray());
           buffer.add(null);
           /* Notify all threads waiting for data */
           buffer.notifyAll();
@@ -175,11 +209,7 @@ public class StdoutBuffer extends OutputStream {
           return;
       }
       /* Copy the content of chunker to the array of bytes */
-      synchronized (buffer) {
-          buffer.add(chunkBuffer.toByteArray());
-          /* Notify all threads waiting for data */
-          buffer.notifyAll();
-      }
+      addChunk(chunkBuffer.toByteArray());
       chunkBuffer.reset();
   } // flush
 
@@ -195,16 +225,41 @@ public class StdoutBuffer extends OutputStream {
    * @throws IOException if the stream cannot be read.
    */
   public InputStream getContent() throws IOException {
+    synchronized (buffer) {
+      if (released) {
+          throw new IOException("Buffer " + this + " was already released");
+      }
+      openReaders++;
+    }
     return dataDecoder(new BufferReader(buffer));
   } // getContent
 
+  /**
+   * Releases the buffer once its content is not needed anymore: closes it and deletes the temporary file
+   * with the spilled chunks, if any. Readers still open can finish reading; the file is deleted when the
+   * last of them is closed. No new reader can be obtained by {@link #getContent()} afterwards.
+   */
+  public void release() {
+    close();
+    synchronized (buffer) {
+      released = true;
+      if (openReaders > 0) {
+          return;
+      }
+    }
+    closeSpillFile();
+  } // release
+
   /**
    * Gets the string representation of this buffer.
    * @return the string representation.
    */
   @Override
   public String toString() {
-    return getClass().getName() + "[" + buffer.size() * chunkSize + " bytes in buffer (approx.)]";
+    synchronized (buffer) {
+      return getClass().getName() + "[" + buffer.size() * chunkSize + " bytes in buffer (approx.), "
+        + spillSize + " bytes on disk]";
+    }
   } // toString
 
   /*
@@ -253,6 +308,125 @@ public class StdoutBuffer extends OutputStream {
     return stream;
   }
 
+  /**
+   * @return the number of bytes moved from memory to the temporary file so far.
+   */
+  long getSpilledSize() {
+    synchronized (buffer) {
+      return spillSize;
+    }
+  } // getSpilledSize
+
+  /**
+   * @return the temporary file holding the spilled chunks, or <code>null</code> if nothing was spilled yet.
+   */
+  File getSpillFile() {
+    return spillFile;
+  } // getSpillFile
+
+  /*
+   * ----------- PRIVATE BLOCK -----------
+   */
+
+  /**
+   * Adds the chunk to the buffer, notifies the waiting readers and, when more than {@link #memoryLimit}
+   * bytes are held in memory, spills the oldest chunks to the temporary file.
+   *
+   * @param data the chunk to add.
+   */
+  private void addChunk(byte[] data) {
+      synchronized (buffer) {
+          buffer.add(new Chunk(data));
+          memoryUsed += data.length;
+          /* Notify all threads waiting for data */
+          buffer.notifyAll();
+      }
+      if (memoryUsed > memoryLimit && !spillFailed) {
+          spill();
+      }
+  } // addChunk
+
+  /**
+   * Moves the oldest chunks held in memory to the temporary file, until at most half of
+   * {@link #memoryLimit} bytes is used. It is called from the writing thread only, so the chunks are
+   * written outside of the critical section; the readers keep using the in-memory copy until the chunk
+   * is marked as spilled.
+   */
+  private void spill() {
+      try {
+          if (spillChannel == null) {
+              spillFile = File.createTempFile("stdout", ".buf");
+              // in case the buffer is never released
+              spillFile.deleteOnExit();
+              spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+          }
+          while (memoryUsed > memoryLimit / 2) {
+              final Chunk chunk;
+              synchronized (buffer) {
+                  chunk = buffer.get(firstInMemory);
+              }
+              final ByteBuffer data = ByteBuffer.wrap(chunk.data);
+              final long offset = spillSize;
+              while (data.hasRemaining()) {
+                  spillChannel.write(data, offset + data.position());
+              }
+              synchronized (buffer) {
+                  chunk.spilled(offset);
+                  memoryUsed -= chunk.length;
+                  spillSize += chunk.length;
+                  firstInMemory++;
+              }
+          }
+      } catch (IOException e) {
+          log.error("Cannot spill STDOUT to temporary file, keeping it all in memory", e);
+          spillFailed = true;
+      }
+  } // spill
+
+  /**
+   * Reads the spilled chunk back from the temporary file.
+   *
+   * @param offset the position of the chunk in the file.
+   * @param length the length of the chunk.
+   * @return the chunk data.
+   * @throws IOException if the file cannot be read.
+   */
+  private byte[] readSpilled(long offset, int length) throws IOException {
+      final FileChannel channel = spillChannel;
+      if (channel == null) {
+          throw new IOException("Spill file of " + this + " is already closed");
+      }
+      final ByteBuffer data = ByteBuffer.allocate(length);
+      while (data.hasRemaining()) {
+          if (channel.read(data, offset + data.position()) < 0) {
+              throw new IOException("Unexpected end of spill file " + spillFile);
+          }
+      }
+      return data.array();
+  } // readSpilled
+
+  /**
+   * Closes and deletes the temporary file.
+   */
+  private void closeSpillFile() {
+      final FileChannel channel;
+      synchronized (buffer) {
+          channel = spillChannel;
+          spillChannel = null;
+      }
+      if (channel == null) {
+          return;
+      }
+      try {
+          channel.close();
+      } catch (IOException e) {
+          log.warn("Cannot close spill file " + spillFile, e);
+      }
+      if (!spillFile.delete()) {
+          log.warn("Cannot delete spill file " + spillFile);
+      }
+  } // closeSpillFile
+
 
   /*
    * ----------- ATTRIBS BLOCK -----------
@@ -267,13 +441,51 @@ public class StdoutBuffer extends OutputStream {
    * was filled and no more items will be added, see {@link #close()}.
    * <p/>
    * The work with the variable MUST BE hold in critical section. However, items are added to the buffer
-   * only - once a chunk of bytes is in the buffer, it is neither changed not deleted.
+   * only - once a chunk of bytes is in the buffer, its content is never changed (it may be only moved
+   * to the temporary file).
    */
-  private final List<byte[]> buffer;
+  private final List<Chunk> buffer;
   /**
    * The size of buffer item chunk
    */
   protected final int  chunkSize;
+  /**
+   * The maximum number of bytes held in memory, see {@link #spill()}.
+   */
+  private final long memoryLimit;
+  /**
+   * The number of bytes currently held in memory.
+   */
+  private long memoryUsed;
+  /**
+   * The index of the oldest chunk in {@link #buffer} not spilled to the temporary file yet.
+   */
+  private int firstInMemory;
+  /**
+   * The number of bytes spilled to the temporary file (the position of the next chunk spilled).
+   */
+  private long spillSize;
+  /**
+   * The temporary file holding the spilled chunks, or <code>null</code> if not created yet.
+   */
+  private File spillFile;
+  /**
+   * The channel to {@link #spillFile}.
+   */
+  private volatile FileChannel spillChannel;
+  /**
+   * Set when the temporary file cannot be written; no more spilling is attempted then.
+   */
+  private boolean spillFailed;
+  /**
+   * The number of readers returned by {@link #getContent()} and not closed yet. Must be accessed in critical
+   * section of {@link #buffer}.
+   */
+  private int openReaders;
+  /**
+   * Set by {@link #release()}. Must be accessed in critical section of {@link #buffer}.
+   */
+  private boolean released;
 
   /**
    * The temporary buffer used for chunking the data. The data are first written to this buffer
@@ -297,6 +509,37 @@ public class StdoutBuffer extends OutputStream {
    * ----------- INNER CLASSES -----------
    */
 
+  /**
+   * One item of the buffer. It holds the data in memory until spilled to the temporary file, then
+   * it holds the position of the data in the file. Must be accessed in critical section of {@link #buffer}.
+   */
+  private static final class Chunk {
+       /**
+        * Constructor.
+        * @param data the data of the chunk.
+        */
+       Chunk(byte[] data) {
+           this.data = data;
+           this.length = data.length;
+       } // Chunk
+
+       /**
+        * Releases the data of the chunk, once they were written to the temporary file.
+        * @param position the position of the data in the temporary file.
+        */
+       void spilled(long position) {
+           this.offset = position;
+           this.data = null;
+       } // spilled
+
+       /** The data, or <code>null</code> when spilled. */
+       private byte[] data;
+       /** The position of the data in the temporary file, when spilled. */
+       private long offset;
+       /** The length of the data. */
+       private final int length;
+  } // Chunk
+
   /**
    * The stream reading data from the buffer.
    */
@@ -307,7 +550,7 @@ public class StdoutBuffer extends OutputStream {
         * @param buffer the instance holding the buffered data.
         * @throws IOException if the stream cannot be read.
         */
-       BufferReader(List<byte[]> buffer) throws IOException {
+       BufferReader(List<Chunk> buffer) throws IOException {
           bufferInst = buffer;
           reset();
        } // BufferReader
@@ -358,7 +601,18 @@ public class StdoutBuffer extends OutputStream {
         */
        @Override
        public final void close() {
+           if (isClosed) {
+               return;
+           }
            isClosed = true;
+           currChunk = null;
+           /* The last reader of a released buffer deletes the temporary file */
+           synchronized (bufferInst) {
+               if (--openReaders > 0 || !released) {
+                   return;
+               }
+           }
+           closeSpillFile();
        } // close
 
        /**
@@ -389,43 +643,17 @@ public class StdoutBuffer extends OutputStream {
            }
 
            /* ------------
-            * Get the current buffer  */
-           byte[] currChunk;
-           int    currByte;
-
-           /* Must be in synchronized section due to wait() method */
-           synchronized (bufferInst) {
-               /* Bad state!!?? */
-               if (bufferInst.size() <  chunkInd) {
-                   throw new IOException("Reader outran the buffer?");
-               }
-
-               /* If nothing to read, wait until notified */
-               if (bufferInst.size() == chunkInd) {
-                   try {
-                       bufferInst.wait();
-                   } catch (InterruptedException tExc) {
-                       log.error("Unexpected interruption when waiting for data", tExc);
-                       return -1;
-                   }
-               }
-
-               /* Get the current chunk. It cannot change once it is in the buffer */
-               currChunk = bufferInst.get(chunkInd);
-           } // synchronized
-
-           /* ------------
-            * If the current chunk is empty, EOF was reached */
-           if (currChunk == null) {
+            * Get the current buffer. If it is null, EOF was reached */
+           final byte[] chunk = currentChunk();
+           if (chunk == null) {
                return -1;
            }
 
            /* Read the byte from the buffer */
-           currByte = currChunk[chunkPos++];
+           final int currByte = chunk[chunkPos++];
            /* Was the whole buffer read? Set the new if so */
-           if (chunkPos >= currChunk.length) {
-               chunkPos = 0;
-               chunkInd++;
+           if (chunkPos >= chunk.length) {
+               nextChunk();
            }
 
            /* Return the byte read, converted to the <0, 255> range */
@@ -447,7 +675,6 @@ public class StdoutBuffer extends OutputStream {
         */
        @Override
        public final int read(byte[] outBuff, int from, int len) throws IOException {
-           byte[] currChunk;
            int numRead = 0;
 
            /* Must not be closed */
@@ -457,49 +684,28 @@ public class StdoutBuffer extends OutputStream {
 
            /* Read until the required number of bytes is read. */
            while (numRead < len) {
-
-               /* Get the current buffer. */
-               synchronized (bufferInst) {
-                   /* Bad state!!?? */
-                   if (bufferInst.size() <  chunkInd) {
-                       throw new IOException("Reader outran the buffer?");
-                   }
-
-                   /* If nothing to read, wait until notified. If the required number of
-                    * Bytes to read ('len' attribute) was get by available() method, it will
-                    * not block */
-                   if (bufferInst.size() == chunkInd) {
-                       try {
-                           bufferInst.wait();
-                       } catch (InterruptedException tExc) {
-                           log.error("Unexpected interruption when waiting for data", tExc);
-                           return -1;
-                       }
-                   }
-
-                   /* Get the current chunk. It cannot change once it is in the buffer */
-                   currChunk = bufferInst.get(chunkInd);
-               } // synchronized
+               /* Get the current buffer. If the required number of Bytes to read ('len' attribute)
+                * was get by available() method, it will not block */
+               final byte[] chunk = currentChunk();
 
                /* If the current chunk is empty, EOF was reached. If at least something was read, return the
                 * number of Bytes read. Otherwise return -1 */
-               if (currChunk == null) {
+               if (chunk == null) {
                   return numRead > 0 ? numRead : -1;
                }
 
                /* How many items from the current buffer to read */
-               int canRead = Math.min(len - numRead, currChunk.length - chunkPos);
+               int canRead = Math.min(len - numRead, chunk.length - chunkPos);
                /* Copy the number of bytes available in the current buffer */
-               System.arraycopy(currChunk, chunkPos, outBuff, from, canRead);
+               System.arraycopy(chunk, chunkPos, outBuff, from, canRead);
                /* Shift the buffer position */
                chunkPos += canRead;
                numRead += canRead;
                from += canRead;
 
                /* Was the whole buffer read? Set the new if so */
-               if (chunkPos >= currChunk.length) {
-                   chunkPos  = 0;
-                   chunkInd++;
+               if (chunkPos >= chunk.length) {
+                   nextChunk();
                }
           }
 
@@ -520,6 +726,7 @@ public class StdoutBuffer extends OutputStream {
 
           chunkInd = 0;
           chunkPos = 0;
+          currChunk = null;
        } // reset
 
        /**
@@ -542,12 +749,70 @@ public class StdoutBuffer extends OutputStream {
            + buffer.size() * chunkSize + " Bytes in the buffer]";
        } // toString
 
+       /**
+        * Gets the data of the chunk to read, waiting until it is added to the buffer. The spilled
+        * chunk is read from the temporary file and kept until the whole chunk is read.
+        *
+        * @return the chunk data or <code>null</code> when EOF was reached (or when interrupted).
+        * @throws IOException if the stream cannot be read.
+        */
+       private byte[] currentChunk() throws IOException {
+           if (currChunk != null) {
+               return currChunk;
+           }
+
+           final long offset;
+           final int length;
+           /* Must be in synchronized section due to wait() method */
+           synchronized (bufferInst) {
+               /* Bad state!!?? */
+               if (bufferInst.size() <  chunkInd) {
+                   throw new IOException("Reader outran the buffer?");
+               }
+
+               /* If nothing to read, wait until notified */
+               while (bufferInst.size() == chunkInd) {
+                   try {
+                       bufferInst.wait();
+                   } catch (InterruptedException tExc) {
+                       log.error("Unexpected interruption when waiting for data", tExc);
+                       return null;
+                   }
+               }
+
+               /* Get the current chunk. Its content cannot change once it is in the buffer */
+               final Chunk chunk = bufferInst.get(chunkInd);
+               if (chunk == null) {
+                   return null;
+               }
+               if (chunk.data != null) {
+                   currChunk = chunk.data;
+                   return currChunk;
+               }
+               offset = chunk.offset;
+               length = chunk.length;
+           } // synchronized
+
+           /* Read the spilled chunk out of the critical section */
+           currChunk = readSpilled(offset, length);
+           return currChunk;
+       } // currentChunk
+
+       /**
+        * Moves to the next chunk in the buffer.
+        */
+       private void nextChunk() {
+           chunkPos = 0;
+           chunkInd++;
+           currChunk = null;
+       } // nextChunk
+
        /* ----------- ATTRIBS BLOCK ----------- */
 
        /**
         * The parent instance of the buffer from which the data are read
         */
-       private final List<byte[]> bufferInst;
+       private final List<Chunk> bufferInst;
 
        /** Flag set when {@link #close()} is called. */
        private boolean isClosed;
@@ -560,6 +825,10 @@ public class StdoutBuffer extends OutputStream {
         * The index within the chunk to read
         */
        private int chunkPos;
+       /**
+        * The data of the chunk {@link #chunkInd}, or <code>null</code> if not get yet.
+        */
+       private byte[] currChunk;
 
   } // BufferReader
 
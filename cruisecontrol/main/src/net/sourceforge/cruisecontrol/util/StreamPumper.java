@@ -94,8 +94,12 @@ import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 import org.apache.log4j.Logger;
 
@@ -173,41 +177,27 @@ public class StreamPumper implements Runnable {
 
             // Well, we have binary reader defined as well ...
             // So, chunks of binary data must be read from the input stream and directly passed to the
-            // binary output. Moreover, they must be passed to the text output (for non-binary only data)
-            // which is done through pipe: byte[] -> PipeOutputStream -> PipeInputStream -> BufferedReader
+            // binary output. Moreover, they must be passed to the text output (for non-binary only data),
+            // which is done by decoding and splitting the chunks into lines right here
             } else {
 
-                // For non-binary data create the binary->text conversion pipe
-                // Use the StreamPumper class
-                final OutputStream tostrOutput;
-                final Thread tostrReader;
-                if (!this.isBinary) {
-                    tostrOutput = new PipedOutputStream();
-                    tostrReader = new Thread(new StreamPumper(new PipedInputStream((PipedOutputStream) tostrOutput),
-                            this.txtConsumer));
-                    tostrReader.start();
-                } else {
-                    tostrOutput = null;
-                    tostrReader = new Thread();
-                }
+                final LineSplitter lines = this.isBinary ? null : new LineSplitter(this.txtConsumer);
 
                 // Read binary data
                 final byte[] binBuff = new byte[SIZE];
                 int numread;
 
-                try {
-                    while ((numread = this.in.read(binBuff)) >= 0) {
-                        bytesread += numread;
-                        // Pass them to the binary consumer and to binary->text conversion pipe
-                        consumeBytes(binBuff, numread, this.binConsumer);
-                        consumeBytes(binBuff, numread, tostrOutput);
+                while ((numread = this.in.read(binBuff)) >= 0) {
+                    bytesread += numread;
+                    // Pass them to the binary consumer and to binary->text conversion
+                    consumeBytes(binBuff, numread, this.binConsumer);
+                    if (lines != null) {
+                        lines.write(binBuff, numread);
                     }
-
-                } finally {
-                    // Must close, otherwise the binary->text conversion thread will never end
-                    IO.close(tostrOutput);
                 }
-                tostrReader.join();
+                if (lines != null) {
+                    lines.close();
+                }
 
                 // Print summary in binary mode
                 if (this.isBinary) {
@@ -242,4 +232,66 @@ public class StreamPumper implements Runnable {
             consumer.write(bytes, 0, len);
         }
     }
+
+    /**
+     * Decodes chunks of bytes in the platform's default charset and passes complete lines to the consumer. Lines
+     * are terminated the same way as for {@link BufferedReader#readLine()}.
+     */
+    private final class LineSplitter {
+        private final StreamConsumer consumer;
+        private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // holds a chunk plus the bytes of a character split between chunks
+        private final ByteBuffer pending = ByteBuffer.allocate(2 * SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(2 * SIZE);
+        private final StringBuilder line = new StringBuilder();
+        private boolean skipLF;
+
+        private LineSplitter(final StreamConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        void write(final byte[] bytes, final int len) {
+            pending.put(bytes, 0, len);
+            pending.flip();
+            decode(false);
+            pending.compact();
+        }
+
+        void close() {
+            pending.flip();
+            decode(true);
+            decoder.flush(chars);
+            split();
+            if (line.length() > 0) {
+                consumeLine(line.toString(), consumer);
+            }
+        }
+
+        private void decode(final boolean endOfInput) {
+            CoderResult result;
+            do {
+                result = decoder.decode(pending, chars, endOfInput);
+                split();
+            } while (result.isOverflow());
+        }
+
+        private void split() {
+            chars.flip();
+            while (chars.hasRemaining()) {
+                final char c = chars.get();
+                if (c == '\n' && skipLF) {
+                    skipLF = false;
+                } else if (c == '\n' || c == '\r') {
+                    skipLF = c == '\r';
+                    consumeLine(line.toString(), consumer);
+                    line.setLength(0);
+                } else {
+                    skipLF = false;
+                    line.append(c);
+                }
+            }
+            chars.clear();
+        }
+    }
 }
@@ -0,0 +1,318 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Process wide cache of compiled stylesheets. Compiling a stylesheet costs far more than applying it, so the
+ * publishers and the reporting applications ask this cache for their transformers instead of going through a
+ * new <code>TransformerFactory</code> every time.
+ * <p>
+ * Stylesheets are keyed by their location and compiled again when their modification time changes. Stylesheets
+ * they import or include are not watched. Each thread gets its own <code>Transformer</code> per stylesheet, reset
+ * before it is handed out again, so callers must not hold on to it across calls for the same stylesheet.
+ * <p>
+ * When the system property {@link #PRECOMPILE_PROPERTY} is true, the publishers compile their stylesheets while
+ * the configuration is validated instead of at their first publish.
+ */
+public final class TemplatesCache {
+
+    private static final Logger LOG = Logger.getLogger(TemplatesCache.class);
+
+    /** Name of the system property that turns on compiling stylesheets when the configuration is loaded. */
+    public static final String PRECOMPILE_PROPERTY = "cc.xsl.precompile";
+
+    private static final String SAXON_VERSION_WARNING = "http://saxon.sf.net/feature/version-warning";
+
+    private static final TemplatesCache INSTANCE = new TemplatesCache();
+
+    private final Map<String, Compiled> compiled = new HashMap<String, Compiled>();
+    private final Map<String, Object> compileLocks = new HashMap<String, Object>();
+    private final ThreadLocal<Map<String, ThreadTransformer>> transformers
+            = new ThreadLocal<Map<String, ThreadTransformer>>() {
+        protected Map<String, ThreadTransformer> initialValue() {
+            return new HashMap<String, ThreadTransformer>();
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong compileMillis = new AtomicLong();
+
+    /** A compiled stylesheet and the modification time of the stylesheet it was compiled from. */
+    private static final class Compiled {
+        private final Templates templates;
+        private final long lastModified;
+
+        private Compiled(final Templates templates, final long lastModified) {
+            this.templates = templates;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isCurrent(final long stylesheetModified) {
+            return lastModified == stylesheetModified;
+        }
+    }
+
+    /** The transformer a thread uses for a stylesheet, with the compiled stylesheet it was created from. */
+    private static final class ThreadTransformer {
+        private final Templates templates;
+        private final Transformer transformer;
+
+        private ThreadTransformer(final Templates templates) throws TransformerConfigurationException {
+            this.templates = templates;
+            this.transformer = templates.newTransformer();
+        }
+
+        private Transformer reuse() {
+            transformer.reset();
+            // not every processor drops the parameters on reset
+            transformer.clearParameters();
+            return transformer;
+        }
+    }
+
+    TemplatesCache() {
+    }
+
+    public static TemplatesCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param xsl the stylesheet
+     * @return the compiled stylesheet, compiled again if the file changed since it was last compiled
+     * @throws TransformerException if the stylesheet can not be compiled
+     */
+    public Templates getTemplates(final File xsl) throws TransformerException {
+        return getTemplates(xsl.getAbsolutePath(), xsl.lastModified(), new StreamSource(xsl));
+    }
+
+    /**
+     * @param xsl location of the stylesheet
+     * @return the compiled stylesheet, compiled again if the resource changed since it was last compiled
+     * @throws TransformerException if the stylesheet can not be compiled
+     */
+    public Templates getTemplates(final URL xsl) throws TransformerException {
+        return getTemplates(xsl.toExternalForm(), getLastModified(xsl), new StreamSource(xsl.toExternalForm()));
+    }
+
+    /**
+     * @param xsl the stylesheet
+     * @return this thread's transformer for the stylesheet, without parameters set
+     * @throws TransformerException if the stylesheet can not be compiled
+     */
+    public Transformer newTransformer(final File xsl) throws TransformerException {
+        return getTransformer(xsl.getAbsolutePath(), getTemplates(xsl));
+    }
+
+    /**
+     * @param xsl location of the stylesheet
+     * @return this thread's transformer for the stylesheet, without parameters set
+     * @throws TransformerException if the stylesheet can not be compiled
+     */
+    public Transformer newTransformer(final URL xsl) throws TransformerException {
+        return getTransformer(xsl.toExternalForm(), getTemplates(xsl));
+    }
+
+    /**
+     * Compiles a stylesheet ahead of its first use if {@link #PRECOMPILE_PROPERTY} is set. Failures are only logged,
+     * the stylesheet is reported broken again when it is used.
+     * @param xsl the stylesheet
+     */
+    public void precompile(final File xsl) {
+        if (!Boolean.getBoolean(PRECOMPILE_PROPERTY) || !xsl.isFile()) {
+            return;
+        }
+        try {
+            getTemplates(xsl);
+        } catch (TransformerException e) {
+            LOG.warn("could not precompile stylesheet " + xsl.getAbsolutePath(), e);
+        }
+    }
+
+    private Templates getTemplates(final String location, final long lastModified, final Source source)
+            throws TransformerException {
+        Compiled entry = get(location);
+        if (entry != null && entry.isCurrent(lastModified)) {
+            hits.incrementAndGet();
+            return entry.templates;
+        }
+
+        synchronized (getCompileLock(location)) {
+            // another thread may have compiled it while this one waited
+            entry = get(location);
+            if (entry != null && entry.isCurrent(lastModified)) {
+                hits.incrementAndGet();
+                return entry.templates;
+            }
+            misses.incrementAndGet();
+            final long start = System.currentTimeMillis();
+            final Templates templates = newTransformerFactory().newTemplates(source);
+            final long took = System.currentTimeMillis() - start;
+            compileMillis.addAndGet(took);
+            LOG.debug("compiled stylesheet " + location + " in " + took + " ms");
+            synchronized (compiled) {
+                compiled.put(location, new Compiled(templates, lastModified));
+            }
+            return templates;
+        }
+    }
+
+    private Compiled get(final String location) {
+        synchronized (compiled) {
+            return compiled.get(location);
+        }
+    }
+
+    private Object getCompileLock(final String location) {
+        synchronized (compileLocks) {
+            Object lock = compileLocks.get(location);
+            if (lock == null) {
+                lock = new Object();
+                compileLocks.put(location, lock);
+            }
+            return lock;
+        }
+    }
+
+    private Transformer getTransformer(final String location, final Templates templates)
+            throws TransformerConfigurationException {
+        final Map<String, ThreadTransformer> threadTransformers = transformers.get();
+        ThreadTransformer threadTransformer = threadTransformers.get(location);
+        if (threadTransformer != null && threadTransformer.templates == templates) {
+            return threadTransformer.reuse();
+        }
+        threadTransformer = new ThreadTransformer(templates);
+        threadTransformers.put(location, threadTransformer);
+        return threadTransformer.transformer;
+    }
+
+    private static TransformerFactory newTransformerFactory() {
+        final TransformerFactory factory = TransformerFactory.newInstance();
+        try {
+            factory.setAttribute(SAXON_VERSION_WARNING, Boolean.FALSE);
+        } catch (IllegalArgumentException notSaxon) {
+            LOG.debug("could not silence Saxon XSLT 2.0 warning, processor is probably not saxon");
+        }
+        return factory;
+    }
+
+    private static long getLastModified(final URL url) {
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI()).lastModified();
+            }
+            return url.openConnection().getLastModified();
+        } catch (URISyntaxException e) {
+            LOG.debug("could not get the modification time of " + url, e);
+            return 0;
+        } catch (IOException e) {
+            LOG.debug("could not get the modification time of " + url, e);
+            return 0;
+        }
+    }
+
+    /**
+     * @return number of requests answered with an already compiled stylesheet
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of requests that had to compile the stylesheet
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return share of requests answered without compiling, 0 if there were none
+     */
+    public double getHitRate() {
+        final long hitCount = hits.get();
+        final long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return total time spent compiling stylesheets, in milliseconds
+     */
+    public long getCompileMillis() {
+        return compileMillis.get();
+    }
+
+    /**
+     * @return number of compiled stylesheets held
+     */
+    public int getCachedTemplates() {
+        synchronized (compiled) {
+            return compiled.size();
+        }
+    }
+
+    /**
+     * Forget all compiled stylesheets and reset the counters. Transformers already handed out to threads are replaced
+     * the next time those threads ask for them.
+     */
+    public void clear() {
+        synchronized (compiled) {
+            compiled.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+        compileMillis.set(0);
+    }
+}
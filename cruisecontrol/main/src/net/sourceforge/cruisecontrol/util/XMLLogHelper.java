@@ -39,8 +39,10 @@ package net.sourceforge.cruisecontrol.util;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import net.sourceforge.cruisecontrol.BuildResult;
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
 
@@ -75,6 +77,9 @@ import org.jdom.Element;
  *  </pre>
  *
  *  Note: buildtarget is only present when a target is forced via the JMX interface.
+ *  <p>
+ *  When a {@link BuildResult} was created for the log (as it is for the logs handed to the publishers),
+ *  the information is read from it instead of the XML tree.
  *
  *  @author Alden Almagro
  *  @author Jonny Boman
@@ -83,9 +88,11 @@ import org.jdom.Element;
 public class XMLLogHelper {
 
     private final Element log;
+    private final BuildResult result;
 
     public XMLLogHelper(Element log) {
         this.log = log;
+        this.result = BuildResult.lookup(log);
     }
 
     /**
@@ -119,7 +126,10 @@ public class XMLLogHelper {
     /** @return true if the build was necessary */
     public boolean isBuildNecessary() {
         // @todo This method is dubious at best and needs to be reviewed. JTF & PJ
-        
+        if (result != null) {
+            return result.isNecessary();
+        }
+
         if (log.getChild("build") != null && log.getChild("build").getAttributeValue("error") != null) {
 
             return !log.getChild("build").getAttributeValue("error").equals("No Build Necessary");
@@ -140,6 +150,9 @@ public class XMLLogHelper {
      *  @return true if the build was successful, false otherwise
      */
     public boolean isBuildSuccessful() {
+        if (result != null) {
+            return result.isSuccessful();
+        }
         return (log.getChild("build").getAttribute("error") == null);
     }
 
@@ -149,6 +162,9 @@ public class XMLLogHelper {
      */
     @SuppressWarnings("unchecked") // we know Element.getChildren() returns Elements
     public Set<String> getBuildParticipants() {
+        if (result != null) {
+            return new HashSet<String>(result.getParticipants());
+        }
         final Set<String> results = new HashSet<String>();
         final List<Element> mods = log.getChild("modifications").getChildren("modification");
         for (final Element modification : mods) {
@@ -167,6 +183,9 @@ public class XMLLogHelper {
      * @throws CruiseControlException if the given ant property name can not be found.
      */
     public String getAntProperty(final String propertyName) throws CruiseControlException {
+        if (result != null) {
+            return findProperty(result.getBuildProperties(), propertyName);
+        }
         final Iterator props = log.getChild("build").getChild("properties").getChildren("property").iterator();
         return findProperty(props, propertyName);
     }
@@ -181,18 +200,32 @@ public class XMLLogHelper {
         throw new CruiseControlException("Property: " + expected + " not found.");
     }
 
+    private static String findProperty(final Map<String, String> props, final String expected)
+            throws CruiseControlException {
+        if (!props.containsKey(expected)) {
+            throw new CruiseControlException("Property: " + expected + " not found.");
+        }
+        return props.get(expected);
+    }
+
     /**
      * @param name the property name to search for
      * @return the value of the property
      * @throws CruiseControlException if the given property name can not be found.
      */
     public String getCruiseControlInfoProperty(final String name) throws CruiseControlException {
+        if (result != null) {
+            return findProperty(result.getInfoProperties(), name);
+        }
         final Iterator props = log.getChild("info").getChildren("property").iterator();
         return findProperty(props, name);
     }
 
     @SuppressWarnings("unchecked") // we know Element.getChildren() returns Elements
     public Set<Modification> getModifications() {
+        if (result != null) {
+            return new HashSet<Modification>(result.getModifications());
+        }
         final Set<Modification> results = new HashSet<Modification>();
         final List<Element> mods = log.getChild("modifications").getChildren("modification");
         for (final Element modification : mods) {
@@ -43,6 +43,14 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.EventListener;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
@@ -53,12 +61,16 @@ import org.apache.log4j.Logger;
  * Each task may be named, but do not have to be.  You may then waitOn
  * for ever task to complete or just the named tasks you care about...
  * or not wait at all.
+ * <P>
+ * Tasks are handed to a fixed pool of reusable worker threads as soon as a slot is free.
+ * There is no polling loop: a task is dispatched when it is added, and the next waiting
+ * task is dispatched from the completion callback of the task that just finished.
  *
  * @author Jared Richardson
  * @version $Id$
  */
 
-public class ThreadQueue extends Thread {
+public final class ThreadQueue {
     private static final Logger LOG = Logger.getLogger(ThreadQueue.class);
 
     // A ThreadGroup that logs uncaught exception using Log4J
@@ -79,87 +91,86 @@ public class ThreadQueue extends Thread {
      */
     private final Map<String, Object> resultList = Collections.synchronizedMap(new HashMap<String, Object>());
 
-    /**
-     * Retains a handle to all the running Threads
-     * to handle all sorts of interesting situations
-     */
-
-    private final Map<WorkerThread, Thread> runningThreads
-            = Collections.synchronizedMap(new HashMap<WorkerThread, Thread>());
-
     /**
      * The number of java.lang.Threads to be launched by the pool at one time
      */
     private final int threadCount = ThreadQueueProperties.getMaxThreadCount();
 
     /**
-     * The amount of time (millis) to sleep between loops
+     * The reusable worker threads, fed through a blocking hand-off queue
      */
-    private static final int SLEEP_TIME = 100;
+    private final ExecutorService workers = new ThreadPoolExecutor(threadCount, threadCount,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
 
     /**
      * A handle to the ThreadQueue singleton
      */
     private static ThreadQueue threadQueue;
 
+    /**
+     * Listeners told about finished tasks; kept outside the singleton so they survive a restart of the queue
+     */
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<Listener>();
+
+    private ThreadQueue() {
+    }
+
     /*
      fetch tasks to be executed from the idle list,
      put them on the busy list, and
-     execute them
+     hand them to the worker pool until all worker threads are busy
      */
-    public void run() {
-        while (true) {
-
-            final boolean nothingWaiting = idleTasks.size() == 0;
-            final boolean maxedOut = busyTasks.size() >= threadCount;
-
-            if (nothingWaiting || maxedOut) {
-                sleep(SLEEP_TIME);
-            } else {
-                handleWaitingTask();
+    private void dispatchWaitingTasks() {
+        synchronized (busyTasks) {
+            synchronized (idleTasks) {
+                final Iterator<WorkerThread> waiting = idleTasks.iterator();
+                while (busyTasks.size() < threadCount && waiting.hasNext()) {
+                    final WorkerThread task = waiting.next();
+                    //Since idleTasks allows duplicates, lets make sure this project is not already building
+                    if (getTask(task.getName(), busyTasks.iterator()) != null) {
+                        LOG.debug("The idle task " + task.getName()
+                                + " is already running, it will not be moved to busy tasks yet");
+                        continue;
+                    }
+
+                    LOG.debug("handling waiting task " + task.getName());
+                    try {
+                        workers.execute(new CompletionNotifier(task));
+                    } catch (RejectedExecutionException e) {
+                        LOG.debug("ThreadQueue is stopped, task " + task.getName() + " will not be run");
+                        return;
+                    }
+                    waiting.remove();
+                    busyTasks.add(task);
+                }
             }
-
-            cleanCompletedTasks();
         }
     }
 
-    private void handleWaitingTask() {
-        LOG.debug("handling waiting task");
+    /**
+     * Called by the worker thread once a task has run: records its result, frees its slot
+     * and dispatches whatever was waiting for it.
+     * @param task the task that just finished
+     */
+    private void taskCompleted(final WorkerThread task) {
         synchronized (busyTasks) {
-            synchronized (idleTasks) {
-                final WorkerThread firstIdleWorkerThread = idleTasks.get(0);
-                //Since idleTasks allows duplicates, lets make sure this project is not already building
-                if (getBusyTask(firstIdleWorkerThread.getName()) != null) {
-                    LOG.debug("The idle task is already running, it will not be moved to busy tasks yet");
-                    return;
-                } else {
-                    idleTasks.remove(firstIdleWorkerThread);
-                }
+            final Object result = task.getResult();
+            LOG.debug("Found a finished task");
+            LOG.debug("tempTask.getName() = " + task.getName());
+            LOG.debug("tempTask.getResult() = " + result);
 
-                final Thread thisThread = new Thread(loggingGroup, firstIdleWorkerThread);
-                busyTasks.add(firstIdleWorkerThread);
-                runningThreads.put(firstIdleWorkerThread, thisThread);
-                thisThread.start();
+            if (result != null) {
+                resultList.put(task.getName(), result);
             }
+            busyTasks.remove(task);
         }
-    }
+        dispatchWaitingTasks();
 
-    private void cleanCompletedTasks() {
-        synchronized (busyTasks) {
-            final Iterator<WorkerThread> tasks = busyTasks.iterator();
-            while (tasks.hasNext()) {
-                final WorkerThread task = tasks.next();
-                final Object result = task.getResult();
-                final boolean taskDone = result != null;
-                if (taskDone) {
-                    LOG.debug("Found a finished task");
-                    LOG.debug("tempTask.getName() = " + task.getName());
-                    LOG.debug("tempTask.getResult() = " + task.getResult());
-
-                    resultList.put(task.getName(), result);
-                    tasks.remove();
-                    runningThreads.remove(task);
-                }
+        for (final Listener listener : LISTENERS) {
+            try {
+                listener.taskCompleted(task.getName());
+            } catch (RuntimeException e) {
+                LOG.error("exception notifying listener of completed task " + task.getName(), e);
             }
         }
     }
@@ -170,10 +181,9 @@ public class ThreadQueue extends Thread {
      * @return ThreadQueuse singleton
      */
 
-    private static ThreadQueue getThreadQueue() {
+    private static synchronized ThreadQueue getThreadQueue() {
         if (threadQueue == null) {
             threadQueue = new ThreadQueue();
-            threadQueue.start();
         }
         return threadQueue;
     }
@@ -185,15 +195,9 @@ public class ThreadQueue extends Thread {
     public static void addTask(final WorkerThread task) {
         LOG.debug("Preparing to add worker task " + task.getName());
 
-        synchronized (getThreadQueue().busyTasks) {
-            synchronized (getThreadQueue().idleTasks) {
-
-                // don't trust that 100 ms main loop managed to clean up very
-                // recently finished tasks
-                getThreadQueue().cleanCompletedTasks();
-                getThreadQueue().idleTasks.add(task);
-            }
-        }
+        final ThreadQueue queue = getThreadQueue();
+        queue.idleTasks.add(task);
+        queue.dispatchWaitingTasks();
     }
 
     /**
@@ -303,6 +307,21 @@ public class ThreadQueue extends Thread {
         return null;
     }
 
+    /**
+     * Checks whether another task could start right away, i.e. no task is waiting for a worker
+     * and not all worker threads are busy.
+     *
+     * @return TRUE if a task added now would be run immediately
+     */
+    public static boolean hasIdleWorker() {
+        final ThreadQueue queue = getThreadQueue();
+        synchronized (queue.busyTasks) {
+            synchronized (queue.idleTasks) {
+                return queue.busyTasks.size() + queue.idleTasks.size() < queue.threadCount;
+            }
+        }
+    }
+
     /**
      * @return the names of the tasks in the busy list; may be empty
      */
@@ -338,20 +357,54 @@ public class ThreadQueue extends Thread {
         return names;
     }
 
+    public static void addListener(final Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(final Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    static synchronized void stopQueue() {
+        if (threadQueue != null) {
+            threadQueue.workers.shutdown();
+            threadQueue = null;
+        }
+    }
+
+    public static interface Listener extends EventListener {
+        void taskCompleted(String taskName);
+    }
+
     /**
-     * Utility call for sleeps.
-     * @param ms milliseconds to sleep.
+     * Runs a task on a pool thread and reports back to the queue when it is done.
      */
-    private static void sleep(final int ms) {
-        try {
-            Thread.sleep(ms);
-        } catch (Exception ignored) {
+    private final class CompletionNotifier implements Runnable {
+        private final WorkerThread task;
+
+        private CompletionNotifier(final WorkerThread task) {
+            this.task = task;
+        }
+
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                taskCompleted(task);
+            }
         }
     }
 
-    static void stopQueue() {
-        threadQueue.interrupt();
-        threadQueue = null;
+    /**
+     * Creates the pool threads inside the logging ThreadGroup so uncaught exceptions end up in the log.
+     */
+    private final class WorkerThreadFactory implements ThreadFactory {
+        private int created = 0;
+
+        public synchronized Thread newThread(final Runnable runnable) {
+            created++;
+            return new Thread(loggingGroup, runnable, "ThreadQueue worker " + created);
+        }
     }
 
 }
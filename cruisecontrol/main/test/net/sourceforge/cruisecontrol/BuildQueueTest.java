@@ -66,6 +66,28 @@ public class BuildQueueTest extends TestCase {
         queue.requestBuild(new ProjectConfig());
     }
 
+    public void testChangingPolicyKeepsRequestTimes() throws InterruptedException {
+        final ProjectConfig project = new ProjectConfig();
+        project.setName("waiting");
+        queue.requestBuild(project);
+        final long requested = System.currentTimeMillis();
+        Thread.sleep(20);
+
+        final RecordingPolicy newPolicy = new RecordingPolicy();
+        queue.setPolicy(newPolicy);
+        assertEquals(1, newPolicy.size());
+        assertTrue(newPolicy.requestTime <= requested);
+    }
+
+    private static class RecordingPolicy extends FifoBuildQueuePolicy {
+        private long requestTime;
+
+        public boolean add(final ProjectInterface project, final long time) {
+            requestTime = time;
+            return super.add(project, time);
+        }
+    }
+
     class TestListener implements Listener {
         private boolean buildRequested = false;
 
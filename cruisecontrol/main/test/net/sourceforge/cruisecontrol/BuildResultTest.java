@@ -0,0 +1,146 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.testutil.TestUtil;
+import net.sourceforge.cruisecontrol.util.XMLLogHelper;
+
+import org.jdom.Element;
+
+public class BuildResultTest extends TestCase {
+
+    public void testSuccessfulBuild() {
+        final Element log = TestUtil.createElement(true, false);
+        final BuildResult result = new BuildResult(log);
+
+        assertTrue(result.isSuccessful());
+        assertTrue(result.isNecessary());
+        assertTrue(result.isFix());
+        assertEquals("fixed", result.getStatusMessage());
+        assertNull(result.getError());
+        assertEquals("2 minutes 20 seconds", result.getDuration());
+        assertEquals("somelabel", result.getLabel());
+        assertEquals("someproject", result.getProjectName());
+        assertEquals("log20020313120000.xml", result.getInfoProperty("logfile"));
+        assertNull(result.getInfoProperty("nosuchproperty"));
+    }
+
+    public void testFailedBuild() {
+        final BuildResult result = new BuildResult(TestUtil.createElement(false, true, "1 second", 0, "Oops"));
+
+        assertFalse(result.isSuccessful());
+        assertTrue(result.isNecessary());
+        assertEquals("failed", result.getStatusMessage());
+        assertEquals("Oops", result.getError());
+        assertTrue(result.getModifications().isEmpty());
+        assertTrue(result.getParticipants().isEmpty());
+    }
+
+    public void testBuildNotNecessary() {
+        final Element log = TestUtil.createElement(false, true, "1 second", 0, BuildResult.NO_BUILD_NECESSARY);
+        assertFalse(new BuildResult(log).isNecessary());
+    }
+
+    public void testModificationsAndParticipants() {
+        final BuildResult result = new BuildResult(TestUtil.createElement(true, true));
+
+        assertEquals(4, result.getModifications().size());
+        assertEquals("user1", result.getModifications().get(0).userName);
+        assertEquals("filename4", result.getModifications().get(3).getFileName());
+        assertEquals(3, result.getParticipants().size());
+        assertTrue(result.getParticipants().contains("user3"));
+        try {
+            result.getModifications().clear();
+            fail("modifications must not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+    }
+
+    public void testBuildPropertiesFirstOneWins() {
+        final Element log = TestUtil.createElement(true, true);
+        final Element properties = new Element("properties");
+        addProperty(properties, "foo", "first");
+        addProperty(properties, "foo", "second");
+        addProperty(properties, "bar", "baz");
+        log.getChild("build").addContent(properties);
+
+        final BuildResult result = new BuildResult(log);
+        assertEquals("first", result.getBuildProperty("foo"));
+        assertEquals("baz", result.getBuildProperty("bar"));
+        assertEquals(2, result.getBuildProperties().size());
+    }
+
+    public void testEmptyLog() {
+        final BuildResult result = new BuildResult(new Element("cruisecontrol"));
+
+        assertFalse(result.isSuccessful());
+        assertTrue(result.getInfoProperties().isEmpty());
+        assertTrue(result.getBuildProperties().isEmpty());
+        assertTrue(result.getModifications().isEmpty());
+    }
+
+    public void testCreateRegistersResultForLog() throws CruiseControlException {
+        final Element log = TestUtil.createElement(true, true);
+        assertNull(BuildResult.lookup(log));
+
+        final BuildResult result = BuildResult.create(log);
+        assertSame(result, BuildResult.lookup(log));
+        assertNull(BuildResult.lookup(TestUtil.createElement(true, true)));
+
+        // the helper reads the registered result, not the tree
+        log.getChild("build").setAttribute("error", "changed afterwards");
+        final XMLLogHelper helper = new XMLLogHelper(log);
+        assertTrue(helper.isBuildSuccessful());
+        assertEquals("somelabel", helper.getLabel());
+        assertEquals(4, helper.getModifications().size());
+        try {
+            helper.getCruiseControlInfoProperty("nosuchproperty");
+            fail("missing property should fail");
+        } catch (CruiseControlException expected) {
+            assertEquals("Property: nosuchproperty not found.", expected.getMessage());
+        }
+    }
+
+    private static void addProperty(final Element parent, final String name, final String value) {
+        final Element property = new Element("property");
+        property.setAttribute("name", name);
+        property.setAttribute("value", value);
+        parent.addContent(property);
+    }
+}
@@ -0,0 +1,108 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class FifoBuildQueuePolicyTest extends TestCase {
+
+    private static final Set<String> NONE_RUNNING = Collections.emptySet();
+
+    private FifoBuildQueuePolicy policy;
+
+    protected void setUp() throws Exception {
+        policy = new FifoBuildQueuePolicy();
+    }
+
+    public void testServesInRequestOrder() {
+        policy.add(project("a"), 0);
+        policy.add(project("b"), 1);
+        policy.add(project("c"), 2);
+
+        assertEquals(3, policy.size());
+        assertEquals("a", policy.next(NONE_RUNNING, 3).getName());
+        assertEquals("b", policy.next(NONE_RUNNING, 3).getName());
+        assertEquals("c", policy.next(NONE_RUNNING, 3).getName());
+        assertNull(policy.next(NONE_RUNNING, 3));
+        assertEquals(0, policy.size());
+    }
+
+    public void testRepeatedRequestIsCollapsed() {
+        final ProjectConfig first = project("a");
+        final ProjectConfig reloaded = project("a");
+        assertTrue(policy.add(first, 0));
+        assertTrue(policy.add(project("b"), 1));
+        assertFalse(policy.add(reloaded, 2));
+
+        assertEquals(2, policy.size());
+        assertSame("keeps its place but builds the latest configuration", reloaded, policy.next(NONE_RUNNING, 3));
+    }
+
+    public void testRunningProjectIsSkipped() {
+        policy.add(project("a"), 0);
+        policy.add(project("b"), 1);
+        final Set<String> running = new HashSet<String>();
+        running.add("a");
+
+        assertEquals("b", policy.next(running, 2).getName());
+        assertNull(policy.next(running, 2));
+        assertEquals("a", policy.next(NONE_RUNNING, 2).getName());
+    }
+
+    public void testPosition() {
+        policy.add(project("a"), 0);
+        policy.add(project("b"), 1);
+
+        assertEquals(0, policy.position("a"));
+        assertEquals(1, policy.position("b"));
+        assertEquals(-1, policy.position("c"));
+
+        policy.next(NONE_RUNNING, 2);
+        assertEquals(-1, policy.position("a"));
+        assertEquals(0, policy.position("b"));
+    }
+
+    static ProjectConfig project(final String name) {
+        final ProjectConfig project = new ProjectConfig();
+        project.setName(name);
+        return project;
+    }
+}
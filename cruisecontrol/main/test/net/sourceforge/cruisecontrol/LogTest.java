@@ -177,6 +177,68 @@ public class LogTest extends TestCase {
         }
     }
 
+    public void testStreamingLogFile() throws Exception {
+        final String[] encodings = { "UTF-8", "ISO-8859-1", null };
+
+        final SAXBuilder builder = new SAXBuilder("org.apache.xerces.parsers.SAXParser");
+        final XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+        for (final String encoding : encodings) {
+            final Log log = new Log();
+            log.setProjectName("testStreamingLogFile");
+            log.setDir(LOG_DIR);
+            log.setStreaming(true);
+            if (encoding != null) {
+                log.setEncoding(encoding);
+            }
+            final int[] contentSeenByLogger = new int[1];
+            log.add(new BuildLogger() {
+                public void log(final Element buildLog) {
+                    final Element build = buildLog.getChild("build");
+                    contentSeenByLogger[0] = build.getContentSize();
+                    build.setAttribute("logged", "true");
+                    buildLog.addContent(new Element("merged"));
+                }
+
+                public void validate() {
+                }
+            });
+            log.validate();
+            filesToDelete.add(new File(log.getLogDir()));
+
+            log.addContent(getBuildLogInfo());
+            final Element build = new Element("build");
+            build.setAttribute("time", "1 second");
+            for (int i = 0; i < 100; i++) {
+                final Element message = new Element("message");
+                message.setAttribute("priority", "info");
+                message.addContent(new CDATA("message " + i + " with special characters: \u00c6\u00d8\u00c5"));
+                build.addContent(message);
+            }
+            log.addContent(build);
+            log.addContent(new Element("modifications"));
+
+            final Date now = new Date();
+            log.writeLogFile(now);
+
+            assertEquals("spooled sections are handed to loggers without content", 0, contentSeenByLogger[0]);
+            final File logFile = new File(LOG_DIR, "log" + DateUtil.getFormattedTime(now) + "L.xml");
+            assertTrue(logFile.isFile());
+            filesToDelete.add(logFile);
+
+            final Element actualContent = builder.build(logFile).getRootElement();
+            final Element actualBuild = actualContent.getChild("build");
+            assertEquals("true", actualBuild.getAttributeValue("logged"));
+            assertEquals("1 second", actualBuild.getAttributeValue("time"));
+            assertEquals(100, actualBuild.getChildren("message").size());
+            assertNotNull(actualContent.getChild("merged"));
+            assertEquals(outputter.outputString(log.getContent()), outputter.outputString(actualContent));
+            assertTrue(log.wasBuildSuccessful());
+
+            log.reset();
+            assertEquals(0, log.getContent().getContentSize());
+        }
+    }
+
     /**
      * Asserts that leading and trailing whitespace in CDATA elements is preserved.
      *
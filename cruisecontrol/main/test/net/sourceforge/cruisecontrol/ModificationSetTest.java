@@ -45,6 +45,10 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 
 import junit.framework.TestCase;
 import net.sourceforge.cruisecontrol.sourcecontrols.MockSourceControl;
@@ -203,6 +207,151 @@ public class ModificationSetTest extends TestCase {
                 .outputString(modSetResults));
     }
 
+    public void testGetModificationsInParallelKeepsOrder() throws Exception {
+        final MockSourceControl slow = new MockSourceControl() {
+            public List<Modification> getModifications(Date lastBuild, Date now) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return super.getModifications(lastBuild, now);
+            }
+        };
+        slow.setType(1);
+        final MockSourceControl fast = new MockSourceControl();
+        fast.setType(2);
+
+        modSet.setParallel(true);
+        modSet.setMaxConcurrency(2);
+        modSet.add(slow);
+        modSet.add(fast);
+
+        final Element modSetResults = modSet.retrieveModificationsAsElement(new Date(), mockProgress);
+
+        final Element modificationsElement = new Element("modifications");
+        for (final Modification modification : slow.getModifications(new Date(), new Date())) {
+            modificationsElement.addContent(modification.toElement());
+        }
+        for (final Modification modification : fast.getModifications(new Date(), new Date())) {
+            modificationsElement.addContent(modification.toElement());
+        }
+
+        final XMLOutputter outputter = new XMLOutputter();
+        assertEquals("XML data differ", outputter.outputString(modificationsElement), outputter
+                .outputString(modSetResults));
+    }
+
+    public void testParallelSourceControlTimeout() throws Exception {
+        final MockSourceControl hanging = new MockSourceControl() {
+            public List<Modification> getModifications(Date lastBuild, Date now) {
+                try {
+                    Thread.sleep(60 * 1000);
+                } catch (InterruptedException e) {
+                    // cancelled after the timeout
+                }
+                return super.getModifications(lastBuild, now);
+            }
+        };
+        hanging.setType(1);
+        final MockSourceControl fast = new MockSourceControl();
+        fast.setType(2);
+
+        modSet.setParallel(true);
+        modSet.setSourceControlTimeout(1);
+        modSet.add(hanging);
+        modSet.add(fast);
+
+        try {
+            modSet.retrieveModificationsAsElement(new Date(), mockProgress);
+            fail("a source control that times out should fail the check");
+        } catch (ModificationSet.SourceControlPollException expected) {
+            assertTrue(expected.getMessage().indexOf("did not return modifications within 1 seconds") > 0);
+        }
+    }
+
+    public void testSourceControlTimeoutStartsWhenThePollRuns() throws Exception {
+        // keep every shared polling thread busy for longer than the timeout
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = ModificationSet.getPollingExecutor();
+        for (int i = 0; i < ModificationSet.SHARED_POLLING_THREADS; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // done
+                    }
+                }
+            });
+        }
+        final Timer timer = new Timer(true);
+        timer.schedule(new TimerTask() {
+            public void run() {
+                release.countDown();
+            }
+        }, 1500);
+
+        final MockSourceControl first = new MockSourceControl();
+        first.setType(1);
+        final MockSourceControl second = new MockSourceControl();
+        second.setType(2);
+        modSet.setParallel(true);
+        modSet.setSourceControlTimeout(1);
+        modSet.add(first);
+        modSet.add(second);
+
+        modSet.retrieveModificationsAsElement(new Date(), mockProgress);
+        assertEquals(4, modSet.getCurrentModifications().size());
+        timer.cancel();
+    }
+
+    public void testParallelSourceControlExceptionIsRethrown() {
+        modSet.setParallel(true);
+        modSet.add(new MockSourceControl());
+        modSet.add(new MockSourceControl() {
+            public List<Modification> getModifications(Date lastBuild, Date now) {
+                throw new IllegalStateException("broken");
+            }
+        });
+
+        try {
+            modSet.retrieveModificationsAsElement(new Date(), mockProgress);
+            fail("expected the source control's exception");
+        } catch (IllegalStateException expected) {
+            assertEquals("broken", expected.getMessage());
+        }
+    }
+
+    public void testSharedPollIsReusedByAnotherModificationSet() throws Exception {
+        SharedSourceControlPoller.getInstance().clear();
+        final Date lastBuild = new Date(System.currentTimeMillis() - 60 * 1000);
+        final MockSourceControl first = new MockSourceControl();
+        first.setType(1);
+        first.setModifiedDate(new Date(lastBuild.getTime() + 1000));
+        first.setProperty("shared");
+        modSet.setSharedPollTtl(60);
+        modSet.add(first);
+        modSet.retrieveModificationsAsElement(lastBuild, mockProgress);
+
+        final MockSourceControl second = new MockSourceControl();
+        second.setType(1);
+        second.setModifiedDate(new Date(lastBuild.getTime() + 1000));
+        second.setProperty("shared");
+        final ModificationSet otherModSet = new ModificationSet();
+        otherModSet.setQuietPeriod(0);
+        otherModSet.setSharedPollTtl(60);
+        otherModSet.add(second);
+        Thread.sleep(10);
+        otherModSet.retrieveModificationsAsElement(lastBuild, mockProgress);
+
+        assertEquals(modSet.getTimeOfCheck(), otherModSet.getTimeOfCheck());
+        assertEquals(2, otherModSet.getCurrentModifications().size());
+        assertEquals("true", otherModSet.getProperties().get("shared"));
+        assertEquals("true", modSet.getProperties().get("shared"));
+        assertEquals(1, SharedSourceControlPoller.getInstance().getHits());
+    }
+
     /**
      * This test will give modificationset two different types of modifications.
      * One regular, based on the object, and one with Element data. Uses inline
@@ -0,0 +1,99 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.Collections;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class PriorityBuildQueuePolicyTest extends TestCase {
+
+    private static final Set<String> NONE_RUNNING = Collections.emptySet();
+    private static final long AGING_INTERVAL = 1000;
+
+    private PriorityBuildQueuePolicy policy;
+
+    protected void setUp() throws Exception {
+        policy = new PriorityBuildQueuePolicy(AGING_INTERVAL);
+    }
+
+    public void testHigherPriorityFirst() {
+        policy.add(project("low", 0, null), 0);
+        policy.add(project("high", 5, null), 1);
+        policy.add(project("medium", 2, null), 2);
+
+        assertEquals(0, policy.position("high"));
+        assertEquals(1, policy.position("medium"));
+        assertEquals(2, policy.position("low"));
+        assertEquals("high", policy.next(NONE_RUNNING, 3).getName());
+        assertEquals("medium", policy.next(NONE_RUNNING, 3).getName());
+        assertEquals("low", policy.next(NONE_RUNNING, 3).getName());
+    }
+
+    public void testWaitingRaisesPriority() {
+        policy.add(project("old", 0, null), 0);
+        policy.add(project("new", 2, null), 3 * AGING_INTERVAL);
+
+        assertEquals("old", policy.next(NONE_RUNNING, 3 * AGING_INTERVAL).getName());
+    }
+
+    public void testLeastRecentlyServedGroupFirst() {
+        policy.add(project("noisy-1", 0, "noisy"), 0);
+        policy.next(NONE_RUNNING, 0);
+
+        policy.add(project("noisy-2", 0, "noisy"), 1);
+        policy.add(project("quiet", 0, "quiet"), 2);
+
+        assertEquals("quiet", policy.next(NONE_RUNNING, 3).getName());
+        assertEquals("noisy-2", policy.next(NONE_RUNNING, 3).getName());
+    }
+
+    public void testEquals() {
+        assertEquals(new PriorityBuildQueuePolicy(AGING_INTERVAL), policy);
+        assertFalse(policy.equals(new PriorityBuildQueuePolicy(AGING_INTERVAL * 2)));
+        assertFalse(policy.equals(new FifoBuildQueuePolicy()));
+        assertFalse(new FifoBuildQueuePolicy().equals(policy));
+    }
+
+    private static ProjectConfig project(final String name, final int priority, final String group) {
+        final ProjectConfig project = FifoBuildQueuePolicyTest.project(name);
+        project.setPriority(priority);
+        project.setGroup(group);
+        return project;
+    }
+}
@@ -58,6 +58,8 @@ import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 //import java.util.zip.ZipEntry;
 //import java.util.zip.ZipInputStream;
 
@@ -414,9 +416,44 @@ public class ProjectTest {
         projectConfig.add(new Log());
         project.init();
 
+        assertNull(project.getLastBuildResult());
         project.publish(projectConfig.getLog());
 
         assertEquals(2, publisher.getPublishCount());
+        assertNotNull(project.getLastBuildResult());
+    }
+
+    @Test
+    public void testPublishAsynchronously() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        MockPublisher publisher = new MockPublisher() {
+            private static final long serialVersionUID = 1L;
+
+            public void publish(Element log) throws CruiseControlException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new CruiseControlException(e);
+                }
+                super.publish(log);
+            }
+        };
+
+        ProjectConfig.Publishers publishers = new ProjectConfig.Publishers();
+        publishers.setAsync(true);
+        publishers.add(publisher);
+
+        projectConfig.add(publishers);
+        project.setName("projectName");
+        projectConfig.add(new Log());
+
+        project.publish(projectConfig.getLog());
+        assertEquals(0, publisher.getPublishCount());
+
+        release.countDown();
+        project.getPublisherPipeline().waitForPublishers();
+        assertEquals(1, publisher.getPublishCount());
+        assertEquals(1, project.getPublisherLatencies().length);
     }
 
     @Test
@@ -976,7 +1013,7 @@ public class ProjectTest {
     private static class MockPublisher implements Publisher {
         private static final long serialVersionUID = 318946828157075347L;
 
-        private int publishCount = 0;
+        private volatile int publishCount = 0;
 
         public void validate() {
         }
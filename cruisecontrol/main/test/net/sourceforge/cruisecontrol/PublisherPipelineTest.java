@@ -0,0 +1,248 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.jdom.Element;
+
+public class PublisherPipelineTest extends TestCase {
+
+    private PublisherPipeline pipeline;
+
+    private final List<String> published = Collections.synchronizedList(new ArrayList<String>());
+
+    protected void setUp() {
+        final Project project = new Project();
+        project.setName("pipeline");
+        pipeline = new PublisherPipeline(project);
+    }
+
+    public void testShouldPublishOnCallingThreadWhenSynchronous() {
+        final Thread caller = Thread.currentThread();
+        pipeline.publish(new Element("cruisecontrol"), publishers(new RecordingPublisher("one") {
+            public void publish(Element log) throws CruiseControlException {
+                assertSame(caller, Thread.currentThread());
+                super.publish(log);
+            }
+        }), 0);
+        assertEquals(Arrays.asList(new String[] {"one"}), published);
+    }
+
+    public void testShouldRunPublishersOfOneBuildConcurrently() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        pipeline.publishAsynchronously(new Element("cruisecontrol"),
+                publishers(new RendezvousPublisher("one", bothStarted), new RendezvousPublisher("two", bothStarted)),
+                0, 0);
+        pipeline.waitForPublishers();
+        assertEquals(2, published.size());
+    }
+
+    public void testShouldPublishBuildsOfOneProjectInOrder() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        pipeline.publishAsynchronously(new Element("cruisecontrol"), publishers(new RecordingPublisher("first") {
+            public void publish(Element log) throws CruiseControlException {
+                await(release);
+                super.publish(log);
+            }
+        }), 0, 0);
+        pipeline.publishAsynchronously(new Element("cruisecontrol"), publishers(new RecordingPublisher("second")),
+                0, 0);
+        Thread.sleep(100);
+        assertTrue(published.isEmpty());
+
+        release.countDown();
+        pipeline.waitForPublishers();
+        assertEquals(Arrays.asList(new String[] {"first", "second"}), published);
+    }
+
+    public void testShouldInterruptPublisherThatTimesOut() throws Exception {
+        pipeline.publishAsynchronously(new Element("cruisecontrol"), publishers(new RecordingPublisher("slow") {
+            public void publish(Element log) throws CruiseControlException {
+                await(new CountDownLatch(1));
+                super.publish(log);
+            }
+        }), 100, 0);
+        pipeline.waitForPublishers();
+        assertTrue(published.isEmpty());
+        assertTrue(pipeline.getLatencies()[0], pipeline.getLatencies()[0].endsWith("1 runs, last 0 ms, average 0 ms,"
+                + " max 0 ms, 1 failed"));
+    }
+
+    public void testShouldStartTimeoutWhenPublisherStartsRunning() throws Exception {
+        final List<Publisher> publishers = new ArrayList<Publisher>();
+        for (int i = 0; i <= PublisherPipeline.SHARED_PUBLISHING_THREADS; i++) {
+            publishers.add(new RecordingPublisher("busy" + i) {
+                public void publish(Element log) throws CruiseControlException {
+                    sleep(700);
+                    super.publish(log);
+                }
+            });
+        }
+        // the last publisher waits about 700 ms for a thread, then runs 700 ms: over the timeout if it counted
+        // from when it was handed over
+        pipeline.publishAsynchronously(new Element("cruisecontrol"), publishers, 1000, 0);
+        pipeline.waitForPublishers();
+        assertEquals(publishers.size(), published.size());
+    }
+
+    public void testShouldRetryTimedOutPublisherOnlyOnceItStopped() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        pipeline.publishAsynchronously(new Element("cruisecontrol"), publishers(new RecordingPublisher("slow") {
+            public void publish(Element log) throws CruiseControlException {
+                maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                try {
+                    // reacts to the interrupt, but only after a while
+                    try {
+                        Thread.sleep(10 * 1000);
+                    } catch (InterruptedException e) {
+                        sleep(50);
+                    }
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        }), 100, 1);
+        pipeline.waitForPublishers();
+        assertEquals(1, maxRunning.get());
+        assertTrue(pipeline.getLatencies()[0], pipeline.getLatencies()[0].indexOf("2 runs") > 0);
+    }
+
+    public void testShouldNotRetryPublisherThatIgnoresInterrupt() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+        pipeline.publishAsynchronously(new Element("cruisecontrol"), publishers(new RecordingPublisher("hung") {
+            public void publish(Element log) throws CruiseControlException {
+                calls.incrementAndGet();
+                final long end = System.currentTimeMillis() + 500;
+                while (System.currentTimeMillis() < end) {
+                    try {
+                        Thread.sleep(end - System.currentTimeMillis());
+                    } catch (InterruptedException ignored) {
+                        // keeps running
+                    }
+                }
+                finished.countDown();
+            }
+        }), 100, 1);
+        pipeline.waitForPublishers();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, calls.get());
+        assertTrue(pipeline.getLatencies()[0], pipeline.getLatencies()[0].endsWith("1 runs, last 0 ms, average 0 ms,"
+                + " max 0 ms, 1 failed"));
+    }
+
+    public void testShouldRetryFailedPublisher() throws Exception {
+        pipeline.publishAsynchronously(new Element("cruisecontrol"), publishers(new RecordingPublisher("flaky") {
+            private int calls;
+
+            public void publish(Element log) throws CruiseControlException {
+                if (++calls == 1) {
+                    throw new CruiseControlException("first call fails");
+                }
+                super.publish(log);
+            }
+        }), 0, 1);
+        pipeline.waitForPublishers();
+        assertEquals(Arrays.asList(new String[] {"flaky"}), published);
+        assertTrue(pipeline.getLatencies()[0], pipeline.getLatencies()[0].startsWith("1. "));
+        assertTrue(pipeline.getLatencies()[0], pipeline.getLatencies()[0].indexOf("2 runs") > 0);
+        assertTrue(pipeline.getLatencies()[0], pipeline.getLatencies()[0].endsWith("1 failed"));
+    }
+
+    private static List<Publisher> publishers(final Publisher... publishers) {
+        return Arrays.asList(publishers);
+    }
+
+    private static void sleep(final long millis) throws CruiseControlException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new CruiseControlException("interrupted", e);
+        }
+    }
+
+    private static void await(final CountDownLatch latch) throws CruiseControlException {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new CruiseControlException("latch was not released");
+            }
+        } catch (InterruptedException e) {
+            throw new CruiseControlException("interrupted", e);
+        }
+    }
+
+    private class RecordingPublisher implements Publisher {
+        private final String name;
+
+        RecordingPublisher(final String name) {
+            this.name = name;
+        }
+
+        public void publish(Element log) throws CruiseControlException {
+            published.add(name);
+        }
+
+        public void validate() {
+        }
+    }
+
+    private class RendezvousPublisher extends RecordingPublisher {
+        private final CountDownLatch started;
+
+        RendezvousPublisher(final String name, final CountDownLatch started) {
+            super(name);
+            this.started = started;
+        }
+
+        public void publish(Element log) throws CruiseControlException {
+            started.countDown();
+            await(started);
+            super.publish(log);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class SharedSourceControlPollerTest extends TestCase {
+
+    private static final long MINUTE = 60 * 1000;
+
+    private SharedSourceControlPoller poller;
+    private Date lastBuild;
+    private Date now;
+
+    protected void setUp() throws Exception {
+        poller = new SharedSourceControlPoller();
+        now = new Date();
+        lastBuild = new Date(now.getTime() - 10 * MINUTE);
+    }
+
+    public void testIdenticalSourceControlsShareOnePoll() {
+        final CountingSourceControl first = new CountingSourceControl("svn://repo/trunk");
+        final CountingSourceControl second = new CountingSourceControl("svn://repo/trunk");
+
+        poller.poll(first, lastBuild, now, MINUTE);
+        final SharedSourceControlPoller.Result result
+                = poller.poll(second, lastBuild, new Date(now.getTime() + 1000), MINUTE);
+
+        assertEquals(1, first.polls);
+        assertEquals(0, second.polls);
+        assertEquals(now, result.getTimeOfCheck());
+        assertEquals(1, result.getModifications().size());
+        assertEquals(1, poller.getHits());
+        assertEquals(1, poller.getMisses());
+    }
+
+    public void testDifferentRepositoriesAreNotShared() {
+        final CountingSourceControl first = new CountingSourceControl("svn://repo/trunk");
+        final CountingSourceControl second = new CountingSourceControl("svn://repo/branches/b1");
+
+        poller.poll(first, lastBuild, now, MINUTE);
+        poller.poll(second, lastBuild, now, MINUTE);
+
+        assertEquals(1, first.polls);
+        assertEquals(1, second.polls);
+        assertEquals(0, poller.getHits());
+        assertEquals(2, poller.getMisses());
+    }
+
+    public void testExpiredPollIsNotReused() {
+        final CountingSourceControl first = new CountingSourceControl("svn://repo/trunk");
+        final CountingSourceControl second = new CountingSourceControl("svn://repo/trunk");
+
+        poller.poll(first, lastBuild, now, MINUTE);
+        poller.poll(second, lastBuild, new Date(now.getTime() + 2 * MINUTE), MINUTE);
+
+        assertEquals(1, second.polls);
+        assertEquals(0, poller.getHits());
+    }
+
+    public void testPollStartingAfterLastBuildIsNotReused() {
+        final CountingSourceControl first = new CountingSourceControl("svn://repo/trunk");
+        final CountingSourceControl second = new CountingSourceControl("svn://repo/trunk");
+
+        poller.poll(first, lastBuild, now, MINUTE);
+        poller.poll(second, new Date(lastBuild.getTime() - 1000), now, MINUTE);
+
+        assertEquals(1, second.polls);
+    }
+
+    public void testPollIsReusedOnlyIfAllItsModificationsAreAfterLastBuild() {
+        final CountingSourceControl first = new CountingSourceControl("svn://repo/trunk");
+        first.modifiedTime = new Date(lastBuild.getTime() + 1000);
+        final CountingSourceControl second = new CountingSourceControl("svn://repo/trunk");
+        second.modifiedTime = first.modifiedTime;
+        final CountingSourceControl third = new CountingSourceControl("svn://repo/trunk");
+
+        poller.poll(first, lastBuild, now, MINUTE);
+        poller.poll(second, new Date(lastBuild.getTime() + 500), now, MINUTE);
+        assertEquals(0, second.polls);
+
+        poller.poll(third, new Date(lastBuild.getTime() + 2000), now, MINUTE);
+        assertEquals(1, third.polls);
+    }
+
+    public void testPropertiesAreShared() {
+        final CountingSourceControl first = new CountingSourceControl("svn://repo/trunk");
+        final CountingSourceControl second = new CountingSourceControl("svn://repo/trunk");
+
+        assertEquals("true", poller.poll(first, lastBuild, now, MINUTE).getProperties().get("modified"));
+        assertEquals("true", poller.poll(second, lastBuild, now, MINUTE).getProperties().get("modified"));
+        assertEquals(0, second.polls);
+    }
+
+    public void testConcurrentPollsAreCoalesced() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final BlockingSourceControl first = new BlockingSourceControl(started, release);
+        final BlockingSourceControl second = new BlockingSourceControl(started, release);
+
+        final Thread leader = new Thread() {
+            public void run() {
+                poller.poll(first, lastBuild, now, MINUTE);
+            }
+        };
+        leader.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        final List<SharedSourceControlPoller.Result> results = new ArrayList<SharedSourceControlPoller.Result>();
+        final Thread follower = new Thread() {
+            public void run() {
+                results.add(poller.poll(second, lastBuild, now, MINUTE));
+            }
+        };
+        follower.start();
+        Thread.sleep(100);
+        release.countDown();
+        leader.join(10 * 1000);
+        follower.join(10 * 1000);
+
+        assertEquals(1, first.polls);
+        assertEquals(0, second.polls);
+        assertEquals(1, results.size());
+        assertEquals(1, poller.getCoalesced());
+    }
+
+    public void testFailedPollIsNotShared() {
+        final CountingSourceControl first = new CountingSourceControl("svn://repo/trunk");
+        first.fail = true;
+        try {
+            poller.poll(first, lastBuild, now, MINUTE);
+            fail("expected the source control's exception");
+        } catch (IllegalStateException expected) {
+        }
+
+        final CountingSourceControl second = new CountingSourceControl("svn://repo/trunk");
+        poller.poll(second, lastBuild, now, MINUTE);
+        assertEquals(1, second.polls);
+        assertEquals(1, poller.getCachedPolls());
+    }
+
+    public void testSourceControlWithoutQueryKeyIsNotShared() {
+        final SourceControl plain = new PlainSourceControl();
+        assertNull(SharedSourceControlPoller.getQueryKey(plain));
+        assertNull(poller.poll(plain, lastBuild, now, MINUTE));
+
+        final CountingSourceControl optedOut = new CountingSourceControl(null);
+        assertNull(SharedSourceControlPoller.getQueryKey(optedOut));
+        assertNull(poller.poll(optedOut, lastBuild, now, MINUTE));
+    }
+
+    public void testQueryKeyIncludesConfiguration() {
+        assertEquals(SharedSourceControlPoller.getQueryKey(new CountingSourceControl("a")),
+                SharedSourceControlPoller.getQueryKey(new CountingSourceControl("a")));
+        assertFalse(SharedSourceControlPoller.getQueryKey(new CountingSourceControl("a")).equals(
+                SharedSourceControlPoller.getQueryKey(new CountingSourceControl("b"))));
+    }
+
+    public void testQueryKeyIgnoresPollState() {
+        final CountingSourceControl sourceControl = new CountingSourceControl("a");
+        final String key = SharedSourceControlPoller.getQueryKey(sourceControl);
+        sourceControl.getModifications(lastBuild, now);
+        assertEquals(key, SharedSourceControlPoller.getQueryKey(sourceControl));
+    }
+
+    public void testClear() {
+        poller.poll(new CountingSourceControl("svn://repo/trunk"), lastBuild, now, MINUTE);
+        poller.clear();
+        assertEquals(0, poller.getCachedPolls());
+        assertEquals(0, poller.getMisses());
+    }
+
+    private static class CountingSourceControl implements ShareableSourceControl {
+        private final String repository;
+        int polls;
+        boolean fail;
+        Date modifiedTime;
+
+        CountingSourceControl(final String repository) {
+            this.repository = repository;
+        }
+
+        public List<Modification> getModifications(final Date lastBuild, final Date now) {
+            polls++;
+            if (fail) {
+                throw new IllegalStateException("broken");
+            }
+            final Modification modification = new Modification();
+            modification.modifiedTime = modifiedTime != null ? modifiedTime : new Date(lastBuild.getTime() + 1);
+            modification.comment = repository;
+            final List<Modification> modifications = new ArrayList<Modification>();
+            modifications.add(modification);
+            return modifications;
+        }
+
+        public void validate() throws CruiseControlException {
+        }
+
+        public Map<String, String> getProperties() {
+            final Map<String, String> properties = new HashMap<String, String>();
+            properties.put("modified", "true");
+            return properties;
+        }
+
+        public String getQueryKey() {
+            return repository;
+        }
+    }
+
+    private static class BlockingSourceControl extends CountingSourceControl {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingSourceControl(final CountDownLatch started, final CountDownLatch release) {
+            super("svn://repo/trunk");
+            this.started = started;
+            this.release = release;
+        }
+
+        public List<Modification> getModifications(final Date lastBuild, final Date now) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return super.getModifications(lastBuild, now);
+        }
+    }
+
+    private static class PlainSourceControl implements SourceControl {
+        public List<Modification> getModifications(final Date lastBuild, final Date now) {
+            return new ArrayList<Modification>();
+        }
+
+        public void validate() throws CruiseControlException {
+        }
+
+        public Map<String, String> getProperties() {
+            return new HashMap<String, String>();
+        }
+    }
+}
@@ -769,6 +769,68 @@ public final class PipedExecBuilderTest extends TestCase {
     }
 
     
+    /**
+     * Checks that no more than <code>maxparallel</code> scripts run at once, and that the scripts
+     * are started in the order given by their dependencies. The pipe looks like:
+     * <pre>
+     *  01(file) --> 02(sort) --> 03(file)
+     *                              :
+     *                              : (wait for)
+     *  04(file) --> 05(sort) --> 06(file)
+     * </pre>
+     *
+     * @throws IOException if the test fails!
+     * @throws CruiseControlException if the builder fails!
+     */
+    public void testBuild_maxParallel() throws IOException, CruiseControlException {
+        PipedExecBuilder builder = new PipedExecBuilder();
+        Element buildLog;
+
+        /* Input and result files, and output files */
+        File inpFile = getFile();
+        File resFile = getFile();
+        File out1File = getFile();
+        File out2File = getFile();
+        /* Prepare content */
+        createFiles(inpFile, resFile, 20);
+
+        builder.setTimeout(120);
+        builder.setShowProgress(false);
+        builder.setMaxParallel(1);
+        /* Set commands */
+        setExec(builder.createExec(), "01", "cat",      inpFile.getAbsolutePath());
+        setExec(builder.createExec(), "02", "sort",     "-u",                             "01");
+        setExec(builder.createExec(), "03", "cat",     ">" + out1File.getAbsolutePath(),   "02");
+        setExec(builder.createExec(), "04", "cat",      inpFile.getAbsolutePath(),        null, "03");
+        setExec(builder.createExec(), "05", "sort",     "-u",                             "04");
+        setExec(builder.createExec(), "06", "cat",     ">" + out2File.getAbsolutePath(),   "05");
+
+        /* Validate it and run it */
+        builder.validate();
+        buildLog = builder.build(new HashMap<String, String>(), null);
+
+        printXML(buildLog);
+        /* No 'error' attribute must exist in the build log */
+        assertNull("error attribute was found in build log!", buildLog.getAttribute("error"));
+        assertFiles(resFile, out1File);
+        assertFiles(resFile, out2File);
+
+        /* The scripts run one by one, in the order given by the pipe */
+        assertEquals(6, buildLog.getChildren().size());
+        long lastEnd = 0;
+        for (int i = 0; i < 6; i++) {
+            final Element script = (Element) buildLog.getChildren().get(i);
+            final long start = Long.parseLong(script.getAttributeValue("start"));
+            final long end = Long.parseLong(script.getAttributeValue("end"));
+
+            assertEquals("0" + (i + 1), script.getAttributeValue("id"));
+            assertTrue("script " + script.getAttributeValue("id") + " started before previous finished",
+                    start >= lastEnd);
+            assertTrue(end >= start);
+            lastEnd = end;
+        }
+    }
+
     /**
      * Test environment variables in the build - sets some value PipedExecBuilder and check
      * if it is propagated to the individual builders
@@ -3,6 +3,7 @@ package net.sourceforge.cruisecontrol.builders;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import junit.framework.TestCase;
 import net.sourceforge.cruisecontrol.Builder;
@@ -12,6 +13,7 @@ import net.sourceforge.cruisecontrol.testutil.TestUtil;
 import net.sourceforge.cruisecontrol.util.BuildOutputLogger;
 import net.sourceforge.cruisecontrol.util.Commandline;
 import net.sourceforge.cruisecontrol.util.MockCommandline;
+import net.sourceforge.cruisecontrol.util.MockProcess;
 
 import org.jdom.Element;
 import org.junit.Before;
@@ -128,6 +130,46 @@ public class ScriptRunnerTest extends TestCase {
                 currentId.startsWith(origId) && (currentId.length() > origId.length()));
     }
 
+    @Test
+    public void testKillScriptWhenTimeoutExpires() throws Exception {
+        final CountDownLatch destroyed = new CountDownLatch(1);
+        final MockCommandline mockCommandline = new MockCommandline() {
+            protected MockProcess getMockProcess() {
+                return new MockProcess() {
+                    public void destroy() {
+                        destroyed.countDown();
+                    }
+
+                    public int waitFor() throws InterruptedException {
+                        destroyed.await();
+                        return -1;
+                    }
+                };
+            }
+        };
+        mockCommandline.setAssertCorrectCommandline(false);
+        mockCommandline.setProcessInputStream(new ByteArrayInputStream("".getBytes()));
+        mockCommandline.setProcessErrorStream(new ByteArrayInputStream("".getBytes()));
+
+        final Script dummyScript = new Script() {
+
+            public Commandline buildCommandline() throws CruiseControlException {
+                return mockCommandline;
+            }
+
+            public void setExitCode(int result) {
+            }
+
+            public int getExitCode() {
+                return -1;
+            }
+        };
+
+        assertFalse("script should have been killed",
+                new ScriptRunner().runScript(TestUtil.getTargetDir(), dummyScript, 1));
+        assertEquals(0, destroyed.getCount());
+    }
+
     private static final class TestBuilder extends Builder {
         private static final long serialVersionUID = -4055176461374960419L;
 
@@ -43,6 +43,7 @@ import org.jdom.Element;
 import junit.framework.TestCase;
 import net.sourceforge.cruisecontrol.CruiseControlConfig;
 import net.sourceforge.cruisecontrol.CruiseControlException;
+import net.sourceforge.cruisecontrol.ProjectInterface;
 import net.sourceforge.cruisecontrol.testutil.TestUtil.FilesToDelete;
 import net.sourceforge.cruisecontrol.testutil.TestUtil;
 import net.sourceforge.cruisecontrol.util.IO;
@@ -120,6 +121,46 @@ public class XMLConfigManagerTest extends TestCase {
         assertFalse(configManager.reloadIfNecessary());
     }
 
+    public void testShouldOnlyRecreateChangedProjects() throws CruiseControlException {
+        writeConfigurationFile("<cruisecontrol><property name='interval' value='30'/>"
+                + "<project name='unchanged'><schedule interval='${interval}'><ant/></schedule></project>"
+                + "<project name='changed'><schedule><ant/></schedule></project></cruisecontrol>");
+        XMLConfigManager configManager = new XMLConfigManager(configurationFile);
+        final ProjectInterface unchanged = configManager.getProject("unchanged");
+        final ProjectInterface changed = configManager.getProject("changed");
+
+        writeConfigurationFile("<cruisecontrol><property name='interval' value='30'/>"
+                + "<project name='unchanged'><schedule interval='${interval}'><ant/></schedule></project>"
+                + "<project name='changed'><schedule interval='60'><ant/></schedule></project></cruisecontrol>");
+        assertTrue(configManager.reloadIfNecessary());
+        assertSame(unchanged, configManager.getProject("unchanged"));
+        assertNotSame(changed, configManager.getProject("changed"));
+
+        // a changed property changes the effective configuration
+        writeConfigurationFile("<cruisecontrol><property name='interval' value='45'/>"
+                + "<project name='unchanged'><schedule interval='${interval}'><ant/></schedule></project>"
+                + "<project name='changed'><schedule interval='60'><ant/></schedule></project></cruisecontrol>");
+        assertTrue(configManager.reloadIfNecessary());
+        assertNotSame(unchanged, configManager.getProject("unchanged"));
+    }
+
+    public void testShouldNotHashFilesWithUnchangedStamp() throws CruiseControlException {
+        final long lastModified = System.currentTimeMillis() - 2 * XMLConfigManager.RACY_STAMP_WINDOW;
+        writeConfigurationFile("<cruisecontrol><project name='a'><schedule interval='30'>"
+                + "<ant/></schedule></project></cruisecontrol>");
+        assertTrue(configurationFile.setLastModified(lastModified));
+        XMLConfigManager configManager = new XMLConfigManager(configurationFile);
+
+        // same size and modification time: the change isn't looked at
+        writeConfigurationFile("<cruisecontrol><project name='a'><schedule interval='60'>"
+                + "<ant/></schedule></project></cruisecontrol>");
+        assertTrue(configurationFile.setLastModified(lastModified));
+        assertFalse(configManager.reloadIfNecessary());
+
+        assertTrue(configurationFile.setLastModified(lastModified + 1000));
+        assertTrue(configManager.reloadIfNecessary());
+    }
+
     public void testResolverShouldReturnCorrectElement() throws Exception {
         XMLConfigManager configManager = new XMLConfigManager(configurationFile);
         File file = File.createTempFile("XmlConfigManagerTest", ".xml", configurationFile.getParentFile());
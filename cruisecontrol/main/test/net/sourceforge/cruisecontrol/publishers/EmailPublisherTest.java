@@ -171,6 +171,28 @@ public class EmailPublisherTest extends TestCase {
         publisher.validate();
     }
 
+    public void testValidateConnectionsAndMergeWindow() throws CruiseControlException {
+        EmailPublisher publisher = new MockEmailPublisher();
+        publisher.setReturnAddress("returnaddress");
+        publisher.setConnections(0);
+        try {
+            publisher.validate();
+            fail("at least one connection is needed to send email");
+        } catch (CruiseControlException expected) {
+        }
+
+        publisher.setConnections(1);
+        publisher.setMergeWindow(-1);
+        try {
+            publisher.validate();
+            fail("negative merge window should fail validation");
+        } catch (CruiseControlException expected) {
+        }
+
+        publisher.setMergeWindow(30);
+        publisher.validate();
+    }
+
     public void testEmailValidator() {
         assertTrue(emailPublisher.isValid("jerome@coffeebreaks.org"));
         assertFalse(emailPublisher.isValid("jerome@coffeebreaks."));
@@ -0,0 +1,95 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.publishers.email;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class EmailMappingCacheTest extends TestCase {
+
+    protected void setUp() {
+        EmailMappingCache.clear();
+    }
+
+    protected void tearDown() {
+        EmailMappingCache.clear();
+    }
+
+    public void testCachesAddressesAndMisses() {
+        EmailMappingCache.put("ldap", "alice", "alice@example.com", 1000);
+        EmailMappingCache.put("ldap", "nobody", null, 1000);
+
+        assertEquals("alice@example.com", EmailMappingCache.lookup("ldap", "alice", 1000).getAddress());
+        final EmailMappingCache.Entry miss = EmailMappingCache.lookup("ldap", "nobody", 1000);
+        assertNotNull(miss);
+        assertNull(miss.getAddress());
+        assertNull(EmailMappingCache.lookup("ldap", "bob", 1000));
+        assertNull(EmailMappingCache.lookup("other", "alice", 1000));
+    }
+
+    public void testStaleMappingsAreNotReturned() {
+        EmailMappingCache.put("ldap", "alice", "alice@example.com", 1000);
+        assertNull(EmailMappingCache.lookup("ldap", "alice", 1001));
+    }
+
+    public void testDropsLeastRecentlyUsedMappings() {
+        for (int i = 0; i < EmailMappingCache.MAX_ENTRIES; i++) {
+            EmailMappingCache.put("ldap", "user" + i, "user" + i + "@example.com", 1000);
+        }
+        assertNotNull(EmailMappingCache.lookup("ldap", "user0", 1000));
+        EmailMappingCache.put("ldap", "newcomer", "newcomer@example.com", 1000);
+
+        assertEquals(EmailMappingCache.MAX_ENTRIES, EmailMappingCache.size());
+        assertNotNull(EmailMappingCache.lookup("ldap", "user0", 1000));
+        assertNull(EmailMappingCache.lookup("ldap", "user1", 1000));
+    }
+
+    public void testFileSourceChangesWithTheFile() throws IOException {
+        final File file = File.createTempFile("EmailMappingCacheTest", ".properties");
+        file.deleteOnExit();
+        final String source = EmailMappingCache.fileSource(file);
+        assertEquals(source, EmailMappingCache.fileSource(file));
+
+        final FileWriter out = new FileWriter(file);
+        out.write("alice=alice@example.com");
+        out.close();
+        assertFalse(source.equals(EmailMappingCache.fileSource(file)));
+    }
+}
@@ -0,0 +1,164 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.publishers.email;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Set;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+import junit.framework.TestCase;
+
+public class LDAPMapperTest extends TestCase {
+
+    protected void setUp() {
+        EmailMappingCache.clear();
+        LDAPContextPool.clearAll();
+    }
+
+    protected void tearDown() {
+        EmailMappingCache.clear();
+        LDAPContextPool.clearAll();
+    }
+
+    public void testReusesContextsAndCachesLookups() {
+        final FakeLDAPMapper first = new FakeLDAPMapper();
+        Set<String> users = new HashSet<String>(Arrays.asList("alice", "nobody"));
+        Set<String> mappedUsers = new HashSet<String>();
+        first.mapUsers(users, mappedUsers);
+        assertEquals(Collections.singleton("alice@example.com"), mappedUsers);
+        assertEquals(Collections.singleton("nobody"), users);
+        assertEquals(1, first.created);
+        assertEquals(2, first.searches);
+
+        // a mapper of the same directory only looks up the user not cached yet, on the released context
+        final FakeLDAPMapper second = new FakeLDAPMapper();
+        users = new HashSet<String>(Arrays.asList("alice", "nobody", "bob"));
+        mappedUsers = new HashSet<String>();
+        second.mapUsers(users, mappedUsers);
+        assertEquals(new HashSet<String>(Arrays.asList("alice@example.com", "bob@example.com")), mappedUsers);
+        assertEquals(Collections.singleton("nobody"), users);
+        assertEquals(0, second.created);
+        assertEquals(1, second.searches);
+        assertEquals(0, first.closed);
+    }
+
+    public void testFailedLookupIsNeitherCachedNorItsContextReused() {
+        final FakeLDAPMapper mapper = new FakeLDAPMapper();
+        final Set<String> users = new HashSet<String>(Arrays.asList("broken"));
+        final Set<String> mappedUsers = new HashSet<String>();
+        mapper.mapUsers(users, mappedUsers);
+        assertEquals(Collections.singleton("broken"), users);
+        assertEquals(0, EmailMappingCache.size());
+        assertEquals(1, mapper.closed);
+
+        mapper.mapUsers(users, mappedUsers);
+        assertEquals(2, mapper.created);
+        assertEquals(2, mapper.searches);
+    }
+
+    public void testRetriesOnceOnANewContextWhenAReusedOneFails() {
+        final FakeLDAPMapper first = new FakeLDAPMapper();
+        first.mapUsers(new HashSet<String>(Arrays.asList("alice")), new HashSet<String>());
+        assertEquals(1, first.created);
+
+        // the released context went stale in the pool
+        final FakeLDAPMapper second = new FakeLDAPMapper();
+        second.stale = first.lastCreated;
+        Set<String> users = new HashSet<String>(Arrays.asList("bob"));
+        Set<String> mappedUsers = new HashSet<String>();
+        second.mapUsers(users, mappedUsers);
+        assertEquals(Collections.singleton("bob@example.com"), mappedUsers);
+        assertEquals(1, first.closed);
+        assertEquals(1, second.created);
+        assertEquals(2, second.searches);
+        assertEquals(0, second.closed);
+
+        // a lookup failing on a fresh context as well is given up after one retry
+        final FakeLDAPMapper third = new FakeLDAPMapper();
+        third.stale = second.lastCreated;
+        users = new HashSet<String>(Arrays.asList("broken"));
+        mappedUsers = new HashSet<String>();
+        third.mapUsers(users, mappedUsers);
+        assertEquals(Collections.singleton("broken"), users);
+        assertEquals(1, third.created);
+        assertEquals(2, third.searches);
+        assertEquals(1, third.closed);
+    }
+
+    private static class FakeLDAPMapper extends LDAPMapper {
+        private int created;
+        private int closed;
+        private int searches;
+        private DirContext lastCreated;
+        private DirContext stale;
+
+        FakeLDAPMapper() {
+            setUrl("ldap://ldap.example.com:389");
+            setRootDN("dc=example,dc=com");
+        }
+
+        DirContext createContext(final Hashtable<String, String> env) {
+            created++;
+            lastCreated = (DirContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {DirContext.class},
+                    new InvocationHandler() {
+                        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                            if (method.getName().equals("close")) {
+                                closed++;
+                            }
+                            return null;
+                        }
+                    });
+            return lastCreated;
+        }
+
+        String search(final DirContext context, final String user) throws NamingException {
+            searches++;
+            if (user.equals("broken") || context == stale) {
+                throw new NamingException("connection reset");
+            }
+            return user.equals("nobody") ? null : user + "@example.com";
+        }
+    }
+}
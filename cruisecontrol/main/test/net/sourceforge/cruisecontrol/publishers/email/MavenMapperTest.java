@@ -40,6 +40,10 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import junit.framework.TestCase;
 import net.sourceforge.cruisecontrol.CruiseControlException;
@@ -47,8 +51,10 @@ import net.sourceforge.cruisecontrol.CruiseControlException;
 public class MavenMapperTest extends TestCase {
 
     private MavenMapper mapper;
+    private File tmpFile;
 
     public void setUp() throws IOException, CruiseControlException {
+        EmailMappingCache.clear();
         /*
          * Write a dummy Maven project descriptor to a temporary file
          */
@@ -68,7 +74,7 @@ public class MavenMapperTest extends TestCase {
                 + "<timezone>3</timezone>"
                 + "<organization>Foo Buildmasters Inc.</organization>"
                 + "</developer></developers></project>";
-        File tmpFile = File.createTempFile("MavenMapperTest", null);
+        tmpFile = File.createTempFile("MavenMapperTest", null);
         tmpFile.deleteOnExit();
         String tmpFilePath = tmpFile.getAbsolutePath();
         BufferedWriter out = new BufferedWriter(new FileWriter(tmpFilePath));
@@ -90,4 +96,49 @@ public class MavenMapperTest extends TestCase {
         assertEquals("foo@barbaz", mapper.mapUser("foo"));
         assertEquals("foofoo@barbaz", mapper.mapUser("bar"));
     }
+
+    public void tearDown() {
+        EmailMappingCache.clear();
+    }
+
+    public void testCachesMappingsUntilProjectFileChanges() throws IOException {
+        final CountingMavenMapper first = new CountingMavenMapper();
+        first.setProjectFile(tmpFile.getAbsolutePath());
+        Set<String> users = new HashSet<String>(Arrays.asList("foo", "baz"));
+        Set<String> mappedUsers = new HashSet<String>();
+        first.mapUsers(users, mappedUsers);
+        assertEquals(Collections.singleton("foo@barbaz"), mappedUsers);
+        assertEquals(Collections.singleton("baz"), users);
+        assertEquals(1, first.opened);
+
+        // the unmapped user is cached too, so another mapper of the same POM doesn't parse it
+        final CountingMavenMapper second = new CountingMavenMapper();
+        second.setProjectFile(tmpFile.getAbsolutePath());
+        users = new HashSet<String>(Arrays.asList("foo", "baz"));
+        mappedUsers = new HashSet<String>();
+        second.mapUsers(users, mappedUsers);
+        assertEquals(Collections.singleton("foo@barbaz"), mappedUsers);
+        assertEquals(0, second.opened);
+
+        final BufferedWriter out = new BufferedWriter(new FileWriter(tmpFile));
+        out.write("<project><developers><developer><id>baz</id><email>baz@barbaz</email>"
+                + "</developer></developers></project>");
+        out.close();
+        assertTrue(tmpFile.setLastModified(tmpFile.lastModified() + 10000));
+
+        users = new HashSet<String>(Arrays.asList("baz"));
+        mappedUsers = new HashSet<String>();
+        second.mapUsers(users, mappedUsers);
+        assertEquals(Collections.singleton("baz@barbaz"), mappedUsers);
+        assertEquals(1, second.opened);
+    }
+
+    private static class CountingMavenMapper extends MavenMapper {
+        private int opened;
+
+        public void open() throws CruiseControlException {
+            opened++;
+            super.open();
+        }
+    }
 }
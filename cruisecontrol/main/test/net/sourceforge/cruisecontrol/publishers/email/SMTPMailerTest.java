@@ -0,0 +1,194 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.publishers.email;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Multipart;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import junit.framework.TestCase;
+
+public class SMTPMailerTest extends TestCase {
+
+    private static final long TIMEOUT = 10 * 1000L;
+
+    private final Session session = Session.getInstance(new Properties(), null);
+
+    public void testSendsQueuedMessagesThroughOneConnection() throws Exception {
+        final FakeMailer mailer = new FakeMailer(0);
+        final DeliveryReceipt first = mailer.send(session, createMessage("alice@example.com", "first"), 0);
+        final DeliveryReceipt second = mailer.send(session, createMessage("bob@example.com", "second"), 0);
+
+        assertTrue(first.waitFor(TIMEOUT));
+        assertTrue(second.waitFor(TIMEOUT));
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertEquals(2, mailer.sent.size());
+        assertEquals(1, mailer.connects);
+    }
+
+    public void testRetriesOnANewConnection() throws Exception {
+        final FakeMailer mailer = new FakeMailer(2);
+        final DeliveryReceipt receipt = mailer.send(session, createMessage("alice@example.com", "flaky"), 0);
+
+        assertTrue(receipt.waitFor(TIMEOUT));
+        assertTrue(receipt.isSuccess());
+        assertEquals(1, mailer.sent.size());
+        assertEquals(3, mailer.connects);
+    }
+
+    public void testGivesUpAfterRetries() throws Exception {
+        final FakeMailer mailer = new FakeMailer(SMTPMailer.RETRIES + 1);
+        final DeliveryReceipt receipt = mailer.send(session, createMessage("alice@example.com", "broken"), 0);
+
+        assertTrue(receipt.waitFor(TIMEOUT));
+        assertFalse(receipt.isSuccess());
+        assertEquals(0, mailer.sent.size());
+        assertEquals(SMTPMailer.RETRIES + 1, mailer.connects);
+        assertEquals(0, mailer.getQueueSize());
+    }
+
+    public void testMergesMessagesToTheSameRecipientsWithinTheWindow() throws Exception {
+        final FakeMailer mailer = new FakeMailer(0);
+        final DeliveryReceipt first = mailer.send(session, createMessage("alice@example.com", "project1 failed"), 500);
+        final DeliveryReceipt second = mailer.send(session, createMessage("alice@example.com", "project2 failed"), 500);
+        final DeliveryReceipt other = mailer.send(session, createMessage("bob@example.com", "project3 failed"), 500);
+
+        assertTrue(first.waitFor(TIMEOUT));
+        assertTrue(second.waitFor(TIMEOUT));
+        assertTrue(other.waitFor(TIMEOUT));
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertEquals(2, mailer.sent.size());
+
+        final MimeMessage digest = mailer.sent.get(0).getSubject().startsWith("project1")
+                ? mailer.sent.get(0) : mailer.sent.get(1);
+        assertEquals("project1 failed (and 1 more)", digest.getSubject());
+        assertTrue(digest.getContentType().startsWith("multipart/digest"));
+        assertEquals(2, ((Multipart) digest.getContent()).getCount());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        digest.writeTo(out);
+        assertTrue(out.toString().indexOf("Subject: project2 failed") >= 0);
+    }
+
+    public void testSharesMailersByServerAndSSL() {
+        final SMTPMailer plain = SMTPMailer.forServer("shared.example.com", "465", "build", "secret", false, 1);
+        assertSame(plain, SMTPMailer.forServer("shared.example.com", "465", "build", "secret", false, 1));
+        assertNotSame(plain, SMTPMailer.forServer("shared.example.com", "465", "build", "secret", true, 1));
+    }
+
+    public void testRetiresUnusedMailer() throws Exception {
+        final SMTPMailer mailer = SMTPMailer.forServer("retired.example.com", null, null, null, false, 1);
+        assertFalse(mailer.retireIfUnused(System.currentTimeMillis()));
+        assertTrue(mailer.retireIfUnused(System.currentTimeMillis() + SMTPMailer.IDLE_TIME));
+
+        assertNotSame(mailer, SMTPMailer.forServer("retired.example.com", null, null, null, false, 1));
+        try {
+            mailer.send(session, createMessage("alice@example.com", "too late"), 0);
+            fail("a retired mailer should not accept mail");
+        } catch (MessagingException expected) {
+        }
+    }
+
+    public void testDoesNotRetireWhileMailIsPending() throws Exception {
+        final FakeMailer mailer = new FakeMailer(0);
+        final DeliveryReceipt receipt = mailer.send(session, createMessage("alice@example.com", "held"), 500);
+        assertFalse(mailer.retireIfUnused(System.currentTimeMillis() + SMTPMailer.IDLE_TIME));
+
+        assertTrue(receipt.waitFor(TIMEOUT));
+        assertTrue(mailer.retireIfUnused(System.currentTimeMillis() + SMTPMailer.IDLE_TIME));
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mailer.disconnects == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, mailer.disconnects);
+    }
+
+    private MimeMessage createMessage(final String to, final String subject) throws MessagingException {
+        final MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("cruise@example.com"));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        message.setSubject(subject);
+        message.setText("build results");
+        return message;
+    }
+
+    private static final class FakeMailer extends SMTPMailer {
+        private final List<MimeMessage> sent = Collections.synchronizedList(new ArrayList<MimeMessage>());
+        private volatile int failures;
+        private volatile int connects;
+        private volatile int disconnects;
+
+        private FakeMailer(final int failures) {
+            super("mailhost", null, null, 1, 10);
+            this.failures = failures;
+        }
+
+        Transport connect(final Session mailSession) {
+            connects++;
+            return new Transport(mailSession, null) {
+                {
+                    setConnected(true);
+                }
+
+                public void sendMessage(final Message message, final Address[] addresses) throws MessagingException {
+                    if (failures > 0) {
+                        failures--;
+                        throw new MessagingException("connection reset");
+                    }
+                    sent.add((MimeMessage) message);
+                }
+
+                public void close() throws MessagingException {
+                    disconnects++;
+                    super.close();
+                }
+            };
+        }
+    }
+}
@@ -41,6 +41,8 @@ import java.io.IOException;
 import junit.framework.TestCase;
 import net.sourceforge.cruisecontrol.BuildLoopInformation;
 import net.sourceforge.cruisecontrol.BuildLoopInformationBuilder;
+import net.sourceforge.cruisecontrol.BuildLoopInformation.ProjectInfo;
+import net.sourceforge.cruisecontrol.util.BuildInformationHelper;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
@@ -87,4 +89,129 @@ public class BuildLoopStatusReportTaskTest extends TestCase {
         assertTrue(methodExecutedInHttpClient);
         assertTrue(methodExecutedInBLIP);
     }
+
+    public void testShouldOnlyPostChangedProjectsOnceDashboardAcknowledged() throws Exception {
+        final FakeDashboard dashboard = new FakeDashboard();
+        final BuildLoopStatusReportTask task = dashboard.task;
+
+        dashboard.post("ack 0", new String[] {"p1", "idle", "p2", "idle"});
+        assertEquals(0, dashboard.lastSent().getVersion());
+        assertEquals(0, task.getAcknowledgedVersion());
+
+        dashboard.post("ack 1", new String[] {"p1", "idle", "p2", "idle"});
+        BuildLoopInformation sent = dashboard.lastSent();
+        assertFalse(sent.isDelta());
+        assertEquals(1, sent.getVersion());
+        assertEquals(2, sent.getProjects().length);
+        assertEquals(1, task.getAcknowledgedVersion());
+
+        dashboard.post("ack 2", new String[] {"p1", "idle", "p2", "building"});
+        sent = dashboard.lastSent();
+        assertTrue(sent.isDelta());
+        assertEquals(1, sent.getBaseVersion());
+        assertEquals(2, sent.getVersion());
+        assertEquals(1, sent.getProjects().length);
+        assertEquals("p2", sent.getProjects()[0].getName());
+        assertEquals(2, task.getAcknowledgedVersion());
+
+        dashboard.post("ack 3", new String[] {"p1", "idle", "p2", "building"});
+        assertEquals(3, dashboard.posts);
+
+        dashboard.post("ack 3", new String[] {"p2", "building"});
+        sent = dashboard.lastSent();
+        assertEquals(2, sent.getBaseVersion());
+        assertEquals(0, sent.getProjects().length);
+        assertEquals("p1", sent.getRemovedProjects()[0]);
+    }
+
+    public void testShouldSendFullSnapshotWhenDashboardAsksForResync() throws Exception {
+        final FakeDashboard dashboard = new FakeDashboard();
+
+        dashboard.post("ack 0", new String[] {"p1", "idle"});
+        dashboard.post("ack 1", new String[] {"p1", "idle"});
+        dashboard.post("resync", new String[] {"p1", "building"});
+        assertTrue(dashboard.lastSent().isDelta());
+        assertEquals(0, dashboard.task.getAcknowledgedVersion());
+
+        dashboard.post("ack 3", new String[] {"p1", "building"});
+        assertFalse(dashboard.lastSent().isDelta());
+        assertEquals(3, dashboard.task.getAcknowledgedVersion());
+    }
+
+    public void testShouldKeepSendingFullSnapshotsToDashboardsThatDoNotAcknowledge() throws Exception {
+        final FakeDashboard dashboard = new FakeDashboard();
+
+        dashboard.post("", new String[] {"p1", "idle"});
+        dashboard.post("", new String[] {"p1", "idle"});
+        assertEquals(2, dashboard.posts);
+        assertFalse(dashboard.lastSent().isDelta());
+        assertEquals(-1, dashboard.task.getSent().indexOf("<version>"));
+    }
+
+    public void testShouldStopSendingVersionsWhenDashboardStopsAcknowledging() throws Exception {
+        final FakeDashboard dashboard = new FakeDashboard();
+
+        dashboard.post("ack 0", new String[] {"p1", "idle"});
+        dashboard.post("", new String[] {"p1", "idle"});
+        assertEquals(1, dashboard.lastSent().getVersion());
+
+        dashboard.post("", new String[] {"p1", "building"});
+        assertFalse(dashboard.lastSent().isDelta());
+        assertEquals(-1, dashboard.task.getSent().indexOf("<version>"));
+    }
+
+    public void testShouldSendPeriodicFullSnapshot() throws Exception {
+        final FakeDashboard dashboard = new FakeDashboard();
+        dashboard.task.setSnapshotInterval(3);
+
+        dashboard.post("ack 0", new String[] {"p1", "idle"});
+        dashboard.post("ack 1", new String[] {"p1", "idle"});
+        dashboard.post("ack 2", new String[] {"p1", "building"});
+        assertTrue(dashboard.lastSent().isDelta());
+        dashboard.post("ack 3", new String[] {"p1", "building"});
+        assertEquals(3, dashboard.posts);
+        dashboard.post("ack 3", new String[] {"p1", "building"});
+        assertEquals(4, dashboard.posts);
+        assertFalse(dashboard.lastSent().isDelta());
+        assertEquals(1, dashboard.lastSent().getProjects().length);
+    }
+
+    private static final class FakeDashboard {
+        private int posts;
+
+        private ProjectInfo[] projects;
+
+        private final BuildLoopStatusReportTask task;
+
+        private FakeDashboard() {
+            final HttpClient http = new HttpClient() {
+                public int executeMethod(HttpMethod method) throws IOException, HttpException {
+                    posts++;
+                    return 200;
+                }
+            };
+            final BuildLoopInformationBuilder builder = new BuildLoopInformationBuilder(null) {
+                public BuildLoopInformation buildBuildLoopInformation() {
+                    return new BuildLoopInformation(projects, null, "server", "now");
+                }
+            };
+            task = new BuildLoopStatusReportTask(builder, "", http, 2);
+        }
+
+        private void post(final String reply, final String[] nameAndStatus) {
+            projects = new ProjectInfo[nameAndStatus.length / 2];
+            for (int i = 0; i < projects.length; i++) {
+                projects[i] = new ProjectInfo(nameAndStatus[2 * i], nameAndStatus[2 * i + 1], "");
+            }
+            task.run(new PostMethod("http://localhost") {
+                public byte[] getResponseBody() {
+                    return reply.getBytes();
+                }
+            });
+        }
+
+        private BuildLoopInformation lastSent() {
+            return new BuildInformationHelper().toObject(task.getSent());
+        }
+    }
 }
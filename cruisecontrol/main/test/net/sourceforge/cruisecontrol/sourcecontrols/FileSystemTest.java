@@ -175,6 +175,89 @@ public class FileSystemTest extends TestCase {
         assertEquals(1, mods.size());        
     }
 
+    public void testSnapshotReportsDeletedFiles() throws Exception {
+        final File snapshot = new File(tempDirectory.getParentFile(), tempDirectory.getName() + ".snapshot");
+        filesToDelete.add(snapshot);
+        fs.setSnapshotFile(snapshot.getAbsolutePath());
+
+        final Date lastBuild = new Date(tempDirectory.lastModified() + 2 * ONE_SECOND);
+        final File file = writeNewFile(new Date(lastBuild.getTime() - ONE_SECOND), "old");
+        assertEquals(0, fs.getModifications(lastBuild, new Date(lastBuild.getTime() + ONE_SECOND)).size());
+        assertTrue(snapshot.isFile());
+
+        assertTrue(file.delete());
+        final Date pollTime = new Date(lastBuild.getTime() + 2 * ONE_SECOND);
+        List<Modification> mods = fs.getModifications(lastBuild, pollTime);
+        assertEquals(1, mods.size());
+        final Modification.ModifiedFile deleted = mods.get(0).files.get(0);
+        assertEquals("deleted", deleted.action);
+        assertEquals(file.getName(), deleted.fileName);
+        assertEquals(pollTime, mods.get(0).modifiedTime);
+
+        // still reported while no build happened, forgotten after the next one
+        assertEquals(1, fs.getModifications(lastBuild, new Date(pollTime.getTime() + ONE_SECOND)).size());
+        final Date nextBuild = new Date(pollTime.getTime() + 2 * ONE_SECOND);
+        assertEquals(0, fs.getModifications(nextBuild, new Date(nextBuild.getTime() + ONE_SECOND)).size());
+        assertEquals(0, fs.getModifications(lastBuild, new Date(nextBuild.getTime() + ONE_SECOND)).size());
+    }
+
+    public void testSnapshotReportsChangesWithOldTimestamps() throws Exception {
+        final File snapshot = new File(tempDirectory.getParentFile(), tempDirectory.getName() + ".snapshot");
+        filesToDelete.add(snapshot);
+        fs.setSnapshotFile(snapshot.getAbsolutePath());
+
+        final Date lastBuild = new Date(tempDirectory.lastModified() + 2 * ONE_SECOND);
+        final Date oldTime = new Date(lastBuild.getTime() - ONE_SECOND);
+        final File file = writeNewFile(oldTime, "old");
+        assertEquals(0, fs.getModifications(lastBuild, new Date(lastBuild.getTime() + ONE_SECOND)).size());
+
+        // replaced keeping its timestamp, and a new file copied in with an old timestamp
+        IO.write(file, "replaced");
+        file.setLastModified(oldTime.getTime());
+        final File copied = writeNewFile(oldTime, "copied");
+
+        fs = new FileSystem();
+        fs.setFolder(tempDirectory.getAbsolutePath());
+        fs.setSnapshotFile(snapshot.getAbsolutePath());
+        final List<Modification> mods = fs.getModifications(lastBuild, new Date(lastBuild.getTime() + 2 * ONE_SECOND));
+        assertEquals(2, mods.size());
+        for (final Modification mod : mods) {
+            final Modification.ModifiedFile modified = mod.files.get(0);
+            if (modified.fileName.equals(copied.getName())) {
+                assertEquals("added", modified.action);
+            } else {
+                assertEquals(file.getName(), modified.fileName);
+                assertEquals("change", modified.action);
+            }
+        }
+    }
+
+    public void testParallelScanFindsNestedFiles() throws Exception {
+        final Date lastBuild = new Date(tempDirectory.lastModified() - 10 * ONE_SECOND);
+        File dir = tempDirectory;
+        for (int i = 0; i < 5; i++) {
+            dir = new File(dir, "sub" + i);
+            assertTrue(dir.mkdir());
+            IO.write(new File(dir, "a.txt"), "a");
+            IO.write(new File(dir, "b.txt"), "b");
+        }
+
+        fs.setThreads(4);
+        assertEquals(10, fs.getModifications(lastBuild, null).size());
+        fs.setIncludeDirectories(true);
+        assertEquals(16, fs.getModifications(lastBuild, null).size());
+    }
+
+    public void testValidateFailsWithoutThreads() {
+        fs.setThreads(0);
+        try {
+            fs.validate();
+            fail("FileSystem should need at least one thread");
+        } catch (CruiseControlException e) {
+            assertEquals("threads must be at least 1 for FileSystem", e.getMessage());
+        }
+    }
+
     private File writeNewFile(final Date modifiedTime, final String content)
             throws IOException, CruiseControlException {
         
@@ -47,6 +47,7 @@ import java.io.StringReader;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -55,6 +56,9 @@ import java.util.Map;
  */
 public class GitTest extends TestCase {
     private static final String NEWLINE = System.getProperty("line.separator");
+    private static final String ID_A = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+    private static final String ID_B = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+    private static final String ID_C = "cccccccccccccccccccccccccccccccccccccccc";
     private Git git;
 
     protected void setUp() {
@@ -212,6 +216,142 @@ public class GitTest extends TestCase {
                      pm.get("gitcommitid"));
     }
 
+    public void testParseNameStatusLog() throws IOException {
+        String gitLog = "commit 0a033e6b51bdae14c787fc915d96441c18e3a717\n"
+            + "tree 35004950bca30fc49fbbd1404b4e36a6ee64b903\n"
+            + "parent 1111111111111111111111111111111111111111\n"
+            + "author Robert Schiele <rschiele@gmail.com> 1190000297 -0700\n"
+            + "committer Robert Schiele <rschiele@gmail.com> 1190000297 -0700\n"
+            + "\n"
+            + "    latest commit\n"
+            + "\n"
+            + "M\tREADME.txt\n"
+            + "D\toldfile.txt\n"
+            + "A\tnewfile.txt\n"
+            + "R087\trenamed.txt\tdir/renamed.txt\n"
+            + "\n"
+            + "commit 1111111111111111111111111111111111111111\n"
+            + "author Robert Schiele <rschiele@gmail.com> 1190000197 -0700\n"
+            + "\n"
+            + "    merge commit\n"
+            + "\n"
+            + "commit 2222222222222222222222222222222222222222\n"
+            + "author Robert Schiele <rschiele@gmail.com> 1190000097 -0700\n"
+            + "\n"
+            + "    first commit\n"
+            + "\n"
+            + "M\tREADME.txt\n";
+        final List<Modification> mods = new ArrayList<Modification>();
+        SourceControlProperties props = new SourceControlProperties();
+        props.assignPropertyName("hasChanges?");
+        props.assignPropertyOnDeleteName("hasDeletions?");
+        Git.parseLog(new StringReader(gitLog), mods, props);
+        assertEquals(3, mods.size());
+
+        Modification mod = mods.get(0);
+        assertEquals("latest commit" + NEWLINE, mod.comment);
+        assertEquals("1190000297", mod.revision);
+        List<Modification.ModifiedFile> mf = mod.getModifiedFiles();
+        assertEquals(4, mf.size());
+        assertEquals("README.txt", mf.get(0).fileName);
+        assertEquals("modified", mf.get(0).action);
+        assertEquals("1190000297", mf.get(0).revision);
+        assertEquals("oldfile.txt", mf.get(1).fileName);
+        assertEquals("deleted", mf.get(1).action);
+        assertEquals("newfile.txt", mf.get(2).fileName);
+        assertEquals("added", mf.get(2).action);
+        assertEquals("dir/renamed.txt", mf.get(3).fileName);
+        assertEquals("modified", mf.get(3).action);
+
+        assertEquals("merge commit" + NEWLINE, mods.get(1).comment);
+        assertEquals(0, mods.get(1).getModifiedFiles().size());
+
+        mod = mods.get(2);
+        assertEquals("first commit" + NEWLINE, mod.comment);
+        assertEquals(1, mod.getModifiedFiles().size());
+        assertEquals("README.txt", mod.getModifiedFiles().get(0).fileName);
+
+        Map pm = props.getPropertiesAndReset();
+        assertEquals("true", pm.get("hasChanges?"));
+        assertEquals("true", pm.get("hasDeletions?"));
+        assertEquals("0a033e6b51bdae14c787fc915d96441c18e3a717",
+                     pm.get("gitcommitid"));
+    }
+
+    public void testUseCommitIdLogsOnlyNewCommits() {
+        final FakeGit fake = new FakeGit();
+        fake.setUseCommitId(true);
+        fake.setPropertyOnDelete("hasDeletions?");
+        final Date lastBuild = new Date(1190000000000L);
+        fake.refs.put(Git.gitRevision(lastBuild), ID_A);
+        fake.refs.put("HEAD", ID_A);
+
+        assertEquals(0, fake.getModifications(lastBuild, new Date()).size());
+        assertEquals(0, fake.logged.size());
+        assertNull(fake.getProperties().get("gitcommitid"));
+
+        fake.refs.put("HEAD", ID_B);
+        fake.commits.put(ID_A + ".." + ID_B, commit(ID_B, "M\tREADME.txt\n"));
+        List<Modification> mods = fake.getModifications(lastBuild, new Date());
+        assertEquals(1, mods.size());
+        assertEquals(1, fake.logged.size());
+        Map<String, String> pm = fake.getProperties();
+        assertEquals(ID_B, pm.get("gitcommitid"));
+        assertNull(pm.get("hasDeletions?"));
+
+        // HEAD did not move: nothing is logged but the commit is still reported
+        mods = fake.getModifications(lastBuild, new Date());
+        assertEquals(1, mods.size());
+        assertEquals(1, fake.logged.size());
+        assertEquals(ID_B, fake.getProperties().get("gitcommitid"));
+
+        fake.refs.put("HEAD", ID_C);
+        fake.commits.put(ID_B + ".." + ID_C, commit(ID_C, "D\toldfile.txt\n"));
+        mods = fake.getModifications(lastBuild, new Date());
+        assertEquals(2, mods.size());
+        assertEquals(ID_B + ".." + ID_C, fake.logged.get(1));
+        assertEquals("oldfile.txt", mods.get(0).getModifiedFiles().get(0).fileName);
+        pm = fake.getProperties();
+        assertEquals(ID_C, pm.get("gitcommitid"));
+        assertEquals("true", pm.get("hasDeletions?"));
+
+        // a build happened, the next interval starts at its commit
+        final Date nextBuild = new Date(1190000600000L);
+        fake.refs.put(Git.gitRevision(nextBuild), ID_C);
+        assertEquals(0, fake.getModifications(nextBuild, new Date()).size());
+        assertEquals(2, fake.logged.size());
+        assertNull(fake.getProperties().get("hasDeletions?"));
+    }
+
+    private static String commit(final String id, final String files) {
+        return "commit " + id + "\n"
+            + "author Robert Schiele <rschiele@gmail.com> 1190000297 -0700\n"
+            + "\n"
+            + "    a commit\n"
+            + "\n"
+            + files;
+    }
+
+    private static class FakeGit extends Git {
+        private final Map<String, String> refs = new HashMap<String, String>();
+        private final Map<String, String> commits = new HashMap<String, String>();
+        private final List<String> logged = new ArrayList<String>();
+
+        String revParse(final String revision) {
+            return refs.get(revision);
+        }
+
+        boolean log(final String range, final List<Modification> mods, final SourceControlProperties props) {
+            logged.add(range);
+            try {
+                parseLog(new StringReader(commits.get(range)), mods, props);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+            return true;
+        }
+    }
+
     public void testParseEmptyLog() throws IOException {
         final List<Modification> mods = new ArrayList<Modification>();
         SourceControlProperties props = new SourceControlProperties();
@@ -37,7 +37,7 @@
 package net.sourceforge.cruisecontrol.sourcecontrols;
 
 import net.sourceforge.cruisecontrol.Modification;
-import net.sourceforge.cruisecontrol.SourceControl;
+import net.sourceforge.cruisecontrol.ShareableSourceControl;
 import net.sourceforge.cruisecontrol.CruiseControlException;
 
 import java.util.ArrayList;
@@ -46,7 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
-public class MockSourceControl implements SourceControl {
+public class MockSourceControl implements ShareableSourceControl {
 
     private int version;
     private final Map<String, String> properties = new HashMap<String, String>();
@@ -77,6 +77,10 @@ public class MockSourceControl implements SourceControl {
         this.version = version;
     }
 
+    public String getQueryKey() {
+        return version + ";" + modifiedDate.getTime() + ";" + property + ";" + propertyOnDelete;
+    }
+
     public void validate() throws CruiseControlException {
     }
 
@@ -0,0 +1,95 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.sourcecontrols;
+
+import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.Modification;
+
+public class P4ServerCacheTest extends TestCase {
+
+    protected void tearDown() {
+        P4ServerCache.clearAll();
+    }
+
+    public void testSharedPerPortAndUser() {
+        assertSame(P4ServerCache.forServer("host:1666", "build"), P4ServerCache.forServer("host:1666", "build"));
+        assertNotSame(P4ServerCache.forServer("host:1666", "build"), P4ServerCache.forServer("host:1666", "other"));
+        assertNotSame(P4ServerCache.forServer("host:1666", "build"), P4ServerCache.forServer("other:1666", "build"));
+    }
+
+    public void testEmailsExpire() {
+        final P4ServerCache cache = new P4ServerCache();
+        assertFalse(cache.hasEmail("jdoe", 0));
+
+        cache.putEmail("jdoe", "jdoe@example.com", 1000);
+        cache.putEmail("nomail", null, 1000);
+        assertTrue(cache.hasEmail("jdoe", 1000));
+        assertEquals("jdoe@example.com", cache.getEmail("jdoe"));
+        assertTrue("a user without address is known too", cache.hasEmail("nomail", 1000));
+        assertNull(cache.getEmail("nomail"));
+
+        assertFalse(cache.hasEmail("jdoe", 1001));
+    }
+
+    public void testServerTimeOffsetExpires() {
+        final P4ServerCache cache = new P4ServerCache();
+        assertNull(cache.getServerTimeOffset(0));
+
+        cache.putServerTimeOffset(-3600000, 1000);
+        assertEquals(Long.valueOf(-3600000), cache.getServerTimeOffset(1000));
+        assertNull(cache.getServerTimeOffset(1001));
+    }
+
+    public void testDropsLeastRecentlyUsedDescriptions() {
+        final P4ServerCache cache = new P4ServerCache();
+        for (int i = 0; i < P4ServerCache.MAX_DESCRIPTIONS; i++) {
+            cache.putDescription(description(i));
+        }
+        assertNotNull(cache.getDescription("0"));
+
+        cache.putDescription(description(P4ServerCache.MAX_DESCRIPTIONS));
+        assertEquals(P4ServerCache.MAX_DESCRIPTIONS, cache.getDescriptionCount());
+        assertNotNull(cache.getDescription("0"));
+        assertNull(cache.getDescription("1"));
+    }
+
+    private static Modification description(int changelist) {
+        final Modification modification = new Modification("p4");
+        modification.revision = String.valueOf(changelist);
+        return modification;
+    }
+}
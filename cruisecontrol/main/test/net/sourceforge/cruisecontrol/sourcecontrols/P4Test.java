@@ -37,11 +37,15 @@
 package net.sourceforge.cruisecontrol.sourcecontrols;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -78,6 +82,14 @@ public class P4Test extends TestCase {
         }
     }
 
+    protected void setUp() {
+        P4ServerCache.clearAll();
+    }
+
+    protected void tearDown() {
+        P4ServerCache.clearAll();
+    }
+
     public void testGetQuoteChar() {
         boolean windows = true;
         String quoteChar = P4.getQuoteChar(windows);
@@ -249,6 +261,77 @@ public class P4Test extends TestCase {
                 offsetDifference < maxOffset);
     }
 
+    public void testDescribesChangelistsInBatchesAndSharesThem() throws Exception {
+        final String[] changelists = new String[P4.DESCRIBE_BATCH_SIZE * 2 + 1];
+        for (int i = 0; i < changelists.length; i++) {
+            changelists[i] = String.valueOf(1000 + i);
+        }
+        final DescribingP4 p4 = new DescribingP4(60000);
+        p4.setPort("cachetest:1666");
+        List<Modification> mods = p4.describeAllChangelistsAndBuildOutput(changelists);
+        assertEquals(changelists.length, mods.size());
+        assertEquals("1000", mods.get(0).revision);
+        assertEquals("1100", mods.get(100).revision);
+        final List<Integer> batches = new ArrayList<Integer>(p4.batches);
+        Collections.sort(batches);
+        assertEquals(Arrays.asList(1, P4.DESCRIBE_BATCH_SIZE, P4.DESCRIBE_BATCH_SIZE), batches);
+        final Date serverTime = new SimpleDateFormat("yyyy/MM/dd:HH:mm:ss").parse("2005/07/29:20:39:06");
+        assertEquals(serverTime.getTime() - 60000, mods.get(0).modifiedTime.getTime());
+        assertEquals("jdoe@example.com", mods.get(0).emailAddress);
+        assertEquals(1, p4.userLookups);
+        mods.get(0).comment = "changed by the first project";
+
+        // another project on the same server gets the descriptions and addresses from the cache
+        final DescribingP4 other = new DescribingP4(0);
+        other.setPort("cachetest:1666");
+        other.setCorrectForServerTime(false);
+        mods = other.describeAllChangelistsAndBuildOutput(new String[] {"1000", "2000"});
+        assertEquals(2, mods.size());
+        assertEquals(Arrays.asList(1), other.batches);
+        assertEquals(0, other.userLookups);
+        assertEquals(serverTime, mods.get(0).modifiedTime);
+        assertEquals("change 1000", mods.get(0).comment);
+        assertEquals("jdoe@example.com", mods.get(0).emailAddress);
+
+        final DescribingP4 uncached = new DescribingP4(0);
+        uncached.setPort("cachetest:1666");
+        uncached.setCacheTtl(0);
+        uncached.describeAllChangelistsAndBuildOutput(new String[] {"1000"});
+        assertEquals(Arrays.asList(1), uncached.batches);
+        assertEquals(1, uncached.userLookups);
+    }
+
+    /**
+     * Describes changelists from made up output instead of running p4.
+     */
+    static class DescribingP4 extends MockP4 {
+        private final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+        private int userLookups;
+
+        public DescribingP4(long offset) {
+            super(offset);
+        }
+
+        List<Modification> describeChangelists(String[] changelistNumbers) throws Exception {
+            batches.add(changelistNumbers.length);
+            StringBuilder output = new StringBuilder();
+            for (String changelist : changelistNumbers) {
+                output.append("text: Change ").append(changelist).append(" by jdoe@ws on 2005/07/29 20:39:06\n")
+                        .append("text:\n").append("text:\tchange ").append(changelist).append("\n")
+                        .append("text:\n").append("text: Affected files ...\n").append("text:\n")
+                        .append("info1: //depot/main/file").append(changelist).append(".txt#1 add\n")
+                        .append("text:\n");
+            }
+            output.append("exit: 0\n");
+            return parseChangeDescriptions(new ByteArrayInputStream(output.toString().getBytes()), 0);
+        }
+
+        String getUserEmailAddress(String username) {
+            userLookups++;
+            return username + "@example.com";
+        }
+    }
+
     public boolean matches(String str, String pattern) throws MalformedPatternException {
         return new Perl5Matcher().matches(str, new Perl5Compiler().compile(pattern));
     }
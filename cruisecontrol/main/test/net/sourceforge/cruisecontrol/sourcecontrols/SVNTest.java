@@ -41,6 +41,7 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
@@ -54,6 +55,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -63,6 +65,7 @@ import java.util.TimeZone;
 
 import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.Modification;
+import net.sourceforge.cruisecontrol.util.Commandline;
 
 import net.sourceforge.cruisecontrol.testutil.TestUtil;
 import org.jdom.JDOMException;
@@ -467,6 +470,102 @@ public class SVNTest {
         return modification;
     }
 
+    @Test
+    public void testParseLogRemembersLastRevisionAndPropertyChanges() throws Exception {
+        String svnLog = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n"
+                + logEntry(663, "2003-04-30T10:01:42.349105Z", "true", "/trunk")
+                + logEntry(664, "2003-04-30T10:03:14.100900Z", "false", "/trunk/f.txt")
+                + "  <logentry revision=\"665\">\n    <msg></msg>\n  </logentry>\n"
+                + "</log>";
+        SVN.SVNLogXMLParser.LogHandler log = SVN.SVNLogXMLParser.parseLog(new StringReader(svnLog), null);
+        assertEquals(2, log.getModifications().length);
+        assertEquals(665, log.getLastRevision());
+        assertEquals(663, log.getLastPropertyChange());
+
+        // older clients do not report property changes separately
+        svnLog = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n"
+                + "  <logentry revision=\"7\">\n    <author>lee</author>\n"
+                + "    <date>2003-04-30T10:01:42.349105Z</date>\n"
+                + "    <paths>\n      <path action=\"M\">/trunk/f.txt</path>\n    </paths>\n"
+                + "    <msg>bli</msg>\n  </logentry>\n</log>";
+        log = SVN.SVNLogXMLParser.parseLog(new StringReader(svnLog), null);
+        assertEquals(7, log.getLastPropertyChange());
+    }
+
+    @Test
+    public void testPollsOnlyRevisionsPastTheLastSeen() throws Exception {
+        final FakeSVN fake = new FakeSVN();
+        fake.setRepositoryLocation("http://svn/trunk");
+        fake.setCheckExternals(true);
+        fake.externals.put(".", new ArrayList<String[]>(Arrays.asList(new String[][] {{"ext", "http://svn/ext"}})));
+        fake.add("http://svn/trunk", logEntry(10, "2003-04-30T10:00:00.000000Z", "false", "/trunk/a.txt"));
+        fake.add("http://svn/ext", logEntry(7, "2003-04-30T10:00:00.000000Z", "false", "/ext/b.txt"));
+        final Date lastBuild = SVN.getOutDateFormatter().parse("2003-04-01T00:00:00.000");
+        final String since = SVN.formatSVNDate(lastBuild) + ":";
+
+        assertEquals(2, fake.getModifications(lastBuild, new Date()).size());
+        assertEquals(1, fake.propgets);
+        assertTrue(fake.ranges.get("http://svn/trunk").startsWith(since));
+        assertTrue(fake.ranges.get("http://svn/ext").startsWith(since));
+
+        fake.add("http://svn/trunk", logEntry(11, "2003-04-30T11:00:00.000000Z", "false", "/trunk/a.txt"));
+        assertEquals(3, fake.getModifications(lastBuild, new Date()).size());
+        assertEquals(1, fake.propgets);
+        assertTrue(fake.ranges.get("http://svn/trunk").startsWith("10:"));
+        assertTrue(fake.ranges.get("http://svn/ext").startsWith("7:"));
+
+        // a property change on the root may have changed the externals
+        fake.add("http://svn/trunk", logEntry(12, "2003-04-30T12:00:00.000000Z", "true", "/trunk"));
+        assertEquals(4, fake.getModifications(lastBuild, new Date()).size());
+        assertEquals(2, fake.propgets);
+        assertEquals(4, fake.getModifications(lastBuild, new Date()).size());
+        assertEquals(2, fake.propgets);
+        assertEquals("12", fake.getProperties().get("svnrevision"));
+
+        // after a build the revisions seen are no longer modifications
+        final Date nextBuild = SVN.getOutDateFormatter().parse("2003-05-01T00:00:00.000");
+        assertEquals(0, fake.getModifications(nextBuild, new Date()).size());
+        assertTrue(fake.ranges.get("http://svn/trunk").startsWith(SVN.formatSVNDate(nextBuild) + ":"));
+    }
+
+    private static String logEntry(int revision, String date, String propMods, String path) {
+        return "  <logentry revision=\"" + revision + "\">\n    <author>lee</author>\n"
+                + "    <date>" + date + "</date>\n"
+                + "    <paths>\n      <path prop-mods=\"" + propMods + "\" kind=\"file\" action=\"M\">" + path
+                + "</path>\n    </paths>\n    <msg>bli</msg>\n  </logentry>\n";
+    }
+
+    private static final class FakeSVN extends SVN {
+        private final Map<String, StringBuilder> logs = new HashMap<String, StringBuilder>();
+        private final Map<String, String> ranges = Collections.synchronizedMap(new HashMap<String, String>());
+        private final HashMap<String, List<String[]>> externals = new HashMap<String, List<String[]>>();
+        private int propgets;
+
+        private void add(final String url, final String logEntry) {
+            if (!logs.containsKey(url)) {
+                logs.put(url, new StringBuilder());
+            }
+            logs.get(url).append(logEntry);
+        }
+
+        SVNLogXMLParser.LogHandler execHistoryCommand(final Commandline command, final String externalPath)
+                throws ParseException, JDOMException, IOException {
+            final String[] args = command.getArguments();
+            final String url = args[args.length - 1];
+            ranges.put(url, args[5]);
+            return SVNLogXMLParser.parseLog(new StringReader("<log>" + logs.get(url) + "</log>"), externalPath);
+        }
+
+        HashMap<String, List<String[]>> execPropgetCommand(final Commandline command) {
+            propgets++;
+            return externals;
+        }
+
+        String execInfoCommand(final Commandline command) {
+            return "12";
+        }
+    }
+
     @Test
     public void testParseInfo() throws JDOMException, IOException {
         String svnInfo = "<?xml version=\"1.0\"?>\n" + "<info>\n"
@@ -64,4 +64,23 @@ public class BuildInformationHelperTest extends TestCase {
         assertEquals("123", modification.revision);
     }
 
+    public void testShouldIgnoreElementsOfNewerBuildLoops() throws Exception {
+        String xml = "<buildloop><uuid>3a373376-44b5-4c22-a782-6c05d1c5c4a5</uuid>"
+                + "<servername>www.buildloop.com</servername><projects/><version>3</version>"
+                + "<somethingnew><value>1</value></somethingnew></buildloop>";
+        BuildLoopInformation buildInfo = new BuildInformationHelper().toObject(xml);
+
+        assertEquals("www.buildloop.com", buildInfo.getServerName());
+        assertEquals(3, buildInfo.getVersion());
+    }
+
+    public void testShouldOnlyWriteVersionsWhenSet() throws Exception {
+        BuildLoopInformation buildInfo = new BuildLoopInformation(new BuildLoopInformation.ProjectInfo[0], null,
+                "server", "now");
+        assertEquals(-1, buildInfo.toXml().indexOf("version"));
+
+        buildInfo.setVersion(2);
+        assertEquals(2, new BuildInformationHelper().toObject(buildInfo.toXml()).getVersion());
+    }
+
 }
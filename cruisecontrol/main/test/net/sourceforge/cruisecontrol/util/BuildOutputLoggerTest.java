@@ -190,6 +190,126 @@ public class BuildOutputLoggerTest extends TestCase {
         assertEquals("one", lines[0]);
     }
 
+    public void testShouldSeekToRequestedLine() throws Exception {
+        final BuildOutputLogger logger = new BuildOutputLogger(prepareBufferFile(0));
+        for (int i = 0; i < 2500; i++) {
+            logger.consumeLine("line " + i);
+        }
+
+        String[] lines = logger.retrieveLines(1200);
+        assertEquals(BuildOutputLogger.MAX_LINES, lines.length);
+        assertEquals("line 1200", lines[0]);
+        assertEquals("line 2199", lines[lines.length - 1]);
+
+        lines = logger.retrieveLines(2000);
+        assertEquals(500, lines.length);
+        assertEquals("line 2000", lines[0]);
+        assertEquals("line 2499", lines[499]);
+
+        logger.consumeLine("line 2500");
+        lines = logger.retrieveLines(2500);
+        assertEquals(1, lines.length);
+        assertEquals("line 2500", lines[0]);
+    }
+
+    public void testShouldSplitLinesLikeReadLine() throws Exception {
+        final File file = prepareBufferFile(0);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("a\r\nb\rc\r".getBytes());
+        } finally {
+            out.close();
+        }
+        final BuildOutputLogger logger = new BuildOutputLogger(file);
+        assertEquals(3, logger.retrieveLines(0).length);
+
+        final FileOutputStream append = new FileOutputStream(file, true);
+        try {
+            append.write("\nd".getBytes());
+        } finally {
+            append.close();
+        }
+        final String[] lines = logger.retrieveLines(1);
+        assertEquals(3, lines.length);
+        assertEquals("b", lines[0]);
+        assertEquals("c", lines[1]);
+        assertEquals("d", lines[2]);
+    }
+
+    public void testShouldReindexWhenFileIsReplaced() throws Exception {
+        final File file = prepareBufferFile(10);
+        final BuildOutputLogger logger = new BuildOutputLogger(file);
+        assertEquals(10, logger.retrieveLines(0).length);
+
+        final PrintStream out = new PrintStream(new FileOutputStream(file));
+        try {
+            out.println("replaced");
+        } finally {
+            out.close();
+        }
+        final String[] lines = logger.retrieveLines(0);
+        assertEquals(1, lines.length);
+        assertEquals("replaced", lines[0]);
+    }
+
+    public void testShouldWriteToNewFileAfterClear() throws Exception {
+        final BuildOutputLogger logger = new BuildOutputLogger(prepareBufferFile(0));
+        logger.consumeLine("one");
+        assertEquals(1, logger.retrieveLines(0).length);
+        logger.clear();
+        logger.consumeLine("two");
+        final String[] lines = logger.retrieveLines(0);
+        assertEquals(1, lines.length);
+        assertEquals("two", lines[0]);
+    }
+
+    public void testShouldReturnBytesFromOffset() throws Exception {
+        final BuildOutputLogger logger = new BuildOutputLogger(prepareBufferFile(0));
+        assertEquals(0, logger.retrieveBytes(0).length);
+
+        logger.consumeLine("one");
+        logger.consumeLine("two");
+        final String separator = System.getProperty("line.separator");
+        final byte[] all = logger.retrieveBytes(0);
+        assertEquals("one" + separator + "two" + separator, new String(all, "UTF-8"));
+
+        final int second = ("one" + separator).length();
+        assertEquals("two" + separator, new String(logger.retrieveBytes(second), "UTF-8"));
+        assertEquals(0, logger.retrieveBytes(all.length).length);
+    }
+
+    public void testShouldReturnOnlyCompleteLinesAsBytes() throws Exception {
+        final File file = prepareBufferFile(1);
+        final PrintStream out = new PrintStream(new FileOutputStream(file, true));
+        try {
+            out.print("unfinished");
+        } finally {
+            out.close();
+        }
+        final BuildOutputLogger logger = new BuildOutputLogger(file);
+        final byte[] bytes = logger.retrieveBytes(0);
+        assertEquals("1", new String(bytes, "UTF-8").trim());
+        assertEquals(0, logger.retrieveBytes(bytes.length).length);
+    }
+
+    public void testShouldSplitLinesLongerThanMaxBytes() throws Exception {
+        final BuildOutputLogger logger = new BuildOutputLogger(prepareBufferFile(0));
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < BuildOutputLogger.MAX_BYTES + 10; i++) {
+            line.append('x');
+        }
+        logger.consumeLine(line.toString());
+        assertEquals(BuildOutputLogger.MAX_BYTES, logger.retrieveBytes(0).length);
+        assertTrue(new String(logger.retrieveBytes(BuildOutputLogger.MAX_BYTES), "UTF-8").startsWith("xxxxxxxxxx"));
+    }
+
+    public void testShouldStoreOutputAsUtf8() throws Exception {
+        final BuildOutputLogger logger = new BuildOutputLogger(prepareBufferFile(0));
+        logger.consumeLine("caf\u00e9");
+        assertEquals("caf\u00e9", logger.retrieveLines(0)[0]);
+        assertEquals("caf\u00e9", new String(logger.retrieveBytes(0), "UTF-8").trim());
+    }
+
     private void addLineToFile(final File file) throws FileNotFoundException {
         final PrintStream out = new PrintStream(new FileOutputStream(file, true));
         try {
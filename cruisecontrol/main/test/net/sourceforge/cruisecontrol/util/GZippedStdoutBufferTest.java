@@ -53,4 +53,12 @@ public final class GZippedStdoutBufferTest extends StdoutBufferTest
     return new GZippedStdoutBuffer(null);
   }
 
+  /**
+   * Creates the new instance of StdoutBuffer class - {@link GZippedStdoutBuffer} with the given limits.
+   */
+  @Override
+  protected StdoutBuffer stdoutBufferFactory(int chunkSize, long memoryLimit) {
+    return new GZippedStdoutBuffer(null, chunkSize, memoryLimit);
+  }
+
 }
@@ -0,0 +1,119 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.testutil.TestUtil.FilesToDelete;
+
+public class HttpFileTransferTest extends TestCase {
+
+    private static final String RFC1123 = "Sun, 06 Nov 1994 08:49:37 GMT";
+    private static final long RFC1123_MILLIS = 784111777000L;
+
+    private final FilesToDelete filesToDelete = new FilesToDelete();
+
+    protected void tearDown() throws Exception {
+        filesToDelete.delete();
+    }
+
+    public void testParseRange() {
+        assertNull(HttpFileTransfer.parseRange(null, 10));
+        assertNull(HttpFileTransfer.parseRange("bytes=1-2,4-5", 10));
+        assertNull(HttpFileTransfer.parseRange("bytes=5-2", 10));
+        assertNull(HttpFileTransfer.parseRange("lines=1-2", 10));
+        assertNull(HttpFileTransfer.parseRange("bytes=a-b", 10));
+        assertTrue(Arrays.equals(new long[] {1, 2}, HttpFileTransfer.parseRange("bytes=1-2", 10)));
+        assertTrue(Arrays.equals(new long[] {4, 9}, HttpFileTransfer.parseRange("bytes=4-", 10)));
+        assertTrue(Arrays.equals(new long[] {7, 9}, HttpFileTransfer.parseRange("bytes=-3", 10)));
+        assertTrue(Arrays.equals(new long[] {0, 9}, HttpFileTransfer.parseRange("bytes=-30", 10)));
+        assertTrue(Arrays.equals(new long[] {8, 9}, HttpFileTransfer.parseRange("bytes=8-30", 10)));
+        assertEquals(0, HttpFileTransfer.parseRange("bytes=10-", 10).length);
+    }
+
+    public void testParseDate() {
+        assertEquals(RFC1123_MILLIS, HttpFileTransfer.parseDate(RFC1123));
+        assertEquals(RFC1123_MILLIS, HttpFileTransfer.parseDate("Sunday, 06-Nov-94 08:49:37 GMT"));
+        assertEquals(RFC1123_MILLIS, HttpFileTransfer.parseDate("Sun Nov  6 08:49:37 1994"));
+        assertEquals(-1, HttpFileTransfer.parseDate(null));
+        assertEquals(-1, HttpFileTransfer.parseDate("yesterday"));
+    }
+
+    public void testGetETag() {
+        assertEquals("\"a-ff\"", HttpFileTransfer.getETag(10, 255, null));
+        assertEquals("\"a-ff-decoded\"", HttpFileTransfer.getETag(10, 255, "decoded"));
+    }
+
+    public void testIsNotModified() {
+        final String etag = HttpFileTransfer.getETag(10, RFC1123_MILLIS, null);
+        assertFalse(HttpFileTransfer.isNotModified(null, null, etag, RFC1123_MILLIS));
+        assertTrue(HttpFileTransfer.isNotModified(etag, null, etag, RFC1123_MILLIS));
+        assertTrue(HttpFileTransfer.isNotModified(" * ", null, etag, RFC1123_MILLIS));
+        assertFalse(HttpFileTransfer.isNotModified("\"other\"", RFC1123, etag, RFC1123_MILLIS));
+        assertTrue(HttpFileTransfer.isNotModified(null, RFC1123, etag, RFC1123_MILLIS + 999));
+        assertFalse(HttpFileTransfer.isNotModified(null, RFC1123, etag, RFC1123_MILLIS + 1000));
+        assertFalse(HttpFileTransfer.isNotModified(null, "garbage", etag, RFC1123_MILLIS));
+    }
+
+    public void testIsRangeValid() {
+        final String etag = HttpFileTransfer.getETag(10, RFC1123_MILLIS, null);
+        assertTrue(HttpFileTransfer.isRangeValid(null, etag, RFC1123_MILLIS));
+        assertTrue(HttpFileTransfer.isRangeValid(etag, etag, RFC1123_MILLIS));
+        assertFalse(HttpFileTransfer.isRangeValid("\"stale\"", etag, RFC1123_MILLIS));
+        assertFalse(HttpFileTransfer.isRangeValid("W/" + etag, etag, RFC1123_MILLIS));
+        assertTrue(HttpFileTransfer.isRangeValid(RFC1123, etag, RFC1123_MILLIS));
+        assertFalse(HttpFileTransfer.isRangeValid(RFC1123, etag, RFC1123_MILLIS + 1000));
+        assertFalse(HttpFileTransfer.isRangeValid("garbage", etag, 0));
+    }
+
+    public void testTransfer() throws Exception {
+        final File file = File.createTempFile("transfer", ".txt");
+        filesToDelete.add(file);
+        IO.write(file, "0123456789");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpFileTransfer.transfer(file, 3, 4, out);
+        assertEquals("3456", out.toString());
+
+        out.reset();
+        HttpFileTransfer.transfer(file, 8, 5, out);
+        assertEquals("89", out.toString());
+    }
+}
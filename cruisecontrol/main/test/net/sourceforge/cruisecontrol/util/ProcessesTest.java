@@ -52,36 +52,22 @@ public class ProcessesTest extends TestCase {
     }
 
     public void testShouldStartStreamPumperForErrorStream() throws Exception {
-        Processes.setRuntime(new MockExecutor());
+        final MockExecutor executor = new MockExecutor(100);
+        Processes.setRuntime(executor);
         Commandline c = new Commandline();
         c.setExecutable("UnitTestDummyExcectuable");
 
-        // try to ensure pending thread cleanups occur, so thread counts include only threads
-        // created by this unit test
-        System.gc();
-        System.gc();
-        Runtime.getRuntime().runFinalization();
-        System.gc();
-        System.gc();
-        Thread.sleep(500);
-
-        int preCount = Thread.activeCount();
         assertNotNull(Processes.execute(c));
 
-        // allow some time for thread to spin up. can be longer in java 5
-        int postCount = Thread.activeCount();
-        int waitCount = 0;
-        while ((postCount <= preCount) && (waitCount < 40)) {
-            waitCount++;
+        // the error stream is pumped on a shared thread, so check that it gets consumed rather than
+        // counting threads
+        final CloseAwareInputStream error = executor.mockProcess.error;
+        final long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (!error.isAtEnd() && System.currentTimeMillis() < deadline) {
             Thread.sleep(10);
-            postCount = Thread.activeCount();
         }
-        final String msg = "A StreamPumper Thread wasn't started. postCount: " + postCount
-                + "; preCount: " + preCount + "; waitCount: " + waitCount
-                + (postCount < preCount
-                        ? "\n\tWARNING: Thread counts might include threads from prior tests."
-                        : "");
-        assertTrue(msg, postCount > preCount);
+        assertTrue("the error stream wasn't pumped", error.isAtEnd());
+        assertFalse(executor.mockProcess.input.isAtEnd());
     }
 
     public void testShouldCloseStreamsWhenExecutingFully() throws IOException, InterruptedException {
@@ -94,12 +80,14 @@ public class ProcessesTest extends TestCase {
     }
 
     private static class CloseableProcess extends MockProcess {
-        private CloseAwareInputStream error = new CloseAwareInputStream(4 * 1000);
-        private CloseAwareInputStream input = new CloseAwareInputStream(4 * 1000);
-        private CloseAwareOutputStream output = new CloseAwareOutputStream();
+        private final CloseAwareInputStream error;
+        private final CloseAwareInputStream input;
+        private final CloseAwareOutputStream output = new CloseAwareOutputStream();
 
-        public CloseableProcess() {
+        public CloseableProcess(final int millisTillEndOfStream) {
             super();
+            error = new CloseAwareInputStream(millisTillEndOfStream);
+            input = new CloseAwareInputStream(millisTillEndOfStream);
             setErrorStream(error);
             setInputStream(input);
             setOutputStream(output);
@@ -114,6 +102,7 @@ public class ProcessesTest extends TestCase {
         private final int millisTillEndOfStream;
         private long starttime;
         private boolean closed;
+        private volatile boolean atEnd;
 
         private CloseAwareInputStream(final int millisTillEndOfStream) {
             this.millisTillEndOfStream = millisTillEndOfStream;
@@ -127,6 +116,10 @@ public class ProcessesTest extends TestCase {
             return closed;
         }
 
+        public boolean isAtEnd() {
+            return atEnd;
+        }
+
         public int read() throws IOException {
             if (starttime == 0) {
                 starttime = System.currentTimeMillis();
@@ -139,6 +132,7 @@ public class ProcessesTest extends TestCase {
                 // otherwise they buffer all reads until the final -1.
                 return '\n';
             }
+            atEnd = true;
             return -1;
         }
     }
@@ -160,10 +154,19 @@ public class ProcessesTest extends TestCase {
     }
 
     private static class MockExecutor implements Executor {
+        private final int millisTillEndOfStream;
         private CloseableProcess mockProcess;
 
+        MockExecutor() {
+            this(4 * 1000);
+        }
+
+        MockExecutor(final int millisTillEndOfStream) {
+            this.millisTillEndOfStream = millisTillEndOfStream;
+        }
+
         public Process exec(Commandline c) throws IOException {
-            mockProcess = new CloseableProcess();
+            mockProcess = new CloseableProcess(millisTillEndOfStream);
             return mockProcess;
         }
 
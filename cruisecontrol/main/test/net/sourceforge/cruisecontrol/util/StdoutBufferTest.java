@@ -39,6 +39,8 @@
 package net.sourceforge.cruisecontrol.util;
 
 import  java.io.BufferedReader;
+import  java.io.ByteArrayOutputStream;
+import  java.io.File;
 import  java.io.FileInputStream;
 import  java.io.IOException;
 import  java.io.InputStream;
@@ -258,6 +260,88 @@ public class StdoutBufferTest extends TestCase {
         }
     } // testOne2Many_RWRFRWR
 
+    /**
+     * Tests that the data spilled to disk when the memory limit is exceeded are read back
+     * in the same order, by both the reader started before the data were written and the
+     * readers started after the buffer was closed.
+     * @throws IOException if test fails
+     */
+    public void testSpillToDisk() throws IOException {
+        final StdoutBuffer buffer = stdoutBufferFactory(64, 256);
+        final InputStream early = buffer.getContent();
+
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        for (String line : lines) {
+            buffer.write((line + "\n").getBytes());
+            written.write((line + "\n").getBytes());
+        }
+        buffer.close();
+
+        assertTrue(buffer.toString(), buffer.getSpilledSize() > 0);
+        assertEquals(written.toString(), readAll(early));
+        assertEquals(written.toString(), readAll(buffer.getContent()));
+        assertEquals(written.toString(), readAll(buffer.getContent()));
+    } // testSpillToDisk
+
+    /**
+     * Tests that releasing the buffer deletes the temporary file with the spilled data.
+     * @throws IOException if test fails
+     */
+    public void testReleaseDeletesSpillFile() throws IOException {
+        final StdoutBuffer buffer = stdoutBufferFactory(64, 256);
+        for (String line : lines) {
+            buffer.write((line + "\n").getBytes());
+        }
+        buffer.close();
+        final File spillFile = buffer.getSpillFile();
+        assertNotNull(spillFile);
+        assertTrue(spillFile.exists());
+
+        buffer.release();
+        assertFalse(spillFile.exists());
+        try {
+            buffer.getContent();
+            fail("released buffer should not be readable");
+        } catch (IOException e) {
+            // expected
+        }
+        buffer.release();
+    } // testReleaseDeletesSpillFile
+
+    /**
+     * Tests that a reader open when the buffer is released reads all the data, and the temporary file
+     * is deleted when the reader is closed.
+     * @throws IOException if test fails
+     */
+    public void testReleaseWaitsForOpenReaders() throws IOException {
+        final StdoutBuffer buffer = stdoutBufferFactory(64, 256);
+        final InputStream reader = buffer.getContent();
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        for (String line : lines) {
+            buffer.write((line + "\n").getBytes());
+            written.write((line + "\n").getBytes());
+        }
+        buffer.close();
+        final File spillFile = buffer.getSpillFile();
+
+        buffer.release();
+        assertTrue(spillFile.exists());
+        assertEquals(written.toString(), readAll(reader));
+        assertFalse(spillFile.exists());
+    } // testReleaseWaitsForOpenReaders
+
+    /**
+     * Tests that the buffer rejects the memory limit lower than the chunk size.
+     */
+    public void testInvalidMemoryLimit() {
+        try {
+            new StdoutBuffer(null, 1000, 999);
+            fail("memory limit lower than chunk size should fail");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().indexOf("999") >= 0);
+        }
+    } // testInvalidMemoryLimit
+
     /*
      * ----------- PROTECTED BLOCK -----------
      */
@@ -272,10 +356,38 @@ public class StdoutBufferTest extends TestCase {
       return new StdoutBuffer(null);
     }
 
+    /**
+     * @param chunkSize the size of one buffer item chunk.
+     * @param memoryLimit the maximum number of bytes kept in memory.
+     * @return Creates the new instance of StdoutBuffer class with the given limits.
+     */
+    protected StdoutBuffer stdoutBufferFactory(int chunkSize, long memoryLimit) {
+      return new StdoutBuffer(null, chunkSize, memoryLimit);
+    }
+
     /* 
      * ----------- PRIVATE BLOCK ----------- 
      */
   
+    /**
+     * Reads the whole stream and closes it.
+     * @param stream the stream to read.
+     * @return the content of the stream, converted to string in the same way as
+     *   {@link ByteArrayOutputStream#toString()} does.
+     * @throws IOException if the stream cannot be read.
+     */
+    private static String readAll(InputStream stream) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] data = new byte[100];
+        int num;
+
+        while ((num = stream.read(data)) >= 0) {
+            content.write(data, 0, num);
+        }
+        stream.close();
+        return content.toString();
+    } // readAll
+
     /** The list of lines to test */
     private List<String>             lines;
 
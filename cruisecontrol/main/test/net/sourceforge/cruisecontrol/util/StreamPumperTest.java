@@ -43,6 +43,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
@@ -222,6 +223,41 @@ public class StreamPumperTest extends TestCase {
     }
 
 
+    // text data, both binary and text consumer, lines split the same way as in text only mode
+    public void testTxtIn_BinTxtOutLineTerminators() {
+        byte[] data = "a\r\nb\rc\n\nd\r".getBytes();
+
+        TestConsumer txtOnly = new TestConsumer();
+        new StreamPumper(new ByteArrayInputStream(data), txtOnly).run();
+        TestConsumer txtConsumer = new TestConsumer();
+        new StreamPumper(new ByteArrayInputStream(data), false, txtConsumer, new ByteArrayOutputStream()).run();
+
+        assertEquals(Arrays.asList(new String[] {"a", "b", "c", "", "d"}), txtOnly.getLines());
+        assertEquals(txtOnly.getLines(), txtConsumer.getLines());
+    }
+
+    // text data, both binary and text consumer, characters split between the chunks read
+    public void testTxtIn_BinTxtOutCharactersSplitBetweenReads() {
+        String line1 = "gr\u00fc\u00dfe \u20ac";
+        String line2 = "\u00e9t\u00e9";
+        byte[] data = (line1 + "\n" + line2).getBytes();
+        InputStream oneByteAtATime = new ByteArrayInputStream(data) {
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        TestConsumer txtOnly = new TestConsumer();
+        new StreamPumper(new ByteArrayInputStream(data), txtOnly).run();
+        TestConsumer txtConsumer = new TestConsumer();
+        ByteArrayOutputStream binConsumer = new ByteArrayOutputStream();
+        new StreamPumper(oneByteAtATime, false, txtConsumer, binConsumer).run();
+
+        assertEquals(2, txtConsumer.getLines().size());
+        assertEquals(txtOnly.getLines(), txtConsumer.getLines());
+        Assert.assertArrayEquals(data, binConsumer.toByteArray());
+    }
+
     // Gets the output in text consumer expected for binary data
     private String getBinDataMessage(byte[] bytes) {
        return "Read " + bytes.length + " Bytes";
@@ -251,6 +287,10 @@ class TestConsumer implements StreamConsumer {
         return false;
     }
 
+    List<String> getLines() {
+        return lines;
+    }
+
     public void consumeLine(String line) {
         lines.add(line);
     }
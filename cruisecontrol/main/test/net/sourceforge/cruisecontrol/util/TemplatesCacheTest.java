@@ -0,0 +1,161 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2001-2003, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.testutil.TestUtil.FilesToDelete;
+
+public class TemplatesCacheTest extends TestCase {
+
+    private final FilesToDelete filesToDelete = new FilesToDelete();
+    private TemplatesCache cache;
+    private File xsl;
+
+    protected void setUp() throws Exception {
+        cache = new TemplatesCache();
+        xsl = File.createTempFile("TemplatesCacheTest", ".xsl");
+        filesToDelete.add(xsl);
+        writeStylesheet("first");
+    }
+
+    protected void tearDown() throws Exception {
+        System.getProperties().remove(TemplatesCache.PRECOMPILE_PROPERTY);
+        filesToDelete.delete();
+    }
+
+    private void writeStylesheet(final String output) throws IOException {
+        final FileWriter writer = new FileWriter(xsl);
+        try {
+            writer.write("<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                    + "<xsl:output method=\"text\"/>"
+                    + "<xsl:param name=\"suffix\"/>"
+                    + "<xsl:template match=\"/\">" + output + "<xsl:value-of select=\"$suffix\"/></xsl:template>"
+                    + "</xsl:stylesheet>");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String transform(final Transformer transformer) throws Exception {
+        final StringWriter out = new StringWriter();
+        transformer.transform(new StreamSource(new StringReader("<root/>")), new StreamResult(out));
+        return out.toString();
+    }
+
+    public void testCompilesOnce() throws Exception {
+        final Templates templates = cache.getTemplates(xsl);
+        assertSame(templates, cache.getTemplates(xsl));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getCachedTemplates());
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testRecompilesChangedStylesheet() throws Exception {
+        assertEquals("first", transform(cache.newTransformer(xsl)));
+
+        final long modified = xsl.lastModified();
+        writeStylesheet("second");
+        xsl.setLastModified(modified + 2000);
+
+        assertEquals("second", transform(cache.newTransformer(xsl)));
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testReusesTransformerWithinThread() throws Exception {
+        final Transformer transformer = cache.newTransformer(xsl);
+        transformer.setParameter("suffix", "-set");
+        assertEquals("first-set", transform(transformer));
+
+        final Transformer again = cache.newTransformer(xsl);
+        assertSame(transformer, again);
+        assertEquals("reused transformer should have its parameters cleared", "first", transform(again));
+    }
+
+    public void testSeparateTransformerPerThread() throws Exception {
+        final Transformer mine = cache.newTransformer(xsl);
+        final Transformer[] theirs = new Transformer[1];
+        final Thread thread = new Thread() {
+            public void run() {
+                try {
+                    theirs[0] = cache.newTransformer(xsl);
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertNotNull(theirs[0]);
+        assertNotSame(mine, theirs[0]);
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testPrecompileOnlyWhenEnabled() throws Exception {
+        cache.precompile(xsl);
+        assertEquals(0, cache.getCachedTemplates());
+
+        System.setProperty(TemplatesCache.PRECOMPILE_PROPERTY, "true");
+        cache.precompile(xsl);
+        assertEquals(1, cache.getCachedTemplates());
+        cache.precompile(new File(xsl.getAbsolutePath() + ".missing"));
+        assertEquals(1, cache.getCachedTemplates());
+    }
+
+    public void testClear() throws Exception {
+        cache.getTemplates(xsl);
+        cache.getTemplates(xsl);
+        assertEquals(0.5, cache.getHitRate(), 0.001);
+
+        cache.clear();
+        assertEquals(0, cache.getCachedTemplates());
+        assertEquals(0, cache.getHits());
+        assertEquals(0.0, cache.getHitRate(), 0.001);
+    }
+}
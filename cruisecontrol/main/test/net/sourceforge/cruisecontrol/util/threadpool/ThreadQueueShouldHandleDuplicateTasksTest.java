@@ -1,13 +1,24 @@
 package net.sourceforge.cruisecontrol.util.threadpool;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.TestCase;
 
 public class ThreadQueueShouldHandleDuplicateTasksTest extends TestCase {
+    private static final long TIMEOUT = 10 * 1000L;
+
     private StubWorkerThread scheduledWorkerThread;
     private StubWorkerThread dupeOfScheduledWorkerThread;
+    private int maxThreadCount;
 
     protected void setUp() throws Exception {
         super.setUp();
+        // other tests in the same JVM may have left a queue sized for another thread count
+        ThreadQueue.stopQueue();
+        maxThreadCount = ThreadQueueProperties.getMaxThreadCount();
+        ThreadQueueProperties.setMaxThreadCount(10);
+        StubWorkerThread.numberOfRunningThreads = 0;
         scheduledWorkerThread = new StubWorkerThread();
         dupeOfScheduledWorkerThread = new StubWorkerThread();
     }
@@ -16,12 +27,22 @@ public class ThreadQueueShouldHandleDuplicateTasksTest extends TestCase {
         super.tearDown();
         scheduledWorkerThread.completeBuild();
         dupeOfScheduledWorkerThread.completeBuild();
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (ThreadQueue.isActive(scheduledWorkerThread.getName()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
         ThreadQueue.stopQueue();
+        ThreadQueueProperties.setMaxThreadCount(maxThreadCount);
     }
 
-    public void testThreadQueueShouldHandleDuplicateTasks() throws Exception {
-        ThreadQueueProperties.setMaxThreadCount(10);
+    private static void waitForRunningThreads(final int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (StubWorkerThread.numberOfRunningThreads != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
 
+    public void testThreadQueueShouldHandleDuplicateTasks() throws Exception {
         assertTrue("number of busy/started threads should yet be 0", StubWorkerThread.numberOfRunningThreads == 0);
 
         ThreadQueue.addTask(scheduledWorkerThread);
@@ -33,19 +54,15 @@ public class ThreadQueueShouldHandleDuplicateTasksTest extends TestCase {
                     + "which makes sure they are not build simultaneously");
         }
 
-        int count = 0;
-        while (StubWorkerThread.numberOfRunningThreads == 0 && count < 5) {
-            Thread.sleep(count * 100);
-            count++;
-        }
+        waitForRunningThreads(1);
         assertTrue("only the first scheduledWorkerThread should be busy/started, so number of threads should be 1",
                 StubWorkerThread.numberOfRunningThreads == 1);
 
+        final CountDownLatch dupeStarted = new CountDownLatch(1);
+        dupeOfScheduledWorkerThread.started = dupeStarted;
         scheduledWorkerThread.completeBuild();
-
-        // This required length of this sleep may vary depending on thread scheduling...maybe we need some kind of
-        // queueListener to be sure of such state changes?
-        Thread.sleep(250);
+        assertTrue("the duplicate should start once the first one completed",
+                dupeStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
 
         assertTrue("now the second scheduledWorkerThread should be busy/started, so number of threads should be 1",
                 StubWorkerThread.numberOfRunningThreads == 1);
@@ -53,10 +70,37 @@ public class ThreadQueueShouldHandleDuplicateTasksTest extends TestCase {
         scheduledWorkerThread.completeBuild();
     }
 
+    public void testWaitingDuplicateShouldNotBlockOtherTasks() throws Exception {
+        final IdleThreadQueueClient otherTask = new IdleThreadQueueClient("Other project");
+        final CountDownLatch otherCompleted = new CountDownLatch(1);
+        final ThreadQueue.Listener listener = new ThreadQueue.Listener() {
+            public void taskCompleted(final String taskName) {
+                if (taskName.equals(otherTask.getName())) {
+                    otherCompleted.countDown();
+                }
+            }
+        };
+        ThreadQueue.addListener(listener);
+        try {
+            ThreadQueue.addTask(scheduledWorkerThread);
+            ThreadQueue.addTask(dupeOfScheduledWorkerThread);
+            ThreadQueue.addTask(otherTask);
+
+            assertTrue("the other project should not wait behind the duplicate",
+                    otherCompleted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        } finally {
+            ThreadQueue.removeListener(listener);
+        }
+        assertNotNull(otherTask.getResult());
+        assertEquals(1, ThreadQueue.getIdleTaskNames().size());
+        assertEquals(scheduledWorkerThread.getName(), ThreadQueue.getIdleTaskNames().get(0));
+    }
+
     private static final class StubWorkerThread implements WorkerThread {
         private final String taskName = "Dummy project from ThreadQueueShouldHandleDuplicateTasksTest";
         private boolean completed = false;
-        private static int numberOfRunningThreads = 0;
+        private volatile CountDownLatch started;
+        private static volatile int numberOfRunningThreads = 0;
 
         public synchronized void completeBuild() {
             this.completed = true;
@@ -78,7 +122,12 @@ public class ThreadQueueShouldHandleDuplicateTasksTest extends TestCase {
                 }
 
                 numberOfRunningThreads++;
-                this.wait();
+                if (started != null) {
+                    started.countDown();
+                }
+                while (!completed) {
+                    this.wait();
+                }
                 numberOfRunningThreads--;
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
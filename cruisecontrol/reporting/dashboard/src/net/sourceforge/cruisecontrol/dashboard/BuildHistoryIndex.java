@@ -0,0 +1,318 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import net.sourceforge.cruisecontrol.dashboard.exception.ShouldStopParsingException;
+import net.sourceforge.cruisecontrol.dashboard.saxhandler.CompositeExtractor;
+import net.sourceforge.cruisecontrol.dashboard.saxhandler.DurationExtractor;
+import net.sourceforge.cruisecontrol.dashboard.saxhandler.SAXBasedExtractor;
+import net.sourceforge.cruisecontrol.dashboard.utils.CCDateFormatter;
+import net.sourceforge.cruisecontrol.dashboard.utils.functors.BuildSummariesFilters;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Understands the build history of one project: the log files in its log directory, sorted by build time.
+ * The directory is only listed again when its modification time changes, and only log files that weren't
+ * seen before are looked at, so queries don't need to scan the directory.
+ */
+public class BuildHistoryIndex {
+    private static final Logger LOGGER = Logger.getLogger(BuildHistoryIndex.class);
+
+    /**
+     * Entries may be added to a directory without changing its modification time if they are added within
+     * its resolution, so a directory modified this recently is listed on every refresh.
+     */
+    private static final long RACY_MODIFICATION_WINDOW = 2000;
+
+    private static final FilenameFilter CCLOG_FILTER = BuildSummariesFilters.cclogFilter();
+
+    private final File logDirectory;
+
+    /** All log file names seen, including the ones that aren't valid build logs. */
+    private final Set<String> names = new HashSet<String>();
+
+    private final List<Entry> all = new ArrayList<Entry>();
+
+    private final List<Entry> passed = new ArrayList<Entry>();
+
+    private final List<Entry> failed = new ArrayList<Entry>();
+
+    private long lastModified = -1;
+
+    private long lastRefreshed;
+
+    public BuildHistoryIndex(File logDirectory) {
+        this.logDirectory = logDirectory;
+    }
+
+    public File getLogDirectory() {
+        return logDirectory;
+    }
+
+    /**
+     * @param max the maximum number of builds to return
+     * @param passedOnly true to only return successful builds
+     * @return the latest builds, latest first
+     */
+    public synchronized List<Entry> getLatest(int max, boolean passedOnly) {
+        refresh();
+        List<Entry> entries = passedOnly ? passed : all;
+        List<Entry> latest = new ArrayList<Entry>(entries.subList(Math.max(0, entries.size() - max),
+                entries.size()));
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    /**
+     * @return the latest build, or null if there wasn't any
+     */
+    public synchronized Entry getLatest() {
+        refresh();
+        return all.isEmpty() ? null : all.get(all.size() - 1);
+    }
+
+    /**
+     * @param yyyyMMddHHmmss the build time
+     * @param passedBuild true to look for the latest successful build, false for the latest failed one
+     * @return the latest build before the given time, or null if there wasn't any
+     */
+    public synchronized Entry getLastBefore(String yyyyMMddHHmmss, boolean passedBuild) {
+        refresh();
+        List<Entry> entries = passedBuild ? passed : failed;
+        int index = firstIndexFrom(entries, Long.parseLong(yyyyMMddHHmmss)) - 1;
+        return index < 0 ? null : entries.get(index);
+    }
+
+    /**
+     * @param yyyyMMddHHmmss the build time
+     * @param passedBuild true to look for the earliest successful build, false for the earliest failed one
+     * @return the earliest build after the given time, or null if there wasn't any
+     */
+    public synchronized Entry getFirstAfter(String yyyyMMddHHmmss, boolean passedBuild) {
+        refresh();
+        List<Entry> entries = passedBuild ? passed : failed;
+        int index = firstIndexFrom(entries, Long.parseLong(yyyyMMddHHmmss) + 1);
+        return index < entries.size() ? entries.get(index) : null;
+    }
+
+    /**
+     * @param yyyyMMddHHmmss the build time
+     * @return the build at exactly the given time, or null if there wasn't any
+     */
+    public synchronized Entry find(String yyyyMMddHHmmss) {
+        refresh();
+        long time = Long.parseLong(yyyyMMddHHmmss);
+        int index = firstIndexFrom(all, time);
+        if (index < all.size() && (all.get(index)).time == time) {
+            return all.get(index);
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the first entry built at or after the given time, by binary search
+     */
+    private static int firstIndexFrom(List<Entry> entries, long time) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((entries.get(middle)).time < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        long modified = logDirectory.lastModified();
+        if (modified == lastModified && modified + RACY_MODIFICATION_WINDOW < lastRefreshed) {
+            return;
+        }
+        lastModified = modified;
+        lastRefreshed = now;
+
+        String[] current = logDirectory.list(CCLOG_FILTER);
+        Set<String> currentNames = new HashSet<String>();
+        if (current != null) {
+            currentNames.addAll(Arrays.asList(current));
+        }
+        if (names.retainAll(currentNames)) {
+            removeDeleted(all);
+            removeDeleted(passed);
+            removeDeleted(failed);
+        }
+        List<Entry> added = new ArrayList<Entry>();
+        for (String name : currentNames) {
+            if (names.add(name)) {
+                try {
+                    added.add(new Entry(new LogFile(logDirectory, name)));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.debug("ignoring " + name + " in " + logDirectory.getAbsolutePath(), e);
+                }
+            }
+        }
+        Collections.sort(added);
+        for (Entry entry : added) {
+            insert(all, entry);
+            insert(entry.hasPassed() ? passed : failed, entry);
+        }
+    }
+
+    private void removeDeleted(List<Entry> entries) {
+        for (Iterator<Entry> iter = entries.iterator(); iter.hasNext();) {
+            if (!names.contains(iter.next().getName())) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * New builds are the latest ones, so they are almost always appended.
+     */
+    private static void insert(List<Entry> entries, Entry entry) {
+        if (entries.isEmpty() || (entries.get(entries.size() - 1)).compareTo(entry) < 0) {
+            entries.add(entry);
+        } else {
+            int index = Collections.binarySearch(entries, entry);
+            entries.add(index < 0 ? -index - 1 : index, entry);
+        }
+    }
+
+    /**
+     * Understands what is known about one build without reading its log file.
+     */
+    public static final class Entry implements Comparable<Entry> {
+        private final LogFile logFile;
+
+        private final long time;
+
+        private final long size;
+
+        private final boolean passedBuild;
+
+        private String duration;
+
+        Entry(LogFile logFile) {
+            this.logFile = logFile;
+            this.time = Long.parseLong(CCDateFormatter.getBuildDateFromLogFileName(logFile.getName()));
+            this.size = logFile.length();
+            this.passedBuild = BuildSummariesFilters.succeedFilter().accept(logFile.getParentFile(),
+                    logFile.getName());
+        }
+
+        public LogFile getLogFile() {
+            return logFile;
+        }
+
+        public String getName() {
+            return logFile.getName();
+        }
+
+        public String getDateTime() {
+            return logFile.getDateTime();
+        }
+
+        public String getLabel() {
+            return logFile.getLabel();
+        }
+
+        public boolean hasPassed() {
+            return passedBuild;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the duration of the build, read from the log file the first time it is asked for, or null if
+         *         the log file can't be read.
+         */
+        public synchronized String getDuration() {
+            if (duration == null) {
+                Map properties = new HashMap();
+                SAXBasedExtractor extractor = new DurationExtractor();
+                InputStream in = null;
+                try {
+                    SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+                    in = logFile.getInputStream();
+                    saxParser.parse(in, new CompositeExtractor(Arrays
+                            .asList(new SAXBasedExtractor[] {extractor})));
+                } catch (ShouldStopParsingException e) {
+                    LOGGER.debug("Intentionally throwing exception to stop parsing " + e.getMessage());
+                } catch (Exception e) {
+                    LOGGER.debug("Can not read the duration from " + logFile.getAbsolutePath(), e);
+                    return null;
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+                extractor.report(properties);
+                duration = (String) properties.get("duration");
+            }
+            return duration;
+        }
+
+        public int compareTo(Entry otherEntry) {
+            if (time != otherEntry.time) {
+                return time < otherEntry.time ? -1 : 1;
+            }
+            return getName().compareTo(otherEntry.getName());
+        }
+    }
+}
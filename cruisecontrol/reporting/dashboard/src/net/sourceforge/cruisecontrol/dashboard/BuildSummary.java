@@ -76,6 +76,8 @@ public class BuildSummary implements Build {
 
     private TimeConverter timeConverter = new TimeConverter();
 
+    private BuildHistoryIndex.Entry historyEntry;
+
     /**
      * No logfile available. Inactive build.
      * @param projectName
@@ -93,6 +95,18 @@ public class BuildSummary implements Build {
         this.buildLogFile = new LogFile(buildLogFilename);
     }
 
+    /**
+     * A build known to the build history index, which remembers its duration across summaries.
+     * @param projectName
+     * @param historyEntry
+     */
+    public BuildSummary(String projectName, BuildHistoryIndex.Entry historyEntry) {
+        this.projectName = projectName;
+        this.previousBuildResult = historyEntry.hasPassed() ? PreviousResult.PASSED : PreviousResult.FAILED;
+        this.buildLogFile = historyEntry.getLogFile();
+        this.historyEntry = historyEntry;
+    }
+
     /**
      * Used for mocking out the timeConverter.
      * @param timeConverter
@@ -149,6 +163,10 @@ public class BuildSummary implements Build {
     }
 
     public String getDuration() {
+        if (historyEntry != null) {
+            String duration = historyEntry.getDuration();
+            return duration == null ? "0 second" : duration;
+        }
         try {
             if (!propertiesFromLogContent.containsKey("duration")) {
                 parseLogFile(new DurationExtractor());
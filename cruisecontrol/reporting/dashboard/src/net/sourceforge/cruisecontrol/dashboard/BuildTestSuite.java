@@ -118,6 +118,10 @@ public class BuildTestSuite {
         return null;
     }
 
+    public List getTestCases() {
+        return testCases;
+    }
+
     public void appendTestCases(List tests) {
         this.testCases = tests;
     }
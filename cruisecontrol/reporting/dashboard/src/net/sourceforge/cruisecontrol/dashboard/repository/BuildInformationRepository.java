@@ -9,6 +9,12 @@ import net.sourceforge.cruisecontrol.BuildLoopInformation.ProjectInfo;
 public interface BuildInformationRepository {
     void saveOrUpdate(BuildLoopInformation information);
 
+    /**
+     * @return false if the delta is not based on the version last stored for its build loop, in which
+     * case nothing is applied and the build loop has to send a full snapshot.
+     */
+    boolean applyDelta(BuildLoopInformation delta);
+
     ProjectInfo getProjectInfo(String projectName);
 
     ClosableProjectMBeanConnection getJmxConnection(String projectName) throws IOException;
@@ -23,6 +23,8 @@ public class BuildInformationRepositoryInMemoImpl implements BuildInformationRep
 
     private final Map<String, BuildLoopInformation> info = new HashMap<String, BuildLoopInformation>();
 
+    private final Map<String, Long> versions = new HashMap<String, Long>();
+
     public BuildInformationRepositoryInMemoImpl() {
         this(new JMXConnectorFactory());
     }
@@ -52,13 +54,34 @@ public class BuildInformationRepositoryInMemoImpl implements BuildInformationRep
         return buildInfo(projectName);
     }
 
-    public void saveOrUpdate(final BuildLoopInformation buildLoopInfo) {
+    public synchronized void saveOrUpdate(final BuildLoopInformation buildLoopInfo) {
         final ProjectInfo[] projects = buildLoopInfo.getProjects();
         filterDiscontinuedProjects(buildLoopInfo, projects);
+        store(buildLoopInfo, projects);
+    }
+
+    public synchronized boolean applyDelta(final BuildLoopInformation delta) {
+        final Long current = versions.get(delta.getUuid());
+        if (current == null || current.longValue() != delta.getBaseVersion()) {
+            return false;
+        }
+        for (final String name : delta.getRemovedProjects()) {
+            final BuildLoopInformation currentInfo = info.get(name);
+            if (currentInfo != null && isSameBuildLoop(delta, currentInfo)) {
+                info.remove(name);
+                data.remove(name);
+            }
+        }
+        store(delta, delta.getProjects());
+        return true;
+    }
+
+    private void store(final BuildLoopInformation buildLoopInfo, final ProjectInfo[] projects) {
         for (final ProjectInfo projectInfo : projects) {
             data.put(projectInfo.getName(), projectInfo);
             info.put(projectInfo.getName(), buildLoopInfo);
         }
+        versions.put(buildLoopInfo.getUuid(), Long.valueOf(buildLoopInfo.getVersion()));
     }
 
     private void filterDiscontinuedProjects(final BuildLoopInformation updatedInfo, final ProjectInfo[] projects) {
@@ -86,8 +109,9 @@ public class BuildInformationRepositoryInMemoImpl implements BuildInformationRep
         return true;
     }
 
-    public void removeAll() {
+    public synchronized void removeAll() {
         data.clear();
+        versions.clear();
     }
 
     public int size() {
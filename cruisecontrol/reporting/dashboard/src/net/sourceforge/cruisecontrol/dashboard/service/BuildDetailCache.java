@@ -0,0 +1,463 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.cruisecontrol.Modification;
+import net.sourceforge.cruisecontrol.Modification.ModifiedFile;
+import net.sourceforge.cruisecontrol.dashboard.BuildTestCase;
+import net.sourceforge.cruisecontrol.dashboard.BuildTestCaseResult;
+import net.sourceforge.cruisecontrol.dashboard.BuildTestSuite;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Remembers what was extracted from build log files, so a build detail page doesn't parse the whole log every
+ * time it is shown. Entries are only used as long as the log file keeps its modification time and size. The
+ * least recently used entries are evicted once the logs they represent add up to more than the maximum size.
+ * Optionally the extracted data is also written to a small binary file next to the log, which survives restarts.
+ */
+public class BuildDetailCache {
+    private static final Logger LOGGER = Logger.getLogger(BuildDetailCache.class);
+
+    public static final String SIDECAR_SUFFIX = ".detail";
+
+    public static final long DEFAULT_MAX_LOG_SIZE = 64 * 1024 * 1024;
+
+    private static final int SIDECAR_MAGIC = 0x43434244;
+
+    private static final int SIDECAR_VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte MODIFICATIONS = 2;
+    private static final byte TEST_SUITES = 3;
+
+    private static final BuildTestCaseResult[] RESULTS =
+            new BuildTestCaseResult[] {BuildTestCaseResult.PASSED, BuildTestCaseResult.FAILED,
+                    BuildTestCaseResult.ERROR};
+
+    private final Map cache = new LinkedHashMap(16, 0.75f, true);
+
+    private long maxLogSize = DEFAULT_MAX_LOG_SIZE;
+
+    private long cachedLogSize;
+
+    private boolean sidecarsEnabled;
+
+    private long hits;
+
+    private long sidecarHits;
+
+    private long misses;
+
+    private long parseMillis;
+
+    public void setMaxLogSize(long maxLogSize) {
+        this.maxLogSize = maxLogSize;
+    }
+
+    public long getMaxLogSize() {
+        return maxLogSize;
+    }
+
+    public void setSidecarsEnabled(boolean sidecarsEnabled) {
+        this.sidecarsEnabled = sidecarsEnabled;
+    }
+
+    public boolean isSidecarsEnabled() {
+        return sidecarsEnabled;
+    }
+
+    /**
+     * @param logFile the build log
+     * @return what was extracted from the log file as it is now, or null if it has to be parsed
+     */
+    public Map get(File logFile) {
+        String key = logFile.getAbsolutePath();
+        long lastModified = logFile.lastModified();
+        long length = logFile.length();
+        synchronized (this) {
+            Entry entry = (Entry) cache.get(key);
+            if (entry != null) {
+                if (entry.lastModified == lastModified && entry.length == length) {
+                    hits++;
+                    return entry.properties;
+                }
+                remove(key);
+            }
+        }
+        if (sidecarsEnabled) {
+            Map properties = readSidecar(logFile, lastModified, length);
+            if (properties != null) {
+                synchronized (this) {
+                    sidecarHits++;
+                    add(key, new Entry(lastModified, length, properties));
+                }
+                return properties;
+            }
+        }
+        synchronized (this) {
+            misses++;
+        }
+        return null;
+    }
+
+    /**
+     * @param logFile the build log
+     * @param properties what was extracted from the log, must not be changed afterwards
+     * @param millis how long it took to parse the log
+     */
+    public void put(File logFile, Map properties, long millis) {
+        long lastModified = logFile.lastModified();
+        long length = logFile.length();
+        Map unmodifiable = Collections.unmodifiableMap(properties);
+        synchronized (this) {
+            parseMillis += millis;
+            add(logFile.getAbsolutePath(), new Entry(lastModified, length, unmodifiable));
+        }
+        if (sidecarsEnabled) {
+            writeSidecar(logFile, lastModified, length, properties);
+        }
+    }
+
+    private void add(String key, Entry entry) {
+        remove(key);
+        if (entry.length > maxLogSize) {
+            return;
+        }
+        cache.put(key, entry);
+        cachedLogSize += entry.length;
+        for (Iterator iter = cache.values().iterator(); cachedLogSize > maxLogSize && iter.hasNext();) {
+            cachedLogSize -= ((Entry) iter.next()).length;
+            iter.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = (Entry) cache.remove(key);
+        if (removed != null) {
+            cachedLogSize -= removed.length;
+        }
+    }
+
+    public synchronized int getCachedBuilds() {
+        return cache.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getSidecarHits() {
+        return sidecarHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getParseMillis() {
+        return parseMillis;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        cachedLogSize = 0;
+    }
+
+    static File getSidecar(File logFile) {
+        return new File(logFile.getParentFile(), logFile.getName() + SIDECAR_SUFFIX);
+    }
+
+    private Map readSidecar(File logFile, long lastModified, long length) {
+        File sidecar = getSidecar(logFile);
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)));
+            if (in.readInt() != SIDECAR_MAGIC || in.readInt() != SIDECAR_VERSION
+                    || in.readLong() != lastModified || in.readLong() != length) {
+                return null;
+            }
+            Map properties = new HashMap();
+            for (int count = in.readInt(); count > 0; count--) {
+                properties.put(in.readUTF(), readValue(in));
+            }
+            return Collections.unmodifiableMap(properties);
+        } catch (IOException e) {
+            LOGGER.debug("Can not read " + sidecar.getAbsolutePath(), e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private void writeSidecar(File logFile, long lastModified, long length, Map properties) {
+        File sidecar = getSidecar(logFile);
+        File temp = new File(sidecar.getParentFile(), sidecar.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(SIDECAR_MAGIC);
+            out.writeInt(SIDECAR_VERSION);
+            out.writeLong(lastModified);
+            out.writeLong(length);
+            out.writeInt(properties.size());
+            for (Iterator iter = properties.entrySet().iterator(); iter.hasNext();) {
+                Map.Entry property = (Map.Entry) iter.next();
+                out.writeUTF((String) property.getKey());
+                writeValue(out, property.getValue());
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(sidecar) && !(sidecar.delete() && temp.renameTo(sidecar))) {
+                throw new IOException("Can not rename " + temp.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Can not write " + sidecar.getAbsolutePath(), e);
+        } finally {
+            IOUtils.closeQuietly(out);
+            temp.delete();
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (isListOf(value, Modification.class)) {
+            out.writeByte(MODIFICATIONS);
+            writeModifications(out, (List) value);
+        } else if (isListOf(value, BuildTestSuite.class)) {
+            out.writeByte(TEST_SUITES);
+            writeTestSuites(out, (List) value);
+        } else {
+            throw new IOException("Can not store " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case MODIFICATIONS:
+                return readModifications(in);
+            case TEST_SUITES:
+                return readTestSuites(in);
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static boolean isListOf(Object value, Class type) {
+        if (!(value instanceof List)) {
+            return false;
+        }
+        for (Iterator iter = ((List) value).iterator(); iter.hasNext();) {
+            if (!type.isInstance(iter.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeModifications(DataOutputStream out, List modifications) throws IOException {
+        out.writeInt(modifications.size());
+        for (Iterator iter = modifications.iterator(); iter.hasNext();) {
+            Modification modification = (Modification) iter.next();
+            writeString(out, modification.type);
+            writeString(out, modification.userName);
+            writeString(out, modification.comment);
+            writeString(out, modification.emailAddress);
+            writeString(out, modification.revision);
+            Date time = modification.modifiedTime;
+            out.writeLong(time == null ? Long.MIN_VALUE : time.getTime());
+            out.writeInt(modification.files.size());
+            for (Iterator files = modification.files.iterator(); files.hasNext();) {
+                ModifiedFile file = (ModifiedFile) files.next();
+                writeString(out, file.fileName);
+                writeString(out, file.revision);
+                writeString(out, file.folderName);
+                writeString(out, file.action);
+            }
+        }
+    }
+
+    private static List readModifications(DataInputStream in) throws IOException {
+        List modifications = new ArrayList();
+        for (int count = in.readInt(); count > 0; count--) {
+            String type = readString(in);
+            String user = readString(in);
+            String comment = readString(in);
+            String email = readString(in);
+            String revision = readString(in);
+            long time = in.readLong();
+            List<ModifiedFile> files = new ArrayList<ModifiedFile>();
+            for (int fileCount = in.readInt(); fileCount > 0; fileCount--) {
+                files.add(new ModifiedFile(readString(in), readString(in), readString(in), readString(in)));
+            }
+            modifications.add(new Modification(type, user, comment, email,
+                    time == Long.MIN_VALUE ? null : new Date(time), revision, files));
+        }
+        return modifications;
+    }
+
+    private static void writeTestSuites(DataOutputStream out, List suites) throws IOException {
+        out.writeInt(suites.size());
+        for (Iterator iter = suites.iterator(); iter.hasNext();) {
+            BuildTestSuite suite = (BuildTestSuite) iter.next();
+            writeString(out, suite.getName());
+            out.writeFloat(suite.getDurationInSeconds());
+            List testCases = suite.getTestCases();
+            out.writeInt(testCases == null ? -1 : testCases.size());
+            if (testCases == null) {
+                continue;
+            }
+            for (Iterator cases = testCases.iterator(); cases.hasNext();) {
+                BuildTestCase testCase = (BuildTestCase) cases.next();
+                writeString(out, testCase.getName());
+                writeString(out, testCase.getDuration());
+                writeString(out, testCase.getClassname());
+                writeString(out, testCase.getMessage());
+                writeString(out, testCase.getMessageBody());
+                out.writeByte(indexOf(testCase.getResult()));
+            }
+        }
+    }
+
+    private static List readTestSuites(DataInputStream in) throws IOException {
+        List suites = new ArrayList();
+        for (int count = in.readInt(); count > 0; count--) {
+            BuildTestSuite suite = new BuildTestSuite(readString(in), in.readFloat());
+            int caseCount = in.readInt();
+            if (caseCount >= 0) {
+                List testCases = new ArrayList();
+                for (; caseCount > 0; caseCount--) {
+                    String name = readString(in);
+                    String duration = readString(in);
+                    String classname = readString(in);
+                    String message = readString(in);
+                    String messageBody = readString(in);
+                    testCases.add(new BuildTestCase(name, duration, classname, message, messageBody,
+                            readResult(in)));
+                }
+                suite.appendTestCases(testCases);
+            }
+            suites.add(suite);
+        }
+        return suites;
+    }
+
+    private static BuildTestCaseResult readResult(DataInputStream in) throws IOException {
+        byte index = in.readByte();
+        if (index < 0 || index >= RESULTS.length) {
+            throw new IOException("Unknown test result " + index);
+        }
+        return RESULTS[index];
+    }
+
+    private static int indexOf(BuildTestCaseResult result) throws IOException {
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(result)) {
+                return i;
+            }
+        }
+        throw new IOException("Unknown test result " + result);
+    }
+
+    /**
+     * Unlike {@link DataOutputStream#writeUTF(String)}, handles null and strings of any length.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static final class Entry {
+        private final long lastModified;
+
+        private final long length;
+
+        private final Map properties;
+
+        private Entry(long lastModified, long length, Map properties) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.properties = properties;
+        }
+    }
+}
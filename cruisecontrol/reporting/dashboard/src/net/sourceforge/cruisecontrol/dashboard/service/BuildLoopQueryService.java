@@ -64,6 +64,7 @@ public class BuildLoopQueryService {
 
     public static final String JMXCOMMAND_OUTPUT_ID = "OutputLoggerID";
     public static final String JMXCOMMAND_BUILD_OUTPUT = "getBuildOutput";
+    public static final String JMXCOMMAND_BUILD_OUTPUT_BYTES = "getBuildOutputBytes";
 
     public static final String JMXCOMMAND_ALL_PROJECT_STATUS = "AllProjectsStatus";
 
@@ -156,6 +157,30 @@ public class BuildLoopQueryService {
         }
     }
 
+    /**
+     * @param projectName project whose live output to read
+     * @param offset position in the live output to read from
+     * @return UTF-8 encoded output from offset ending with a complete line, or null if the build loop can't be asked
+     */
+    public byte[] getBuildOutputBytes(final String projectName, final long offset) {
+        try {
+            final ClosableProjectMBeanConnection closableProjectMBeanConnection = getJMXConnection(projectName);
+            try {
+                final MBeanServerConnection jmxConnection = closableProjectMBeanConnection.getMBeanServerConnection();
+                return (byte[]) jmxConnection.invoke(getObjectName(projectName),
+                        JMXCOMMAND_BUILD_OUTPUT_BYTES, new Object[] {new Long(offset)},
+                        new String[] {Long.class.getName()});
+            } finally {
+                if (closableProjectMBeanConnection != null) {
+                    closableProjectMBeanConnection.close();
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Problem getting build output", e);
+            return null;
+        }
+    }
+
     public String getLiveOutputID(final String projectName) {
         try {
             final ClosableProjectMBeanConnection closableProjectMBeanConnection = getJMXConnection(projectName);
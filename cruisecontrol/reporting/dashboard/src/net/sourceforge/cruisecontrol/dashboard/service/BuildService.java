@@ -37,6 +37,7 @@
 package net.sourceforge.cruisecontrol.dashboard.service;
 
 import net.sourceforge.cruisecontrol.dashboard.BuildDetail;
+import net.sourceforge.cruisecontrol.dashboard.BuildHistoryIndex;
 import net.sourceforge.cruisecontrol.dashboard.BuildLiveDetail;
 import net.sourceforge.cruisecontrol.dashboard.CurrentStatus;
 import net.sourceforge.cruisecontrol.dashboard.LogFile;
@@ -49,7 +50,6 @@ import net.sourceforge.cruisecontrol.dashboard.saxhandler.ModificationExtractor;
 import net.sourceforge.cruisecontrol.dashboard.saxhandler.StackTraceExtractor;
 import net.sourceforge.cruisecontrol.dashboard.saxhandler.TestSuiteExtractor;
 import net.sourceforge.cruisecontrol.dashboard.utils.functors.BuildSummariesFilters;
-import net.sourceforge.cruisecontrol.dashboard.utils.functors.SpecificLogFileFilter;
 import org.apache.log4j.Logger;
 
 import javax.xml.parsers.SAXParser;
@@ -66,10 +66,19 @@ public class BuildService {
 
     private final ConfigurationService configuration;
     private final BuildLoopQueryService queryService;
+    private final BuildHistoryService buildHistoryService;
+    private final BuildDetailCache buildDetailCache;
 
     public BuildService(ConfigurationService configuration, BuildLoopQueryService queryService) {
+        this(configuration, queryService, new BuildHistoryService(), new BuildDetailCache());
+    }
+
+    public BuildService(ConfigurationService configuration, BuildLoopQueryService queryService,
+                        BuildHistoryService buildHistoryService, BuildDetailCache buildDetailCache) {
         this.configuration = configuration;
         this.queryService = queryService;
+        this.buildHistoryService = buildHistoryService;
+        this.buildDetailCache = buildDetailCache;
     }
 
     public BuildLiveDetail getActiveBuild(final String projectName, PreviousResult previousResult) {
@@ -92,15 +101,17 @@ public class BuildService {
     }
 
     private LogFile getBuildFile(String projectName, final String yyyyMMddssHHmmss) {
-        File logRoot = configuration.getLogRoot(projectName);
-        File[] files = logRoot.listFiles(new SpecificLogFileFilter(yyyyMMddssHHmmss));
-        return new LogFile(logRoot, files[0].getName());
+        BuildHistoryIndex.Entry entry = buildHistoryService.getIndex(configuration.getLogRoot(projectName))
+                .find(yyyyMMddssHHmmss);
+        if (entry == null) {
+            throw new RuntimeException("No build at " + yyyyMMddssHHmmss + " for project " + projectName);
+        }
+        return entry.getLogFile();
     }
 
     BuildDetail createBuildFromFile(LogFile logFile) {
         try {
-            Map properties = new HashMap();
-            parseLogFile(logFile, properties);
+            Map properties = new HashMap(extractProperties(logFile));
             properties.put("artifactfolder", getArtifactsRootDir((String) properties.get("projectname")));
             return new BuildDetail(logFile, properties);
         } catch (Exception e) {
@@ -110,6 +121,17 @@ public class BuildService {
         }
     }
 
+    private Map extractProperties(LogFile logFile) throws Exception {
+        Map properties = buildDetailCache.get(logFile);
+        if (properties == null) {
+            long start = System.currentTimeMillis();
+            properties = new HashMap();
+            parseLogFile(logFile, properties);
+            buildDetailCache.put(logFile, properties, System.currentTimeMillis() - start);
+        }
+        return properties;
+    }
+
     private void parseLogFile(LogFile buildLogFile, Map props) throws Exception {
         CompositeExtractor compositeExtractor = compositeExtractor(buildLogFile);
         parse(buildLogFile.getInputStream(), compositeExtractor);
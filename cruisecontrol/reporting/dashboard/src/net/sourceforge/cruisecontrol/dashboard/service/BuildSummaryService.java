@@ -36,6 +36,7 @@
  ********************************************************************************/
 package net.sourceforge.cruisecontrol.dashboard.service;
 
+import net.sourceforge.cruisecontrol.dashboard.BuildHistoryIndex;
 import net.sourceforge.cruisecontrol.dashboard.BuildSummary;
 import net.sourceforge.cruisecontrol.dashboard.CurrentStatus;
 import net.sourceforge.cruisecontrol.dashboard.PreviousResult;
@@ -54,6 +55,19 @@ public class BuildSummaryService {
         return summary;
     }
 
+    public BuildSummary createDiscontinued(BuildHistoryIndex.Entry entry) {
+        BuildSummary summary = createBuildSummary(entry);
+        summary.updateStatus(CurrentStatus.DISCONTINUED.getCruiseStatus());
+        return summary;
+    }
+
+    public BuildSummary createBuildSummary(BuildHistoryIndex.Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        return new BuildSummary(entry.getLogFile().getParentFile().getName(), entry);
+    }
+
     public BuildSummary createBuildSummary(File logFileXml) {
         if (logFileXml == null) {
             return null;
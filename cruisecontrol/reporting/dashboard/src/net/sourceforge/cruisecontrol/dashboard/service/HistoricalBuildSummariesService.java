@@ -37,18 +37,15 @@
 package net.sourceforge.cruisecontrol.dashboard.service;
 
 import net.sourceforge.cruisecontrol.dashboard.Build;
+import net.sourceforge.cruisecontrol.dashboard.BuildHistoryIndex;
 import net.sourceforge.cruisecontrol.dashboard.BuildSummary;
 import net.sourceforge.cruisecontrol.dashboard.CurrentStatus;
+import net.sourceforge.cruisecontrol.dashboard.utils.CCDateFormatter;
 import net.sourceforge.cruisecontrol.dashboard.utils.TimeConverter;
-import net.sourceforge.cruisecontrol.dashboard.utils.functors.AlphabeticalDescOrderComparator;
-import net.sourceforge.cruisecontrol.dashboard.utils.functors.BuildSummariesFilters;
-import net.sourceforge.cruisecontrol.dashboard.utils.functors.ReportableFilter;
 import org.joda.time.DateTime;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -59,22 +56,25 @@ public class HistoricalBuildSummariesService {
 
     private BuildSummaryService buildSummaryService;
 
-    private static final FilenameFilter CCLOG_FILTER = BuildSummariesFilters.cclogFilter();
-
-    private static final AlphabeticalDescOrderComparator LOG_FILE_DESC_COMPARATOR =
-            new AlphabeticalDescOrderComparator();
-
     private final ConfigurationService configuration;
 
+    private final BuildHistoryService buildHistoryService;
+
     public HistoricalBuildSummariesService(ConfigurationService configuration,
                                            BuildSummaryService buildSummaryService) {
+        this(configuration, buildSummaryService, new BuildHistoryService());
+    }
+
+    public HistoricalBuildSummariesService(ConfigurationService configuration,
+                                           BuildSummaryService buildSummaryService,
+                                           BuildHistoryService buildHistoryService) {
         this.configuration = configuration;
         this.buildSummaryService = buildSummaryService;
+        this.buildHistoryService = buildHistoryService;
     }
 
     public List getLastest25(String projectName) {
-        File pjDir = configuration.getLogRoot(projectName);
-        List buildSummariesObjects = getBuildSummariesObject(getBuildSummariesFile(pjDir, CCLOG_FILTER, LIST_MAXIUM));
+        List buildSummariesObjects = getBuildSummariesObject(getIndex(projectName).getLatest(LIST_MAXIUM, false));
         for (int i = 0; i < buildSummariesObjects.size(); i++) {
             BuildSummary summary = (BuildSummary) buildSummariesObjects.get(i);
             summary.updateStatus(CurrentStatus.WAITING.getCruiseStatus());            
@@ -83,20 +83,16 @@ public class HistoricalBuildSummariesService {
     }
 
     public BuildSummary getLatest(String projectName) {
-        File pjDir = configuration.getLogRoot(projectName);
-        ReportableFilter latest = BuildSummariesFilters.lastFilter();
-        getBuildSummariesFile(pjDir, latest, 1);
-        File logFileXml = latest.report();
-        if (logFileXml == null) {
+        BuildHistoryIndex.Entry latest = getIndex(projectName).getLatest();
+        if (latest == null) {
             return buildSummaryService.createInactive(projectName);
         }
-        return buildSummaryService.createBuildSummary(logFileXml);
+        return buildSummaryService.createBuildSummary(latest);
     }
 
     public List getAllSucceed(String projectName) {
-        File pjDir = configuration.getLogRoot(projectName);
-        List buildSummariesObjects = getBuildSummariesObject(getBuildSummariesFile(pjDir,
-                BuildSummariesFilters.succeedFilter(), Integer.MAX_VALUE));
+        List buildSummariesObjects = getBuildSummariesObject(getIndex(projectName).getLatest(Integer.MAX_VALUE,
+                true));
         for (int i = 0; i < buildSummariesObjects.size(); i++) {
             BuildSummary summary = (BuildSummary) buildSummariesObjects.get(i);
             summary.updateStatus(CurrentStatus.WAITING.getCruiseStatus());
@@ -105,9 +101,8 @@ public class HistoricalBuildSummariesService {
     }
 
     public List getAll(String projectName) {
-        File pjDir = configuration.getLogRoot(projectName);
-        List buildSummariesObjects = getBuildSummariesObject(getBuildSummariesFile(pjDir,
-                CCLOG_FILTER, Integer.MAX_VALUE));
+        List buildSummariesObjects = getBuildSummariesObject(getIndex(projectName).getLatest(Integer.MAX_VALUE,
+                false));
         for (int i = 0; i < buildSummariesObjects.size(); i++) {
             BuildSummary summary = (BuildSummary) buildSummariesObjects.get(i);
             summary.updateStatus(CurrentStatus.WAITING.getCruiseStatus());
@@ -117,21 +112,13 @@ public class HistoricalBuildSummariesService {
     }
 
     public Build getLastSucceed(String projectName, DateTime datetime) {
-        return filterBuildSummaries(projectName, BuildSummariesFilters.lastSucceedFilter(datetime));
+        return createBuildSummary(getIndex(projectName).getLastBefore(CCDateFormatter.yyyyMMddHHmmss(datetime),
+                true));
     }
 
     public BuildSummary getLastFailed(String projectName, DateTime datetime) {
-        return filterBuildSummaries(projectName, BuildSummariesFilters.lastFailedFilter(datetime));
-    }
-
-    private BuildSummary filterBuildSummaries(String projectName, ReportableFilter filter) {
-        File pjDir = configuration.getLogRoot(projectName);
-        getBuildSummariesObject(getBuildSummariesFile(pjDir, filter, 1));
-        if (filter.report() == null) {
-            return null;
-        } else {
-            return buildSummaryService.createBuildSummary(filter.report());
-        }
+        return createBuildSummary(getIndex(projectName).getLastBefore(CCDateFormatter.yyyyMMddHHmmss(datetime),
+                false));
     }
 
     public Build getEaliestFailed(String projectName, DateTime datetime) {
@@ -140,8 +127,8 @@ public class HistoricalBuildSummariesService {
             List summaries = getAll(projectName);
             return summaries.size() == 0 ? null : (Build) summaries.get(summaries.size() - 1);
         }
-        return filterBuildSummaries(projectName, BuildSummariesFilters.earliestFailedFilter(lastSucceeded
-                .getBuildDate()));
+        return createBuildSummary(getIndex(projectName).getFirstAfter(
+                CCDateFormatter.yyyyMMddHHmmss(lastSucceeded.getBuildDate()), false));
     }
 
     public BuildSummary getEarliestSucceeded(String projectName, DateTime datetime) {
@@ -150,8 +137,8 @@ public class HistoricalBuildSummariesService {
             List summaries = getAll(projectName);
             return summaries.size() == 0 ? null : (BuildSummary) summaries.get(summaries.size() - 1);
         }
-        return filterBuildSummaries(projectName, BuildSummariesFilters.earliestSucceededFilter(lastFailed
-                .getBuildDate()));
+        return createBuildSummary(getIndex(projectName).getFirstAfter(
+                CCDateFormatter.yyyyMMddHHmmss(lastFailed.getBuildDate()), true));
     }
 
     public String getDurationFromLastSuccessfulBuild(String projectName, DateTime datetime) {
@@ -168,10 +155,9 @@ public class HistoricalBuildSummariesService {
         Collection discontinued = configuration.getDiscontinuedProjects();
         List allSummaries = new ArrayList();
         for (Iterator iter = discontinued.iterator(); iter.hasNext();) {
-            ReportableFilter latest = BuildSummariesFilters.lastFilter();
             File folder = (File) iter.next();
-            getBuildSummariesFile(folder, latest, 1);
-            allSummaries.add(buildSummaryService.createDiscontinued(latest.report()));
+            BuildHistoryIndex.Entry latest = buildHistoryService.getIndex(folder).getLatest();
+            allSummaries.add(buildSummaryService.createDiscontinued(latest));
         }
         return allSummaries;
     }
@@ -180,10 +166,9 @@ public class HistoricalBuildSummariesService {
         Collection actives = configuration.getActiveProjects();
         List allSummaries = new ArrayList();
         for (Iterator iter = actives.iterator(); iter.hasNext();) {
-            ReportableFilter latest = BuildSummariesFilters.lastFilter();
             File folder = (File) iter.next();
-            getBuildSummariesFile(folder, latest, 1);
-            allSummaries.add(buildSummaryService.createBuildSummary(latest.report()));
+            BuildHistoryIndex.Entry latest = buildHistoryService.getIndex(folder).getLatest();
+            allSummaries.add(createBuildSummary(latest));
         }
         return allSummaries;
     }
@@ -198,27 +183,18 @@ public class HistoricalBuildSummariesService {
         return allSummaries;
     }
 
-    private File[] getBuildSummariesFile(File pjDir, FilenameFilter logFilter, int maxium) {
-        String[] logFileNames = pjDir.list(logFilter);
-        if (logFileNames == null) {
-            return new File[]{};
-        }
-        Arrays.sort(logFileNames, LOG_FILE_DESC_COMPARATOR);
-        int size = Math.min(logFileNames.length, maxium);
-        File[] logFiles = new File[size];
-        for (int i = 0; i < logFiles.length; i++) {
-            logFiles[i] = new File(pjDir, logFileNames[i]);
-        }
-        return logFiles;
+    private BuildHistoryIndex getIndex(String projectName) {
+        return buildHistoryService.getIndex(configuration.getLogRoot(projectName));
+    }
+
+    private BuildSummary createBuildSummary(BuildHistoryIndex.Entry entry) {
+        return entry == null ? null : buildSummaryService.createBuildSummary(entry);
     }
 
-    private List getBuildSummariesObject(File[] buildSummariesFiles) {
+    private List getBuildSummariesObject(List entries) {
         List summaries = new ArrayList();
-        for (int i = 0; i < buildSummariesFiles.length; i++) {
-            final Build summary = buildSummaryService.createBuildSummary(buildSummariesFiles[i]);
-            if (summary != null) {
-                summaries.add(summary);
-            }
+        for (int i = 0; i < entries.size(); i++) {
+            summaries.add(buildSummaryService.createBuildSummary((BuildHistoryIndex.Entry) entries.get(i)));
         }
         return summaries;
     }
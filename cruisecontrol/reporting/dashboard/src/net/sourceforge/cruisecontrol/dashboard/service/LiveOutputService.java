@@ -0,0 +1,290 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares one tail of the live build output per project between everybody watching it. The tail asks the build
+ * loop for new output at most once per poll interval however many viewers there are, and keeps the most recent
+ * output in a window of bounded size. Viewers further behind than the window read straight from the build loop.
+ * A tail is created when somebody first asks for the output of a project and dropped once nobody has asked for a
+ * while. The build loop is never asked while a lock is held, so a slow build loop only holds up the viewer whose
+ * read happens to fetch.
+ */
+public class LiveOutputService {
+
+    public static final int DEFAULT_WINDOW_BYTES = 1024 * 1024;
+
+    public static final long DEFAULT_POLL_INTERVAL = 1000;
+
+    /** Most bytes handed to a viewer by one read. */
+    static final int MAX_CHUNK_BYTES = 64 * 1024;
+
+    static final long IDLE_TIMEOUT = 5 * 60 * 1000;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final BuildLoopQueryService buildLoopQueryService;
+    private final int windowBytes;
+    private final long pollInterval;
+    private final Map<String, Tail> tails = new HashMap<String, Tail>();
+
+    public LiveOutputService(BuildLoopQueryService buildLoopQueryService) {
+        this(buildLoopQueryService, DEFAULT_WINDOW_BYTES, DEFAULT_POLL_INTERVAL);
+    }
+
+    public LiveOutputService(BuildLoopQueryService buildLoopQueryService, int windowBytes, long pollInterval) {
+        this.buildLoopQueryService = buildLoopQueryService;
+        this.windowBytes = windowBytes;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * @param projectName project whose output to read
+     * @param outputId id of the live output the offset belongs to, as returned in an earlier chunk; any other value
+     * starts from the beginning of the current output
+     * @param offset position in the live output to read from
+     * @return the output that follows, up to a bounded number of complete lines
+     */
+    public Chunk read(final String projectName, final String outputId, final long offset) {
+        final Tail tail = getTail(projectName);
+        tail.refresh(System.currentTimeMillis());
+        final String currentId;
+        final long start;
+        final long windowStart;
+        synchronized (tail) {
+            currentId = tail.outputId;
+            start = currentId.equals(outputId) ? Math.max(offset, 0) : 0;
+            windowStart = tail.windowStart;
+            if (start >= windowStart) {
+                return new Chunk(currentId, !currentId.equals(outputId), start, tail.copy(start));
+            }
+        }
+        // older than the window, which only happens to viewers joining a long build: don't hold up the others
+        final byte[] older = buildLoopQueryService.getBuildOutputBytes(projectName, start);
+        return new Chunk(currentId, !currentId.equals(outputId), start, older == null ? EMPTY : older);
+    }
+
+    /**
+     * @return number of projects whose output is currently tailed
+     */
+    public int getTailCount() {
+        synchronized (tails) {
+            return tails.size();
+        }
+    }
+
+    private Tail getTail(final String projectName) {
+        final long now = System.currentTimeMillis();
+        synchronized (tails) {
+            for (final Iterator<Tail> iterator = tails.values().iterator(); iterator.hasNext();) {
+                if (now - iterator.next().lastRead > IDLE_TIMEOUT) {
+                    iterator.remove();
+                }
+            }
+            Tail tail = tails.get(projectName);
+            if (tail == null) {
+                tail = new Tail(projectName);
+                tails.put(projectName, tail);
+            }
+            tail.lastRead = now;
+            return tail;
+        }
+    }
+
+    /**
+     * Output of a project from an offset onwards.
+     */
+    public static final class Chunk {
+        private final String outputId;
+        private final boolean reset;
+        private final long offset;
+        private final byte[] data;
+
+        Chunk(final String outputId, final boolean reset, final long offset, final byte[] data) {
+            this.outputId = outputId;
+            this.reset = reset;
+            this.offset = offset;
+            this.data = data;
+        }
+
+        /**
+         * @return id of the live output the offsets belong to
+         */
+        public String getOutputId() {
+            return outputId;
+        }
+
+        /**
+         * @return true if the output id asked for is not the current one, so reading started over from zero
+         */
+        public boolean isReset() {
+            return reset;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return UTF-8 encoded complete lines, empty if there is no new output
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return offset to ask for next
+         */
+        public long getNextOffset() {
+            return offset + data.length;
+        }
+    }
+
+    /**
+     * The shared recent output of one project. The window is guarded by the tail's monitor, which is only held
+     * while copying bytes; <code>lastRead</code> is written under the lock of the tails map.
+     */
+    private final class Tail {
+        private final String projectName;
+        private String outputId = "";
+        private long windowStart;
+        private byte[] window = new byte[0];
+        private int length;
+        private long lastFetch;
+        private boolean fetching;
+        private volatile long lastRead;
+
+        private Tail(final String projectName) {
+            this.projectName = projectName;
+        }
+
+        /**
+         * Asks the build loop for new output unless that was done less than a poll interval ago or another viewer
+         * is doing it right now, in which case the window is served as it is.
+         */
+        private void refresh(final long now) {
+            final String knownId;
+            final long next;
+            synchronized (this) {
+                if (fetching || (lastFetch != 0 && now - lastFetch < pollInterval)) {
+                    return;
+                }
+                fetching = true;
+                lastFetch = now;
+                knownId = outputId;
+                next = windowStart + length;
+            }
+            String id = null;
+            final List<byte[]> fetched = new ArrayList<byte[]>();
+            try {
+                id = buildLoopQueryService.getLiveOutputID(projectName);
+                long position = id != null && !id.equals(knownId) ? 0 : next;
+                // catch up, but not by more than the window holds
+                int total = 0;
+                while (total < windowBytes) {
+                    final byte[] bytes = buildLoopQueryService.getBuildOutputBytes(projectName, position);
+                    if (bytes == null || bytes.length == 0) {
+                        break;
+                    }
+                    fetched.add(bytes);
+                    position += bytes.length;
+                    total += bytes.length;
+                }
+            } finally {
+                // only one viewer fetches at a time, so what was fetched still follows the window, even if the
+                // build loop failed halfway
+                synchronized (this) {
+                    if (id != null && !id.equals(outputId)) {
+                        outputId = id;
+                        windowStart = 0;
+                        length = 0;
+                    }
+                    for (final byte[] bytes : fetched) {
+                        append(bytes);
+                    }
+                    fetching = false;
+                }
+            }
+        }
+
+        private void append(final byte[] bytes) {
+            if (length + bytes.length > window.length) {
+                final int needed = Math.min(length + bytes.length, Math.max(windowBytes, bytes.length));
+                if (needed > window.length) {
+                    final byte[] grown = new byte[Math.min(Math.max(needed, window.length * 2),
+                            Math.max(windowBytes, bytes.length))];
+                    System.arraycopy(window, 0, grown, 0, length);
+                    window = grown;
+                }
+                final int dropped = length + bytes.length - window.length;
+                if (dropped > 0) {
+                    System.arraycopy(window, dropped, window, 0, length - dropped);
+                    length -= dropped;
+                    windowStart += dropped;
+                }
+            }
+            System.arraycopy(bytes, 0, window, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private byte[] copy(final long from) {
+            final long available = windowStart + length - from;
+            if (available <= 0) {
+                return EMPTY;
+            }
+            final int position = (int) (from - windowStart);
+            int size = (int) Math.min(available, MAX_CHUNK_BYTES);
+            if (size < available) {
+                // end with a complete line unless a single line is longer than a chunk
+                int end = size;
+                while (end > 0 && window[position + end - 1] != '\n') {
+                    end--;
+                }
+                size = end > 0 ? end : size;
+            }
+            final byte[] chunk = new byte[size];
+            System.arraycopy(window, position, chunk, 0, size);
+            return chunk;
+        }
+    }
+}
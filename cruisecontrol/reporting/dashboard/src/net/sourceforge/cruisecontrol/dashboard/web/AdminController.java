@@ -36,6 +36,7 @@
  ********************************************************************************/
 package net.sourceforge.cruisecontrol.dashboard.web;
 
+import net.sourceforge.cruisecontrol.dashboard.service.BuildDetailCache;
 import net.sourceforge.cruisecontrol.dashboard.service.ConfigurationService;
 import net.sourceforge.cruisecontrol.dashboard.service.SystemService;
 import net.sourceforge.cruisecontrol.dashboard.web.command.ConfigurationCommand;
@@ -56,6 +57,8 @@ public class AdminController implements Controller {
 
     private SystemService systemService;
 
+    private BuildDetailCache buildDetailCache;
+
     public static final String ERROR_MESSAGE_NOT_EXIST = "Configuration file does not exist!"
             + " Please set \"dashboard.config\" system property to the current location of dashboard-config.xml.";
 
@@ -63,8 +66,14 @@ public class AdminController implements Controller {
 
     public AdminController(ConfigurationService configuration,
             SystemService systemService) {
+        this(configuration, systemService, new BuildDetailCache());
+    }
+
+    public AdminController(ConfigurationService configuration,
+            SystemService systemService, BuildDetailCache buildDetailCache) {
         this.configuration = configuration;
         this.systemService = systemService;
+        this.buildDetailCache = buildDetailCache;
     }
 
     public ModelAndView handleRequest(HttpServletRequest request,
@@ -96,6 +105,11 @@ public class AdminController implements Controller {
         model.put("forcebuild_enabled",
                 configuration.isForceBuildEnabled() ? "Yes" : "No");
         model.put("active", StringUtils.defaultString(request.getParameter("active")));
+        model.put("build_detail_cache_size", new Integer(buildDetailCache.getCachedBuilds()));
+        model.put("build_detail_cache_hits", new Long(buildDetailCache.getHits()));
+        model.put("build_detail_sidecar_hits", new Long(buildDetailCache.getSidecarHits()));
+        model.put("build_detail_cache_misses", new Long(buildDetailCache.getMisses()));
+        model.put("build_detail_parse_time", new Long(buildDetailCache.getParseMillis()));
         return new ModelAndView("page_admin", model);
     }
 }
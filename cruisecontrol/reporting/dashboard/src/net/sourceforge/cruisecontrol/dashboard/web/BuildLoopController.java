@@ -26,7 +26,14 @@ public class BuildLoopController extends AbstractController {
             throws Exception {
         String content = IOUtils.toString(request.getInputStream());
         BuildLoopInformation info = helper.toObject(content);
-        repository.saveOrUpdate(info);
+        String reply = BuildLoopInformation.ACKNOWLEDGED + " " + info.getVersion();
+        if (!info.isDelta()) {
+            repository.saveOrUpdate(info);
+        } else if (!repository.applyDelta(info)) {
+            reply = BuildLoopInformation.RESYNC;
+        }
+        response.setContentType("text/plain");
+        response.getWriter().write(reply);
         return null;
     }
 }
@@ -0,0 +1,218 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.sourceforge.cruisecontrol.dashboard.service.LiveOutputService;
+
+import org.apache.log4j.Logger;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.Controller;
+
+/**
+ * Streams the live output of a project as server-sent events. Every event carries complete lines and has the
+ * output id and the byte offset after its last line as event id, so a reconnecting EventSource resumes where it
+ * left off. A response ends after a bounded time, a bounded amount of output, or when no output came for a while;
+ * the browser then reconnects by itself. When the client accepts it the stream is gzipped and flushed after every
+ * event, as far as the Java runtime supports flushing a gzip stream.
+ */
+public class GetProjectBuildOutputStreamController implements Controller {
+
+    private static final Logger LOGGER = Logger.getLogger(GetProjectBuildOutputStreamController.class);
+
+    /** Header with the id of the last event received, sent by a reconnecting EventSource. */
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    static final String PARAM_OUTPUT_ID = "outputid";
+    static final String PARAM_OFFSET = "offset";
+
+    private static final String ENCODING = "UTF-8";
+
+    private final LiveOutputService liveOutputService;
+
+    private long streamMillis = 30 * 1000;
+    private long idleMillis = 5 * 1000;
+    private long pollMillis = LiveOutputService.DEFAULT_POLL_INTERVAL;
+    private long maxBytes = 1024 * 1024;
+
+    public GetProjectBuildOutputStreamController(LiveOutputService liveOutputService) {
+        this.liveOutputService = liveOutputService;
+    }
+
+    /**
+     * @param streamMillis longest time a response stays open
+     */
+    public void setStreamMillis(long streamMillis) {
+        this.streamMillis = streamMillis;
+    }
+
+    /**
+     * @param idleMillis time without new output after which a response ends
+     */
+    public void setIdleMillis(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * @param pollMillis time between looking for new output, also the reconnection delay asked of the browser
+     */
+    public void setPollMillis(long pollMillis) {
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * @param maxBytes output after which a response ends
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public ModelAndView handleRequest(final HttpServletRequest request, final HttpServletResponse response)
+            throws Exception {
+        final String projectName = request.getParameter("project");
+        String outputId = request.getParameter(PARAM_OUTPUT_ID);
+        final String offsetParameter = request.getParameter(PARAM_OFFSET);
+        long offset = offsetParameter == null ? 0 : Long.parseLong(offsetParameter);
+        final String lastEventId = request.getHeader(LAST_EVENT_ID);
+        if (lastEventId != null && lastEventId.lastIndexOf(':') > 0) {
+            final int separator = lastEventId.lastIndexOf(':');
+            outputId = lastEventId.substring(0, separator);
+            offset = Long.parseLong(lastEventId.substring(separator + 1));
+        }
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding(ENCODING);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+        OutputStream out = response.getOutputStream();
+        final String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.indexOf("gzip") >= 0) {
+            final OutputStream gzip = newFlushableGzip(out);
+            if (gzip != null) {
+                response.setHeader("Content-Encoding", "gzip");
+                out = gzip;
+            }
+        }
+
+        final Writer writer = new OutputStreamWriter(out, ENCODING);
+        try {
+            writer.write("retry: " + pollMillis + "\n\n");
+            stream(writer, projectName, outputId, offset);
+        } finally {
+            writer.close();
+        }
+        return null;
+    }
+
+    private void stream(final Writer writer, final String projectName, String outputId, long offset)
+            throws IOException, InterruptedException {
+        final long start = System.currentTimeMillis();
+        long lastOutput = start;
+        long sent = 0;
+        boolean idle = false;
+        while (true) {
+            final LiveOutputService.Chunk chunk = liveOutputService.read(projectName, outputId, offset);
+            outputId = chunk.getOutputId();
+            offset = chunk.getNextOffset();
+            final byte[] data = chunk.getData();
+            if (chunk.isReset()) {
+                writeEvent(writer, "reset", outputId, chunk.getOffset(), "");
+            }
+            if (data.length > 0) {
+                writeEvent(writer, null, outputId, offset, new String(data, ENCODING));
+                sent += data.length;
+                lastOutput = System.currentTimeMillis();
+                idle = false;
+            } else if (!idle) {
+                writeEvent(writer, "idle", outputId, offset, "");
+                idle = true;
+            }
+            writer.flush();
+
+            final long now = System.currentTimeMillis();
+            if (now - start >= streamMillis || now - lastOutput >= idleMillis || sent >= maxBytes) {
+                return;
+            }
+            if (data.length == 0) {
+                Thread.sleep(pollMillis);
+            }
+        }
+    }
+
+    private static void writeEvent(final Writer writer, final String event, final String outputId,
+                                   final long offset, final String text) throws IOException {
+        if (event != null) {
+            writer.write("event: " + event + "\n");
+        }
+        writer.write("id: " + outputId + ":" + offset + "\n");
+        final String[] lines = text.split("\r?\n", -1);
+        // the text ends with a line break, which would otherwise become an empty last line of the event
+        final int count = lines.length > 1 && lines[lines.length - 1].length() == 0 ? lines.length - 1 : lines.length;
+        for (int i = 0; i < count; i++) {
+            writer.write("data: " + lines[i] + "\n");
+        }
+        writer.write("\n");
+    }
+
+    /**
+     * @return a gzip stream whose flush() sends everything written so far, or null if this Java runtime can't
+     */
+    static OutputStream newFlushableGzip(final OutputStream out) throws IOException {
+        final Constructor<GZIPOutputStream> syncFlush;
+        try {
+            syncFlush = GZIPOutputStream.class.getConstructor(OutputStream.class, boolean.class);
+        } catch (NoSuchMethodException e) {
+            LOGGER.debug("gzip streams can't be flushed on this Java runtime, not compressing live output");
+            return null;
+        }
+        try {
+            return syncFlush.newInstance(out, Boolean.TRUE);
+        } catch (Exception e) {
+            LOGGER.warn("could not create a flushable gzip stream", e);
+            return null;
+        }
+    }
+}
@@ -73,14 +73,13 @@
 package net.sourceforge.cruisecontrol.dashboard.web.view;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.Map;
 
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.IOUtils;
+import net.sourceforge.cruisecontrol.util.HttpFileTransfer;
+
 import org.apache.commons.lang.StringUtils;
 
 public class FileView extends BaseFileView {
@@ -95,17 +94,51 @@ public class FileView extends BaseFileView {
             HttpServletResponse response) throws Exception {
         String filename = file.getName();
         long filesize = file.length();
+        long lastModified = file.lastModified();
+        String etag = HttpFileTransfer.getETag(filesize, lastModified, null);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("ETag", etag);
+        if (HttpFileTransfer.isNotModified(request.getHeader("If-None-Match"),
+                request.getHeader("If-Modified-Since"), etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
         String mimeType = getMimeType(filename);
         response.setContentType(mimeType);
         if (filesize > getDownloadThreshhold()) {
             response.setHeader("Content-Disposition", "attachment; filename="
                     + filename);
         }
+        response.setHeader("Accept-Ranges", "bytes");
+
+        long start = 0;
+        long end = filesize - 1;
+        long[] range = HttpFileTransfer.isRangeValid(request.getHeader("If-Range"), etag, lastModified)
+                ? HttpFileTransfer.parseRange(request.getHeader("Range"), filesize) : null;
+        if (range != null) {
+            if (range.length == 0) {
+                response.setHeader("Content-Range", "bytes */" + filesize);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + start + '-' + end + '/' + filesize);
+        }
+        setContentLength(response, end - start + 1);
+        if (!"HEAD".equals(request.getMethod())) {
+            HttpFileTransfer.transfer(file, start, end - start + 1, response.getOutputStream());
+        }
+    }
 
-        response.setContentLength((int) filesize);
-        ServletOutputStream out = response.getOutputStream();
-        IOUtils.copy(new FileInputStream(file), out);
-        out.flush();
+    private void setContentLength(HttpServletResponse response, long length) {
+        if (length <= Integer.MAX_VALUE) {
+            response.setContentLength((int) length);
+        } else {
+            response.setHeader("Content-Length", Long.toString(length));
+        }
     }
 
     private int getDownloadThreshhold() {
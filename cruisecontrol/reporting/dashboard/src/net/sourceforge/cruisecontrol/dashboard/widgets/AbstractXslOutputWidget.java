@@ -21,11 +21,11 @@ import java.util.Map;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sourceforge.cruisecontrol.dashboard.exception.ConfigurationException;
+import net.sourceforge.cruisecontrol.util.TemplatesCache;
 
 import org.apache.log4j.Logger;
 
@@ -47,11 +47,9 @@ public abstract class AbstractXslOutputWidget implements Widget {
                 throw new ConfigurationException("Unable to find file "
                         + xslFile.getAbsolutePath());
             }
-            Source xsltSource = new StreamSource(xslFile);
             Source xmlSource = new StreamSource(logFile);
 
-            TransformerFactory transFact = TransformerFactory.newInstance();
-            Transformer trans = transFact.newTransformer(xsltSource);
+            Transformer trans = TemplatesCache.getInstance().newTransformer(xslFile);
 
             StringWriter writer = new StringWriter();
             trans.transform(xmlSource, new StreamResult(writer));
@@ -0,0 +1,134 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.dashboard.testhelpers.FilesystemUtils;
+
+import org.apache.commons.io.FileUtils;
+
+public class BuildHistoryIndexTest extends TestCase {
+    private File logDirectory;
+
+    private BuildHistoryIndex index;
+
+    protected void setUp() throws Exception {
+        logDirectory = FilesystemUtils.createDirectory("indexedProject");
+        FilesystemUtils.createFile("log20070101120000Lbuild.1.xml", logDirectory);
+        FilesystemUtils.createFile("log20070101130000.xml", logDirectory);
+        FilesystemUtils.createFile("log20070101140000Lbuild.2.xml.gz", logDirectory);
+        FilesystemUtils.createFile("log20070101150000.xml", logDirectory);
+        FilesystemUtils.createFile("logInvalidName000000.xml", logDirectory);
+        FilesystemUtils.createFile("notalog.xml", logDirectory);
+        index = new BuildHistoryIndex(logDirectory);
+    }
+
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(logDirectory);
+    }
+
+    public void testShouldListLatestBuildsFirst() throws Exception {
+        List latest = index.getLatest(3, false);
+        assertEquals(3, latest.size());
+        assertEquals("log20070101150000.xml", ((BuildHistoryIndex.Entry) latest.get(0)).getName());
+        assertEquals("log20070101130000.xml", ((BuildHistoryIndex.Entry) latest.get(2)).getName());
+
+        List passed = index.getLatest(Integer.MAX_VALUE, true);
+        assertEquals(2, passed.size());
+        assertEquals("build.2", ((BuildHistoryIndex.Entry) passed.get(0)).getLabel());
+        assertEquals("build.1", ((BuildHistoryIndex.Entry) passed.get(1)).getLabel());
+    }
+
+    public void testShouldFindBuildsAroundTime() throws Exception {
+        assertEquals("log20070101120000Lbuild.1.xml", index.getLastBefore("20070101140000", true).getName());
+        assertEquals("log20070101130000.xml", index.getLastBefore("20070101150000", false).getName());
+        assertNull(index.getLastBefore("20070101120000", true));
+        assertEquals("log20070101150000.xml", index.getFirstAfter("20070101130000", false).getName());
+        assertNull(index.getFirstAfter("20070101140000", true));
+        assertEquals("log20070101140000Lbuild.2.xml.gz", index.find("20070101140000").getName());
+        assertNull(index.find("20070101140001"));
+    }
+
+    public void testShouldPickUpNewAndDeletedLogFiles() throws Exception {
+        assertEquals("log20070101150000.xml", index.getLatest().getName());
+
+        FilesystemUtils.createFile("log20070101160000Lbuild.3.xml", logDirectory);
+        assertTrue(new File(logDirectory, "log20070101120000Lbuild.1.xml").delete());
+
+        assertEquals("log20070101160000Lbuild.3.xml", index.getLatest().getName());
+        assertTrue(index.getLatest().hasPassed());
+        assertNull(index.find("20070101120000"));
+        assertEquals(4, index.getLatest(Integer.MAX_VALUE, false).size());
+    }
+
+    public void testShouldRememberDurationOfBuild() throws Exception {
+        File logFile = new File(logDirectory, "log20070101160000Lbuild.3.xml");
+        FileUtils.writeStringToFile(logFile,
+                "<cruisecontrol><build time=\"1 minute(s) 5 second(s)\"/></cruisecontrol>");
+        BuildHistoryIndex.Entry entry = index.getLatest();
+        assertEquals(logFile.length(), entry.getSize());
+        assertEquals("1 minute(s) 5 second(s)", entry.getDuration());
+
+        FileUtils.writeStringToFile(logFile, "<cruisecontrol><build time=\"2 minute(s)\"/></cruisecontrol>");
+        assertEquals("1 minute(s) 5 second(s)", entry.getDuration());
+    }
+
+    public void testShouldCloseLogFileAfterReadingDuration() throws Exception {
+        final File file = new File(logDirectory, "log20070101160000Lbuild.3.xml");
+        FileUtils.writeStringToFile(file, "<cruisecontrol><build time=\"5 second(s)\"/></cruisecontrol>");
+        final boolean[] closed = new boolean[1];
+        final LogFile logFile = new LogFile(logDirectory, file.getName()) {
+            public InputStream getInputStream() throws IOException {
+                return new FilterInputStream(super.getInputStream()) {
+                    public void close() throws IOException {
+                        closed[0] = true;
+                        super.close();
+                    }
+                };
+            }
+        };
+
+        assertEquals("5 second(s)", new BuildHistoryIndex.Entry(logFile).getDuration());
+        assertTrue(closed[0]);
+    }
+}
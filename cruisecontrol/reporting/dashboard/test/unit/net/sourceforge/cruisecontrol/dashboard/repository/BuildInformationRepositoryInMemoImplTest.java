@@ -100,6 +100,26 @@ public class BuildInformationRepositoryInMemoImplTest extends MockObjectTestCase
         assertFalse("Project should be unknown", repository.hasBuildLoopInfoFor("unknown_project"));
     }
 
+    public void testShouldApplyDeltaBasedOnLastStoredVersion() throws Exception {
+        save(new String[] {"project1", "project2"}, 1);
+        BuildLoopInformation delta = buildLoopInfo(new String[] {"project3"}, 2);
+        delta.setDelta(1, delta.getProjects(), new String[] {"project1"});
+        assertTrue(repository.applyDelta(delta));
+        assertFalse(repository.hasBuildLoopInfoFor("project1"));
+        assertTrue(repository.hasBuildLoopInfoFor("project2"));
+        assertTrue(repository.hasBuildLoopInfoFor("project3"));
+    }
+
+    public void testShouldRejectDeltaAgainstUnknownVersion() throws Exception {
+        BuildLoopInformation delta = buildLoopInfo(new String[] {"project1"}, 2);
+        delta.setDelta(1, delta.getProjects(), new String[0]);
+        assertFalse(repository.applyDelta(delta));
+
+        save(new String[] {"project2"}, 3);
+        assertFalse(repository.applyDelta(delta));
+        assertFalse(repository.hasBuildLoopInfoFor("project1"));
+    }
+
     private JMXServiceURL jmxServiceUrl(String rmiUrl) throws MalformedURLException {
         return new JMXServiceURL("service:jmx:" + rmiUrl + "/jndi/jrmp");
     }
@@ -112,11 +132,21 @@ public class BuildInformationRepositoryInMemoImplTest extends MockObjectTestCase
     }
 
     private void save(String[] projectNames) {
+        save(projectNames, 0);
+    }
+
+    private void save(String[] projectNames, long version) {
+        repository.saveOrUpdate(buildLoopInfo(projectNames, version));
+    }
+
+    private BuildLoopInformation buildLoopInfo(String[] projectNames, long version) {
         ProjectInfo[] projectInfos = new ProjectInfo[projectNames.length];
         for (int i = 0; i < projectNames.length; i++) {
             projectInfos[i] = new ProjectInfo(projectNames[i], null, null);
         }
         BuildLoopInformation.JmxInfo jmxinfo = (BuildLoopInformation.JmxInfo) jmxInfoMock.proxy();
-        repository.saveOrUpdate(new BuildLoopInformation(projectInfos, jmxinfo, SERVER_NAME, null));
+        BuildLoopInformation buildLoopInfo = new BuildLoopInformation(projectInfos, jmxinfo, SERVER_NAME, null);
+        buildLoopInfo.setVersion(version);
+        return buildLoopInfo;
     }
 }
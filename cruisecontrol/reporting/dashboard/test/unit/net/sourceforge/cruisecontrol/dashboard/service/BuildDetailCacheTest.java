@@ -0,0 +1,165 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard.service;
+
+import java.io.File;
+import java.util.List;
+
+import net.sourceforge.cruisecontrol.Modification;
+import net.sourceforge.cruisecontrol.dashboard.BuildDetail;
+import net.sourceforge.cruisecontrol.dashboard.BuildTestCase;
+import net.sourceforge.cruisecontrol.dashboard.BuildTestSuite;
+import net.sourceforge.cruisecontrol.dashboard.LogFile;
+import net.sourceforge.cruisecontrol.dashboard.testhelpers.DataUtils;
+import net.sourceforge.cruisecontrol.dashboard.testhelpers.FilesystemUtils;
+
+import org.apache.commons.io.FileUtils;
+import org.jmock.Mock;
+import org.jmock.cglib.MockObjectTestCase;
+
+public class BuildDetailCacheTest extends MockObjectTestCase {
+    private File logDirectory;
+
+    private LogFile failedLog;
+
+    private LogFile passedLog;
+
+    private BuildDetailCache cache;
+
+    protected void setUp() throws Exception {
+        logDirectory = FilesystemUtils.createDirectory("cachedProject");
+        failedLog = new LogFile(logDirectory, DataUtils.FAILING_BUILD_XML);
+        FileUtils.copyFile(DataUtils.getFailedBuildLbuildAsFile(), failedLog);
+        passedLog = new LogFile(logDirectory, DataUtils.PASSING_BUILD_LBUILD_0_XML);
+        FileUtils.copyFile(DataUtils.getPassingBuildLbuildAsFile(), passedLog);
+        cache = new BuildDetailCache();
+    }
+
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(logDirectory);
+    }
+
+    private BuildService createBuildService(BuildDetailCache buildDetailCache) throws Exception {
+        Mock mockConfiguration = mock(ConfigurationService.class,
+                new Class[]{EnvironmentService.class, DashboardXmlConfigService.class, BuildLoopQueryService.class},
+                new Object[]{null, null, null});
+        mockConfiguration.expects(atLeastOnce()).method("getArtifactRoot")
+                .will(returnValue(DataUtils.getProject1ArtifactDirAsFile()));
+        return new BuildService((ConfigurationService) mockConfiguration.proxy(),
+                (BuildLoopQueryService) mock(BuildLoopQueryService.class).proxy(), new BuildHistoryService(),
+                buildDetailCache);
+    }
+
+    public void testShouldOnlyParseLogOnce() throws Exception {
+        BuildService service = createBuildService(cache);
+        BuildDetail first = service.createBuildFromFile(failedLog);
+        BuildDetail second = service.createBuildFromFile(failedLog);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertSame(first.getTestSuites(), second.getTestSuites());
+        assertEquals(first.getArtifactFolder(), second.getArtifactFolder());
+    }
+
+    public void testShouldParseLogAgainWhenItChanges() throws Exception {
+        BuildService service = createBuildService(cache);
+        service.createBuildFromFile(failedLog);
+        FileUtils.writeStringToFile(failedLog,
+                "<cruisecontrol><info><property name=\"projectname\" value=\"changed\"/></info></cruisecontrol>");
+
+        assertEquals("changed", service.createBuildFromFile(failedLog).getProjectName());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testShouldEvictLeastRecentlyUsedBuilds() throws Exception {
+        cache.setMaxLogSize(Math.max(failedLog.length(), passedLog.length()));
+        BuildService service = createBuildService(cache);
+        service.createBuildFromFile(failedLog);
+        service.createBuildFromFile(passedLog);
+        assertEquals(1, cache.getCachedBuilds());
+
+        service.createBuildFromFile(passedLog);
+        assertEquals(1, cache.getHits());
+        service.createBuildFromFile(failedLog);
+        assertEquals(3, cache.getMisses());
+    }
+
+    public void testShouldReadDetailsFromSidecarAfterRestart() throws Exception {
+        cache.setSidecarsEnabled(true);
+        BuildDetail parsed = createBuildService(cache).createBuildFromFile(failedLog);
+        BuildDetail parsedPassed = createBuildService(cache).createBuildFromFile(passedLog);
+        assertTrue(BuildDetailCache.getSidecar(failedLog).isFile());
+
+        BuildDetailCache restarted = new BuildDetailCache();
+        restarted.setSidecarsEnabled(true);
+        BuildDetail read = createBuildService(restarted).createBuildFromFile(failedLog);
+        BuildDetail readPassed = createBuildService(restarted).createBuildFromFile(passedLog);
+        assertEquals(2, restarted.getSidecarHits());
+        assertEquals(0, restarted.getMisses());
+
+        assertEquals(parsed.getProjectName(), read.getProjectName());
+        assertEquals(parsed.getDuration(), read.getDuration());
+        assertEquals(parsed.getNumberOfTests(), read.getNumberOfTests());
+        assertEquals(parsed.getNumberOfFailures(), read.getNumberOfFailures());
+        assertEquals(parsed.getNumberOfErrors(), read.getNumberOfErrors());
+        BuildTestSuite parsedSuite = (BuildTestSuite) parsed.getTestSuites().get(0);
+        BuildTestSuite readSuite = (BuildTestSuite) read.getTestSuites().get(0);
+        assertEquals(parsedSuite.getName(), readSuite.getName());
+        assertEquals(parsedSuite.getDurationInSeconds(), readSuite.getDurationInSeconds(), 0.0001);
+        BuildTestCase parsedError = (BuildTestCase) parsedSuite.getErrorTestCases().get(0);
+        BuildTestCase readError = (BuildTestCase) readSuite.getErrorTestCases().get(0);
+        assertEquals(parsedError.getMessageBody(), readError.getMessageBody());
+
+        List<Modification> parsedModifications = parsedPassed.getModifications();
+        List<Modification> readModifications = readPassed.getModifications();
+        assertEquals(parsedModifications.size(), readModifications.size());
+        assertEquals(parsedModifications.get(0).comment, readModifications.get(0).comment);
+        assertEquals(parsedModifications.get(0).files, readModifications.get(0).files);
+    }
+
+    public void testShouldIgnoreSidecarOfChangedLog() throws Exception {
+        cache.setSidecarsEnabled(true);
+        createBuildService(cache).createBuildFromFile(failedLog);
+        failedLog.setLastModified(failedLog.lastModified() - 10000);
+
+        BuildDetailCache restarted = new BuildDetailCache();
+        restarted.setSidecarsEnabled(true);
+        createBuildService(restarted).createBuildFromFile(failedLog);
+        assertEquals(0, restarted.getSidecarHits());
+        assertEquals(1, restarted.getMisses());
+    }
+}
@@ -0,0 +1,211 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class LiveOutputServiceTest extends TestCase {
+
+    private FakeBuildLoop buildLoop;
+
+    protected void setUp() throws Exception {
+        buildLoop = new FakeBuildLoop();
+    }
+
+    public void testShouldReadOutputFromOffset() throws Exception {
+        final LiveOutputService service = new LiveOutputService(buildLoop, 1024, 0);
+        buildLoop.write("first\nsecond\n");
+
+        LiveOutputService.Chunk chunk = service.read("project1", null, 0);
+        assertEquals("id1", chunk.getOutputId());
+        assertTrue(chunk.isReset());
+        assertEquals("first\nsecond\n", new String(chunk.getData(), "UTF-8"));
+        assertEquals(13, chunk.getNextOffset());
+
+        buildLoop.write("third\n");
+        chunk = service.read("project1", "id1", 6);
+        assertFalse(chunk.isReset());
+        assertEquals("second\nthird\n", new String(chunk.getData(), "UTF-8"));
+
+        chunk = service.read("project1", "id1", chunk.getNextOffset());
+        assertEquals(0, chunk.getData().length);
+    }
+
+    public void testShouldShareOnePollBetweenViewers() throws Exception {
+        final LiveOutputService service = new LiveOutputService(buildLoop, 1024, 60 * 1000);
+        buildLoop.write("line\n");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(5, service.read("project1", "id1", 0).getData().length);
+        }
+        assertEquals(1, buildLoop.idRequests);
+        assertEquals(2, buildLoop.offsetsRequested.size());
+        assertEquals(1, service.getTailCount());
+    }
+
+    public void testShouldStartOverWhenOutputIdChanges() throws Exception {
+        final LiveOutputService service = new LiveOutputService(buildLoop, 1024, 0);
+        buildLoop.write("old output\n");
+        service.read("project1", null, 0);
+
+        buildLoop.reset("id2");
+        buildLoop.write("new\n");
+        final LiveOutputService.Chunk chunk = service.read("project1", "id1", 11);
+        assertTrue(chunk.isReset());
+        assertEquals("id2", chunk.getOutputId());
+        assertEquals(0, chunk.getOffset());
+        assertEquals("new\n", new String(chunk.getData(), "UTF-8"));
+    }
+
+    public void testShouldKeepOnlyTheWindowAndReadOlderOutputFromTheBuildLoop() throws Exception {
+        final LiveOutputService service = new LiveOutputService(buildLoop, 10, 0);
+        buildLoop.write("aaaa\nbbbb\n");
+        assertEquals("aaaa\nbbbb\n", new String(service.read("project1", "id1", 0).getData(), "UTF-8"));
+
+        // the latest viewer is served from the window, which drops the oldest line
+        buildLoop.write("cccc\n");
+        assertEquals("cccc\n", new String(service.read("project1", "id1", 10).getData(), "UTF-8"));
+        buildLoop.offsetsRequested.clear();
+
+        // a viewer further behind is served by the build loop directly
+        final LiveOutputService.Chunk chunk = service.read("project1", "id1", 0);
+        assertEquals("aaaa\n", new String(chunk.getData(), "UTF-8"));
+        assertTrue(buildLoop.offsetsRequested.contains(new Long(0)));
+    }
+
+    public void testShouldEndChunksWithCompleteLines() throws Exception {
+        final LiveOutputService service = new LiveOutputService(buildLoop, 1024 * 1024, 0);
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            line.append("0123456789");
+        }
+        line.append('\n');
+        for (int i = 0; i < 10; i++) {
+            buildLoop.write(line.toString());
+        }
+
+        final LiveOutputService.Chunk chunk = service.read("project1", "id1", 0);
+        assertTrue(chunk.getData().length <= LiveOutputService.MAX_CHUNK_BYTES);
+        assertEquals(0, chunk.getData().length % line.length());
+    }
+
+    public void testShouldNotHoldUpViewersWhileTheBuildLoopIsSlow() throws Exception {
+        final LiveOutputService service = new LiveOutputService(buildLoop, 1024, 0);
+        buildLoop.write("line\n");
+        service.read("project1", null, 0);
+
+        buildLoop.slow = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Callable<String> read = new Callable<String>() {
+                public String call() throws Exception {
+                    return new String(service.read("project1", "id1", 0).getData(), "UTF-8");
+                }
+            };
+            final Future<String> fetching = executor.submit(read);
+            assertTrue(buildLoop.asked.await(5, TimeUnit.SECONDS));
+
+            // served from the window while the other viewer waits for the build loop
+            assertEquals("line\n", executor.submit(read).get(5, TimeUnit.SECONDS));
+            assertEquals(1, service.getTailCount());
+
+            buildLoop.slow.countDown();
+            assertEquals("line\n", fetching.get(5, TimeUnit.SECONDS));
+        } finally {
+            buildLoop.slow.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /** A build loop whose live output is held in memory, handing out one line per call. */
+    private static final class FakeBuildLoop extends BuildLoopQueryService {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final List<Long> offsetsRequested = new ArrayList<Long>();
+        private String id = "id1";
+        private int idRequests;
+        private final CountDownLatch asked = new CountDownLatch(1);
+        private volatile CountDownLatch slow;
+
+        void write(final String text) throws Exception {
+            output.write(text.getBytes("UTF-8"));
+        }
+
+        void reset(final String newId) {
+            id = newId;
+            output.reset();
+        }
+
+        public String getLiveOutputID(final String projectName) {
+            idRequests++;
+            if (slow != null) {
+                asked.countDown();
+                try {
+                    slow.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return id;
+        }
+
+        public byte[] getBuildOutputBytes(final String projectName, final long offset) {
+            offsetsRequested.add(new Long(offset));
+            final byte[] all = output.toByteArray();
+            if (offset >= all.length) {
+                return new byte[0];
+            }
+            int end = (int) offset;
+            while (all[end] != '\n') {
+                end++;
+            }
+            final int length = end + 1 - (int) offset;
+            final byte[] bytes = new byte[length];
+            System.arraycopy(all, (int) offset, bytes, 0, length);
+            return bytes;
+        }
+    }
+}
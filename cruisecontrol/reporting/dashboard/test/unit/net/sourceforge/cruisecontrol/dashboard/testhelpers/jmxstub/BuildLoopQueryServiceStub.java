@@ -219,6 +219,19 @@ public class BuildLoopQueryServiceStub extends BuildLoopQueryService {
         }
     }
 
+    public byte[] getBuildOutputBytes(final String projectName, final long offset) {
+        final String status = projectStatus.get(projectName);
+        if (offset == 0 && status != null && status.startsWith("now building")) {
+            return "Build Failed.\nBuild Duration: 0s\n".getBytes();
+        } else {
+            return new byte[0];
+        }
+    }
+
+    public String getLiveOutputID(final String projectName) {
+        return "stub";
+    }
+
     public String getJmxHttpUrl(final String projectName) {
         return "http://localhost:" + DEFAULT_HTTP_PORT;
     }
@@ -7,6 +7,7 @@ import net.sourceforge.cruisecontrol.util.BuildInformationHelper;
 import org.jmock.Mock;
 import org.jmock.cglib.MockObjectTestCase;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 public class BuildLoopControllerTest extends MockObjectTestCase {
     public void testBuildLoopShouldPassBuildInfomationProviderRepositoryImpl() throws Exception {
@@ -22,6 +23,27 @@ public class BuildLoopControllerTest extends MockObjectTestCase {
         helperMock.expects(once()).method("toObject").with(eq("<xml/>")).will(
                 returnValue(buildLoopInformation));
         repositoryMock.expects(once()).method("saveOrUpdate").with(eq(buildLoopInformation));
-        buildLoopController.handleRequest(req, null);
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        buildLoopController.handleRequest(req, resp);
+        assertEquals("ack 0", resp.getContentAsString());
+    }
+
+    public void testShouldAskForResyncWhenDeltaCannotBeApplied() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setContent("<xml/>".getBytes());
+        req.setMethod("POST");
+        Mock repositoryMock = mock(BuildInformationRepository.class);
+        Mock helperMock = mock(BuildInformationHelper.class);
+        BuildLoopController buildLoopController =
+                new BuildLoopController((BuildInformationHelper) helperMock.proxy(),
+                        (BuildInformationRepository) repositoryMock.proxy());
+        BuildLoopInformation delta = new BuildLoopInformation(null, null, null, null);
+        delta.setVersion(5);
+        delta.setDelta(4, new BuildLoopInformation.ProjectInfo[0], new String[0]);
+        helperMock.expects(once()).method("toObject").will(returnValue(delta));
+        repositoryMock.expects(once()).method("applyDelta").with(eq(delta)).will(returnValue(false));
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        buildLoopController.handleRequest(req, resp);
+        assertEquals("resync", resp.getContentAsString());
     }
 }
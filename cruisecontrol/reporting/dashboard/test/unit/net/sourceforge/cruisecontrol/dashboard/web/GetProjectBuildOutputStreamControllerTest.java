@@ -0,0 +1,148 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2007, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.dashboard.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.dashboard.service.BuildLoopQueryService;
+import net.sourceforge.cruisecontrol.dashboard.service.LiveOutputService;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class GetProjectBuildOutputStreamControllerTest extends TestCase {
+
+    private String output;
+    private GetProjectBuildOutputStreamController controller;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    protected void setUp() throws Exception {
+        output = "";
+        final BuildLoopQueryService buildLoop = new BuildLoopQueryService(null, null) {
+            public String getLiveOutputID(final String projectName) {
+                return "id1";
+            }
+
+            public byte[] getBuildOutputBytes(final String projectName, final long offset) {
+                try {
+                    return output.substring((int) Math.min(offset, output.length())).getBytes("UTF-8");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        controller = new GetProjectBuildOutputStreamController(new LiveOutputService(buildLoop, 1024, 0));
+        controller.setStreamMillis(0);
+        controller.setPollMillis(10);
+        request = new MockHttpServletRequest();
+        request.setParameter("project", "project1");
+        response = new MockHttpServletResponse();
+    }
+
+    public void testShouldStreamLinesAsEvents() throws Exception {
+        output = "Buildfile: build.xml\r\ncompile:\r\n";
+
+        controller.handleRequest(request, response);
+
+        assertEquals("text/event-stream", response.getContentType());
+        assertEquals("retry: 10\n\n"
+                + "event: reset\nid: id1:0\ndata: \n\n"
+                + "id: id1:" + output.length() + "\ndata: Buildfile: build.xml\ndata: compile:\n\n",
+                response.getContentAsString());
+    }
+
+    public void testShouldResumeFromLastEventId() throws Exception {
+        output = "one\ntwo\n";
+        request.addHeader(GetProjectBuildOutputStreamController.LAST_EVENT_ID, "id1:4");
+
+        controller.handleRequest(request, response);
+
+        assertEquals("retry: 10\n\nid: id1:8\ndata: two\n\n", response.getContentAsString());
+    }
+
+    public void testShouldSendIdleEventWithoutNewOutput() throws Exception {
+        output = "one\n";
+        request.setParameter(GetProjectBuildOutputStreamController.PARAM_OUTPUT_ID, "id1");
+        request.setParameter(GetProjectBuildOutputStreamController.PARAM_OFFSET, "4");
+
+        controller.handleRequest(request, response);
+
+        assertEquals("retry: 10\n\nevent: idle\nid: id1:4\ndata: \n\n", response.getContentAsString());
+    }
+
+    public void testShouldKeepStreamingUntilIdle() throws Exception {
+        output = "one\n";
+        controller.setStreamMillis(10000);
+        controller.setIdleMillis(50);
+
+        final long start = System.currentTimeMillis();
+        controller.handleRequest(request, response);
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(response.getContentAsString().endsWith("event: idle\nid: id1:4\ndata: \n\n"));
+    }
+
+    public void testShouldCompressWhenAccepted() throws Exception {
+        if (!isFlushableGzipAvailable()) {
+            return;
+        }
+        output = "compressed\n";
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+
+        controller.handleRequest(request, response);
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        final String text = IOUtils.toString(new GZIPInputStream(
+                new ByteArrayInputStream(response.getContentAsByteArray())), "UTF-8");
+        assertTrue(text.endsWith("data: compressed\n\n"));
+    }
+
+    private static boolean isFlushableGzipAvailable() {
+        try {
+            GZIPOutputStream.class.getConstructor(OutputStream.class, boolean.class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
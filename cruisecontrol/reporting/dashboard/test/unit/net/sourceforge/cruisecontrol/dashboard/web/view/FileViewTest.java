@@ -114,6 +114,38 @@ public class FileViewTest extends MockObjectTestCase {
         assertNull(mockResponse.getHeader("Content-Disposition"));
     }
     
+    public void testShouldServeRequestedRange() throws Exception {
+        File file = DataUtils.createTempFile("file", ".txt");
+        DataUtils.writeContentToFile(file, "0123456789");
+        Map model = new HashMap();
+        model.put("targetFile", file);
+        mockServletContext.expects(once()).method("getMimeType").will(returnValue("text/plain"));
+        mockRequest.addHeader("Range", "bytes=-4");
+        view.render(model, mockRequest, mockResponse);
+        assertEquals(206, mockResponse.getStatus());
+        assertEquals("bytes 6-9/10", mockResponse.getHeader("Content-Range"));
+        assertEquals(4, mockResponse.getContentLength());
+        assertEquals("6789", mockResponse.getContentAsString());
+    }
+
+    public void testShouldAnswerNotModifiedForMatchingETag() throws Exception {
+        File file = DataUtils.createTempFile("file", ".txt");
+        DataUtils.writeContentToFile(file, "0123456789");
+        Map model = new HashMap();
+        model.put("targetFile", file);
+        mockServletContext.expects(once()).method("getMimeType").will(returnValue("text/plain"));
+        view.render(model, mockRequest, mockResponse);
+        assertEquals("0123456789", mockResponse.getContentAsString());
+        assertEquals("bytes", mockResponse.getHeader("Accept-Ranges"));
+
+        mockServletContext.reset();
+        MockHttpServletResponse conditionalResponse = new MockHttpServletResponse();
+        mockRequest.addHeader("If-None-Match", mockResponse.getHeader("ETag"));
+        view.render(model, mockRequest, conditionalResponse);
+        assertEquals(304, conditionalResponse.getStatus());
+        assertEquals("", conditionalResponse.getContentAsString());
+    }
+
     private static class MockFile extends File {
         public MockFile(File realFile) {
             super(realFile.getPath());
@@ -42,6 +42,9 @@ BuildDetailObserver.prototype = {
         this.is_timer_observer_notified = false;
         this.start_line_number = 0;
         this.output_id = "emptyid";
+        this.use_stream = typeof(EventSource) != 'undefined';
+        this.stream = null;
+        this.is_stream_idle = false;
     },
     notify : function(jsonArray) {
         for (var i = 0; i < jsonArray.length; i++) {
@@ -52,7 +55,7 @@ BuildDetailObserver.prototype = {
         }
     },
     _notify : function(json) {
-        var is_output_empty = this.update_live_output();
+        var is_output_empty = this.use_stream ? this.update_live_output_stream() : this.update_live_output();
         if (!this.is_timer_observer_notified) {
             timer_observer.notify([json]);
             this.is_timer_observer_notified = true;
@@ -84,6 +87,37 @@ BuildDetailObserver.prototype = {
         });
         return is_output_empty;
     },
+    update_live_output_stream : function() {
+        if (!this.stream) {
+            var _this = this;
+            this.stream = new EventSource(context_path('getProjectBuildOutputStream.ajax')
+                    + '?project=' + encodeURIComponent(this.project_name));
+            this.stream.onmessage = function(event) {
+                _this._on_stream_output(event.data);
+            };
+            this.stream.addEventListener('idle', function() {
+                _this.is_stream_idle = true;
+            }, false);
+            this.stream.onerror = function() {
+                // the browser reconnects by itself unless the stream can't be served at all
+                if (_this.stream && _this.stream.readyState == 2) {
+                    _this.stream = null;
+                    _this.use_stream = false;
+                }
+            };
+        }
+        return this.is_stream_idle;
+    },
+    _on_stream_output : function(build_output) {
+        this.is_stream_idle = false;
+        this._update_live_output(build_output + "\n");
+    },
+    close_live_output_stream : function() {
+        if (this.stream) {
+            this.stream.close();
+            this.stream = null;
+        }
+    },
     _update_live_output: function (build_output) {
         var is_output_empty = false;
         if (!build_output) {
@@ -100,6 +134,7 @@ BuildDetailObserver.prototype = {
         return current_status != "building" && is_output_empty;
     },
     update_page : function(json) {
+        this.close_live_output_stream();
         this.update_build_detail_summary_panel(json);
         this.display_error_message_if_necessary(json);
         this.update_config_panel_icon();
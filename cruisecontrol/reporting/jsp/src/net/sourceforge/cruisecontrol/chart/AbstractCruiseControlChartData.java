@@ -38,10 +38,8 @@ package net.sourceforge.cruisecontrol.chart;
 
 import java.io.Serializable;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.Map;
 
-import net.sourceforge.cruisecontrol.BuildInfo;
 import net.sourceforge.cruisecontrol.BuildInfoSummary;
 import net.sourceforge.cruisecontrol.taglib.BuildInfoTag;
 import de.laures.cewolf.DatasetProducer;
@@ -53,36 +51,21 @@ import de.laures.cewolf.DatasetProducer;
 public abstract class AbstractCruiseControlChartData implements DatasetProducer, Serializable {
 
     /**
-     * Helper method to see if the graph is out of date. We will check the BuildInfoSummary
+     * Helper method to see if the graph is out of date. We will check the metrics store of the log directory
      * to see if a new log file is available.
      */
     public boolean hasExpired(final Map params, final Date dateOfCachedData) {
-        final BuildInfoSummary summary = getBuildInfoSummary(params);
-        if (noBuilds(summary)) {
-            return false;
-        }
-        
-        Date newestBuild = null;
-        final Iterator<BuildInfo> iterator = summary.iterator();
-        while (iterator.hasNext()) {
-            final BuildInfo info = iterator.next();
-            final Date buildDate = info.getBuildDate();
-            if (newestBuild == null || buildDate.after(newestBuild)) {
-                newestBuild = buildDate;
-            }
-        }
-
-        // @todo May produce NullPointerException?
-        return newestBuild.after(dateOfCachedData);
-    }
-
-    private boolean noBuilds(final BuildInfoSummary summary) {
-        return summary.getBuildInfoList().size() == 0;
+        final MetricsStore store = getMetricsStore(params);
+        return store.size() > 0 && store.getHighWaterMark() > dateOfCachedData.getTime();
     }
 
     protected BuildInfoSummary getBuildInfoSummary(final Map params) {
         return (BuildInfoSummary) params.get(BuildInfoTag.INFO_ATTRIBUTE);
     }
 
+    protected MetricsStore getMetricsStore(final Map params) {
+        return MetricsStore.getStore(getBuildInfoSummary(params));
+    }
+
 
 }
@@ -0,0 +1,326 @@
+/********************************************************************************
+ * CruiseControl, a Continuous Integration Toolkit
+ * Copyright (c) 2004, ThoughtWorks, Inc.
+ * 200 E. Randolph, 25th Floor
+ * Chicago, IL 60601 USA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *     + Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *
+ *     + Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *
+ *     + Neither the name of ThoughtWorks, Inc., CruiseControl, nor the
+ *       names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior
+ *       written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ ********************************************************************************/
+package net.sourceforge.cruisecontrol.chart;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.cruisecontrol.BuildInfo;
+import net.sourceforge.cruisecontrol.BuildInfoSummary;
+import net.sourceforge.cruisecontrol.LogFile;
+
+import org.jdom.Document;
+import org.jdom.JDOMException;
+
+/**
+ * Columnar store of the per build metrics of one log directory. The build dates and statuses are taken from the
+ * log names, the values of XPath expressions are computed the first time a chart asks for them and kept, so every
+ * log is parsed at most once no matter how often the charts are rendered. New builds are appended as they show up
+ * in the <code>BuildInfoSummary</code>; if logs were removed the store starts over.
+ */
+public final class MetricsStore {
+
+    /**
+     * Build duration in seconds, as written by CruiseControl in the build element. The attribute holds text like
+     * "3 minutes 10 seconds", so the selected value is converted by {@link #parseDuration(String)}.
+     */
+    public static final String DURATION = "string(/cruisecontrol/build/@time)";
+    /** Number of tests run. */
+    public static final String TESTS = "sum(/cruisecontrol/testsuite/@tests)";
+    /** Number of tests failed. */
+    public static final String FAILURES = "sum(/cruisecontrol/testsuite/@failures)";
+    /** Number of tests in error. */
+    public static final String ERRORS = "sum(/cruisecontrol/testsuite/@errors)";
+
+    private static final Map<File, MetricsStore> STORES = new HashMap<File, MetricsStore>();
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Pattern DURATION_PART
+            = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(hour|minute|second)s?(?:\\(s\\))?", Pattern.CASE_INSENSITIVE);
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final int SECONDS_PER_HOUR = 3600;
+
+    private int size;
+    private long[] dates = new long[INITIAL_CAPACITY];
+    private LogFile[] logs = new LogFile[INITIAL_CAPACITY];
+    private final BitSet successful = new BitSet();
+    private int numSuccessfulBuilds;
+    private final Map<String, Column> columns = new HashMap<String, Column>();
+
+    /**
+     * Values of one XPath expression, <code>filled</code> is the number of builds it has been computed for.
+     */
+    private static final class Column {
+        private double[] values;
+        private int filled;
+
+        private Column(final int capacity) {
+            values = new double[capacity];
+        }
+
+        private void grow(final int capacity) {
+            final double[] newValues = new double[capacity];
+            System.arraycopy(values, 0, newValues, 0, filled);
+            values = newValues;
+        }
+    }
+
+    MetricsStore() {
+    }
+
+    /**
+     * Gets the store of the directory the summarized logs are in, brought up to date with the summary.
+     * @param summary the builds currently in the log directory
+     * @return the up to date store
+     */
+    public static MetricsStore getStore(final BuildInfoSummary summary) {
+        final File logDir = summary.size() == 0 ? null : summary.iterator().next().getLogFile().getLogDirectory();
+        MetricsStore store;
+        synchronized (STORES) {
+            store = STORES.get(logDir);
+            if (store == null) {
+                store = new MetricsStore();
+                STORES.put(logDir, store);
+            }
+        }
+        store.update(summary);
+        return store;
+    }
+
+    /**
+     * Appends the builds newer than the high-water mark. Only the log names are looked at, the logs themselves are
+     * read when a value column is requested. If the builds up to the high-water mark are not exactly the ones in
+     * the store, because logs were removed or added in between, the store starts over.
+     * @param summary the builds currently in the log directory
+     */
+    synchronized void update(final BuildInfoSummary summary) {
+        final long highWaterMark = getHighWaterMark();
+        final List<BuildInfo> newBuilds = new ArrayList<BuildInfo>();
+        final long[] known = new long[summary.size()];
+        int numKnown = 0;
+        for (final Iterator<BuildInfo> iter = summary.iterator(); iter.hasNext();) {
+            final BuildInfo info = iter.next();
+            final long date = info.getBuildDate().getTime();
+            if (size == 0 || date > highWaterMark) {
+                newBuilds.add(info);
+            } else {
+                known[numKnown++] = date;
+            }
+        }
+        if (!isStored(known, numKnown)) {
+            clear();
+            update(summary);
+            return;
+        }
+        Collections.sort(newBuilds);
+        ensureCapacity(size + newBuilds.size());
+        for (final BuildInfo info : newBuilds) {
+            dates[size] = info.getBuildDate().getTime();
+            logs[size] = info.getLogFile();
+            if (info.isSuccessful()) {
+                successful.set(size);
+                numSuccessfulBuilds++;
+            }
+            size++;
+        }
+    }
+
+    /**
+     * @return true if the dates are exactly those of the builds in the store
+     */
+    private boolean isStored(final long[] known, final int numKnown) {
+        if (numKnown != size) {
+            return false;
+        }
+        Arrays.sort(known, 0, numKnown);
+        for (int i = 0; i < numKnown; i++) {
+            if (known[i] != dates[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clear() {
+        size = 0;
+        numSuccessfulBuilds = 0;
+        successful.clear();
+        columns.clear();
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= dates.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, dates.length * 2);
+        final long[] newDates = new long[newCapacity];
+        System.arraycopy(dates, 0, newDates, 0, size);
+        dates = newDates;
+        final LogFile[] newLogs = new LogFile[newCapacity];
+        System.arraycopy(logs, 0, newLogs, 0, size);
+        logs = newLogs;
+        for (final Column column : columns.values()) {
+            column.grow(newCapacity);
+        }
+    }
+
+    /**
+     * @return the time of the newest build in the store, <code>Long.MIN_VALUE</code> if there is none.
+     */
+    public synchronized long getHighWaterMark() {
+        return size == 0 ? Long.MIN_VALUE : dates[size - 1];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized Date getBuildDate(final int build) {
+        checkBuild(build);
+        return new Date(dates[build]);
+    }
+
+    public synchronized LogFile getLogFile(final int build) {
+        checkBuild(build);
+        return logs[build];
+    }
+
+    public synchronized boolean isSuccessful(final int build) {
+        checkBuild(build);
+        return successful.get(build);
+    }
+
+    public synchronized int getNumSuccessfulBuilds() {
+        return numSuccessfulBuilds;
+    }
+
+    public synchronized int getNumBrokenBuilds() {
+        return size - numSuccessfulBuilds;
+    }
+
+    private void checkBuild(final int build) {
+        if (build < 0 || build >= size) {
+            throw new IndexOutOfBoundsException("build " + build + " of " + size);
+        }
+    }
+
+    /**
+     * Gets the values of the expressions for all builds in the store. The logs of builds that have not been evaluated
+     * yet for one of the expressions are parsed once and all expressions are evaluated against them.
+     * @param expressions the XPath expressions
+     * @return one array per expression, indexed by build
+     * @throws JDOMException if a log can not be parsed or an expression evaluated
+     * @throws IOException if a log can not be read
+     */
+    public synchronized double[][] getValues(final List<XPathData> expressions) throws JDOMException, IOException {
+        final Column[] wanted = new Column[expressions.size()];
+        int from = size;
+        for (int i = 0; i < wanted.length; i++) {
+            final String expression = expressions.get(i).getExpression();
+            Column column = columns.get(expression);
+            if (column == null) {
+                column = new Column(dates.length);
+                columns.put(expression, column);
+            }
+            wanted[i] = column;
+            from = Math.min(from, column.filled);
+        }
+
+        for (int build = from; build < size; build++) {
+            final Document log = logs[build].asDocument();
+            for (int i = 0; i < wanted.length; i++) {
+                if (wanted[i].filled == build) {
+                    wanted[i].values[build] = evaluate(expressions.get(i), log);
+                    wanted[i].filled++;
+                }
+            }
+        }
+
+        final double[][] values = new double[wanted.length][];
+        for (int i = 0; i < wanted.length; i++) {
+            values[i] = new double[size];
+            System.arraycopy(wanted[i].values, 0, values[i], 0, size);
+        }
+        return values;
+    }
+
+    private static double evaluate(final XPathData expression, final Document log) throws JDOMException {
+        if (DURATION.equals(expression.getExpression())) {
+            return parseDuration(expression.valueOf(log));
+        }
+        return expression.evaluate(log).doubleValue();
+    }
+
+    /**
+     * Converts a duration as written by Ant and CruiseControl to seconds. Hours, minutes and seconds may each be
+     * left out and be singular, plural or "(s)", so "3 seconds", "1 minute 1 second" and "0 minute(s) 5 second(s)"
+     * are all understood.
+     * @param time the duration text
+     * @return the duration in seconds, <code>NaN</code> if the text holds no duration
+     */
+    static double parseDuration(final String time) {
+        if (time == null) {
+            return Double.NaN;
+        }
+        final Matcher matcher = DURATION_PART.matcher(time);
+        boolean found = false;
+        double seconds = 0;
+        while (matcher.find()) {
+            found = true;
+            final double amount = Double.parseDouble(matcher.group(1));
+            final String unit = matcher.group(2).toLowerCase();
+            if (unit.equals("hour")) {
+                seconds += amount * SECONDS_PER_HOUR;
+            } else if (unit.equals("minute")) {
+                seconds += amount * SECONDS_PER_MINUTE;
+            } else {
+                seconds += amount;
+            }
+        }
+        return found ? seconds : Double.NaN;
+    }
+}
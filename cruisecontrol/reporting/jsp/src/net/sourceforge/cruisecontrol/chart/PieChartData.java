@@ -38,8 +38,6 @@ package net.sourceforge.cruisecontrol.chart;
 
 import java.util.Map;
 
-import net.sourceforge.cruisecontrol.BuildInfoSummary;
-
 import org.jfree.data.DefaultPieDataset;
 
 import de.laures.cewolf.DatasetProduceException;
@@ -47,10 +45,10 @@ import de.laures.cewolf.DatasetProduceException;
 public class PieChartData extends AbstractCruiseControlChartData {
 
     public Object produceDataset(Map params) throws DatasetProduceException {
-        BuildInfoSummary summary = getBuildInfoSummary(params);
+        MetricsStore store = getMetricsStore(params);
         DefaultPieDataset dataset = new DefaultPieDataset();
-        dataset.setValue("Broken Builds", summary.getNumBrokenBuilds());
-        dataset.setValue("Good Builds", summary.getNumSuccessfulBuilds());
+        dataset.setValue("Broken Builds", store.getNumBrokenBuilds());
+        dataset.setValue("Good Builds", store.getNumSuccessfulBuilds());
         return dataset;
     }
 
@@ -40,11 +40,8 @@ import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.Map;
 
-import net.sourceforge.cruisecontrol.BuildInfo;
-import net.sourceforge.cruisecontrol.BuildInfoSummary;
 import net.sourceforge.cruisecontrol.util.TimeNumberFormat;
 
 import org.jfree.chart.JFreeChart;
@@ -65,20 +62,19 @@ public class TimeChartData extends AbstractCruiseControlChartData implements Cha
     private static final long serialVersionUID = -5159867264828131088L;
 
     public Object produceDataset(Map params) throws DatasetProduceException {
-        BuildInfoSummary summary = getBuildInfoSummary(params);
+        MetricsStore store = getMetricsStore(params);
         TimeSeries brokenSeries = new TimeSeries("Broken Builds", Minute.class);
         TimeSeries goodSeries = new TimeSeries("Good Builds", Minute.class);
-        for (Iterator iter = summary.iterator(); iter.hasNext();) {
-            BuildInfo buildInfo = (BuildInfo) iter.next();
-            Date buildTime = buildInfo.getBuildDate();
+        for (int i = 0; i < store.size(); i++) {
+            Date buildTime = store.getBuildDate(i);
             double timeValue = extractTimeOfDay(buildTime);
             Minute timePeriod = new Minute(buildTime);
-            TimeSeries seriesToAddTo = buildInfo.isSuccessful() ? goodSeries
-                                                                : brokenSeries;
+            TimeSeries seriesToAddTo = store.isSuccessful(i) ? goodSeries
+                                                             : brokenSeries;
             if (seriesToAddTo.getDataPair(timePeriod) == null) {
                 seriesToAddTo.add(timePeriod, timeValue);
             } else {
-                System.err.println("multiple logs in the same minute; ignoring: " + buildInfo.getLogName());
+                System.err.println("multiple logs in the same minute; ignoring: " + store.getLogFile(i).getName());
             }
         }
         TimeSeriesCollection dataset = new TimeSeriesCollection();
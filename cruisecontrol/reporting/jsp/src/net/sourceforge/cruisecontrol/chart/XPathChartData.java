@@ -40,15 +40,9 @@ import de.laures.cewolf.ChartPostProcessor;
 import de.laures.cewolf.DatasetProduceException;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import net.sourceforge.cruisecontrol.BuildInfo;
-import net.sourceforge.cruisecontrol.BuildInfoSummary;
-import org.jdom.Document;
 import org.jdom.JDOMException;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.DateAxis;
@@ -79,30 +73,22 @@ public class XPathChartData extends AbstractCruiseControlChartData implements Ch
     }
 
     public Object produceDataset(final Map params) throws DatasetProduceException {
-        final BuildInfoSummary summary = getBuildInfoSummary(params);
-        final TimeSeriesCollection dataset = new TimeSeriesCollection();
-        final Map<XPathData, TimeSeries> timeSeries = new LinkedHashMap<XPathData, TimeSeries>(xpaths.size());
-        for (final XPathData data : xpaths) {
-            final TimeSeries serie = new TimeSeries(data.getName(), Minute.class);
-            timeSeries.put(data, serie);
-            dataset.addSeries(serie);
+        final MetricsStore store = getMetricsStore(params);
+        final double[][] values;
+        try {
+            values = store.getValues(xpaths);
+        } catch (JDOMException jex) {
+            throw new DatasetProduceException(jex.getMessage());
+        } catch (IOException ioex) {
+            throw new DatasetProduceException(ioex.getMessage());
         }
-        for (final Iterator<BuildInfo> iter = summary.iterator(); iter.hasNext();) {
-            final BuildInfo buildInfo = iter.next();
-            final Date buildTime = buildInfo.getBuildDate();
-            final Minute timePeriod = new Minute(buildTime);
-            try {
-                final Document log = buildInfo.getLogFile().asDocument();
-                for (final Map.Entry<XPathData, TimeSeries> pair : timeSeries.entrySet()) {
-                    final TimeSeries series = pair.getValue();
-                    final Number result = pair.getKey().evaluate(log);
-                    series.addOrUpdate(timePeriod, result);
-                }
-            } catch (JDOMException jex) {
-                throw new DatasetProduceException(jex.getMessage());
-            } catch (IOException ioex) {
-                throw new DatasetProduceException(ioex.getMessage());
+        final TimeSeriesCollection dataset = new TimeSeriesCollection();
+        for (int i = 0; i < values.length; i++) {
+            final TimeSeries series = new TimeSeries(xpaths.get(i).getName(), Minute.class);
+            for (int build = 0; build < values[i].length; build++) {
+                series.addOrUpdate(new Minute(store.getBuildDate(build)), new Double(values[i][build]));
             }
+            dataset.addSeries(series);
         }
         return dataset;
     }
@@ -67,4 +67,8 @@ public class XPathData {
     public Number evaluate(Document doc) throws JDOMException {
         return xpath.numberValueOf(doc);
     }
+
+    public String valueOf(Document doc) throws JDOMException {
+        return xpath.valueOf(doc);
+    }
 }
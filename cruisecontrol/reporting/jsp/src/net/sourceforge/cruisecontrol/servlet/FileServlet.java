@@ -39,12 +39,9 @@ package net.sourceforge.cruisecontrol.servlet;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
@@ -60,6 +57,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 
+import net.sourceforge.cruisecontrol.util.HttpFileTransfer;
+
 public class FileServlet extends HttpServlet {
 
     private File rootDir;
@@ -158,11 +157,7 @@ public class FileServlet extends HttpServlet {
             } else {
                 mimeType = getMimeType(filename);
             }
-            final Date date = new Date(file.getFile().lastModified());
-            response.addDateHeader("Last-Modified", date.getTime());
-            response.setContentType(mimeType);
-            response.setContentLength((int) file.getFile().length());
-            file.write(response.getOutputStream());
+            serveFile(request, response, file, mimeType);
             return;
         }
 
@@ -181,6 +176,100 @@ public class FileServlet extends HttpServlet {
         writer.write("</html>");
     }
 
+    /**
+     * Sends the content of a file. Conditional requests are answered with 304 when the ETag or the modification date
+     * matches, a single byte range is answered with 206. A file that is stored with a content encoding is sent as
+     * is when the client accepts that encoding and decoded on the fly otherwise.
+     *
+     * @param request incoming http request
+     * @param response the response to write the file to
+     * @param file the file to send
+     * @param mimeType content type of the file
+     * @throws IOException if the file can not be read or the response written
+     */
+    void serveFile(final HttpServletRequest request, final HttpServletResponse response, final WebFile file,
+                   final String mimeType) throws IOException {
+        final String encoding = file.getContentEncoding();
+        final boolean decode = encoding != null && !isAccepted(request.getHeader("Accept-Encoding"), encoding);
+        final long lastModified = file.getFile().lastModified();
+        final long length = file.getFile().length();
+        final String etag = HttpFileTransfer.getETag(length, lastModified, decode ? "decoded" : null);
+
+        response.addDateHeader("Last-Modified", lastModified);
+        response.setHeader("ETag", etag);
+        if (encoding != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (HttpFileTransfer.isNotModified(request.getHeader("If-None-Match"),
+                request.getHeader("If-Modified-Since"), etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(mimeType);
+        final boolean head = "HEAD".equals(request.getMethod());
+
+        if (decode) {
+            // the decoded length is unknown, so neither Content-Length nor ranges can be offered
+            if (!head) {
+                file.write(response.getOutputStream());
+            }
+            return;
+        }
+
+        if (encoding != null) {
+            response.setHeader("Content-Encoding", encoding);
+        }
+        response.setHeader("Accept-Ranges", "bytes");
+        long start = 0;
+        long end = length - 1;
+        final long[] range = HttpFileTransfer.isRangeValid(request.getHeader("If-Range"), etag, lastModified)
+                ? HttpFileTransfer.parseRange(request.getHeader("Range"), length) : null;
+        if (range != null) {
+            if (range.length == 0) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + start + '-' + end + '/' + length);
+        }
+        setContentLength(response, end - start + 1);
+        if (!head) {
+            file.write(response.getOutputStream(), start, end - start + 1);
+        }
+    }
+
+    private static void setContentLength(final HttpServletResponse response, final long length) {
+        if (length <= Integer.MAX_VALUE) {
+            response.setContentLength((int) length);
+        } else {
+            response.setHeader("Content-Length", Long.toString(length));
+        }
+    }
+
+    /**
+     * @param accepted value of an Accept-Encoding header, may be <code>null</code>
+     * @param encoding the content coding to look for
+     * @return <code>true</code> if the coding is listed and not refused with a zero quality
+     */
+    static boolean isAccepted(final String accepted, final String encoding) {
+        if (accepted == null) {
+            return false;
+        }
+        final StringTokenizer codings = new StringTokenizer(accepted, ",");
+        while (codings.hasMoreTokens()) {
+            final String coding = codings.nextToken().trim();
+            final int params = coding.indexOf(';');
+            final String name = (params < 0 ? coding : coding.substring(0, params)).trim();
+            if (name.equalsIgnoreCase(encoding) || name.equalsIgnoreCase("x-" + encoding)) {
+                return params < 0 || !coding.substring(params + 1).replaceAll("\\s", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
     protected String getMimeType(final String filename) {
         String mimeType = getServletContext().getMimeType(filename);
         if (mimeType == null) {
@@ -292,6 +381,8 @@ public class FileServlet extends HttpServlet {
 
 class WebFile {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private final File file;
 
     public WebFile(File logfile) {
@@ -314,13 +405,25 @@ class WebFile {
         return new FileInputStream(file);
     }
 
-    public void write(ServletOutputStream stream) throws IOException {
-        InputStream input = new BufferedInputStream(getInputStream());
-        OutputStream output = new BufferedOutputStream(stream);
+    /**
+     * @return the content coding the file is stored in, <code>null</code> if it is stored plain.
+     */
+    public String getContentEncoding() {
+        return null;
+    }
+
+    /**
+     * Writes the decoded content of the file.
+     * @param output where to write the file to
+     * @throws IOException if the file can not be read
+     */
+    public void write(OutputStream output) throws IOException {
+        final InputStream input = getInputStream();
         try {
-            int i;
-            while ((i = input.read()) != -1) {
-                output.write(i);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
             }
         } finally {
             input.close();
@@ -328,6 +431,17 @@ class WebFile {
         }
     }
 
+    /**
+     * Writes part of the file as stored on disk, letting the file channel do the copying.
+     * @param output where to write the file to
+     * @param start first byte to write
+     * @param length number of bytes to write
+     * @throws IOException if the file can not be read
+     */
+    public void write(OutputStream output, long start, long length) throws IOException {
+        HttpFileTransfer.transfer(file, start, length, output);
+    }
+
     public boolean isFile() {
         return file.isFile();
     }
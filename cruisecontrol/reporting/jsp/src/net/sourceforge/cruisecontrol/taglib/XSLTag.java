@@ -59,12 +59,12 @@ import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspTagException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sourceforge.cruisecontrol.LogFile;
 import net.sourceforge.cruisecontrol.util.CCTagException;
+import net.sourceforge.cruisecontrol.util.TemplatesCache;
 
 /**
  *  JSP custom tag to handle xsl transforms.  This tag also caches the output of the transform to disk, reducing the
@@ -78,8 +78,6 @@ public class XSLTag extends CruiseControlTagSupport {
     private static final long serialVersionUID = -948954553781627362L;
 
     private static final String XSLT_PARAMETER_PREFIX = "xslt.";
-    private static final String SAXON_VERSION_WARNING =
-            "http://saxon.sf.net/feature/version-warning";
     private String xslFileName;
     private static final String CACHE_DIR = "_cache";
 
@@ -128,13 +126,7 @@ public class XSLTag extends CruiseControlTagSupport {
     }
 
     private Transformer newTransformer(final URL style) throws TransformerException {
-        final TransformerFactory tFactory = TransformerFactory.newInstance();
-        try {
-            tFactory.setAttribute(SAXON_VERSION_WARNING, Boolean.FALSE);
-        } catch (IllegalArgumentException iaex) {
-            debug("could not silence Saxon XSLT 2.0 warning, processor is probably not saxon: " + iaex.getMessage());
-        }
-        final Transformer transformer = tFactory.newTransformer(new StreamSource(style.toExternalForm()));
+        final Transformer transformer = TemplatesCache.getInstance().newTransformer(style);
         final Map<String, String> parameters = getXSLTParameters();
         if (!parameters.isEmpty()) {
             transformer.clearParameters();
@@ -0,0 +1,150 @@
+package net.sourceforge.cruisecontrol.chart;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.BuildInfo;
+import net.sourceforge.cruisecontrol.BuildInfoSummary;
+import net.sourceforge.cruisecontrol.testutil.TestUtil.FilesToDelete;
+import net.sourceforge.cruisecontrol.util.IO;
+
+public class MetricsStoreTest extends TestCase {
+    private final FilesToDelete filesToDelete = new FilesToDelete();
+    private File logDir;
+    private final List<BuildInfo> builds = new ArrayList<BuildInfo>();
+
+    protected void setUp() throws Exception {
+        logDir = new File("testresults/");
+        if (!logDir.exists()) {
+            assertTrue("Failed to create test result dir", logDir.mkdir());
+        }
+        filesToDelete.add(logDir);
+    }
+
+    protected void tearDown() throws Exception {
+        filesToDelete.delete();
+    }
+
+    private void addLog(final String name, final int tests, final String time) throws Exception {
+        final File log = new File(logDir, name);
+        IO.write(log, "<cruisecontrol><build time=\"" + time + "\"/>"
+                + "<testsuite tests=\"" + tests + "\" failures=\"1\" errors=\"0\"/></cruisecontrol>");
+        filesToDelete.add(log);
+        builds.add(new BuildInfo(log));
+    }
+
+    private List<XPathData> xpaths(final String... expressions) throws Exception {
+        final List<XPathData> xpaths = new ArrayList<XPathData>();
+        for (final String expression : expressions) {
+            xpaths.add(new XPathData(expression, expression));
+        }
+        return xpaths;
+    }
+
+    public void testUpdateAppendsNewBuilds() throws Exception {
+        addLog("log20050708100401.xml", 3, "0 minute(s) 5 second(s)");
+        addLog("log20050708110401Lbuild.1.xml", 4, "1 minute(s) 2 second(s)");
+        final MetricsStore store = new MetricsStore();
+        store.update(new BuildInfoSummary(builds));
+        assertEquals(2, store.size());
+        assertEquals(1, store.getNumSuccessfulBuilds());
+        assertEquals(1, store.getNumBrokenBuilds());
+        assertEquals(builds.get(1).getBuildDate().getTime(), store.getHighWaterMark());
+
+        addLog("log20050708120401Lbuild.2.xml", 5, "0 minute(s) 1 second(s)");
+        store.update(new BuildInfoSummary(builds));
+        assertEquals(3, store.size());
+        assertEquals(2, store.getNumSuccessfulBuilds());
+        assertFalse(store.isSuccessful(0));
+        assertTrue(store.isSuccessful(2));
+        assertEquals(builds.get(2).getBuildDate(), store.getBuildDate(2));
+    }
+
+    public void testGetValues() throws Exception {
+        addLog("log20050708100401.xml", 3, "0 minute(s) 5 second(s)");
+        addLog("log20050708110401Lbuild.1.xml", 4, "1 minute(s) 2 second(s)");
+        final MetricsStore store = new MetricsStore();
+        store.update(new BuildInfoSummary(builds));
+
+        double[][] values = store.getValues(xpaths(MetricsStore.TESTS, MetricsStore.DURATION));
+        assertTrue(Arrays.equals(new double[] {3, 4}, values[0]));
+        assertTrue(Arrays.equals(new double[] {5, 62}, values[1]));
+
+        addLog("log20050708120401Lbuild.2.xml", 5, "0 minute(s) 1 second(s)");
+        store.update(new BuildInfoSummary(builds));
+        values = store.getValues(xpaths(MetricsStore.FAILURES, MetricsStore.TESTS));
+        assertTrue(Arrays.equals(new double[] {1, 1, 1}, values[0]));
+        assertTrue(Arrays.equals(new double[] {3, 4, 5}, values[1]));
+    }
+
+    public void testDurationIsReadInAntFormats() throws Exception {
+        addLog("log20050708100401.xml", 3, "3 minutes 10 seconds");
+        addLog("log20050708110401Lbuild.1.xml", 4, "3 seconds");
+        addLog("log20050708120401Lbuild.2.xml", 5, "1 minute 1 second");
+        addLog("log20050708130401Lbuild.3.xml", 6, "2 minutes");
+        addLog("log20050708140401Lbuild.4.xml", 7, "1 minute(s) 5 second(s)");
+        final MetricsStore store = new MetricsStore();
+        store.update(new BuildInfoSummary(builds));
+
+        final double[] values = store.getValues(xpaths(MetricsStore.DURATION))[0];
+        assertTrue(Arrays.toString(values), Arrays.equals(new double[] {190, 3, 61, 120, 65}, values));
+    }
+
+    public void testParseDuration() {
+        assertEquals(190.0, MetricsStore.parseDuration("3 minutes 10 seconds"), 0.0);
+        assertEquals(1.0, MetricsStore.parseDuration("1 second"), 0.0);
+        assertEquals(3661.0, MetricsStore.parseDuration("1 hour 1 minute 1 second"), 0.0);
+        assertEquals(0.0, MetricsStore.parseDuration("0 seconds"), 0.0);
+        assertTrue(Double.isNaN(MetricsStore.parseDuration("")));
+        assertTrue(Double.isNaN(MetricsStore.parseDuration(null)));
+    }
+
+    public void testValuesAreNotReadAgain() throws Exception {
+        addLog("log20050708100401.xml", 3, "0 minute(s) 5 second(s)");
+        final MetricsStore store = new MetricsStore();
+        store.update(new BuildInfoSummary(builds));
+        store.getValues(xpaths(MetricsStore.TESTS));
+
+        IO.write(builds.get(0).getLogFile().getFile(), "not xml");
+        assertEquals(3.0, store.getValues(xpaths(MetricsStore.TESTS))[0][0], 0.0);
+    }
+
+    public void testLogRemovedInTheMiddleResetsTheStore() throws Exception {
+        addLog("log20050708100401.xml", 3, "0 minute(s) 5 second(s)");
+        addLog("log20050708110401Lbuild.1.xml", 4, "1 minute(s) 2 second(s)");
+        addLog("log20050708120401Lbuild.2.xml", 5, "0 minute(s) 1 second(s)");
+        final MetricsStore store = new MetricsStore();
+        store.update(new BuildInfoSummary(builds));
+        store.getValues(xpaths(MetricsStore.TESTS));
+
+        // same count, oldest and newest build, but the middle log was replaced by one of another build
+        builds.remove(1).getLogFile().getFile().delete();
+        addLog("log20050708113001Lbuild.1a.xml", 6, "0 minute(s) 1 second(s)");
+        store.update(new BuildInfoSummary(builds));
+        assertEquals(3, store.size());
+        assertEquals(builds.get(2).getBuildDate(), store.getBuildDate(1));
+        assertTrue(Arrays.equals(new double[] {3, 6, 5}, store.getValues(xpaths(MetricsStore.TESTS))[0]));
+    }
+
+    public void testRemovedLogsResetTheStore() throws Exception {
+        addLog("log20050708100401.xml", 3, "0 minute(s) 5 second(s)");
+        addLog("log20050708110401Lbuild.1.xml", 4, "1 minute(s) 2 second(s)");
+        final MetricsStore store = new MetricsStore();
+        store.update(new BuildInfoSummary(builds));
+        store.getValues(xpaths(MetricsStore.TESTS));
+
+        builds.remove(0);
+        store.update(new BuildInfoSummary(builds));
+        assertEquals(1, store.size());
+        assertEquals(0, store.getNumBrokenBuilds());
+        assertTrue(Arrays.equals(new double[] {4}, store.getValues(xpaths(MetricsStore.TESTS))[0]));
+
+        builds.clear();
+        store.update(new BuildInfoSummary(builds));
+        assertEquals(0, store.size());
+        assertEquals(Long.MIN_VALUE, store.getHighWaterMark());
+    }
+}
@@ -40,12 +40,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Enumeration;
 import java.util.Locale;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.TimeZone;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.Cookie;
@@ -62,6 +65,8 @@ public class MockServletRequest implements HttpServletRequest {
     private Map params = new HashMap();
     private String pathInfo;
     private Locale locale;
+    private String method;
+    private final Map<String, String> headers = new HashMap<String, String>();
 
     public MockServletRequest() {
     }
@@ -178,11 +183,25 @@ public class MockServletRequest implements HttpServletRequest {
     }
 
     public long getDateHeader(String s) {
-        return 0;
+        final String value = getHeader(s);
+        if (value == null) {
+            return -1;
+        }
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(value);
+        }
     }
 
     public String getHeader(String s) {
-        return null;
+        return headers.get(s);
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
     }
 
     public Enumeration getHeaders(String s) {
@@ -198,7 +217,11 @@ public class MockServletRequest implements HttpServletRequest {
     }
 
     public String getMethod() {
-        return null;
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
     }
 
     public String getPathInfo() {
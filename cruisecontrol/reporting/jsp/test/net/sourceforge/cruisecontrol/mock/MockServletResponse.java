@@ -39,7 +39,9 @@ package net.sourceforge.cruisecontrol.mock;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
@@ -54,6 +56,8 @@ public class MockServletResponse implements HttpServletResponse {
     private String contentType;
     private int status;
     private ServletOutputStream outputStream = new MockServletOutputStream(stringWriter);
+    private final Map<String, String> headers = new HashMap<String, String>();
+    private int contentLength = -1;
 
     public String getContentType() {
         return contentType;
@@ -63,6 +67,14 @@ public class MockServletResponse implements HttpServletResponse {
         return status;
     }
 
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public int getContentLength() {
+        return contentLength;
+    }
+
     public String getWritten() {
         return stringWriter.getBuffer().toString();
     }
@@ -112,12 +124,14 @@ public class MockServletResponse implements HttpServletResponse {
      * @see javax.servlet.http.HttpServletResponse#sendError(int, java.lang.String)
      */
     public void sendError(int arg0, String arg1) throws IOException {
+        status = arg0;
     }
 
     /* (non-Javadoc)
      * @see javax.servlet.http.HttpServletResponse#sendError(int)
      */
     public void sendError(int arg0) throws IOException {
+        status = arg0;
     }
 
     /* (non-Javadoc)
@@ -142,6 +156,7 @@ public class MockServletResponse implements HttpServletResponse {
      * @see javax.servlet.http.HttpServletResponse#setHeader(java.lang.String, java.lang.String)
      */
     public void setHeader(String arg0, String arg1) {
+        headers.put(arg0, arg1);
     }
 
     /* (non-Javadoc)
@@ -201,6 +216,7 @@ public class MockServletResponse implements HttpServletResponse {
      * @see javax.servlet.ServletResponse#setContentLength(int)
      */
     public void setContentLength(int arg0) {
+        contentLength = arg0;
     }
 
     /* (non-Javadoc)
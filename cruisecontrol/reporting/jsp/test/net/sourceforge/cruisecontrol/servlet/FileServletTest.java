@@ -50,10 +50,12 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import junit.framework.TestCase;
+import net.sourceforge.cruisecontrol.CruiseControlException;
 import net.sourceforge.cruisecontrol.mock.MockServletConfig;
 import net.sourceforge.cruisecontrol.mock.MockServletContext;
 import net.sourceforge.cruisecontrol.mock.MockServletRequest;
 import net.sourceforge.cruisecontrol.mock.MockServletResponse;
+import net.sourceforge.cruisecontrol.util.IO;
 
 /**
  * @author jfredrick
@@ -209,6 +211,115 @@ public class FileServletTest extends TestCase {
 
     }
 
+    private FileServlet createServlet(final File dir) throws ServletException {
+        final FileServlet fileServlet = new FileServlet() {
+            protected File getRootDir(ServletConfig servletconfig) {
+                return dir;
+            }
+
+            protected String getMimeType(String filename) {
+                return "text/plain";
+            }
+        };
+        final MockServletConfig servletconfig = new MockServletConfig();
+        servletconfig.setServletContext(new MockServletContext());
+        fileServlet.init(servletconfig);
+        return fileServlet;
+    }
+
+    private File createFile(final String content) throws IOException {
+        final File file = File.createTempFile("tmp", ".txt");
+        file.deleteOnExit();
+        try {
+            IO.write(file, content);
+        } catch (CruiseControlException e) {
+            throw new IOException(e.getMessage());
+        }
+        return file;
+    }
+
+    public void testServiceFileContent() throws ServletException, IOException {
+        final File file = createFile("0123456789");
+        MockServletRequest request = new MockServletRequest();
+        MockServletResponse response = new MockServletResponse();
+        request.setPathInfo(file.getName());
+
+        createServlet(file.getParentFile()).service(request, response);
+        assertEquals("0123456789", response.getWritten());
+        assertEquals(10, response.getContentLength());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("ETag"));
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+
+    public void testServiceRange() throws ServletException, IOException {
+        final File file = createFile("0123456789");
+        MockServletRequest request = new MockServletRequest();
+        MockServletResponse response = new MockServletResponse();
+        request.setPathInfo(file.getName());
+        request.setHeader("Range", "bytes=2-5");
+
+        createServlet(file.getParentFile()).service(request, response);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("2345", response.getWritten());
+        assertEquals(4, response.getContentLength());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+
+        response = new MockServletResponse();
+        request.setHeader("Range", "bytes=20-");
+        createServlet(file.getParentFile()).service(request, response);
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+        assertEquals("", response.getWritten());
+
+        response = new MockServletResponse();
+        request.setHeader("Range", "bytes=2-5");
+        request.setHeader("If-Range", "\"stale\"");
+        createServlet(file.getParentFile()).service(request, response);
+        assertEquals("0123456789", response.getWritten());
+    }
+
+    public void testServiceNotModified() throws ServletException, IOException {
+        final File file = createFile("0123456789");
+        MockServletRequest request = new MockServletRequest();
+        MockServletResponse response = new MockServletResponse();
+        request.setPathInfo(file.getName());
+        final FileServlet fileServlet = createServlet(file.getParentFile());
+        fileServlet.service(request, response);
+        final String etag = response.getHeader("ETag");
+
+        response = new MockServletResponse();
+        request.setHeader("If-None-Match", etag);
+        fileServlet.service(request, response);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals("", response.getWritten());
+
+        response = new MockServletResponse();
+        request.setHeader("If-None-Match", "\"other\"");
+        fileServlet.service(request, response);
+        assertEquals("0123456789", response.getWritten());
+    }
+
+    public void testServiceHead() throws ServletException, IOException {
+        final File file = createFile("0123456789");
+        MockServletRequest request = new MockServletRequest();
+        MockServletResponse response = new MockServletResponse();
+        request.setPathInfo(file.getName());
+        request.setMethod("HEAD");
+
+        createServlet(file.getParentFile()).service(request, response);
+        assertEquals("", response.getWritten());
+        assertEquals(10, response.getContentLength());
+    }
+
+    public void testIsAccepted() {
+        assertFalse(FileServlet.isAccepted(null, "gzip"));
+        assertTrue(FileServlet.isAccepted("gzip, deflate", "gzip"));
+        assertTrue(FileServlet.isAccepted("deflate, x-gzip;q=0.5", "gzip"));
+        assertFalse(FileServlet.isAccepted("deflate, gzip;q=0", "gzip"));
+        assertFalse(FileServlet.isAccepted("deflate", "gzip"));
+    }
+
     public void testGetIndexes() throws ServletException, IOException {
         MockServletConfig config = new MockServletConfig();
         MockServletContext context = new MockServletContext();
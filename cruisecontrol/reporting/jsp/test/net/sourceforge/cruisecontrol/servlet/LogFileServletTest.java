@@ -36,14 +36,27 @@
  ********************************************************************************/
 package net.sourceforge.cruisecontrol.servlet;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletConfig;
+
 import junit.framework.TestCase;
 import net.sourceforge.cruisecontrol.LogFile;
+import net.sourceforge.cruisecontrol.mock.MockServletConfig;
+import net.sourceforge.cruisecontrol.mock.MockServletContext;
+import net.sourceforge.cruisecontrol.mock.MockServletRequest;
+import net.sourceforge.cruisecontrol.mock.MockServletResponse;
+import net.sourceforge.cruisecontrol.testutil.TestUtil.FilesToDelete;
 
 /**
  * @author <a href="mailto:hak@2mba.dk">Hack Kampbjorn</a>
  */
 public class LogFileServletTest extends TestCase {
     private LogFileServlet servlet;
+    private final FilesToDelete filesToDelete = new FilesToDelete();
 
     public LogFileServletTest(String testName) {
         super(testName);
@@ -55,6 +68,7 @@ public class LogFileServletTest extends TestCase {
 
     protected void tearDown() {
         servlet = null;
+        filesToDelete.delete();
     }
 
     public void testGetLogFile() {
@@ -64,4 +78,42 @@ public class LogFileServletTest extends TestCase {
         assertEquals(logFile.getFile().getParent(), project);
         assertEquals(logFile.getName(), logName);
     }
+
+    public void testServiceCompressedLog() throws Exception {
+        final File logDir = new File("testresults/");
+        if (!logDir.exists()) {
+            assertTrue("Failed to create test result dir", logDir.mkdir());
+        }
+        filesToDelete.add(logDir);
+        final File projectDir = new File(logDir, "project");
+        assertTrue(projectDir.mkdir());
+        final File log = new File(projectDir, "log20051021021032.xml.gz");
+        final OutputStream out = new GZIPOutputStream(new FileOutputStream(log));
+        out.write("<cruisecontrol/>".getBytes("US-ASCII"));
+        out.close();
+
+        servlet = new LogFileServlet() {
+            protected File getRootDir(ServletConfig servletconfig) {
+                return logDir;
+            }
+        };
+        final MockServletConfig servletconfig = new MockServletConfig();
+        servletconfig.setServletContext(new MockServletContext());
+        servlet.init(servletconfig);
+
+        final MockServletRequest request = new MockServletRequest();
+        request.setPathInfo("project/log20051021021032");
+        MockServletResponse response = new MockServletResponse();
+        servlet.service(request, response);
+        assertEquals("<cruisecontrol/>", response.getWritten());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+        request.setHeader("Accept-Encoding", "gzip");
+        response = new MockServletResponse();
+        servlet.service(request, response);
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals((int) log.length(), response.getContentLength());
+        assertEquals(log.length(), response.getWritten().length());
+    }
 }
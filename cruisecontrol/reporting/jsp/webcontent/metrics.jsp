@@ -49,3 +49,35 @@
     <cewolf:chartpostprocessor id="xpathData" />
 </cewolf:chart>
 <cewolf:img chartid="chart" renderer="cewolf" width="400" height="300"/>
+
+<hr />
+<jsp:useBean id="testData" class="net.sourceforge.cruisecontrol.chart.XPathChartData" />
+<%
+    testData.add("Tests", MetricsStore.TESTS);
+    testData.add("Failures", MetricsStore.FAILURES);
+    testData.add("Errors", MetricsStore.ERRORS);
+%>
+<cewolf:chart id="tests" title="Tests" type="timeseries"  xaxislabel="date" yaxislabel="tests">
+    <cewolf:data>
+        <cewolf:producer id="testData">
+          <cewolf:param name="build_info" value="<%=build_info%>" />
+        </cewolf:producer>
+    </cewolf:data>
+    <cewolf:chartpostprocessor id="testData" />
+</cewolf:chart>
+<cewolf:img chartid="tests" renderer="cewolf" width="400" height="300"/>
+
+<hr />
+<jsp:useBean id="durationData" class="net.sourceforge.cruisecontrol.chart.XPathChartData" />
+<%
+    durationData.add("Duration", MetricsStore.DURATION);
+%>
+<cewolf:chart id="duration" title="Build duration" type="timeseries"  xaxislabel="date" yaxislabel="seconds">
+    <cewolf:data>
+        <cewolf:producer id="durationData">
+          <cewolf:param name="build_info" value="<%=build_info%>" />
+        </cewolf:producer>
+    </cewolf:data>
+    <cewolf:chartpostprocessor id="durationData" />
+</cewolf:chart>
+<cewolf:img chartid="duration" renderer="cewolf" width="400" height="300"/>